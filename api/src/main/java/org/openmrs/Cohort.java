@@ -19,13 +19,13 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.ReportService;
 import org.openmrs.cohort.CohortDefinition;
 import org.openmrs.report.EvaluationContext;
+import org.openmrs.util.IntegerBitmapSet;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
@@ -59,7 +59,7 @@ public class Cohort extends BaseOpenmrsData implements Serializable {
 	private EvaluationContext evaluationContext;
 	
 	public Cohort() {
-		memberIds = new TreeSet<Integer>();
+		memberIds = new IntegerBitmapSet();
 	}
 	
 	/**
@@ -222,10 +222,12 @@ public class Cohort extends BaseOpenmrsData implements Serializable {
 	public static Cohort union(Cohort a, Cohort b) {
 		Cohort ret = new Cohort();
 		ret.setName("(" + a.getName() + " + " + b.getName() + ")");
+		IntegerBitmapSet members = new IntegerBitmapSet();
 		if (a != null)
-			ret.getMemberIds().addAll(a.getMemberIds());
+			members = IntegerBitmapSet.or(members, IntegerBitmapSet.valueOf(a.getMemberIds()));
 		if (b != null)
-			ret.getMemberIds().addAll(b.getMemberIds());
+			members = IntegerBitmapSet.or(members, IntegerBitmapSet.valueOf(b.getMemberIds()));
+		ret.setMemberIds(members);
 		return ret;
 	}
 	
@@ -239,10 +241,9 @@ public class Cohort extends BaseOpenmrsData implements Serializable {
 	public static Cohort intersect(Cohort a, Cohort b) {
 		Cohort ret = new Cohort();
 		ret.setName("(" + (a == null ? "NULL" : a.getName()) + " * " + (b == null ? "NULL" : b.getName()) + ")");
-		if (a != null && b != null) {
-			ret.getMemberIds().addAll(a.getMemberIds());
-			ret.getMemberIds().retainAll(b.getMemberIds());
-		}
+		if (a != null && b != null)
+			ret.setMemberIds(IntegerBitmapSet.and(IntegerBitmapSet.valueOf(a.getMemberIds()), IntegerBitmapSet.valueOf(b
+			        .getMemberIds())));
 		return ret;
 	}
 	
@@ -257,9 +258,11 @@ public class Cohort extends BaseOpenmrsData implements Serializable {
 		Cohort ret = new Cohort();
 		ret.setName("(" + a.getName() + " - " + b.getName() + ")");
 		if (a != null) {
-			ret.getMemberIds().addAll(a.getMemberIds());
+			IntegerBitmapSet members = IntegerBitmapSet.valueOf(a.getMemberIds());
 			if (b != null)
-				ret.getMemberIds().removeAll(b.getMemberIds());
+				ret.setMemberIds(IntegerBitmapSet.andNot(members, IntegerBitmapSet.valueOf(b.getMemberIds())));
+			else
+				ret.setMemberIds(IntegerBitmapSet.or(members, new IntegerBitmapSet()));
 		}
 		return ret;
 	}
@@ -40,7 +40,6 @@ import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Root;
-import org.springframework.util.ObjectUtils;
 
 /**
  * A Concept object can represent either a question or an answer to a data point. That data point is
@@ -115,6 +114,12 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 	 */
 	private Map<Locale, List<ConceptName>> compatibleCache;
 	
+	/**
+	 * The names of this concept by locale, built on-the-fly by {@link #getNameIndex()} and rebuilt
+	 * when the names change.
+	 */
+	private transient volatile NameIndex nameIndex;
+	
 	/** default constructor */
 	public Concept() {
 		names = new HashSet<ConceptName>();
@@ -530,41 +535,46 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 	 * @should return name in broader locale incase none is found in specific one
 	 */
 	public ConceptName getName() {
-		if (getNames().size() == 0) {
+		NameIndex index = getNameIndex();
+		if (index.isEmpty()) {
 			if (log.isDebugEnabled())
 				log.debug("there are no names defined for: " + conceptId);
 			return null;
 		}
 		
-		for (Locale currentLocale : LocaleUtility.getLocalesInOrder()) {
-			ConceptName preferredName = getPreferredName(currentLocale);
-			if (preferredName != null)
-				return preferredName;
-			
-			ConceptName fullySpecifiedName = getFullySpecifiedName(currentLocale);
-			if (fullySpecifiedName != null)
-				return fullySpecifiedName;
+		// the locales are cached, so the same set means the same name as the last time
+		Set<Locale> localesInOrder = LocaleUtility.getLocalesInOrder();
+		BestName bestName = index.bestName;
+		if (bestName != null && bestName.localesInOrder == localesInOrder)
+			return bestName.name;
+		
+		ConceptName name = getName(index, localesInOrder);
+		index.bestName = new BestName(localesInOrder, name);
+		return name;
+	}
+	
+	/**
+	 * @see #getName()
+	 */
+	private ConceptName getName(NameIndex index, Set<Locale> localesInOrder) {
+		for (Locale currentLocale : localesInOrder) {
+			ConceptName name = getPreferredOrFullySpecifiedName(index.get(currentLocale));
+			if (name != null)
+				return name;
 			
 			//if the locale has an variants e.g en_GB, try names in the locale excluding the country code i.e en
 			if (!StringUtils.isBlank(currentLocale.getCountry()) || !StringUtils.isBlank(currentLocale.getVariant())) {
-				Locale broaderLocale = new Locale(currentLocale.getLanguage());
-				ConceptName prefNameInBroaderLoc = getPreferredName(broaderLocale);
-				if (prefNameInBroaderLoc != null)
-					return prefNameInBroaderLoc;
-				
-				ConceptName fullySpecNameInBroaderLoc = getFullySpecifiedName(broaderLocale);
-				if (fullySpecNameInBroaderLoc != null)
-					return fullySpecNameInBroaderLoc;
+				name = getPreferredOrFullySpecifiedName(index.get(new Locale(currentLocale.getLanguage())));
+				if (name != null)
+					return name;
 			}
 		}
 		
-		for (ConceptName cn : getNames()) {
-			if (cn.isFullySpecifiedName())
-				return cn;
-		}
+		if (index.firstFullySpecifiedName != null)
+			return index.firstFullySpecifiedName;
 		
-		if (getSynonyms().size() > 0)
-			return getSynonyms().iterator().next();
+		if (index.firstSynonym != null)
+			return index.firstSynonym;
 		
 		//we dont expect to get here since every concept name must have atleast
 		//one fully specified name, but just in case(probably inconsistent data)
@@ -572,6 +582,12 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 		return null;
 	}
 	
+	private static ConceptName getPreferredOrFullySpecifiedName(LocaleNames localeNames) {
+		if (localeNames == null)
+			return null;
+		return localeNames.preferredName != null ? localeNames.preferredName : localeNames.fullySpecifiedName;
+	}
+	
 	/**
 	 * Checks whether this concept has the given string in any of the names in the given locale
 	 * already.
@@ -685,17 +701,11 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 	 * @return null if name in given locale doesn't exist
 	 */
 	private ConceptName getNameInLocale(Locale locale) {
-		ConceptName preferredName = getPreferredName(locale);
-		if (preferredName != null)
-			return preferredName;
-		
-		ConceptName fullySpecifiedName = getFullySpecifiedName(locale);
-		if (fullySpecifiedName != null)
-			return fullySpecifiedName;
-		else if (getSynonyms(locale).size() > 0)
-			return getSynonyms(locale).iterator().next();
-		
-		return null;
+		LocaleNames localeNames = getNameIndex().get(locale);
+		ConceptName name = getPreferredOrFullySpecifiedName(localeNames);
+		if (name != null || localeNames == null)
+			return name;
+		return localeNames.synonym;
 	}
 	
 	/**
@@ -705,27 +715,21 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 	 * @return preferred name for the locale, or null if no preferred name is specified
 	 * @should return the concept name explicitly marked as locale preferred
 	 * @should return the fully specified name if no name is explicitly marked as locale preferred
+	 * @should reflect changes made directly to the names of the concept
 	 */
 	public ConceptName getPreferredName(Locale forLocale) {
 		
 		if (log.isDebugEnabled())
 			log.debug("Getting preferred conceptName for locale: " + forLocale);
 		// fail early if this concept has no names defined
-		if (getNames(forLocale).size() == 0) {
+		LocaleNames localeNames = getNameIndex().get(forLocale);
+		if (localeNames == null) {
 			if (log.isDebugEnabled())
 				log.debug("there are no names defined for concept with id: " + conceptId + " in the  locale: " + forLocale);
 			return null;
-		} else if (forLocale == null) {
-			log.warn("Locale cannot be null");
-			return null;
 		}
 		
-		for (ConceptName nameInLocale : getNames(forLocale)) {
-			if (ObjectUtils.nullSafeEquals(nameInLocale.isLocalePreferred(), true))
-				return nameInLocale;
-		}
-		
-		return getFullySpecifiedName(forLocale);
+		return getPreferredOrFullySpecifiedName(localeNames);
 	}
 	
 	/**
@@ -744,15 +748,8 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 	 * @should return the name marked as fully specified for the given locale
 	 */
 	public ConceptName getFullySpecifiedName(Locale locale) {
-		if (locale != null && getNames(locale).size() > 0) {
-			//get the first fully specified name, since every concept must have a fully specified name,
-			//then, this loop will have to return a name
-			for (ConceptName conceptName : getNames(locale)) {
-				if (ObjectUtils.nullSafeEquals(conceptName.isFullySpecifiedName(), true))
-					return conceptName;
-			}
-		}
-		return null;
+		LocaleNames localeNames = getNameIndex().get(locale);
+		return localeNames == null ? null : localeNames.fullySpecifiedName;
 	}
 	
 	/**
@@ -764,13 +761,10 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 	 * @return Collection of ConceptNames with the given locale
 	 */
 	public Collection<ConceptName> getNames(Locale locale) {
-		Collection<ConceptName> localeNames = new Vector<ConceptName>();
-		for (ConceptName possibleName : getNames()) {
-			if (possibleName.getLocale().equals(locale)) {
-				localeNames.add(possibleName);
-			}
-		}
-		return localeNames;
+		LocaleNames localeNames = getNameIndex().get(locale);
+		if (localeNames == null)
+			return new Vector<ConceptName>();
+		return new Vector<ConceptName>(localeNames.names);
 	}
 	
 	/**
@@ -785,6 +779,9 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 	 * @should exclude incompatible language locales
 	 */
 	public List<ConceptName> getCompatibleNames(Locale desiredLocale) {
+		// rebuilding the name index clears the cache
+		getNameIndex();
+		
 		// lazy create the cache
 		List<ConceptName> compatibleNames = null;
 		if (compatibleCache == null) {
@@ -927,13 +924,8 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 	 * @return the short name, or null if none has been explicitly set
 	 */
 	public ConceptName getShortNameInLocale(Locale locale) {
-		if (locale != null && getShortNames().size() > 0) {
-			for (ConceptName shortName : getShortNames()) {
-				if (shortName.getLocale().equals(locale))
-					return shortName;
-			}
-		}
-		return null;
+		LocaleNames localeNames = getNameIndex().get(locale);
+		return localeNames == null ? null : localeNames.shortName;
 	}
 	
 	/**
@@ -1714,4 +1706,176 @@ public class Concept extends BaseOpenmrsObject implements Auditable, Retireable,
 		conceptSets.add(conceptSet);
 	}
 	
+	
+	/**
+	 * Returns the index of the names of this concept, building it again if any name was added,
+	 * removed or changed its locale, type, preferred or voided flag since it was last built. The
+	 * check walks the names once without creating any objects, instead of walking them once per
+	 * locale and type like the lookups used to.
+	 * 
+	 * @return the index of the current names
+	 */
+	private NameIndex getNameIndex() {
+		NameIndex index = nameIndex;
+		if (index == null || !index.isIndexOf(names)) {
+			index = new NameIndex(names, getNames());
+			nameIndex = index;
+			if (compatibleCache != null)
+				compatibleCache.clear();
+		}
+		return index;
+	}
+	
+	/**
+	 * The non voided names of a concept by locale, with the state of all names at the time the index
+	 * was built to tell whether it is still up to date. An index is never changed after it is built
+	 * except for the memoized result of {@link Concept#getName()}.
+	 */
+	private static final class NameIndex {
+		
+		private final ConceptName[] indexedNames;
+		
+		private final Locale[] locales;
+		
+		private final ConceptNameType[] types;
+		
+		private final boolean[] preferred;
+		
+		private final boolean[] voided;
+		
+		private final Map<Locale, LocaleNames> byLocale = new HashMap<Locale, LocaleNames>();
+		
+		private final boolean empty;
+		
+		private final ConceptName firstFullySpecifiedName;
+		
+		private final ConceptName firstSynonym;
+		
+		private volatile BestName bestName;
+		
+		/**
+		 * @param allNames all names of the concept, including voided ones
+		 * @param nonVoidedNames the names to index, in the order the lookups should find them
+		 */
+		NameIndex(Collection<ConceptName> allNames, Collection<ConceptName> nonVoidedNames) {
+			int size = allNames == null ? 0 : allNames.size();
+			indexedNames = new ConceptName[size];
+			locales = new Locale[size];
+			types = new ConceptNameType[size];
+			preferred = new boolean[size];
+			voided = new boolean[size];
+			int i = 0;
+			if (allNames != null) {
+				for (ConceptName name : allNames) {
+					indexedNames[i] = name;
+					locales[i] = name.getLocale();
+					types[i] = name.getConceptNameType();
+					preferred[i] = Boolean.TRUE.equals(name.isLocalePreferred());
+					voided[i] = Boolean.TRUE.equals(name.isVoided());
+					i++;
+				}
+			}
+			
+			ConceptName fullySpecifiedName = null;
+			ConceptName synonym = null;
+			for (ConceptName name : nonVoidedNames) {
+				if (fullySpecifiedName == null && name.isFullySpecifiedName())
+					fullySpecifiedName = name;
+				if (synonym == null && name.isSynonym())
+					synonym = name;
+				
+				if (name.getLocale() == null)
+					continue;
+				LocaleNames localeNames = byLocale.get(name.getLocale());
+				if (localeNames == null) {
+					localeNames = new LocaleNames();
+					byLocale.put(name.getLocale(), localeNames);
+				}
+				localeNames.add(name);
+			}
+			empty = nonVoidedNames.isEmpty();
+			firstFullySpecifiedName = fullySpecifiedName;
+			firstSynonym = synonym;
+		}
+		
+		/**
+		 * @param currentNames the names of the concept now
+		 * @return true if the names are the same objects, in the same state, as when this index was
+		 *         built
+		 */
+		boolean isIndexOf(Collection<ConceptName> currentNames) {
+			int size = currentNames == null ? 0 : currentNames.size();
+			if (size != indexedNames.length)
+				return false;
+			if (size == 0)
+				return true;
+			
+			int i = 0;
+			for (ConceptName name : currentNames) {
+				if (name != indexedNames[i] || name.getLocale() != locales[i] || name.getConceptNameType() != types[i]
+				        || Boolean.TRUE.equals(name.isLocalePreferred()) != preferred[i]
+				        || Boolean.TRUE.equals(name.isVoided()) != voided[i])
+					return false;
+				i++;
+			}
+			return true;
+		}
+		
+		/**
+		 * @param locale the locale to look up
+		 * @return the names in exactly this locale, or null if there are none
+		 */
+		LocaleNames get(Locale locale) {
+			return locale == null ? null : byLocale.get(locale);
+		}
+		
+		boolean isEmpty() {
+			return empty;
+		}
+	}
+	
+	/**
+	 * The non voided names of a concept in one locale
+	 */
+	private static final class LocaleNames {
+		
+		private final List<ConceptName> names = new ArrayList<ConceptName>(4);
+		
+		private ConceptName preferredName;
+		
+		private ConceptName fullySpecifiedName;
+		
+		private ConceptName shortName;
+		
+		// the preferred synonym if there is one, else the first one
+		private ConceptName synonym;
+		
+		void add(ConceptName name) {
+			names.add(name);
+			if (preferredName == null && Boolean.TRUE.equals(name.isLocalePreferred()))
+				preferredName = name;
+			if (fullySpecifiedName == null && name.isFullySpecifiedName())
+				fullySpecifiedName = name;
+			if (shortName == null && name.isShort())
+				shortName = name;
+			if (name.isSynonym() && (synonym == null || (Boolean.TRUE.equals(name.isLocalePreferred()) && !Boolean.TRUE
+			        .equals(synonym.isLocalePreferred()))))
+				synonym = name;
+		}
+	}
+	
+	/**
+	 * The result of {@link Concept#getName()} for a set of locales in order
+	 */
+	private static final class BestName {
+		
+		private final Set<Locale> localesInOrder;
+		
+		private final ConceptName name;
+		
+		BestName(Set<Locale> localesInOrder, ConceptName name) {
+			this.localesInOrder = localesInOrder;
+			this.name = name;
+		}
+	}
 }
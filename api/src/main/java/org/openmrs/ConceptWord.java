@@ -215,11 +215,24 @@ public class ConceptWord implements java.io.Serializable, Comparable<ConceptWord
 	 */
 	
 	public static Set<ConceptWord> makeConceptWords(Concept concept) {
+		return makeConceptWords(concept, Context.getConceptService().getConceptStopWords(Context.getLocale()));
+	}
+	
+	/**
+	 * Same as {@link #makeConceptWords(Concept)} but with the stop words given, so that they do not
+	 * have to be looked up again for every name when making the words of many concepts
+	 * 
+	 * @param concept The concept from which to make the list of concept words.
+	 * @param conceptStopWords the upper case words to leave out
+	 * @return Returns a list of unique concept words based on the specified concept.
+	 * @since 1.9.9
+	 */
+	public static Set<ConceptWord> makeConceptWords(Concept concept, List<String> conceptStopWords) {
 		Set<ConceptWord> words = new HashSet<ConceptWord>();
 		
 		for (ConceptName name : concept.getNames()) {
 			if (!name.isVoided()) {
-				List<String> uniqueParts = getUniqueWords(name.getName());
+				List<String> uniqueParts = getUniqueWords(name.getName(), conceptStopWords);
 				for (String part : uniqueParts) {
 					words.add(new ConceptWord(part, concept, name, name.getLocale()));
 				}
@@ -247,11 +260,22 @@ public class ConceptWord implements java.io.Serializable, Comparable<ConceptWord
 	 * @since 1.8
 	 */
 	public static List<String> getUniqueWords(String phrase, Locale locale) {
+		return getUniqueWords(phrase, Context.getConceptService().getConceptStopWords(locale));
+	}
+	
+	/**
+	 * Split the given phrase on words and remove unique and the given stop words
+	 * 
+	 * @param phrase
+	 * @param conceptStopWords the upper case words to leave out
+	 * @return Returns a list of the unique parts of the phrase, in all upper case.
+	 * @since 1.9.9
+	 */
+	public static List<String> getUniqueWords(String phrase, List<String> conceptStopWords) {
 		String[] parts = splitPhrase(phrase);
 		List<String> uniqueParts = new Vector<String>();
 		
 		if (parts != null) {
-			List<String> conceptStopWords = Context.getConceptService().getConceptStopWords(locale);
 			for (String part : parts) {
 				if (!StringUtils.isBlank(part)) {
 					String upper = part.trim().toUpperCase();
@@ -0,0 +1,134 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs;
+
+import java.util.Date;
+
+import org.openmrs.api.PatientService;
+
+/**
+ * A pair of patients that were found to be possible duplicates of each other by the last run of
+ * {@link PatientService#detectDuplicatePatients(Double, Integer)}. The candidates are replaced on
+ * every run, so they are not audited or voided.
+ * 
+ * @see PatientService#getDuplicatePatientCandidates(Integer, Integer)
+ * @since 1.9.9
+ */
+public class DuplicatePatientCandidate extends BaseOpenmrsObject {
+	
+	private Integer duplicatePatientCandidateId;
+	
+	private Patient patient;
+	
+	private Patient duplicate;
+	
+	private Double score;
+	
+	private String matchedOn;
+	
+	private Date dateCreated;
+	
+	public DuplicatePatientCandidate() {
+	}
+	
+	/**
+	 * @param duplicatePatientCandidateId
+	 */
+	public DuplicatePatientCandidate(Integer duplicatePatientCandidateId) {
+		this.duplicatePatientCandidateId = duplicatePatientCandidateId;
+	}
+	
+	public Integer getDuplicatePatientCandidateId() {
+		return duplicatePatientCandidateId;
+	}
+	
+	public void setDuplicatePatientCandidateId(Integer duplicatePatientCandidateId) {
+		this.duplicatePatientCandidateId = duplicatePatientCandidateId;
+	}
+	
+	/**
+	 * @return the patient with the lower patient id of the pair
+	 */
+	public Patient getPatient() {
+		return patient;
+	}
+	
+	public void setPatient(Patient patient) {
+		this.patient = patient;
+	}
+	
+	/**
+	 * @return the patient with the higher patient id of the pair
+	 */
+	public Patient getDuplicate() {
+		return duplicate;
+	}
+	
+	public void setDuplicate(Patient duplicate) {
+		this.duplicate = duplicate;
+	}
+	
+	/**
+	 * @return how well the two patients match, from 0 to 1
+	 */
+	public Double getScore() {
+		return score;
+	}
+	
+	public void setScore(Double score) {
+		this.score = score;
+	}
+	
+	/**
+	 * @return a comma separated list of the fields the two patients matched on, e.g.
+	 *         "familyName,birthdate"
+	 */
+	public String getMatchedOn() {
+		return matchedOn;
+	}
+	
+	public void setMatchedOn(String matchedOn) {
+		this.matchedOn = matchedOn;
+	}
+	
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+	
+	public void setDateCreated(Date dateCreated) {
+		this.dateCreated = dateCreated;
+	}
+	
+	/**
+	 * @see org.openmrs.OpenmrsObject#getId()
+	 */
+	public Integer getId() {
+		return getDuplicatePatientCandidateId();
+	}
+	
+	/**
+	 * @see org.openmrs.OpenmrsObject#setId(java.lang.Integer)
+	 */
+	public void setId(Integer id) {
+		setDuplicatePatientCandidateId(id);
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "DuplicatePatientCandidate: " + patient + " ~ " + duplicate + " (" + score + ")";
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs;
+
+import java.util.Date;
+
+import org.openmrs.api.ObsService;
+
+/**
+ * The most recent non-voided observation of a person for a concept. There is at most one for each
+ * person and concept, it is kept up to date by {@link ObsService#updateLatestObs(Obs)} whenever
+ * observations are saved, voided, unvoided or purged, so that the latest values can be read
+ * without loading the whole history of the person.
+ * 
+ * @see ObsService#getLatestObs(Person, java.util.List)
+ * @since 1.9.9
+ */
+public class LatestObs {
+	
+	private Integer latestObsId;
+	
+	private Person person;
+	
+	private Concept concept;
+	
+	private Obs obs;
+	
+	private Date obsDatetime;
+	
+	/** Default constructor */
+	public LatestObs() {
+	}
+	
+	/**
+	 * @param obs the most recent observation of its person for its concept
+	 */
+	public LatestObs(Obs obs) {
+		this.person = obs.getPerson();
+		this.concept = obs.getConcept();
+		this.obs = obs;
+		this.obsDatetime = obs.getObsDatetime();
+	}
+	
+	public Integer getLatestObsId() {
+		return latestObsId;
+	}
+	
+	public void setLatestObsId(Integer latestObsId) {
+		this.latestObsId = latestObsId;
+	}
+	
+	public Person getPerson() {
+		return person;
+	}
+	
+	public void setPerson(Person person) {
+		this.person = person;
+	}
+	
+	public Concept getConcept() {
+		return concept;
+	}
+	
+	public void setConcept(Concept concept) {
+		this.concept = concept;
+	}
+	
+	/**
+	 * @return the most recent observation of the person for the concept
+	 */
+	public Obs getObs() {
+		return obs;
+	}
+	
+	public void setObs(Obs obs) {
+		this.obs = obs;
+	}
+	
+	/**
+	 * @return the date time of the observation, copied so that it can be compared without a join
+	 */
+	public Date getObsDatetime() {
+		return obsDatetime;
+	}
+	
+	public void setObsDatetime(Date obsDatetime) {
+		this.obsDatetime = obsDatetime;
+	}
+}
@@ -65,6 +65,22 @@ public class PersonName extends BaseOpenmrsData implements java.io.Serializable,
 	
 	private String degree;
 	
+	private String givenNameSoundex;
+	
+	private String middleNameSoundex;
+	
+	private String familyNameSoundex;
+	
+	private String familyName2Soundex;
+	
+	private String givenNameMetaphone;
+	
+	private String middleNameMetaphone;
+	
+	private String familyNameMetaphone;
+	
+	private String familyName2Metaphone;
+	
 	// Constructors
 	
 	/** default constructor */
@@ -526,6 +542,134 @@ public class PersonName extends BaseOpenmrsData implements java.io.Serializable,
 		return ret;
 	}
 	
+	/**
+	 * @return the Soundex key of the givenName, null if it has not been computed yet
+	 * @since 1.9.9
+	 */
+	public String getGivenNameSoundex() {
+		return givenNameSoundex;
+	}
+	
+	/**
+	 * @param givenNameSoundex the Soundex key of the givenName
+	 * @since 1.9.9
+	 */
+	public void setGivenNameSoundex(String givenNameSoundex) {
+		this.givenNameSoundex = givenNameSoundex;
+	}
+	
+	/**
+	 * @return the Soundex key of the middleName, null if it has not been computed yet
+	 * @since 1.9.9
+	 */
+	public String getMiddleNameSoundex() {
+		return middleNameSoundex;
+	}
+	
+	/**
+	 * @param middleNameSoundex the Soundex key of the middleName
+	 * @since 1.9.9
+	 */
+	public void setMiddleNameSoundex(String middleNameSoundex) {
+		this.middleNameSoundex = middleNameSoundex;
+	}
+	
+	/**
+	 * @return the Soundex key of the familyName, null if it has not been computed yet
+	 * @since 1.9.9
+	 */
+	public String getFamilyNameSoundex() {
+		return familyNameSoundex;
+	}
+	
+	/**
+	 * @param familyNameSoundex the Soundex key of the familyName
+	 * @since 1.9.9
+	 */
+	public void setFamilyNameSoundex(String familyNameSoundex) {
+		this.familyNameSoundex = familyNameSoundex;
+	}
+	
+	/**
+	 * @return the Soundex key of the familyName2, null if it has not been computed yet
+	 * @since 1.9.9
+	 */
+	public String getFamilyName2Soundex() {
+		return familyName2Soundex;
+	}
+	
+	/**
+	 * @param familyName2Soundex the Soundex key of the familyName2
+	 * @since 1.9.9
+	 */
+	public void setFamilyName2Soundex(String familyName2Soundex) {
+		this.familyName2Soundex = familyName2Soundex;
+	}
+	
+	/**
+	 * @return the Metaphone key of the givenName, null if it has not been computed yet
+	 * @since 1.9.9
+	 */
+	public String getGivenNameMetaphone() {
+		return givenNameMetaphone;
+	}
+	
+	/**
+	 * @param givenNameMetaphone the Metaphone key of the givenName
+	 * @since 1.9.9
+	 */
+	public void setGivenNameMetaphone(String givenNameMetaphone) {
+		this.givenNameMetaphone = givenNameMetaphone;
+	}
+	
+	/**
+	 * @return the Metaphone key of the middleName, null if it has not been computed yet
+	 * @since 1.9.9
+	 */
+	public String getMiddleNameMetaphone() {
+		return middleNameMetaphone;
+	}
+	
+	/**
+	 * @param middleNameMetaphone the Metaphone key of the middleName
+	 * @since 1.9.9
+	 */
+	public void setMiddleNameMetaphone(String middleNameMetaphone) {
+		this.middleNameMetaphone = middleNameMetaphone;
+	}
+	
+	/**
+	 * @return the Metaphone key of the familyName, null if it has not been computed yet
+	 * @since 1.9.9
+	 */
+	public String getFamilyNameMetaphone() {
+		return familyNameMetaphone;
+	}
+	
+	/**
+	 * @param familyNameMetaphone the Metaphone key of the familyName
+	 * @since 1.9.9
+	 */
+	public void setFamilyNameMetaphone(String familyNameMetaphone) {
+		this.familyNameMetaphone = familyNameMetaphone;
+	}
+	
+	/**
+	 * @return the Metaphone key of the familyName2, null if it has not been computed yet
+	 * @since 1.9.9
+	 */
+	public String getFamilyName2Metaphone() {
+		return familyName2Metaphone;
+	}
+	
+	/**
+	 * @param familyName2Metaphone the Metaphone key of the familyName2
+	 * @since 1.9.9
+	 */
+	public void setFamilyName2Metaphone(String familyName2Metaphone) {
+		this.familyName2Metaphone = familyName2Metaphone;
+	}
+	
 	/**
 	 * @since 1.5
 	 * @see org.openmrs.OpenmrsObject#getId()
@@ -0,0 +1,181 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An entry of the person name search index. The parts of a {@link PersonName} are split into
+ * words that are normalized to upper case letters and digits without accents, and every suffix of
+ * every word is kept together with its start position in the word. A search term then matches the
+ * start of a word with <code>token like 'TERM%' and start_position = 0</code> and any part of a
+ * word with <code>token like 'TERM%'</code>, both of which can be answered from the index on the
+ * token column instead of scanning the person_name table.
+ * 
+ * @since 1.9.9
+ */
+public class PersonNameToken {
+	
+	/**
+	 * The maximum length of a token, longer words are cut off
+	 */
+	public static final int MAX_TOKEN_LENGTH = 50;
+	
+	private Integer personNameTokenId;
+	
+	private Person person;
+	
+	private PersonName personName;
+	
+	private String token;
+	
+	private Integer startPosition;
+	
+	/** Default constructor */
+	public PersonNameToken() {
+	}
+	
+	/**
+	 * @param personName the name the token belongs to
+	 * @param token the normalized suffix of a word of the name
+	 * @param startPosition the position of the suffix in the word, 0 for the whole word
+	 */
+	public PersonNameToken(PersonName personName, String token, Integer startPosition) {
+		this.person = personName.getPerson();
+		this.personName = personName;
+		this.token = token;
+		this.startPosition = startPosition;
+	}
+	
+	public Integer getPersonNameTokenId() {
+		return personNameTokenId;
+	}
+	
+	public void setPersonNameTokenId(Integer personNameTokenId) {
+		this.personNameTokenId = personNameTokenId;
+	}
+	
+	public Person getPerson() {
+		return person;
+	}
+	
+	public void setPerson(Person person) {
+		this.person = person;
+	}
+	
+	public PersonName getPersonName() {
+		return personName;
+	}
+	
+	public void setPersonName(PersonName personName) {
+		this.personName = personName;
+	}
+	
+	/**
+	 * @return the normalized suffix of a word of the name
+	 */
+	public String getToken() {
+		return token;
+	}
+	
+	public void setToken(String token) {
+		this.token = token;
+	}
+	
+	/**
+	 * @return the position of the token in its word, 0 if the token is the whole word
+	 */
+	public Integer getStartPosition() {
+		return startPosition;
+	}
+	
+	public void setStartPosition(Integer startPosition) {
+		this.startPosition = startPosition;
+	}
+	
+	/**
+	 * Creates the tokens of the given name, an empty list if the name is voided
+	 * 
+	 * @param personName the name to index
+	 * @return the tokens of every word of the given, middle and family names
+	 * @should create a token for every suffix of every word
+	 * @should not create tokens for a voided name
+	 */
+	public static List<PersonNameToken> makeTokens(PersonName personName) {
+		List<PersonNameToken> tokens = new ArrayList<PersonNameToken>();
+		if (personName.isVoided())
+			return tokens;
+		
+		for (String word : getWords(personName.getGivenName(), personName.getMiddleName(), personName.getFamilyName(),
+		    personName.getFamilyName2())) {
+			for (int i = 0; i < word.length(); i++)
+				tokens.add(new PersonNameToken(personName, word.substring(i), i));
+		}
+		return tokens;
+	}
+	
+	/**
+	 * Splits the given names or search phrases into distinct normalized words. Words are separated
+	 * by white space, commas and hyphens, everything but letters and digits is dropped and accents
+	 * are removed.
+	 * 
+	 * @param phrases the names or search phrases, null values are ignored
+	 * @return the distinct words in the order they first appear
+	 * @should split on white space, commas and hyphens
+	 * @should remove accents and punctuation and convert to upper case
+	 */
+	public static Set<String> getWords(String... phrases) {
+		Set<String> words = new LinkedHashSet<String>();
+		for (String phrase : phrases) {
+			if (phrase == null)
+				continue;
+			
+			for (String part : phrase.split("[\\s,\\-]+")) {
+				String word = normalize(part);
+				if (word.length() > MAX_TOKEN_LENGTH)
+					word = word.substring(0, MAX_TOKEN_LENGTH);
+				if (word.length() > 0)
+					words.add(word);
+			}
+		}
+		return words;
+	}
+	
+	/**
+	 * @param word the word to normalize
+	 * @return the letters and digits of the word in upper case and without accents
+	 */
+	private static String normalize(String word) {
+		String decomposed = Normalizer.normalize(word, Normalizer.Form.NFD);
+		StringBuilder sb = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			if (Character.isLetterOrDigit(c))
+				sb.append(Character.toUpperCase(c));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return token + "@" + startPosition;
+	}
+}
@@ -18,9 +18,13 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openmrs.OpenmrsObject;
 import org.openmrs.Retireable;
@@ -87,6 +91,12 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 	
 	//private static Log log = LogFactory.getLog(RequiredDataAdvice.class);
 	
+	/**
+	 * The child collections to recurse into for each class, computed once per class by
+	 * {@link #getHandlingPlan(Class)}
+	 */
+	private static final Map<Class<?>, List<ChildCollectionAccessor>> handlingPlans = new ConcurrentHashMap<Class<?>, List<ChildCollectionAccessor>>();
+	
 	static {
 		fieldAccess.add("Concept.answers");
 		fieldAccess.add("Concept.names");
@@ -249,20 +259,28 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 	 *            handling collection properties.
 	 * @see HandlerUtil#getHandlersForType(Class, Class)
 	 */
-	@SuppressWarnings("unchecked")
 	public static <H extends RequiredDataHandler> void recursivelyHandle(Class<H> handlerType, OpenmrsObject openmrsObject,
 	        User currentUser, Date currentDate, String other, List<OpenmrsObject> alreadyHandled) {
 		if (openmrsObject == null)
 			return;
 		
-		Class<? extends OpenmrsObject> openmrsObjectClass = openmrsObject.getClass();
+		Set<OpenmrsObject> handled = Collections.newSetFromMap(new IdentityHashMap<OpenmrsObject, Boolean>());
+		if (alreadyHandled != null)
+			handled.addAll(alreadyHandled);
 		
-		if (alreadyHandled == null) {
-			alreadyHandled = new ArrayList<OpenmrsObject>();
-		}
+		recursivelyHandleInternal(handlerType, openmrsObject, currentUser, currentDate, other, handled);
+	}
+	
+	/**
+	 * Does the actual work for
+	 * {@link #recursivelyHandle(Class, OpenmrsObject, User, Date, String, List)}, tracking the
+	 * objects that have already been handled by identity
+	 */
+	private static <H extends RequiredDataHandler> void recursivelyHandleInternal(Class<H> handlerType,
+	        OpenmrsObject openmrsObject, User currentUser, Date currentDate, String other, Set<OpenmrsObject> alreadyHandled) {
 		
 		// fetch all handlers for the object being saved
-		List<H> handlers = HandlerUtil.getHandlersForType(handlerType, openmrsObjectClass);
+		List<H> handlers = HandlerUtil.getHandlersForType(handlerType, openmrsObject.getClass());
 		
 		// loop over all handlers, calling onSave on each
 		for (H handler : handlers) {
@@ -270,28 +288,21 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 		}
 		alreadyHandled.add(openmrsObject);
 		
-		Reflect reflect = new Reflect(OpenmrsObject.class);
-		List<Field> allInheritedFields = reflect.getInheritedFields(openmrsObjectClass);
-		
 		// loop over all child collections of OpenmrsObjects and recursively save on those
-		for (Field field : allInheritedFields) {
+		for (ChildCollectionAccessor accessor : getHandlingPlan(openmrsObject.getClass())) {
 			
-			// skip field if it's declared independent
-			if (field.isAnnotationPresent(Independent.class)) {
+			if (accessor.isHandlerDisabled(handlerType)) {
 				continue;
 			}
 			
-			if (reflect.isCollectionField(field) && !isHandlerMarkedAsDisabled(handlerType, field)) {
-				
-				// the collection we'll be looping over
-				Collection<OpenmrsObject> childCollection = getChildCollection(openmrsObject, field);
-				
-				if (childCollection != null) {
-					for (Object collectionElement : childCollection) {
-						if (!alreadyHandled.contains(collectionElement)) {
-							recursivelyHandle(handlerType, (OpenmrsObject) collectionElement, currentUser, currentDate,
-							    other, alreadyHandled);
-						}
+			// the collection we'll be looping over
+			Collection<OpenmrsObject> childCollection = accessor.get(openmrsObject);
+			
+			if (childCollection != null) {
+				for (OpenmrsObject collectionElement : childCollection) {
+					if (collectionElement != null && !alreadyHandled.contains(collectionElement)) {
+						recursivelyHandleInternal(handlerType, collectionElement, currentUser, currentDate, other,
+						    alreadyHandled);
 					}
 				}
 			}
@@ -299,6 +310,44 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 		
 	}
 	
+	/**
+	 * Gets the child collections of {@link OpenmrsObject}s that should be recursed into for the
+	 * given class, i.e. all inherited collection fields that are not marked as {@link Independent}.
+	 * The result is computed once per class.
+	 * 
+	 * @param openmrsObjectClass the class of the object being handled
+	 * @return the accessors for the child collections of the given class
+	 * @should skip fields marked as independent
+	 * @should return the same plan on subsequent calls
+	 */
+	protected static List<ChildCollectionAccessor> getHandlingPlan(Class<? extends OpenmrsObject> openmrsObjectClass) {
+		List<ChildCollectionAccessor> plan = handlingPlans.get(openmrsObjectClass);
+		if (plan == null) {
+			plan = new ArrayList<ChildCollectionAccessor>();
+			Reflect reflect = new Reflect(OpenmrsObject.class);
+			for (Field field : reflect.getInheritedFields(openmrsObjectClass)) {
+				// skip field if it's declared independent
+				if (!field.isAnnotationPresent(Independent.class) && reflect.isCollectionField(field)) {
+					plan.add(new ChildCollectionAccessor(openmrsObjectClass, field));
+				}
+			}
+			plan = Collections.unmodifiableList(plan);
+			handlingPlans.put(openmrsObjectClass, plan);
+		}
+		
+		return plan;
+	}
+	
+	/**
+	 * Discards the computed handling plans, this should be called when classes are unloaded e.g.
+	 * when a module is stopped
+	 * 
+	 * @since 1.9.9
+	 */
+	public static void clearHandlingPlans() {
+		handlingPlans.clear();
+	}
+	
 	/**
 	 * This method gets a child attribute off of an OpenmrsObject. It usually uses the getter for
 	 * the attribute, but can use the direct field (even if its private) if told to by the
@@ -407,4 +456,87 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 		
 		return false;
 	}
+	
+	/**
+	 * Pre-bound access to one child collection field of a class. The getter (or the field itself if
+	 * it is in the {@link RequiredDataAdvice#fieldAccess} list) is looked up once when the handling
+	 * plan for the class is computed.
+	 */
+	protected static class ChildCollectionAccessor {
+		
+		private final Field field;
+		
+		private final String getterName;
+		
+		private final Method getterMethod;
+		
+		private final boolean useFieldAccess;
+		
+		private final Class<? extends RequiredDataHandler>[] disabledHandlerTypes;
+		
+		public ChildCollectionAccessor(Class<? extends OpenmrsObject> openmrsObjectClass, Field field) {
+			this.field = field;
+			this.getterName = "get" + StringUtils.capitalize(field.getName());
+			this.useFieldAccess = fieldAccess.contains(field.getDeclaringClass().getSimpleName() + "." + field.getName());
+			
+			Method method = null;
+			if (useFieldAccess) {
+				field.setAccessible(true);
+			} else {
+				try {
+					method = openmrsObjectClass.getMethod(getterName, (Class[]) null);
+				}
+				catch (NoSuchMethodException e) {
+					// fail only if the collection is actually needed, see #get(OpenmrsObject)
+				}
+			}
+			this.getterMethod = method;
+			
+			DisableHandlers disableHandlers = field.getAnnotation(DisableHandlers.class);
+			this.disabledHandlerTypes = disableHandlers == null ? null : disableHandlers.handlerTypes();
+		}
+		
+		/**
+		 * @see RequiredDataAdvice#isHandlerMarkedAsDisabled(Class, Field)
+		 */
+		public boolean isHandlerDisabled(Class<? extends RequiredDataHandler> handlerType) {
+			if (disabledHandlerTypes != null) {
+				for (Class<? extends RequiredDataHandler> h : disabledHandlerTypes) {
+					if (h.isAssignableFrom(handlerType)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * @see RequiredDataAdvice#getChildCollection(OpenmrsObject, Field)
+		 */
+		@SuppressWarnings("unchecked")
+		public Collection<OpenmrsObject> get(OpenmrsObject openmrsObject) {
+			String fieldName = field.getName();
+			try {
+				if (useFieldAccess)
+					return (Collection<OpenmrsObject>) field.get(openmrsObject);
+				
+				if (getterMethod == null)
+					throw new APIException("Unable to find getter method: " + getterName + " for field: " + fieldName
+					        + " on " + openmrsObject.getClass());
+				
+				return (Collection<OpenmrsObject>) getterMethod.invoke(openmrsObject, new Object[] {});
+			}
+			catch (IllegalAccessException e) {
+				if (useFieldAccess)
+					throw new APIException("Unable to get field: " + fieldName + " on " + openmrsObject.getClass());
+				else
+					throw new APIException("Unable to use getter method: " + getterName + " for field: " + fieldName
+					        + " on " + openmrsObject.getClass());
+			}
+			catch (InvocationTargetException e) {
+				throw new APIException("Unable to run getter method: " + getterName + " for field: " + fieldName + " on "
+				        + openmrsObject.getClass());
+			}
+		}
+	}
 }
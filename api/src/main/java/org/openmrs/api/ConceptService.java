@@ -1263,11 +1263,13 @@ public interface ConceptService extends OpenmrsService {
 	public Integer getMaxConceptId();
 	
 	/**
-	 * Returns an iterator for all concepts, including retired and expired.
+	 * Returns an iterator for all concepts, including retired and expired. The concepts are loaded
+	 * in batches and evicted from the session once the iterator has moved on to the next batch.
 	 * 
 	 * @return the Iterator
 	 * @should start with the smallest concept id
 	 * @should iterate over all concepts
+	 * @should return the concepts in order of their ids with their names loaded
 	 */
 	@Transactional(readOnly = true)
 	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
@@ -1557,6 +1559,23 @@ public interface ConceptService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.MANAGE_CONCEPTS })
 	public void updateConceptIndexes(Integer conceptIdStart, Integer conceptIdEnd) throws APIException;
 	
+	/**
+	 * Rebuilds the concept index of all concepts with conceptIds between
+	 * <code>conceptIdStart</code> and <code>conceptIdEnd</code> (inclusive). Unlike
+	 * {@link #updateConceptIndex(Concept)} the words of the whole range are made first and then
+	 * written to the database in batches, which is much faster when re-indexing many concepts.
+	 * 
+	 * @param conceptIdStart the first concept id of the range
+	 * @param conceptIdEnd the last concept id of the range
+	 * @return the number of concepts whose index was rebuilt
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should rebuild the index of all concepts in the range
+	 * @should not change the index of concepts outside the range
+	 */
+	@Authorized( { PrivilegeConstants.MANAGE_CONCEPTS })
+	public Integer rebuildConceptIndexes(Integer conceptIdStart, Integer conceptIdEnd) throws APIException;
+	
 	/**
 	 * Searches for concepts with the given parameters
 	 * 
@@ -857,12 +857,35 @@ public interface EncounterService extends OpenmrsService {
 	 * @return encounters and empty encounters with only visit set
 	 * @throws APIException
 	 * @since 1.9
+	 * @should return the same results as the corresponding part of all results
 	 */
 	@Transactional(readOnly = true)
 	@Authorized( { PrivilegeConstants.VIEW_VISITS })
 	public List<Encounter> getEncountersByVisitsAndPatient(Patient patient, boolean includeVoided, String query,
 	        Integer start, Integer length) throws APIException;
 	
+	/**
+	 * Gets the encounters and empty encounters for the given patient that come after the given one
+	 * in the results of {@link #getEncountersByVisitsAndPatient(Patient, boolean, String, Integer, Integer)}.
+	 * Unlike paging by start index, the database does not have to skip the preceding results, so
+	 * this should be used to page through the results one after another.
+	 * 
+	 * @param patient the patient to match
+	 * @param includeVoided if voided encounters or visits should be included
+	 * @param query filters results (defaults to return all results if <code>null<code>)
+	 * @param previous the last encounter or empty encounter of the previous page (defaults to start
+	 *            with the first result if <code>null<code>)
+	 * @param length number of results to return (default to return all results if <code>null<code>)
+	 * @return encounters and empty encounters with only visit set
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should page through all results one page after another
+	 */
+	@Transactional(readOnly = true)
+	@Authorized( { PrivilegeConstants.VIEW_VISITS })
+	public List<Encounter> getNextEncountersByVisitsAndPatient(Patient patient, boolean includeVoided, String query,
+	        Encounter previous, Integer length) throws APIException;
+	
 	/**
 	 * Returns result count for
 	 * {@link #getEncountersByVisitsAndPatient(Patient, boolean, String, Integer, Integer)}.
@@ -711,4 +711,35 @@ public interface ObsService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_OBS)
 	public Integer getObservationCount(List<ConceptName> conceptNames, boolean includeVoided);
 	
+	/**
+	 * Gets the most recent non-voided observation of the given person for each of the given
+	 * concepts, without loading the other observations of the person. Concepts for which the person
+	 * has no observation are left out.
+	 * 
+	 * @param who the person to get the observations of
+	 * @param concepts the question concepts to get the latest observation for
+	 * @return the latest observation for each concept, in the order of the given concepts
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should return the latest obs of the person for each concept
+	 * @should return the previous obs when the latest obs is voided
+	 * @should return the previous obs when the latest obs is purged
+	 * @should return an obs that was saved with an encounter
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<Obs> getLatestObs(Person who, List<Concept> concepts) throws APIException;
+	
+	/**
+	 * Updates the latest observation of the person of the given obs for its concept, see
+	 * {@link #getLatestObs(Person, List)}. This is done whenever an obs is saved, voided or
+	 * unvoided through this service and when the obs of an encounter are saved, so it only needs to
+	 * be called after changing an obs some other way.
+	 * 
+	 * @param obs the obs that was saved, voided or unvoided
+	 * @throws APIException
+	 * @since 1.9.9
+	 */
+	public void updateLatestObs(Obs obs) throws APIException;
+	
 }
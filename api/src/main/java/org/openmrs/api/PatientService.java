@@ -14,6 +14,7 @@
 package org.openmrs.api;
 
 import org.openmrs.Concept;
+import org.openmrs.DuplicatePatientCandidate;
 import org.openmrs.Location;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
@@ -23,7 +24,9 @@ import org.openmrs.activelist.Allergy;
 import org.openmrs.activelist.Problem;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.PatientDAO;
+import org.openmrs.patient.DuplicatePatientMatcher;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.patient.PatientSearchResult;
 import org.openmrs.person.PersonMergeLogData;
 import org.openmrs.serialization.SerializationException;
 import org.openmrs.util.PrivilegeConstants;
@@ -593,11 +596,37 @@ public interface PatientService extends OpenmrsService {
 	 * @throws APIException
 	 * @since 1.8
 	 * @should find a patients with a matching identifier with no digits
+	 * @should rank patients by how well their names match when the name index is enabled
+	 * @should page through the patients found in the name index
 	 */
 	@Transactional(readOnly = true)
 	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
 	public List<Patient> getPatients(String query, Integer start, Integer length) throws APIException;
 	
+	/**
+	 * Searches patients like {@link #getPatients(String, Integer, Integer)} does, but returns
+	 * read-only summaries of them instead of the patients themselves. A summary holds the non-voided
+	 * names and identifiers, the gender, birthdate, age and whether the patient is dead, and all
+	 * summaries of a page are read with three queries, without loading the addresses and attributes
+	 * of each patient.
+	 * 
+	 * @param query the string to search on
+	 * @param start the starting index
+	 * @param length the number of patients to return
+	 * @return the summaries of the matching patients, in the order of
+	 *         {@link #getPatients(String, Integer, Integer)}
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should return the same patients in the same order as getPatients
+	 * @should return the preferred name and identifier of each patient
+	 * @should return the other non-voided names and identifiers of each patient
+	 * @should return an empty list for a blank query
+	 */
+	@Transactional(readOnly = true)
+	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
+	public List<PatientSearchResult> getPatientSearchResults(String query, Integer start, Integer length)
+	        throws APIException;
+	
 	/**
 	 * @see #getPatientByExample(Patient)
 	 * @deprecated use #getPatientByExample(Patient)
@@ -643,6 +672,7 @@ public interface PatientService extends OpenmrsService {
 	 * @throws APIException
 	 * @should fetch patients that exactly match on all given attributes
 	 * @should not return patients that exactly match on some but not all given attributes
+	 * @should match text attributes that only differ in case
 	 */
 	@Transactional(readOnly = true)
 	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
@@ -1012,6 +1042,7 @@ public interface PatientService extends OpenmrsService {
 	 * @since 1.8
 	 * @should return the right count when a patient has multiple matching person names
 	 * @should return the right count of patients with a matching identifier with no digits
+	 * @should count the non-voided patients found in the name index
 	 */
 	@Transactional(readOnly = true)
 	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
@@ -1040,4 +1071,55 @@ public interface PatientService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
 	public List<Patient> getPatients(String name, String identifier, List<PatientIdentifierType> identifierTypes,
 	        boolean matchIdentifierExactly, Integer start, Integer length) throws APIException;
+	
+	/**
+	 * Finds the patients that are possibly duplicates of each other and saves them as
+	 * {@link DuplicatePatientCandidate}s, replacing those of the previous run. The patients are
+	 * grouped into blocks by an identifier they share, by their birthdate and family name and by
+	 * their family and given name, and only the patients within one block are scored against each
+	 * other, see {@link DuplicatePatientMatcher}. This is meant to be run in the background by the
+	 * {@link org.openmrs.scheduler.tasks.DuplicatePatientDetectionTask}.
+	 * 
+	 * @param minimumScore the minimum score of the pairs to save, if null
+	 *            {@link DuplicatePatientMatcher#DEFAULT_MINIMUM_SCORE} is used
+	 * @param maxBlockSize the maximum number of patients in a block, larger blocks are skipped. If
+	 *            null {@link DuplicatePatientMatcher#DEFAULT_MAX_BLOCK_SIZE} is used
+	 * @return the number of duplicate patient candidates that were saved
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should find patients with the same names and birthdate
+	 * @should find patients that share an identifier
+	 * @should replace the candidates of the previous run
+	 * @should find patients whose names only differ in case and accents
+	 */
+	@Authorized( { PrivilegeConstants.EDIT_PATIENTS })
+	public Integer detectDuplicatePatients(Double minimumScore, Integer maxBlockSize) throws APIException;
+	
+	/**
+	 * Gets a page of the duplicate patient candidates found by the last run of
+	 * {@link #detectDuplicatePatients(Double, Integer)}, leaving out the pairs of which a patient
+	 * has been voided since
+	 * 
+	 * @param start the index of the first candidate to return
+	 * @param length the number of candidates to return, all are returned if null
+	 * @return the candidates, highest score first
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should return the candidates with the highest score first
+	 * @should return the given page of candidates
+	 */
+	@Transactional(readOnly = true)
+	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
+	public List<DuplicatePatientCandidate> getDuplicatePatientCandidates(Integer start, Integer length)
+	        throws APIException;
+	
+	/**
+	 * @return the number of duplicate patient candidates that
+	 *         {@link #getDuplicatePatientCandidates(Integer, Integer)} can return
+	 * @throws APIException
+	 * @since 1.9.9
+	 */
+	@Transactional(readOnly = true)
+	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
+	public Integer getCountOfDuplicatePatientCandidates() throws APIException;
 }
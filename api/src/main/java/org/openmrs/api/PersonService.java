@@ -99,12 +99,30 @@ public interface PersonService extends OpenmrsService {
 	 * @should match two word search to any name part
 	 * @should match three word search to any name part
 	 * @should match search to familyName2
+	 * @should compare the keys of the configured phonetic algorithm
 	 */
 	// TODO: make gender a (definable?) constant
 	@Transactional(readOnly = true)
 	@Authorized( { PrivilegeConstants.VIEW_PERSONS })
 	public Set<Person> getSimilarPeople(String nameSearch, Integer birthyear, String gender) throws APIException;
 	
+	/**
+	 * Computes the phonetic keys that {@link #getSimilarPeople(String, Integer, String)} compares
+	 * for at most <code>batchSize</code> person names that do not have them yet, for instance
+	 * because they were saved before the keys were introduced or directly in the database. Call
+	 * this repeatedly until it returns less than <code>batchSize</code> to update all names, as
+	 * the {@link org.openmrs.scheduler.tasks.PersonNamePhoneticKeysTask} does.
+	 * 
+	 * @param batchSize the maximum number of names to update
+	 * @return the number of names that were updated
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should set the keys of the names without keys
+	 * @should not update names that already have keys
+	 */
+	@Authorized( { PrivilegeConstants.EDIT_PERSONS })
+	public Integer updatePersonNamePhoneticKeys(Integer batchSize) throws APIException;
+	
 	/**
 	 * This method is needed to limit the ability for Users/Patients to be created that are already
 	 * of the other type. This method will not be needed after a Person/Patient/User refactor that
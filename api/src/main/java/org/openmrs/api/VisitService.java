@@ -368,9 +368,32 @@ public interface VisitService extends OpenmrsService {
 	 * types specified by the {@link OpenmrsConstants#GP_VISIT_TYPES_TO_AUTO_CLOSE} global property.
 	 * If startDatetime is null, the default will be end of the current day.
 	 * 
+	 * The visits are stopped in batches, each with {@link #stopVisits(Integer, Integer, List, Date, Date)}
+	 * in a transaction of its own, so that a large number of visits does not hold its locks until
+	 * the last one is stopped.
+	 * 
 	 * @param maximumStartDate Visits started on or before this date time value will get stopped
 	 * @should close all unvoided active visit matching the specified visit types
+	 * @should set the user and date changed of the stopped visits
 	 */
 	@Authorized(PrivilegeConstants.EDIT_VISITS)
 	public void stopVisits(Date maximumStartDate);
+	
+	/**
+	 * Stops the active visits with ids in the given range which match the given visit types, see
+	 * {@link #stopVisits(Date)}. The visits are stopped with a single update, without loading them.
+	 * 
+	 * @param fromVisitId the lowest visit id to stop
+	 * @param toVisitId the highest visit id to stop
+	 * @param visitTypes the visit types of the visits to stop
+	 * @param maximumStartDate visits started after this date time are left alone
+	 * @param stopDate the stop date time to set
+	 * @return the number of stopped visits
+	 * @since 1.9.9
+	 * @should stop only the active visits in the given range
+	 */
+	@Authorized(PrivilegeConstants.EDIT_VISITS)
+	@Transactional
+	public Integer stopVisits(Integer fromVisitId, Integer toVisitId, List<VisitType> visitTypes, Date maximumStartDate,
+	        Date stopDate);
 }
@@ -60,11 +60,11 @@ public class ServiceContext implements ApplicationContextAware {
 	
 	private static final Log log = LogFactory.getLog(ServiceContext.class);
 	
-	private static ServiceContext instance;
+	private static volatile ServiceContext instance;
 	
 	private ApplicationContext applicationContext;
 	
-	private static boolean refreshingContext = false;
+	private static volatile boolean refreshingContext = false;
 	
 	private static final Object refreshingContextLock = new Object();
 	
@@ -74,9 +74,17 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	private boolean useSystemClassLoader = false;
 	
-	// Cached service objects
+	// Cached service objects. This is an immutable snapshot that is replaced as a whole, so that
+	// getService can read it without locking
 	@SuppressWarnings("unchecked")
-	Map<Class, Object> services = new HashMap<Class, Object>();
+	volatile Map<Class, Object> services = Collections.emptyMap();
+	
+	// The services set while the context is refreshing, they are published when it is done
+	@SuppressWarnings("unchecked")
+	private Map<Class, Object> refreshingServices = null;
+	
+	// Guards the writes to services and refreshingServices
+	private final Object servicesLock = new Object();
 	
 	// Advisors added to services by this service
 	@SuppressWarnings("unchecked")
@@ -137,10 +145,7 @@ public class ServiceContext implements ApplicationContextAware {
 				instance.removeAddedAOP(serviceClass);
 			}
 			
-			if (instance.services != null) {
-				instance.services.clear();
-				instance.services = null;
-			}
+			instance.services = null;
 			
 			if (instance.addedAdvisors != null) {
 				instance.addedAdvisors.clear();
@@ -552,7 +557,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	@SuppressWarnings("unchecked")
 	public void addAdvisor(Class cls, Advisor advisor) {
-		Advised advisedService = (Advised) services.get(cls);
+		Advised advisedService = (Advised) getCurrentServices().get(cls);
 		if (advisedService.indexOf(advisor) < 0)
 			advisedService.addAdvisor(advisor);
 		if (addedAdvisors.get(cls) == null)
@@ -566,7 +571,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	@SuppressWarnings("unchecked")
 	public void addAdvice(Class cls, Advice advice) {
-		Advised advisedService = (Advised) services.get(cls);
+		Advised advisedService = (Advised) getCurrentServices().get(cls);
 		if (advisedService.indexOf(advice) < 0)
 			advisedService.addAdvice(advice);
 		if (addedAdvice.get(cls) == null)
@@ -580,7 +585,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	@SuppressWarnings("unchecked")
 	public void removeAdvisor(Class cls, Advisor advisor) {
-		Advised advisedService = (Advised) services.get(cls);
+		Advised advisedService = (Advised) getCurrentServices().get(cls);
 		advisedService.removeAdvisor(advisor);
 		getAddedAdvisors(cls).remove(advisor);
 	}
@@ -591,7 +596,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	@SuppressWarnings("unchecked")
 	public void removeAdvice(Class cls, Advice advice) {
-		Advised advisedService = (Advised) services.get(cls);
+		Advised advisedService = (Advised) getCurrentServices().get(cls);
 		advisedService.removeAdvice(advice);
 		getAddedAdvice(cls).remove(advice);
 	}
@@ -636,7 +641,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	@SuppressWarnings("unchecked")
 	private void removeAddedAdvisors(Class cls) {
-		Advised advisedService = (Advised) services.get(cls);
+		Advised advisedService = (Advised) getCurrentServices().get(cls);
 		Set<Advisor> advisorsToRemove = addedAdvisors.get(cls);
 		if (advisedService != null && advisorsToRemove != null) {
 			for (Advisor advisor : advisorsToRemove.toArray(new Advisor[] {}))
@@ -663,7 +668,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	@SuppressWarnings("unchecked")
 	private void removeAddedAdvice(Class cls) {
-		Advised advisedService = (Advised) services.get(cls);
+		Advised advisedService = (Advised) getCurrentServices().get(cls);
 		Set<Advice> adviceToRemove = addedAdvice.get(cls);
 		if (advisedService != null && adviceToRemove != null) {
 			for (Advice advice : adviceToRemove.toArray(new Advice[] {}))
@@ -683,11 +688,23 @@ public class ServiceContext implements ApplicationContextAware {
 		return result == null ? Collections.EMPTY_SET : result;
 	}
 	
+	/**
+	 * @return the services that are being refreshed if the context is refreshing, otherwise the
+	 *         published services
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<Class, Object> getCurrentServices() {
+		synchronized (servicesLock) {
+			return refreshingServices != null ? refreshingServices : services;
+		}
+	}
+	
 	/**
 	 * Returns the current proxy that is stored for the Class <code>cls</code>
 	 * 
 	 * @param cls
 	 * @return Object that is a proxy for the <code>cls</code> class
+	 * @should fail for a service that has not been set
 	 */
 	@SuppressWarnings("unchecked")
 	public <T extends Object> T getService(Class<? extends T> cls) {
@@ -696,23 +713,26 @@ public class ServiceContext implements ApplicationContextAware {
 		
 		// if the context is refreshing, wait until it is
 		// done -- otherwise a null service might be returned
-		synchronized (refreshingContextLock) {
-			try {
-				while (refreshingContext) {
-					if (log.isDebugEnabled()) {
-						log.debug("Waiting to get service: " + cls + " while the context is being refreshed");
+		if (refreshingContext) {
+			synchronized (refreshingContextLock) {
+				try {
+					while (refreshingContext) {
+						if (log.isDebugEnabled()) {
+							log.debug("Waiting to get service: " + cls + " while the context is being refreshed");
+						}
+						
+						refreshingContextLock.wait();
+						
+						if (log.isDebugEnabled()) {
+							log.debug("Finished waiting to get service " + cls
+							        + " while the context was being refreshed");
+						}
 					}
 					
-					refreshingContextLock.wait();
-					
-					if (log.isDebugEnabled()) {
-						log.debug("Finished waiting to get service " + cls + " while the context was being refreshed");
-					}
 				}
-				
-			}
-			catch (InterruptedException e) {
-				log.warn("Refresh lock was interrupted", e);
+				catch (InterruptedException e) {
+					log.warn("Refresh lock was interrupted", e);
+				}
 			}
 		}
 		
@@ -728,6 +748,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 * 
 	 * @param cls Interface to proxy
 	 * @param classInstance the actual instance of the <code>cls</code> interface
+	 * @should not publish a service set while refreshing until the refresh is done
 	 */
 	@SuppressWarnings("unchecked")
 	public void setService(Class cls, Object classInstance) {
@@ -735,36 +756,44 @@ public class ServiceContext implements ApplicationContextAware {
 		log.debug("Setting service: " + cls);
 		
 		if (cls != null && classInstance != null) {
-			try {
-				Advised cachedService = (Advised) services.get(cls);
-				boolean noExistingService = cachedService == null;
-				boolean replacingService = cachedService != null && cachedService != classInstance;
-				boolean serviceAdvised = classInstance instanceof Advised;
-				
-				if (noExistingService || replacingService) {
-					
-					Advised advisedService;
-					
-					if (!serviceAdvised) {
-						// Adding a bare service, wrap with AOP proxy
-						Class[] interfaces = { cls };
-						ProxyFactory factory = new ProxyFactory(interfaces);
-						factory.setTarget(classInstance);
-						advisedService = (Advised) factory.getProxy(OpenmrsClassLoader.getInstance());
-					} else
-						advisedService = (Advised) classInstance;
-					
-					if (replacingService)
-						moveAddedAOP(cachedService, advisedService);
+			synchronized (servicesLock) {
+				try {
+					Advised cachedService = (Advised) getCurrentServices().get(cls);
+					boolean noExistingService = cachedService == null;
+					boolean replacingService = cachedService != null && cachedService != classInstance;
+					boolean serviceAdvised = classInstance instanceof Advised;
 					
-					services.put(cls, advisedService);
+					if (noExistingService || replacingService) {
+						
+						Advised advisedService;
+						
+						if (!serviceAdvised) {
+							// Adding a bare service, wrap with AOP proxy
+							Class[] interfaces = { cls };
+							ProxyFactory factory = new ProxyFactory(interfaces);
+							factory.setTarget(classInstance);
+							advisedService = (Advised) factory.getProxy(OpenmrsClassLoader.getInstance());
+						} else
+							advisedService = (Advised) classInstance;
+						
+						if (replacingService)
+							moveAddedAOP(cachedService, advisedService);
+						
+						if (refreshingServices != null) {
+							refreshingServices.put(cls, advisedService);
+						} else {
+							Map<Class, Object> updatedServices = new HashMap<Class, Object>(services);
+							updatedServices.put(cls, advisedService);
+							services = Collections.unmodifiableMap(updatedServices);
+						}
+					}
+					log.debug("Service: " + cls + " set successfully");
+				}
+				catch (Exception e) {
+					throw new APIException("Unable to create proxy factory for: " + classInstance.getClass().getName(),
+					        e);
 				}
-				log.debug("Service: " + cls + " set successfully");
-			}
-			catch (Exception e) {
-				throw new APIException("Unable to create proxy factory for: " + classInstance.getClass().getName(), e);
 			}
-			
 		}
 	}
 	
@@ -857,6 +886,9 @@ public class ServiceContext implements ApplicationContextAware {
 	 * getService to wait until <code>doneRefreshingContext</code> is called
 	 */
 	public void startRefreshingContext() {
+		synchronized (servicesLock) {
+			refreshingServices = new HashMap<Class, Object>(services);
+		}
 		synchronized (refreshingContextLock) {
 			log.info("Refreshing Context");
 			refreshingContext = true;
@@ -868,6 +900,12 @@ public class ServiceContext implements ApplicationContextAware {
 	 * getService that were waiting because <code>startRefreshingContext</code> was called
 	 */
 	public void doneRefreshingContext() {
+		synchronized (servicesLock) {
+			if (refreshingServices != null) {
+				services = Collections.unmodifiableMap(refreshingServices);
+				refreshingServices = null;
+			}
+		}
 		synchronized (refreshingContextLock) {
 			log.info("Done refreshing Context");
 			refreshingContext = false;
@@ -884,9 +922,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 *         doneRefreshingContext()
 	 */
 	public boolean isRefreshingContext() {
-		synchronized (refreshingContextLock) {
-			return refreshingContext;
-		}
+		return refreshingContext;
 	}
 	
 	/**
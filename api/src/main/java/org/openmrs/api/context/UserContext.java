@@ -14,16 +14,19 @@
 package org.openmrs.api.context;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Location;
+import org.openmrs.Privilege;
 import org.openmrs.Role;
 import org.openmrs.User;
 import org.openmrs.api.APIAuthenticationException;
@@ -80,6 +83,18 @@ public class UserContext implements Serializable {
 	 */
 	private Integer locationId;
 	
+	/**
+	 * Incremented whenever users, roles or privileges are saved or deleted, so that all user
+	 * contexts compute their privilege sets again
+	 */
+	private static final AtomicLong privilegesVersion = new AtomicLong();
+	
+	/**
+	 * The privileges of the current user and the anonymous and authenticated roles, computed on
+	 * the first privilege check
+	 */
+	private transient PrivilegeSet privilegeSet = null;
+	
 	/**
 	 * Default public constructor
 	 */
@@ -101,6 +116,7 @@ public class UserContext implements Serializable {
 			log.debug("Authenticating with username: " + username);
 		
 		this.user = contextDAO.authenticate(username, password);
+		this.privilegeSet = null;
 		
 		setUserLocation();
 		if (log.isDebugEnabled())
@@ -122,6 +138,7 @@ public class UserContext implements Serializable {
 		
 		if (user != null) {
 			user = Context.getUserService().getUser(user.getUserId());
+			privilegeSet = null;
 			//update the stored location in the user's session
 			setUserLocation();
 		}
@@ -156,6 +173,7 @@ public class UserContext implements Serializable {
 			userToBecome.getPrivileges().size();
 		
 		this.user = userToBecome;
+		this.privilegeSet = null;
 		//update the user's location
 		setUserLocation();
 		
@@ -187,6 +205,7 @@ public class UserContext implements Serializable {
 	public void logout() {
 		log.debug("setting user to null on logout");
 		user = null;
+		privilegeSet = null;
 	}
 	
 	/**
@@ -292,32 +311,21 @@ public class UserContext implements Serializable {
 	 * @should not authorize if authenticated role does not have specified privilege
 	 * @should not authorize if proxied user does not have specified privilege
 	 * @should not authorize if anonymous user does not have specified privilege
+	 * @should authorize if a role of the user is given the privilege after it was checked
 	 */
 	public boolean hasPrivilege(String privilege) {
 		
-		// if a user has logged in, check their privileges
-		if (isAuthenticated()) {
-			
-			// check user's privileges
-			if (getAuthenticatedUser().hasPrivilege(privilege) || getAuthenticatedRole().hasPrivilege(privilege)) {
-				Context.getUserService().notifyPrivilegeListeners(getAuthenticatedUser(), privilege, true);
-				return true;
-			}
-			
+		// the user's, authenticated and anonymous privileges are all in the privilege set
+		if (getPrivilegeSet().contains(privilege)) {
+			Context.getUserService().notifyPrivilegeListeners(getAuthenticatedUser(), privilege, true);
+			return true;
 		}
 		
 		if (log.isDebugEnabled())
 			log.debug("Checking '" + privilege + "' against proxies: " + proxies);
 		
 		// check proxied privileges
-		for (String s : proxies) {
-			if (s.equals(privilege)) {
-				Context.getUserService().notifyPrivilegeListeners(getAuthenticatedUser(), privilege, true);
-				return true;
-			}
-		}
-		
-		if (getAnonymousRole().hasPrivilege(privilege)) {
+		if (proxies.contains(privilege)) {
 			Context.getUserService().notifyPrivilegeListeners(getAuthenticatedUser(), privilege, true);
 			return true;
 		}
@@ -327,6 +335,79 @@ public class UserContext implements Serializable {
 		return false;
 	}
 	
+	/**
+	 * Makes all user contexts compute the privileges of their user again on the next privilege
+	 * check. Called whenever a user, role or privilege is saved or deleted.
+	 * 
+	 * @since 1.9.9
+	 */
+	public static void privilegesChanged() {
+		privilegesVersion.incrementAndGet();
+	}
+	
+	/**
+	 * @return the privilege set of the current user, computed again if users, roles or privileges
+	 *         have changed since it was computed
+	 */
+	private PrivilegeSet getPrivilegeSet() {
+		PrivilegeSet set = privilegeSet;
+		long version = privilegesVersion.get();
+		if (set != null && set.version == version)
+			return set;
+		
+		Set<Role> roles = new HashSet<Role>();
+		roles.add(getAnonymousRole());
+		if (isAuthenticated()) {
+			roles.addAll(getAuthenticatedUser().getAllRoles());
+			roles.add(getAuthenticatedRole());
+		}
+		
+		set = new PrivilegeSet(roles, isAuthenticated(), version);
+		privilegeSet = set;
+		return set;
+	}
+	
+	/**
+	 * The privileges given by a set of roles, flattened into a hashed set of privilege names so
+	 * that a privilege check is a single lookup
+	 */
+	private static class PrivilegeSet {
+		
+		private final Set<String> privileges;
+		
+		private final boolean allPrivileges;
+		
+		private final boolean authenticated;
+		
+		private final long version;
+		
+		public PrivilegeSet(Set<Role> roles, boolean authenticated, long version) {
+			Set<String> names = new HashSet<String>();
+			boolean superUser = false;
+			for (Role role : roles) {
+				if (RoleConstants.SUPERUSER.equals(role.getRole()))
+					superUser = true;
+				if (role.getPrivileges() != null) {
+					for (Privilege privilege : role.getPrivileges())
+						names.add(privilege.getPrivilege());
+				}
+			}
+			
+			this.privileges = Collections.unmodifiableSet(names);
+			this.allPrivileges = superUser;
+			this.authenticated = authenticated;
+			this.version = version;
+		}
+		
+		public boolean contains(String privilege) {
+			// all authenticated users have the "" (empty) privilege
+			if (authenticated && StringUtils.isEmpty(privilege))
+				return true;
+			
+			return allPrivileges || privileges.contains(privilege);
+		}
+	}
+	
 	/**
 	 * Convenience method to get the Role in the system designed to be given to all users
 	 * 
@@ -298,6 +298,19 @@ public interface ConceptDAO {
 	 */
 	public void updateConceptWord(Concept concept) throws DAOException;
 	
+	/**
+	 * Replaces the concept words of all concepts with conceptIds between
+	 * <code>conceptIdStart</code> and <code>conceptIdEnd</code> (inclusive). The words of all of
+	 * the concepts are made and weighed first and are then written with batched inserts.
+	 * 
+	 * @param conceptIdStart the first concept id of the range
+	 * @param conceptIdEnd the last concept id of the range
+	 * @return the number of concepts in the range
+	 * @see org.openmrs.api.ConceptService#updateConceptIndexes(Integer, Integer)
+	 * @since 1.9.9
+	 */
+	public Integer updateConceptWords(Integer conceptIdStart, Integer conceptIdEnd) throws DAOException;
+	
 	public ConceptNameTag saveConceptNameTag(ConceptNameTag nameTag);
 	
 	public ConceptNameTag getConceptNameTag(Integer i);
@@ -0,0 +1,96 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.openmrs.Concept;
+import org.openmrs.ConceptClass;
+import org.openmrs.ConceptDatatype;
+import org.openmrs.ConceptSearchResult;
+import org.openmrs.ConceptWord;
+import org.openmrs.api.ConceptService;
+
+/**
+ * A search backend for the concept word index that can answer
+ * {@link ConceptService#getConcepts(String, List, boolean, List, List, List, List, Concept, Integer, Integer)}
+ * without querying the concept_word table. The words given to the search methods have already been
+ * split, upper cased and stripped of stop words; each word is matched to the start of a word in a
+ * concept name and all words must be found in the same name.
+ * 
+ * @see ConceptDAO#getConcepts(String, List, boolean, List, List, List, List, Concept, Integer,
+ *      Integer)
+ * @since 1.9.9
+ */
+public interface ConceptSearchIndex {
+	
+	/**
+	 * Searches the index for concepts with a name that contains all of the given words
+	 * 
+	 * @param words the words to search on, an empty list matches all words
+	 * @param locales the locales to restrict to
+	 * @param includeRetired if false, will exclude retired concepts
+	 * @param requireClasses List<ConceptClass> to restrict to
+	 * @param excludeClasses List<ConceptClass> to leave out of results
+	 * @param requireDatatypes List<ConceptDatatype> to restrict to
+	 * @param excludeDatatypes List<ConceptDatatype> to leave out of results
+	 * @param answers if not null, all results will be one of these concepts
+	 * @param start all results less than this number will be removed
+	 * @param size if non zero, all results after <code>start</code> + <code>size</code> will be
+	 *            removed
+	 * @return one result per matching concept and word, highest weight first
+	 * @throws DAOException
+	 */
+	public List<ConceptSearchResult> getConcepts(List<String> words, List<Locale> locales, boolean includeRetired,
+	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
+	        List<ConceptDatatype> excludeDatatypes, Collection<Concept> answers, Integer start, Integer size)
+	        throws DAOException;
+	
+	/**
+	 * Gets the number of concept words matching the given words, see
+	 * {@link #getConcepts(List, List, boolean, List, List, List, List, Collection, Integer, Integer)}
+	 * for the meaning of the parameters
+	 * 
+	 * @param forUniqueConcepts if true, each matching concept is only counted once
+	 * @return the number of matching concept words or concepts
+	 * @throws DAOException
+	 */
+	public Long getCountOfConceptWords(List<String> words, List<Locale> locales, boolean includeRetired,
+	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
+	        List<ConceptDatatype> excludeDatatypes, Collection<Concept> answers, boolean forUniqueConcepts)
+	        throws DAOException;
+	
+	/**
+	 * Replaces the indexed words of the given concept. Called after the words have been saved to
+	 * the concept_word table.
+	 * 
+	 * @param concept the concept that was re-indexed
+	 * @param words the new words of the concept, with their weights and saved concept names
+	 */
+	public void updateConceptWords(Concept concept, Collection<ConceptWord> words);
+	
+	/**
+	 * Removes all indexed words of the given concept
+	 * 
+	 * @param concept the concept that was deleted
+	 */
+	public void removeConcept(Concept concept);
+	
+	/**
+	 * Discards the whole index so that it is rebuilt from the database on the next search
+	 */
+	public void clear();
+}
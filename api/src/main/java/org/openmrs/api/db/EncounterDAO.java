@@ -249,6 +249,13 @@ public interface EncounterDAO {
 	List<Encounter> getEncountersByVisitsAndPatient(Patient patient, boolean includeVoided, String query, Integer start,
 	        Integer length);
 	
+	/**
+	 * @see EncounterService#getNextEncountersByVisitsAndPatient(Patient, boolean, String, Encounter,
+	 *      Integer)
+	 */
+	List<Encounter> getNextEncountersByVisitsAndPatient(Patient patient, boolean includeVoided, String query,
+	        Encounter previous, Integer length);
+	
 	/**
 	 * @see EncounterService#getEncountersByVisitsAndPatientCount(Patient, boolean, String)
 	 */
@@ -105,4 +105,22 @@ public interface ObsDAO {
 	 */
 	public Obs getObsByUuid(String uuid);
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getLatestObs(Person, List)
+	 */
+	public List<Obs> getLatestObs(Person who, List<Concept> concepts) throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ObsService#updateLatestObs(Obs)
+	 */
+	public void updateLatestObs(Obs obs) throws DAOException;
+	
+	/**
+	 * Removes the given obs from the latest obs before it is purged, replacing it with the previous
+	 * obs of its person for its concept
+	 * 
+	 * @param obs the obs that is about to be purged
+	 */
+	public void deleteLatestObs(Obs obs) throws DAOException;
+	
 }
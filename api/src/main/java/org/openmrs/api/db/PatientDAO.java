@@ -13,11 +13,14 @@
  */
 package org.openmrs.api.db;
 
+import org.openmrs.DuplicatePatientCandidate;
 import org.openmrs.Location;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.api.PatientService;
+import org.openmrs.patient.DuplicatePatientMatcher;
+import org.openmrs.patient.PatientSearchResult;
 
 import java.util.List;
 
@@ -71,6 +74,17 @@ public interface PatientDAO {
 	        boolean matchIdentifierExactly, Integer start, Integer length, boolean searchOnNamesOrIdentifiers)
 	        throws DAOException;
 	
+	/**
+	 * Finds the same patients in the same order as
+	 * {@link #getPatients(String, String, List, boolean, Integer, Integer, boolean)}, but only reads
+	 * their summaries
+	 * 
+	 * @see org.openmrs.api.PatientService#getPatientSearchResults(String, Integer, Integer)
+	 */
+	public List<PatientSearchResult> getPatientSearchResults(String name, String identifier,
+	        List<PatientIdentifierType> identifierTypes, boolean matchIdentifierExactly, Integer start, Integer length,
+	        boolean searchOnNamesOrIdentifiers) throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.PatientService#getPatientIdentifiers(java.lang.String, java.util.List,
 	 *      java.util.List, java.util.List, java.lang.Boolean)
@@ -111,6 +125,37 @@ public interface PatientDAO {
 	 */
 	public List<Patient> getDuplicatePatientsByAttributes(List<String> attributes) throws DAOException;
 	
+	/**
+	 * Hands every block of patients that share a blocking key to the given matcher
+	 * 
+	 * @param matcher the matcher to score the blocks with
+	 * @see org.openmrs.api.PatientService#detectDuplicatePatients(Double, Integer)
+	 */
+	public void matchDuplicatePatients(DuplicatePatientMatcher matcher) throws DAOException;
+	
+	/**
+	 * Saves the given matches as {@link DuplicatePatientCandidate}s
+	 * 
+	 * @param matches the matches to save
+	 */
+	public void saveDuplicatePatientCandidates(List<DuplicatePatientMatcher.Match> matches) throws DAOException;
+	
+	/**
+	 * Deletes all {@link DuplicatePatientCandidate}s
+	 */
+	public void deleteDuplicatePatientCandidates() throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.PatientService#getDuplicatePatientCandidates(Integer, Integer)
+	 */
+	public List<DuplicatePatientCandidate> getDuplicatePatientCandidates(Integer start, Integer length)
+	        throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.PatientService#getCountOfDuplicatePatientCandidates()
+	 */
+	public Long getCountOfDuplicatePatientCandidates() throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.PatientService#isIdentifierInUseByAnotherPatient(PatientIdentifier)
 	 */
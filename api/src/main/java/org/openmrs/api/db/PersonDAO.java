@@ -50,6 +50,11 @@ public interface PersonDAO {
 	 */
 	public Set<Person> getSimilarPeople(String name, Integer birthyear, String gender) throws DAOException;
 	
+	/**
+	 * @see org.openmrs.api.PersonService#updatePersonNamePhoneticKeys(java.lang.Integer)
+	 */
+	public Integer updatePersonNamePhoneticKeys(Integer batchSize) throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.PersonService#getPeople(String, Boolean)
 	 */
@@ -21,6 +21,7 @@ import java.util.Map;
 import org.openmrs.Concept;
 import org.openmrs.Location;
 import org.openmrs.Patient;
+import org.openmrs.User;
 import org.openmrs.Visit;
 import org.openmrs.VisitAttribute;
 import org.openmrs.VisitAttributeType;
@@ -155,4 +156,36 @@ public interface VisitDAO {
 	 */
 	public Visit getNextVisit(Visit previousVisit, Collection<VisitType> visitTypes, Date maximumStartDate);
 	
+	/**
+	 * Gets the ids of the next active visits which match the specified visit types, in ascending
+	 * order
+	 * 
+	 * @param previousVisitId the id after which to start, null to start with the first visit
+	 * @param visitTypes a collection of visit types to match against
+	 * @param maximumStartDate the visits should have been started before or at this date time
+	 * @param maxResults the maximum number of ids to return
+	 * @return the visit ids
+	 * @should return the ids of the next unvoided active visits matching the specified types and
+	 *         startDate
+	 * @since 1.9.9
+	 */
+	public List<Integer> getNextActiveVisitIds(Integer previousVisitId, Collection<VisitType> visitTypes,
+	        Date maximumStartDate, int maxResults);
+	
+	/**
+	 * Stops the active visits with ids in the given range which match the specified visit types
+	 * with a single update, without loading them
+	 * 
+	 * @param fromVisitId the lowest visit id to stop
+	 * @param toVisitId the highest visit id to stop
+	 * @param visitTypes a collection of visit types to match against
+	 * @param maximumStartDate the visits should have been started before or at this date time
+	 * @param stopDate the stop date time to set
+	 * @param changedBy the user to set as the user who changed the visits
+	 * @return the number of stopped visits
+	 * @since 1.9.9
+	 */
+	public int stopVisits(Integer fromVisitId, Integer toVisitId, Collection<VisitType> visitTypes,
+	        Date maximumStartDate, Date stopDate, User changedBy);
+	
 }
@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Vector;
 
@@ -75,6 +76,7 @@ import org.openmrs.api.ConceptNameType;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.ConceptDAO;
+import org.openmrs.api.db.ConceptSearchIndex;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.util.ConceptMapTypeComparator;
 import org.openmrs.util.OpenmrsConstants;
@@ -90,8 +92,21 @@ public class HibernateConceptDAO implements ConceptDAO {
 	
 	protected final Log log = LogFactory.getLog(getClass());
 	
+	/**
+	 * The number of concept words sent to the database at once by
+	 * {@link #updateConceptWords(Integer, Integer)}
+	 */
+	private static final int CONCEPT_WORD_BATCH_SIZE = 500;
+	
+	/**
+	 * The number of concepts loaded at once by {@link #conceptIterator()}
+	 */
+	private static final int CONCEPT_ITERATOR_BATCH_SIZE = 100;
+	
 	private SessionFactory sessionFactory;
 	
+	private ConceptSearchIndex conceptSearchIndex;
+	
 	/**
 	 * Sets the session factory
 	 * 
@@ -101,6 +116,17 @@ public class HibernateConceptDAO implements ConceptDAO {
 		this.sessionFactory = sessionFactory;
 	}
 	
+	/**
+	 * Sets the index used to search concept words instead of querying the concept_word table when
+	 * the {@link OpenmrsConstants#GP_CONCEPT_SEARCH_USE_IN_MEMORY_INDEX} global property is true
+	 * 
+	 * @param conceptSearchIndex
+	 * @since 1.9.9
+	 */
+	public void setConceptSearchIndex(ConceptSearchIndex conceptSearchIndex) {
+		this.conceptSearchIndex = conceptSearchIndex;
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#getConceptComplex(java.lang.Integer)
 	 */
@@ -277,6 +303,8 @@ public class HibernateConceptDAO implements ConceptDAO {
 		// must delete all the stored concept words first
 		sessionFactory.getCurrentSession().createQuery("delete ConceptWord where concept = :c").setInteger("c",
 		    concept.getConceptId()).executeUpdate();
+		if (conceptSearchIndex != null)
+			conceptSearchIndex.removeConcept(concept);
 		
 		// now we can safely delete the concept
 		sessionFactory.getCurrentSession().delete(concept);
@@ -718,7 +746,77 @@ public class HibernateConceptDAO implements ConceptDAO {
 					sessionFactory.getCurrentSession().save(word);
 				}
 			}
+			
+			if (conceptSearchIndex != null)
+				conceptSearchIndex.updateConceptWords(concept, words);
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#updateConceptWords(java.lang.Integer, java.lang.Integer)
+	 */
+	@SuppressWarnings("unchecked")
+	public Integer updateConceptWords(Integer conceptIdStart, Integer conceptIdEnd) throws DAOException {
+		List<Concept> concepts = sessionFactory.getCurrentSession().createQuery(
+		    "select distinct c from Concept c left join fetch c.names where c.conceptId between :start and :end")
+		        .setInteger("start", conceptIdStart).setInteger("end", conceptIdEnd).list();
+		
+		// make and weigh all of the words before anything is written
+		List<String> conceptStopWords = getConceptStopWords(Context.getLocale());
+		Map<Concept, Set<ConceptWord>> wordsByConcept = new HashMap<Concept, Set<ConceptWord>>();
+		for (Concept concept : concepts) {
+			Set<ConceptWord> words = ConceptWord.makeConceptWords(concept, conceptStopWords);
+			for (ConceptWord word : words)
+				word.setWeight(weighConceptWord(word));
+			wordsByConcept.put(concept, words);
+		}
+		
+		sessionFactory.getCurrentSession().createQuery(
+		    "delete ConceptWord where concept.conceptId between :start and :end").setInteger("start", conceptIdStart)
+		        .setInteger("end", conceptIdEnd).executeUpdate();
+		
+		Connection connection = sessionFactory.getCurrentSession().connection();
+		PreparedStatement ps = null;
+		try {
+			ps = connection
+			        .prepareStatement("INSERT INTO concept_word (concept_id, word, locale, concept_name_id, weight) VALUES (?, ?, ?, ?, ?)");
+			int batchCount = 0;
+			for (Set<ConceptWord> words : wordsByConcept.values()) {
+				for (ConceptWord word : words) {
+					ps.setInt(1, word.getConcept().getConceptId());
+					ps.setString(2, word.getWord());
+					ps.setString(3, word.getLocale().toString());
+					ps.setInt(4, word.getConceptName().getConceptNameId());
+					ps.setDouble(5, word.getWeight());
+					ps.addBatch();
+					
+					if (++batchCount % CONCEPT_WORD_BATCH_SIZE == 0)
+						ps.executeBatch();
+				}
+			}
+			ps.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new DAOException("Unable to insert the concept words of concepts " + conceptIdStart + " to "
+			        + conceptIdEnd, e);
+		}
+		finally {
+			if (ps != null) {
+				try {
+					ps.close();
+				}
+				catch (SQLException e) {
+					log.error("Error generated while closing statement", e);
+				}
+			}
 		}
+		
+		if (conceptSearchIndex != null) {
+			for (Map.Entry<Concept, Set<ConceptWord>> entry : wordsByConcept.entrySet())
+				conceptSearchIndex.updateConceptWords(entry.getKey(), entry.getValue());
+		}
+		
+		return concepts.size();
 	}
 	
 	/**
@@ -1089,38 +1187,57 @@ public class HibernateConceptDAO implements ConceptDAO {
 	}
 	
 	/**
-	 * An iterator that loops over all concepts in the dictionary one at a time
+	 * An iterator that loops over all concepts in the dictionary in order of their ids. The concepts
+	 * are loaded {@value #CONCEPT_ITERATOR_BATCH_SIZE} at a time, each batch starting after the id of
+	 * the last concept of the previous one, together with their names, descriptions, answers and set
+	 * members and the names of the answer and member concepts. A batch is evicted from the session
+	 * when the first concept of the next batch is returned.
 	 */
 	private class ConceptIterator implements Iterator<Concept> {
 		
-		Concept currentConcept = null;
+		private List<Concept> batch = new ArrayList<Concept>();
 		
-		Concept nextConcept;
+		private List<Concept> relatedConcepts = new ArrayList<Concept>();
 		
-		public ConceptIterator() {
-			final int firstConceptId = getMinConceptId();
-			nextConcept = getConcept(firstConceptId);
-		}
+		private List<Concept> toEvict = new ArrayList<Concept>();
+		
+		private int index = 0;
+		
+		private Integer lastConceptId = null;
+		
+		private boolean lastBatch = false;
 		
 		/**
 		 * @see java.util.Iterator#hasNext()
 		 */
 		public boolean hasNext() {
-			return (nextConcept != null);
+			if (index < batch.size())
+				return true;
+			if (lastBatch)
+				return false;
+			
+			loadNextBatch();
+			return index < batch.size();
 		}
 		
 		/**
 		 * @see java.util.Iterator#next()
 		 */
 		public Concept next() {
-			if (currentConcept != null) {
-				sessionFactory.getCurrentSession().evict(currentConcept);
-			}
+			if (!hasNext())
+				throw new NoSuchElementException();
 			
-			currentConcept = nextConcept;
-			nextConcept = getNextConcept(currentConcept);
+			if (!toEvict.isEmpty()) {
+				Set<Concept> loaded = new HashSet<Concept>(batch);
+				loaded.addAll(relatedConcepts);
+				for (Concept concept : toEvict) {
+					if (!loaded.contains(concept))
+						sessionFactory.getCurrentSession().evict(concept);
+				}
+				toEvict.clear();
+			}
 			
-			return currentConcept;
+			return batch.get(index++);
 		}
 		
 		/**
@@ -1130,6 +1247,60 @@ public class HibernateConceptDAO implements ConceptDAO {
 			throw new UnsupportedOperationException();
 		}
 		
+		@SuppressWarnings("unchecked")
+		private void loadNextBatch() {
+			toEvict.addAll(batch);
+			toEvict.addAll(relatedConcepts);
+			
+			Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Concept.class);
+			if (lastConceptId != null)
+				criteria.add(Restrictions.gt("conceptId", lastConceptId));
+			criteria.addOrder(Order.asc("conceptId"));
+			criteria.setMaxResults(CONCEPT_ITERATOR_BATCH_SIZE);
+			
+			batch = criteria.list();
+			relatedConcepts = new ArrayList<Concept>();
+			index = 0;
+			lastBatch = batch.size() < CONCEPT_ITERATOR_BATCH_SIZE;
+			if (batch.isEmpty())
+				return;
+			
+			lastConceptId = batch.get(batch.size() - 1).getConceptId();
+			
+			// initialize the collections of the whole batch with one query per collection
+			List<Integer> conceptIds = new ArrayList<Integer>();
+			for (Concept concept : batch)
+				conceptIds.add(concept.getConceptId());
+			for (String collection : new String[] { "names", "descriptions", "answers", "conceptSets" })
+				fetchConcepts(collection, conceptIds);
+			
+			// and the names of the answers and set members that are not in the batch
+			Set<Integer> relatedIds = new HashSet<Integer>();
+			for (Concept concept : batch) {
+				for (ConceptAnswer answer : concept.getAnswers(true)) {
+					if (answer.getAnswerConcept() != null)
+						relatedIds.add(answer.getAnswerConcept().getConceptId());
+				}
+				for (ConceptSet conceptSet : concept.getConceptSets()) {
+					if (conceptSet.getConcept() != null)
+						relatedIds.add(conceptSet.getConcept().getConceptId());
+				}
+			}
+			relatedIds.removeAll(conceptIds);
+			relatedConcepts = fetchConcepts("names", new ArrayList<Integer>(relatedIds));
+		}
+		
+		@SuppressWarnings("unchecked")
+		private List<Concept> fetchConcepts(String collection, List<Integer> conceptIds) {
+			List<Concept> concepts = new ArrayList<Concept>();
+			for (int i = 0; i < conceptIds.size(); i += 1000) {
+				Query query = sessionFactory.getCurrentSession().createQuery(
+				    "select distinct c from Concept c left join fetch c." + collection + " where c.conceptId in (:ids)");
+				query.setParameterList("ids", conceptIds.subList(i, Math.min(i + 1000, conceptIds.size())));
+				concepts.addAll(query.list());
+			}
+			return concepts;
+		}
 	}
 	
 	/**
@@ -1388,6 +1559,17 @@ public class HibernateConceptDAO implements ConceptDAO {
 			phrase = "%"; // match all
 		}
 		
+		if (isConceptSearchIndexEnabled()) {
+			List<String> words = getSearchWords(phrase);
+			List<Concept> answers = getAnswers(answersToConcept);
+			if (words.isEmpty() && !phrase.equals("%") && answers.isEmpty())
+				return (long) 0;
+			
+			addLanguageOnlyLocales(locales);
+			return conceptSearchIndex.getCountOfConceptWords(words, locales, includeRetired, requireClasses,
+			    excludeClasses, requireDatatypes, excludeDatatypes, answers.isEmpty() ? null : answers, forUniqueConcepts);
+		}
+		
 		Criteria searchCriteria = createConceptWordSearchCriteria(phrase, locales, includeRetired, requireClasses,
 		    excludeClasses, requireDatatypes, excludeDatatypes, answersToConcept);
 		if (searchCriteria != null) {
@@ -1423,15 +1605,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
 	        List<ConceptDatatype> excludeDatatypes, Concept answersToConcept) throws DAOException {
 		
-		//add the language-only portion of locale if its not in the list of locales already
-		List<Locale> localesToAdd = new Vector<Locale>();
-		for (Locale locale : locales) {
-			Locale languageOnly = new Locale(locale.getLanguage());
-			if (locales.contains(languageOnly) == false)
-				localesToAdd.add(languageOnly);
-		}
-		
-		locales.addAll(localesToAdd);
+		addLanguageOnlyLocales(locales);
 		
 		List<String> words = new ArrayList<String>();
 		if (phrase.equals("%")) {
@@ -1442,13 +1616,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 		}
 		
 		// these are the answers to restrict on
-		List<Concept> answers = new Vector<Concept>();
-		
-		if (answersToConcept != null && answersToConcept.getAnswers(false) != null) {
-			for (ConceptAnswer conceptAnswer : answersToConcept.getAnswers(false)) {
-				answers.add(conceptAnswer.getAnswerConcept());
-			}
-		}
+		List<Concept> answers = getAnswers(answersToConcept);
 		
 		if (words.size() > 0 || !answers.isEmpty()) {
 			
@@ -1501,6 +1669,67 @@ public class HibernateConceptDAO implements ConceptDAO {
 		return null;
 	}
 	
+	/**
+	 * Adds the language-only portion of each locale to the given list if it is not in the list
+	 * already
+	 * 
+	 * @param locales the locales to search in
+	 */
+	private void addLanguageOnlyLocales(List<Locale> locales) {
+		List<Locale> localesToAdd = new Vector<Locale>();
+		for (Locale locale : locales) {
+			Locale languageOnly = new Locale(locale.getLanguage());
+			if (locales.contains(languageOnly) == false)
+				localesToAdd.add(languageOnly);
+		}
+		
+		locales.addAll(localesToAdd);
+	}
+	
+	/**
+	 * Gets the concepts that are possible answers to the given concept
+	 * 
+	 * @param answersToConcept the question concept, may be null
+	 * @return the answer concepts, an empty list if there are none
+	 */
+	private List<Concept> getAnswers(Concept answersToConcept) {
+		List<Concept> answers = new Vector<Concept>();
+		
+		if (answersToConcept != null && answersToConcept.getAnswers(false) != null) {
+			for (ConceptAnswer conceptAnswer : answersToConcept.getAnswers(false)) {
+				answers.add(conceptAnswer.getAnswerConcept());
+			}
+		}
+		
+		return answers;
+	}
+	
+	/**
+	 * Splits the given search phrase into the words to look up in the {@link ConceptSearchIndex}
+	 * 
+	 * @param phrase the search phrase, "%" to match all words
+	 * @return the unique words of the phrase, an empty list if all words should match
+	 */
+	private List<String> getSearchWords(String phrase) {
+		if (phrase.equals("%"))
+			return new ArrayList<String>();
+		
+		return ConceptWord.getUniqueWords(phrase);
+	}
+	
+	/**
+	 * @return true if concept word searches should use the {@link ConceptSearchIndex} instead of
+	 *         querying the concept_word table
+	 */
+	private boolean isConceptSearchIndexEnabled() {
+		if (conceptSearchIndex == null)
+			return false;
+		
+		String useIndex = Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GP_CONCEPT_SEARCH_USE_IN_MEMORY_INDEX, "false");
+		return Boolean.valueOf(useIndex);
+	}
+	
 	/**
 	 * @see ConceptService#getCountOfDrugs(String, Concept, boolean, boolean)
 	 */
@@ -1575,6 +1804,17 @@ public class HibernateConceptDAO implements ConceptDAO {
 			phrase = "%"; // match all
 		}
 		
+		if (isConceptSearchIndexEnabled()) {
+			List<String> words = getSearchWords(phrase);
+			List<Concept> answers = getAnswers(answersToConcept);
+			if (words.isEmpty() && !phrase.equals("%") && answers.isEmpty())
+				return new Vector<ConceptSearchResult>();
+			
+			addLanguageOnlyLocales(locales);
+			return conceptSearchIndex.getConcepts(words, locales, includeRetired, requireClasses, excludeClasses,
+			    requireDatatypes, excludeDatatypes, answers.isEmpty() ? null : answers, start, size);
+		}
+		
 		Criteria searchCriteria = createConceptWordSearchCriteria(phrase, locales, includeRetired, requireClasses,
 		    excludeClasses, requireDatatypes, excludeDatatypes, answersToConcept);
 		
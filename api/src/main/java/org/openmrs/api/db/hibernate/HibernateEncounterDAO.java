@@ -20,6 +20,7 @@ import org.hibernate.Criteria;
 import org.hibernate.SQLQuery;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.MatchMode;
@@ -32,6 +33,7 @@ import org.openmrs.EncounterRole;
 import org.openmrs.EncounterType;
 import org.openmrs.Form;
 import org.openmrs.Location;
+import org.openmrs.OpenmrsObject;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.Provider;
@@ -45,7 +47,6 @@ import org.openmrs.api.db.EncounterDAO;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -60,6 +61,11 @@ import java.util.Map;
  */
 public class HibernateEncounterDAO implements EncounterDAO {
 	
+	/**
+	 * The maximum number of ids in the in clause that loads a page of the timeline of a patient
+	 */
+	private static final int TIMELINE_BATCH_SIZE = 1000;
+	
 	protected final Log log = LogFactory.getLog(getClass());
 	
 	/**
@@ -501,48 +507,174 @@ public class HibernateEncounterDAO implements EncounterDAO {
 	@Override
 	public List<Encounter> getEncountersByVisitsAndPatient(Patient patient, boolean includeVoided, String query,
 	        Integer start, Integer length) {
+		if (start == null) {
+			start = 0;
+		}
+		Integer maxResults = (length == null) ? null : start + length;
+		
+		List<TimelineEntry> entries = getTimelineEntries(patient, includeVoided, query, null, maxResults);
+		if (start >= entries.size()) {
+			return new ArrayList<Encounter>();
+		}
+		
+		return loadTimeline(entries.subList(start, entries.size()));
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.EncounterDAO#getNextEncountersByVisitsAndPatient(org.openmrs.Patient,
+	 *      boolean, java.lang.String, org.openmrs.Encounter, java.lang.Integer)
+	 */
+	@Override
+	public List<Encounter> getNextEncountersByVisitsAndPatient(Patient patient, boolean includeVoided, String query,
+	        Encounter previous, Integer length) {
+		TimelineEntry after = (previous == null) ? null : TimelineEntry.of(previous);
+		return loadTimeline(getTimelineEntries(patient, includeVoided, query, after, length));
+	}
+	
+	/**
+	 * Gets the ids and sort keys of the first entries of the timeline of the given patient that come
+	 * after the given entry. The encounters in a visit, the encounters without a visit and the empty
+	 * visits are each sorted and limited in the database and then merged, so at most three times
+	 * maxResults rows are read and no encounter or visit is loaded.
+	 * 
+	 * @param after the entry to start after or <code>null</code> to start at the beginning
+	 * @param maxResults the maximum number of entries to return or <code>null</code> for all
+	 */
+	@SuppressWarnings("unchecked")
+	private List<TimelineEntry> getTimelineEntries(Patient patient, boolean includeVoided, String query,
+	        TimelineEntry after, Integer maxResults) {
+		List<TimelineEntry> entries = new ArrayList<TimelineEntry>();
+		
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Encounter.class);
 		addEncountersByPatientCriteria(criteria, patient, includeVoided, query);
+		criteria.add(Restrictions.isNotNull("visit"));
+		if (after != null) {
+			criteria.add(encountersInVisitsAfter(after));
+		}
+		criteria.setProjection(Projections.projectionList().add(Projections.property("encounterId")).add(
+		    Projections.property("visit.startDatetime")).add(Projections.property("visit.visitId")).add(
+		    Projections.property("encounterDatetime")));
+		if (maxResults != null) {
+			criteria.setMaxResults(maxResults);
+		}
+		for (Object[] row : (List<Object[]>) criteria.list()) {
+			entries.add(new TimelineEntry(false, (Integer) row[0], (Date) row[1], (Integer) row[2], (Date) row[3]));
+		}
 		
-		@SuppressWarnings("unchecked")
-		List<Encounter> encounters = criteria.list();
+		criteria = sessionFactory.getCurrentSession().createCriteria(Encounter.class);
+		addEncountersByPatientCriteria(criteria, patient, includeVoided, query);
+		criteria.add(Restrictions.isNull("visit"));
+		if (after != null) {
+			criteria.add(encountersWithoutVisitAfter(after));
+		}
+		criteria.setProjection(Projections.projectionList().add(Projections.property("encounterId")).add(
+		    Projections.property("encounterDatetime")));
+		if (maxResults != null) {
+			criteria.setMaxResults(maxResults);
+		}
+		for (Object[] row : (List<Object[]>) criteria.list()) {
+			entries.add(new TimelineEntry(false, (Integer) row[0], (Date) row[1], 0, (Date) row[1]));
+		}
 		
 		criteria = sessionFactory.getCurrentSession().createCriteria(Visit.class);
 		addEmptyVisitsByPatientCriteria(criteria, patient, includeVoided, query);
+		if (after != null) {
+			criteria.add(emptyVisitsAfter(after));
+		}
+		criteria.setProjection(Projections.projectionList().add(Projections.property("visitId")).add(
+		    Projections.property("startDatetime")));
+		if (maxResults != null) {
+			criteria.setMaxResults(maxResults);
+		}
+		for (Object[] row : (List<Object[]>) criteria.list()) {
+			entries.add(new TimelineEntry(true, (Integer) row[0], (Date) row[1], (Integer) row[0], null));
+		}
 		
-		@SuppressWarnings("unchecked")
-		List<Visit> emptyVisits = criteria.list();
-		
-		if (!emptyVisits.isEmpty()) {
-			for (Visit emptyVisit : emptyVisits) {
-				Encounter mockEncounter = new Encounter();
-				mockEncounter.setVisit(emptyVisit);
-				encounters.add(mockEncounter);
+		Collections.sort(entries);
+		if (maxResults != null && entries.size() > maxResults) {
+			return entries.subList(0, maxResults);
+		}
+		return entries;
+	}
+	
+	/**
+	 * Loads the encounters and empty visits of the given timeline entries, creating an empty
+	 * encounter with only the visit set for each empty visit
+	 */
+	private List<Encounter> loadTimeline(List<TimelineEntry> entries) {
+		List<Integer> encounterIds = new ArrayList<Integer>();
+		List<Integer> visitIds = new ArrayList<Integer>();
+		for (TimelineEntry entry : entries) {
+			if (entry.emptyVisit) {
+				visitIds.add(entry.id);
+			} else {
+				encounterIds.add(entry.id);
 			}
-			
-			Collections.sort(encounters, new Comparator<Encounter>() {
-				
-				@Override
-				public int compare(Encounter o1, Encounter o2) {
-					Date o1Date = (o1.getVisit() != null) ? o1.getVisit().getStartDatetime() : o1.getEncounterDatetime();
-					Date o2Date = (o2.getVisit() != null) ? o2.getVisit().getStartDatetime() : o2.getEncounterDatetime();
-					return o2Date.compareTo(o1Date);
-				}
-			});
 		}
 		
-		if (start == null) {
-			start = 0;
+		Map<Integer, Encounter> encounters = getByIds(Encounter.class, "encounterId", encounterIds);
+		Map<Integer, Visit> visits = getByIds(Visit.class, "visitId", visitIds);
+		
+		List<Encounter> timeline = new ArrayList<Encounter>(entries.size());
+		for (TimelineEntry entry : entries) {
+			if (entry.emptyVisit) {
+				Visit emptyVisit = visits.get(entry.id);
+				if (emptyVisit != null) {
+					Encounter mockEncounter = new Encounter();
+					mockEncounter.setVisit(emptyVisit);
+					timeline.add(mockEncounter);
+				}
+			} else if (encounters.containsKey(entry.id)) {
+				timeline.add(encounters.get(entry.id));
+			}
 		}
-		if (length == null) {
-			length = encounters.size();
+		return timeline;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T extends OpenmrsObject> Map<Integer, T> getByIds(Class<T> clazz, String idProperty, List<Integer> ids) {
+		Map<Integer, T> objects = new HashMap<Integer, T>();
+		for (int i = 0; i < ids.size(); i += TIMELINE_BATCH_SIZE) {
+			List<Integer> batch = ids.subList(i, Math.min(i + TIMELINE_BATCH_SIZE, ids.size()));
+			for (T object : (List<T>) sessionFactory.getCurrentSession().createCriteria(clazz).add(
+			    Restrictions.in(idProperty, batch)).list()) {
+				objects.put(object.getId(), object);
+			}
 		}
-		int end = start + length;
-		if (end > encounters.size()) {
-			end = encounters.size();
+		return objects;
+	}
+	
+	private Criterion encountersInVisitsAfter(TimelineEntry after) {
+		if (after.emptyVisit) {
+			return Restrictions.lt("visit.startDatetime", after.date);
 		}
-		
-		return encounters.subList(start, end);
+		return Restrictions.or(Restrictions.lt("visit.startDatetime", after.date), Restrictions.and(Restrictions.eq(
+		    "visit.startDatetime", after.date), Restrictions.or(Restrictions.lt("visit.visitId", after.visitId),
+		    Restrictions.and(Restrictions.eq("visit.visitId", after.visitId), encounterDatetimeAndIdAfter(after)))));
+	}
+	
+	private Criterion encountersWithoutVisitAfter(TimelineEntry after) {
+		if (after.emptyVisit) {
+			return Restrictions.lt("encounterDatetime", after.date);
+		} else if (after.visitId > 0) {
+			// all encounters without a visit come after the encounters in a visit of the same date
+			return Restrictions.le("encounterDatetime", after.date);
+		}
+		return encounterDatetimeAndIdAfter(after);
+	}
+	
+	private Criterion encounterDatetimeAndIdAfter(TimelineEntry after) {
+		return Restrictions.or(Restrictions.lt("encounterDatetime", after.encounterDatetime), Restrictions.and(
+		    Restrictions.eq("encounterDatetime", after.encounterDatetime), Restrictions.lt("encounterId", after.id)));
+	}
+	
+	private Criterion emptyVisitsAfter(TimelineEntry after) {
+		if (!after.emptyVisit) {
+			// all empty visits come after the encounters of the same date
+			return Restrictions.le("startDatetime", after.date);
+		}
+		return Restrictions.or(Restrictions.lt("startDatetime", after.date), Restrictions.and(Restrictions.eq(
+		    "startDatetime", after.date), Restrictions.lt("visitId", after.id)));
 	}
 	
 	/**
@@ -615,4 +747,72 @@ public class HibernateEncounterDAO implements EncounterDAO {
 		criteria.addOrder(Order.desc("encounterDatetime"));
 		criteria.addOrder(Order.desc("encounterId"));
 	}
+	
+	/**
+	 * The sort keys of an encounter or an empty visit in the timeline of a patient. Entries are
+	 * sorted by the start of their visit, or the encounter date of an encounter without a visit,
+	 * newest first. Encounters come before empty visits of the same date and are then sorted by
+	 * visit, encounter date and id, while empty visits are sorted by id.
+	 */
+	private static class TimelineEntry implements Comparable<TimelineEntry> {
+		
+		private final boolean emptyVisit;
+		
+		private final Integer id;
+		
+		private final Date date;
+		
+		private final int visitId;
+		
+		private final Date encounterDatetime;
+		
+		public TimelineEntry(boolean emptyVisit, Integer id, Date date, Integer visitId, Date encounterDatetime) {
+			this.emptyVisit = emptyVisit;
+			this.id = id;
+			this.date = date;
+			this.visitId = (visitId == null) ? 0 : visitId;
+			this.encounterDatetime = encounterDatetime;
+		}
+		
+		/**
+		 * Gets the entry of an encounter or of an empty encounter with only the visit set
+		 */
+		public static TimelineEntry of(Encounter encounter) {
+			Visit visit = encounter.getVisit();
+			if (encounter.getEncounterId() == null) {
+				if (visit == null || visit.getVisitId() == null) {
+					throw new IllegalArgumentException("The previous encounter must be saved or have a saved visit");
+				}
+				return new TimelineEntry(true, visit.getVisitId(), visit.getStartDatetime(), visit.getVisitId(), null);
+			} else if (visit == null) {
+				return new TimelineEntry(false, encounter.getEncounterId(), encounter.getEncounterDatetime(), 0, encounter
+				        .getEncounterDatetime());
+			}
+			return new TimelineEntry(false, encounter.getEncounterId(), visit.getStartDatetime(), visit.getVisitId(),
+			        encounter.getEncounterDatetime());
+		}
+		
+		@Override
+		public int compareTo(TimelineEntry other) {
+			int result = compareDescending(date, other.date);
+			if (result != 0) {
+				return result;
+			} else if (emptyVisit != other.emptyVisit) {
+				return emptyVisit ? 1 : -1;
+			} else if (emptyVisit) {
+				return other.id.compareTo(id);
+			} else if (visitId != other.visitId) {
+				return (visitId > other.visitId) ? -1 : 1;
+			}
+			result = compareDescending(encounterDatetime, other.encounterDatetime);
+			return (result != 0) ? result : other.id.compareTo(id);
+		}
+		
+		private static int compareDescending(Date date, Date otherDate) {
+			// compare the times since a java.sql.Timestamp does not compare correctly with a java.util.Date
+			long time = date.getTime();
+			long otherTime = otherDate.getTime();
+			return (time == otherTime) ? 0 : ((time > otherTime) ? -1 : 1);
+		}
+	}
 }
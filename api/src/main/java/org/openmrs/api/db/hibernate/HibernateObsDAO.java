@@ -13,13 +13,17 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Expression;
@@ -277,4 +281,147 @@ public class HibernateObsDAO implements ObsDAO {
 		    uuid).uniqueResult();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getLatestObs(org.openmrs.Person, java.util.List)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Obs> getLatestObs(Person who, List<Concept> concepts) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		List<Obs> latestObs = session.createQuery(
+		    "select l.obs from LatestObs l where l.person = :person and l.concept in (:concepts) and l.obs.voided = false")
+		        .setParameter("person", who).setParameterList("concepts", concepts).list();
+		
+		Set<Integer> foundConceptIds = new HashSet<Integer>();
+		for (Obs obs : latestObs)
+			foundConceptIds.add(obs.getConcept().getConceptId());
+		List<Concept> missingConcepts = new ArrayList<Concept>();
+		for (Concept concept : concepts) {
+			if (!foundConceptIds.contains(concept.getConceptId()))
+				missingConcepts.add(concept);
+		}
+		
+		// obs that were not saved through the api, e.g. by a data import, are not in the table yet
+		if (!missingConcepts.isEmpty()) {
+			List<Obs> obsList = session.createQuery(
+			    "from Obs o where o.person = :person and o.concept in (:concepts) and o.voided = false "
+			            + "and o.obsDatetime = (select max(o2.obsDatetime) from Obs o2 where o2.person = o.person "
+			            + "and o2.concept = o.concept and o2.voided = false) order by o.obsId desc").setParameter(
+			    "person", who).setParameterList("concepts", missingConcepts).list();
+			for (Obs obs : obsList) {
+				if (foundConceptIds.add(obs.getConcept().getConceptId()))
+					latestObs.add(obs);
+			}
+		}
+		
+		return latestObs;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#updateLatestObs(org.openmrs.Obs)
+	 */
+	public void updateLatestObs(Obs obs) throws DAOException {
+		if (obs.getObsId() == null || obs.getPerson() == null || obs.getConcept() == null
+		        || obs.getObsDatetime() == null)
+			return;
+		
+		if (Boolean.TRUE.equals(obs.getVoided())) {
+			deleteLatestObs(obs);
+			return;
+		}
+		
+		lockLatestObs(obs.getPerson());
+		if (updateLatestObsIfNewer(obs) > 0)
+			return;
+		
+		Session session = sessionFactory.getCurrentSession();
+		Integer latestObsId = (Integer) session.createQuery(
+		    "select l.obs.obsId from LatestObs l where l.person = :person and l.concept = :concept").setParameter(
+		    "person", obs.getPerson()).setParameter("concept", obs.getConcept()).uniqueResult();
+		if (latestObsId == null) {
+			saveLatestObs(obs);
+		} else if (latestObsId.equals(obs.getObsId())) {
+			// the latest obs was moved back in time, so an other obs may be the latest now
+			refreshLatestObs(obs.getPerson(), obs.getConcept(), null);
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#deleteLatestObs(org.openmrs.Obs)
+	 */
+	public void deleteLatestObs(Obs obs) throws DAOException {
+		if (obs.getObsId() == null)
+			return;
+		
+		if (obs.getPerson() != null)
+			lockLatestObs(obs.getPerson());
+		int deleted = sessionFactory.getCurrentSession().createQuery("delete LatestObs where obs = :obs").setParameter(
+		    "obs", obs).executeUpdate();
+		if (deleted > 0)
+			refreshLatestObs(obs.getPerson(), obs.getConcept(), obs);
+	}
+	
+	/**
+	 * Replaces the latest obs of the given person for the given concept with the most recent
+	 * non-voided obs in the obs table
+	 * 
+	 * @param excluded an obs that must not be the latest because it is being voided or purged
+	 */
+	private void refreshLatestObs(Person person, Concept concept, Obs excluded) {
+		Session session = sessionFactory.getCurrentSession();
+		session.createQuery("delete LatestObs where person = :person and concept = :concept").setParameter("person",
+		    person).setParameter("concept", concept).executeUpdate();
+		
+		Criteria criteria = session.createCriteria(Obs.class);
+		criteria.add(Restrictions.eq("person", person));
+		criteria.add(Restrictions.eq("concept", concept));
+		criteria.add(Restrictions.eq("voided", false));
+		if (excluded != null)
+			criteria.add(Restrictions.ne("obsId", excluded.getObsId()));
+		criteria.addOrder(Order.desc("obsDatetime"));
+		criteria.addOrder(Order.desc("obsId"));
+		criteria.setMaxResults(1);
+		
+		Obs latest = (Obs) criteria.uniqueResult();
+		if (latest != null)
+			saveLatestObs(latest);
+	}
+	
+	/**
+	 * Locks the person row until the end of the transaction, so that the latest obs of a person are
+	 * only changed by one transaction at a time. Otherwise two transactions could both find no
+	 * latest obs for a concept and both insert one.
+	 */
+	private void lockLatestObs(Person person) {
+		sessionFactory.getCurrentSession().createSQLQuery(
+		    "select person_id from person where person_id = :personId"
+		            + HibernateUtil.getDialect(sessionFactory).getForUpdateString()).setInteger("personId",
+		    person.getPersonId()).list();
+	}
+	
+	/**
+	 * Points the latest obs of the person of the given obs for its concept at the given obs, unless
+	 * the current latest obs is more recent
+	 * 
+	 * @return the number of updated rows, 0 if the person has no latest obs for the concept yet
+	 */
+	private int updateLatestObsIfNewer(Obs obs) {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "update LatestObs set obs = :obs, obsDatetime = :obsDatetime where person = :person and concept = :concept "
+		            + "and obsDatetime <= :obsDatetime").setParameter("obs", obs).setTimestamp("obsDatetime",
+		    obs.getObsDatetime()).setParameter("person", obs.getPerson()).setParameter("concept", obs.getConcept())
+		        .executeUpdate();
+	}
+	
+	/**
+	 * Inserts the given obs as the latest obs of its person for its concept. The caller must hold
+	 * the lock of {@link #lockLatestObs(Person)} and have checked that there is no row yet.
+	 */
+	private void saveLatestObs(Obs obs) {
+		sessionFactory.getCurrentSession().createSQLQuery(
+		    "insert into latest_obs (person_id, concept_id, obs_id, obs_datetime) "
+		            + "values (:personId, :conceptId, :obsId, :obsDatetime)").setInteger("personId",
+		    obs.getPerson().getPersonId()).setInteger("conceptId", obs.getConcept().getConceptId()).setInteger("obsId",
+		    obs.getObsId()).setTimestamp("obsDatetime", obs.getObsDatetime()).executeUpdate();
+	}
+	
 }
@@ -18,11 +18,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.openmrs.DuplicatePatientCandidate;
 import org.openmrs.Location;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
@@ -32,15 +36,25 @@ import org.openmrs.PersonName;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PatientDAO;
+import org.openmrs.patient.DuplicatePatientMatcher;
+import org.openmrs.patient.PatientSearchResult;
+import org.openmrs.util.OpenmrsUtil;
 
 import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
@@ -60,6 +74,21 @@ public class HibernatePatientDAO implements PatientDAO {
 	 */
 	private SessionFactory sessionFactory;
 	
+	/**
+	 * The blocking keys of the passes of {@link #matchDuplicatePatients(DuplicatePatientMatcher)}
+	 */
+	private static final int BLOCK_ON_IDENTIFIER = 0;
+	
+	private static final int BLOCK_ON_BIRTHDATE_AND_FAMILY_NAME = 1;
+	
+	private static final int BLOCK_ON_NAMES = 2;
+	
+	/**
+	 * The number of names held in memory at once by the name pass of
+	 * {@link #matchDuplicatePatients(DuplicatePatientMatcher)}
+	 */
+	private static final int NAME_PARTITION_SIZE = 100000;
+	
 	/**
 	 * Set session factory
 	 * 
@@ -85,6 +114,7 @@ public class HibernatePatientDAO implements PatientDAO {
 			// and rows in the person and patient table will be created by
 			// hibernate
 			sessionFactory.getCurrentSession().saveOrUpdate(patient);
+			new PersonNameTokenIndex(sessionFactory).updateTokens(patient);
 			return patient;
 		} else {
 			// if we're updating a patient, its possible that a person
@@ -102,6 +132,7 @@ public class HibernatePatientDAO implements PatientDAO {
 			//      cache and claims it is a duplicate of this Patient object.
 			//patient = (Patient) sessionFactory.getCurrentSession().merge(patient);
 			sessionFactory.getCurrentSession().saveOrUpdate(patient);
+			new PersonNameTokenIndex(sessionFactory).updateTokens(patient);
 			
 			return patient;
 		}
@@ -202,24 +233,219 @@ public class HibernatePatientDAO implements PatientDAO {
 			return Collections.emptyList();
 		}
 		
+		int limit = HibernatePersonDAO.getMaximumSearchResults();
+		if (length == null || length > limit) {
+			if (log.isDebugEnabled())
+				log.debug("Limitng the size of the number of matching patients to " + limit);
+			length = limit;
+		}
+		
+		if (isNameIndexSearch(name, identifier, identifierTypes, searchOnNamesOrIdentifiers))
+			return getPatientsInOrder(getPatientIdsByNameIndex(name, identifier, matchIdentifierExactly, start == null ? 0
+			        : start, length, searchOnNamesOrIdentifiers));
+		
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Patient.class);
 		criteria = new PatientSearchCriteria(sessionFactory, criteria).prepareCriteria(name, identifier, identifierTypes,
 		    matchIdentifierExactly, true, searchOnNamesOrIdentifiers);
 		// restricting the search to the max search results value
 		if (start != null)
 			criteria.setFirstResult(start);
+		if (length != null)
+			criteria.setMaxResults(length);
+		
+		return criteria.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#getPatientSearchResults(String, String, List, boolean,
+	 *      Integer, Integer, boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PatientSearchResult> getPatientSearchResults(String name, String identifier,
+	        List<PatientIdentifierType> identifierTypes, boolean matchIdentifierExactly, Integer start, Integer length,
+	        boolean searchOnNamesOrIdentifiers) throws DAOException {
+		if (StringUtils.isBlank(name) && StringUtils.isBlank(identifier)
+		        && (identifierTypes == null || identifierTypes.isEmpty())) {
+			return Collections.emptyList();
+		}
+		
 		int limit = HibernatePersonDAO.getMaximumSearchResults();
-		if (length == null || length > limit) {
-			if (log.isDebugEnabled())
-				log.debug("Limitng the size of the number of matching patients to " + limit);
+		if (length == null || length > limit)
 			length = limit;
-		}
-		if (length != null)
+		
+		List<Integer> patientIds;
+		if (isNameIndexSearch(name, identifier, identifierTypes, searchOnNamesOrIdentifiers)) {
+			patientIds = getPatientIdsByNameIndex(name, identifier, matchIdentifierExactly, start == null ? 0 : start,
+			    length, searchOnNamesOrIdentifiers);
+		} else {
+			// the same rows as getPatients, whose distinct patients are also only taken after paging
+			Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Patient.class);
+			criteria = new PatientSearchCriteria(sessionFactory, criteria).prepareCriteria(name, identifier,
+			    identifierTypes, matchIdentifierExactly, true, searchOnNamesOrIdentifiers);
+			criteria.setProjection(Projections.property("patientId"));
+			if (start != null)
+				criteria.setFirstResult(start);
 			criteria.setMaxResults(length);
+			patientIds = new ArrayList<Integer>(new LinkedHashSet<Integer>(criteria.list()));
+		}
 		
+		return getPatientSearchResultsInOrder(patientIds);
+	}
+	
+	/**
+	 * Reads the summaries of the patients with the given ids, in the order of the ids. The
+	 * patients, their non-voided names and their non-voided identifiers are read with one query
+	 * each, preferred names and identifiers first.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<PatientSearchResult> getPatientSearchResultsInOrder(List<Integer> patientIds) {
+		List<PatientSearchResult> results = new ArrayList<PatientSearchResult>(patientIds.size());
+		if (patientIds.isEmpty())
+			return results;
+		
+		Session session = sessionFactory.getCurrentSession();
+		Map<Integer, List<PersonName>> names = new HashMap<Integer, List<PersonName>>();
+		List<Object[]> rows = session.createQuery(
+		    "select n.person.personId, n.personNameId, n.preferred, n.prefix, n.givenName, n.middleName,"
+		            + " n.familyNamePrefix, n.familyName, n.familyName2, n.familyNameSuffix, n.degree, n.dateCreated"
+		            + " from PersonName n where n.person.personId in (:patientIds) and n.voided = :voided"
+		            + " order by n.preferred desc, n.personNameId").setParameterList("patientIds", patientIds)
+		        .setBoolean("voided", false).list();
+		for (Object[] row : rows) {
+			PersonName name = new PersonName((String) row[4], (String) row[5], (String) row[7]);
+			name.setPersonNameId((Integer) row[1]);
+			name.setPreferred((Boolean) row[2]);
+			name.setPrefix((String) row[3]);
+			name.setFamilyNamePrefix((String) row[6]);
+			name.setFamilyName2((String) row[8]);
+			name.setFamilyNameSuffix((String) row[9]);
+			name.setDegree((String) row[10]);
+			name.setDateCreated((Date) row[11]);
+			getList(names, (Integer) row[0]).add(name);
+		}
+		
+		Map<Integer, List<PatientIdentifier>> identifiers = new HashMap<Integer, List<PatientIdentifier>>();
+		rows = session.createQuery(
+		    "select i.patient.patientId, i.patientIdentifierId, i.identifier, i.preferred, i.dateCreated,"
+		            + " t.patientIdentifierTypeId, t.name, t.checkDigit from PatientIdentifier i inner join i.identifierType t"
+		            + " where i.patient.patientId in (:patientIds) and i.voided = :voided"
+		            + " order by i.preferred desc, i.patientIdentifierId").setParameterList("patientIds", patientIds)
+		        .setBoolean("voided", false).list();
+		for (Object[] row : rows) {
+			PatientIdentifierType type = new PatientIdentifierType((Integer) row[5]);
+			type.setName((String) row[6]);
+			type.setCheckDigit((Boolean) row[7]);
+			PatientIdentifier identifier = new PatientIdentifier();
+			identifier.setPatientIdentifierId((Integer) row[1]);
+			identifier.setIdentifier((String) row[2]);
+			identifier.setPreferred((Boolean) row[3]);
+			identifier.setDateCreated((Date) row[4]);
+			identifier.setIdentifierType(type);
+			getList(identifiers, (Integer) row[0]).add(identifier);
+		}
+		
+		Map<Integer, PatientSearchResult> resultsById = new HashMap<Integer, PatientSearchResult>();
+		rows = session.createQuery(
+		    "select p.patientId, p.uuid, p.gender, p.birthdate, p.birthdateEstimated, p.dead, p.deathDate"
+		            + " from Patient p where p.patientId in (:patientIds)").setParameterList("patientIds", patientIds)
+		        .list();
+		for (Object[] row : rows) {
+			Integer patientId = (Integer) row[0];
+			resultsById.put(patientId, new PatientSearchResult(patientId, (String) row[1], (String) row[2], (Date) row[3],
+			        (Boolean) row[4], (Boolean) row[5], (Date) row[6], getList(names, patientId), getList(identifiers,
+			            patientId)));
+		}
+		for (Integer patientId : patientIds) {
+			if (resultsById.containsKey(patientId))
+				results.add(resultsById.get(patientId));
+		}
+		return results;
+	}
+	
+	private static <T> List<T> getList(Map<Integer, List<T>> lists, Integer patientId) {
+		List<T> list = lists.get(patientId);
+		if (list == null) {
+			list = new ArrayList<T>();
+			lists.put(patientId, list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Names are searched in the {@link PersonNameTokenIndex} if it is enabled, unless the search
+	 * also has to match identifier types, or has to match both a name and an identifier
+	 */
+	private boolean isNameIndexSearch(String name, String identifier, List<PatientIdentifierType> identifierTypes,
+	        boolean searchOnNamesOrIdentifiers) {
+		if (identifierTypes != null && !identifierTypes.isEmpty())
+			return false;
+		if (!searchOnNamesOrIdentifiers && (name == null || identifier != null))
+			return false;
+		
+		return PersonNameTokenIndex.isEnabled();
+	}
+	
+	/**
+	 * Finds the ids of the patients by name in the {@link PersonNameTokenIndex}. When searching on
+	 * names or identifiers, the patients with a matching identifier come first, ordered by id,
+	 * followed by the remaining patients with a matching name, best matches first.
+	 */
+	private List<Integer> getPatientIdsByNameIndex(String name, String identifier, boolean matchIdentifierExactly,
+	        int start, int length, boolean searchOnNamesOrIdentifiers) {
+		PersonNameTokenIndex index = new PersonNameTokenIndex(sessionFactory);
+		if (!searchOnNamesOrIdentifiers)
+			return index.getPatientIds(name, null, start, length);
+		
+		// a patient can match both, so as many extra names are read as there are identifier matches
+		List<Integer> identifierMatches = getPatientIdsByIdentifier(identifier != null ? identifier : name,
+		    matchIdentifierExactly, start + length);
+		List<Integer> patientIds = new ArrayList<Integer>(new LinkedHashSet<Integer>(identifierMatches));
+		if (patientIds.size() < start + length) {
+			Set<Integer> matches = new LinkedHashSet<Integer>(patientIds);
+			matches.addAll(index.getPatientIds(name != null ? name : identifier, null, 0, start + length));
+			patientIds = new ArrayList<Integer>(matches);
+		}
+		
+		if (start >= patientIds.size())
+			return new ArrayList<Integer>();
+		return patientIds.subList(start, Math.min(start + length, patientIds.size()));
+	}
+	
+	/**
+	 * Gets the ids of the non-voided patients with a matching identifier, ordered by id
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Integer> getPatientIdsByIdentifier(String identifier, boolean matchIdentifierExactly, Integer maxResults) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Patient.class);
+		criteria = new PatientSearchCriteria(sessionFactory, criteria).prepareCriteria(null, identifier,
+		    new ArrayList<PatientIdentifierType>(), matchIdentifierExactly, false, false);
+		criteria.setProjection(Projections.distinct(Projections.property("patientId")));
+		criteria.addOrder(Order.asc("patientId"));
+		if (maxResults != null)
+			criteria.setMaxResults(maxResults);
 		return criteria.list();
 	}
 	
+	/**
+	 * Loads the patients with the given ids in the order of the ids
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Patient> getPatientsInOrder(List<Integer> patientIds) {
+		List<Patient> patients = new ArrayList<Patient>(patientIds.size());
+		if (patientIds.isEmpty())
+			return patients;
+		
+		Map<Integer, Patient> patientsById = new HashMap<Integer, Patient>();
+		for (Patient patient : (List<Patient>) sessionFactory.getCurrentSession().createCriteria(Patient.class).add(
+		    Restrictions.in("patientId", patientIds)).list())
+			patientsById.put(patient.getPatientId(), patient);
+		for (Integer patientId : patientIds) {
+			if (patientsById.containsKey(patientId))
+				patients.add(patientsById.get(patientId));
+		}
+		return patients;
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.PatientDAO#getAllPatients(boolean)
 	 */
@@ -296,6 +522,9 @@ public class HibernatePatientDAO implements PatientDAO {
 	 * @see org.openmrs.api.PatientService#deletePatient(org.openmrs.Patient)
 	 */
 	public void deletePatient(Patient patient) throws DAOException {
+		sessionFactory.getCurrentSession().createQuery(
+		    "delete from DuplicatePatientCandidate c where c.patient = :patient or c.duplicate = :patient").setParameter(
+		    "patient", patient).executeUpdate();
 		HibernatePersonDAO.deletePersonAndAttributes(sessionFactory, patient);
 	}
 	
@@ -368,6 +597,13 @@ public class HibernatePatientDAO implements PatientDAO {
 	}
 	
 	/**
+	 * Finds the patients that share the given attributes with another patient. Instead of joining
+	 * the patients with themselves, the attributes of all patients are streamed ordered by the
+	 * attributes, so that patients with the same values follow each other and only one sort is
+	 * needed. Rows with a null attribute never match another patient. Text attributes are selected
+	 * and sorted upper cased, so that values which only differ in case still match, as they did when
+	 * the patients were joined in sql with the case insensitive collation of the database.
+	 * 
 	 * @see org.openmrs.api.db.PatientDAO#getDuplicatePatientsByAttributes(java.util.List)
 	 */
 	@SuppressWarnings("unchecked")
@@ -375,123 +611,295 @@ public class HibernatePatientDAO implements PatientDAO {
 		List<Patient> patients = new Vector<Patient>();
 		
 		if (attributes.size() > 0) {
-			String select = "select distinct p1 from Patient p1, Patient p2";
-			String where = " where p1 <> p2 ";
-			String orderBy = " order by ";
-			
-			Class patient = Patient.class;
-			Set<String> patientFieldNames = new HashSet<String>(patient.getDeclaredFields().length);
-			for (Field f : patient.getDeclaredFields()) {
-				patientFieldNames.add(f.getName());
-				log.debug(f.getName());
-			}
+			Set<String> patientFieldNames = getFieldNames(Patient.class);
+			Set<String> personFieldNames = getFieldNames(Person.class);
+			Set<String> personNameFieldNames = getFieldNames(PersonName.class);
+			Set<String> identifierFieldNames = getFieldNames(PatientIdentifier.class);
+			boolean includeVoided = attributes.contains("includeVoided");
 			
-			Class person = Person.class;
-			Set<String> personFieldNames = new HashSet<String>(person.getDeclaredFields().length);
-			for (Field f : person.getDeclaredFields()) {
-				personFieldNames.add(f.getName());
-				log.debug(f.getName());
-			}
-			
-			Class personName = PersonName.class;
-			Set<String> personNameFieldNames = new HashSet<String>(personName.getDeclaredFields().length);
-			for (Field f : personName.getDeclaredFields()) {
-				personNameFieldNames.add(f.getName());
-				log.debug(f.getName());
-			}
-			
-			Class identifier = PatientIdentifier.class;
-			Set<String> identifierFieldNames = new HashSet<String>(identifier.getDeclaredFields().length);
-			for (Field f : identifier.getDeclaredFields()) {
-				identifierFieldNames.add(f.getName());
-				log.debug(f.getName());
-			}
-			
-			if (!attributes.contains("includeVoided"))
-				where += "and p1.voided = false and p2.voided = false ";
+			String select = "select p.patientId";
+			String from = " from Patient p";
+			String where = " where 1 = 1";
+			String orderBy = "";
+			if (!includeVoided)
+				where += " and p.voided = false";
 			
 			for (String s : attributes) {
+				String column;
+				Class<?> type;
 				if (patientFieldNames.contains(s)) {
-					where += " and p1." + s + " = p2." + s;
-					orderBy += "p1." + s + ", ";
+					column = "p." + s;
+					type = getFieldType(Patient.class, s);
 				} else if (personFieldNames.contains(s)) {
-					if (!select.contains("Person ")) {
-						select += ", Person person1, Person person2";
-						where += " and p1.patientId = person1.personId and p2.patientId = person2.personId ";
-					}
-					where += " and person1." + s + " = person2." + s;
-					orderBy += "person1." + s + ", ";
+					column = "p." + s;
+					type = getFieldType(Person.class, s);
 				} else if (personNameFieldNames.contains(s)) {
-					if (!select.contains("PersonName")) {
-						select += ", PersonName pn1, PersonName pn2";
-						where += " and p1 = pn1.person and p2 = pn2.person ";
+					if (!from.contains(" pn")) {
+						from += " join p.names pn";
+						if (!includeVoided)
+							where += " and pn.voided = false";
 					}
-					where += " and pn1." + s + " = pn2." + s;
-					orderBy += "pn1." + s + ", ";
+					column = "pn." + s;
+					type = getFieldType(PersonName.class, s);
 				} else if (identifierFieldNames.contains(s)) {
-					if (!select.contains("PatientIdentifier")) {
-						select += ", PatientIdentifier pi1, PatientIdentifier pi2";
-						where += " and p1 = pi1.patient and p2 = pi2.patient ";
+					if (!from.contains(" pi")) {
+						from += " join p.identifiers pi";
+						if (!includeVoided)
+							where += " and pi.voided = false";
 					}
-					where += " and pi1." + s + " = pi2." + s;
-					orderBy += "pi1." + s + ", ";
-				} else
-					log.warn("Unidentified attribute: " + s);
+					column = "pi." + s;
+					type = getFieldType(PatientIdentifier.class, s);
+				} else {
+					if (!"includeVoided".equals(s))
+						log.warn("Unidentified attribute: " + s);
+					continue;
+				}
+				
+				if (String.class.equals(type))
+					column = "upper(" + column + ")";
+				select += ", " + column;
+				orderBy += column + ", ";
 			}
 			
-			int index = orderBy.lastIndexOf(", ");
-			orderBy = orderBy.substring(0, index);
+			if (orderBy.length() == 0)
+				return patients;
 			
-			select = select + where + orderBy;
+			Query query = sessionFactory.getCurrentSession().createQuery(
+			    select + from + where + " order by " + orderBy + "p.patientId");
 			
-			Query query = sessionFactory.getCurrentSession().createQuery(select);
+			Set<Integer> duplicateIds = new LinkedHashSet<Integer>();
+			Set<Integer> run = new LinkedHashSet<Integer>();
+			List<Object> runValues = null;
+			ScrollableResults results = query.setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY);
+			try {
+				while (results.next()) {
+					Object[] row = results.get();
+					List<Object> values = Arrays.asList(row).subList(1, row.length);
+					if (values.contains(null))
+						continue;
+					
+					if (!values.equals(runValues)) {
+						if (run.size() > 1)
+							duplicateIds.addAll(run);
+						run.clear();
+						runValues = values;
+					}
+					run.add((Integer) row[0]);
+				}
+			}
+			finally {
+				results.close();
+			}
+			if (run.size() > 1)
+				duplicateIds.addAll(run);
 			
-			patients = query.list();
+			patients.addAll(getPatientsByIds(duplicateIds));
 		}
 		
-		/*
-		 * if (attributes.size() > 0) { String select = "select p from Patient
-		 * p"; String where = " where 1=1 "; String groupBy= " group by ";
-		 * String having = " having count(p.patientId) > 1";
-		 * 
-		 * Class patient = Patient.class; Set<String> patientFieldNames = new
-		 * HashSet<String>(patient.getDeclaredFields().length); for (Field f :
-		 * patient.getDeclaredFields()){ patientFieldNames.add(f.getName());
-		 * log.debug(f.getName()); }
-		 * 
-		 * Class patientName = PersonName.class; Set<String>
-		 * patientNameFieldNames = new HashSet<String>(patientName.getDeclaredFields().length);
-		 * for (Field f : patientName.getDeclaredFields()){
-		 * patientNameFieldNames.add(f.getName()); log.debug(f.getName()); }
-		 * 
-		 * Class identifier = PatientIdentifier.class; Set<String>
-		 * identifierFieldNames = new HashSet<String>(identifier.getDeclaredFields().length);
-		 * for (Field f : identifier.getDeclaredFields()){
-		 * identifierFieldNames.add(f.getName()); log.debug(f.getName()); }
-		 * 
-		 * for (String s : attributes) { if (patientFieldNames.contains(s)) {
-		 * groupBy += "p." + s + ", "; } else if
-		 * (patientNameFieldNames.contains(s)) { if
-		 * (!select.contains("PersonName")) { select += ", PersonName pn"; where +=
-		 * "and p = pn.patient "; } groupBy += "pn." + s + ", "; } else if
-		 * (identifierFieldNames.contains(s)) { if
-		 * (!select.contains("PatientIdentifier")) { select += ",
-		 * PatientIdentifier pi"; where += "and p = pi.patient "; } groupBy +=
-		 * "pi." + s + ", "; } else log.warn("Unidentified attribute: " + s); }
-		 * 
-		 * int index = groupBy.lastIndexOf(", "); groupBy = groupBy.substring(0,
-		 * index);
-		 * 
-		 * select = select + where + groupBy + having;
-		 * 
-		 * Query query = session.createQuery(select);
-		 * 
-		 * patients = query.list(); }
-		 */
-
 		return patients;
 	}
 	
+	/**
+	 * Loads the patients with the given ids, in chunks so the query stays within the limits of the
+	 * database
+	 * 
+	 * @param patientIds the ids of the patients to load
+	 * @return the patients, in the order of the given ids
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Patient> getPatientsByIds(Collection<Integer> patientIds) {
+		List<Integer> ids = new ArrayList<Integer>(patientIds);
+		Map<Integer, Patient> patientsById = new HashMap<Integer, Patient>(ids.size());
+		for (int i = 0; i < ids.size(); i += 1000) {
+			List<Patient> chunk = sessionFactory.getCurrentSession().createQuery(
+			    "from Patient p where p.patientId in (:ids)").setParameterList("ids",
+			    ids.subList(i, Math.min(i + 1000, ids.size()))).list();
+			for (Patient patient : chunk)
+				patientsById.put(patient.getPatientId(), patient);
+		}
+		
+		List<Patient> patients = new ArrayList<Patient>(ids.size());
+		for (Integer id : ids) {
+			if (patientsById.containsKey(id))
+				patients.add(patientsById.get(id));
+		}
+		return patients;
+	}
+	
+	private static Class<?> getFieldType(Class<?> clazz, String fieldName) {
+		try {
+			return clazz.getDeclaredField(fieldName).getType();
+		}
+		catch (NoSuchFieldException e) {
+			return null;
+		}
+	}
+	
+	private static Set<String> getFieldNames(Class<?> clazz) {
+		Set<String> fieldNames = new HashSet<String>(clazz.getDeclaredFields().length);
+		for (Field f : clazz.getDeclaredFields())
+			fieldNames.add(f.getName());
+		return fieldNames;
+	}
+	
+	/**
+	 * Streams the patients in three passes, each grouped by a different blocking key, and hands
+	 * every group of patients with the same key to the matcher as a block: patients sharing an
+	 * identifier, patients with the same birthdate and family name, and patients with the same
+	 * family and given name. The names are grouped by their normalized form, which the database
+	 * cannot sort by, so the name pass is split into partitions by the hash of the normalized name.
+	 * Each partition streams all names again but only keeps the names that fall into it, so that at
+	 * most about {@value #NAME_PARTITION_SIZE} names are held in memory at once.
+	 * 
+	 * @see org.openmrs.api.db.PatientDAO#matchDuplicatePatients(org.openmrs.patient.DuplicatePatientMatcher)
+	 */
+	public void matchDuplicatePatients(DuplicatePatientMatcher matcher) throws DAOException {
+		String select = "select pi.identifierType.patientIdentifierTypeId, pi.identifier, p.patientId, pn.givenName, "
+		        + "pn.familyName, p.birthdate, p.gender from PatientIdentifier pi join pi.patient p join p.names pn "
+		        + "where pi.voided = false and p.voided = false and pn.voided = false "
+		        + "order by pi.identifierType.patientIdentifierTypeId, pi.identifier";
+		matchBlocks(select, matcher, true, BLOCK_ON_IDENTIFIER, 0, 1);
+		
+		select = "select p.patientId, pn.givenName, pn.familyName, p.birthdate, p.gender from Patient p join p.names pn "
+		        + "where p.voided = false and pn.voided = false and p.birthdate is not null "
+		        + "order by p.birthdate";
+		matchBlocks(select, matcher, false, BLOCK_ON_BIRTHDATE_AND_FAMILY_NAME, 0, 1);
+		
+		String from = " from Patient p join p.names pn where p.voided = false and pn.voided = false "
+		        + "and pn.familyName is not null";
+		Long nameCount = (Long) sessionFactory.getCurrentSession().createQuery("select count(*)" + from).uniqueResult();
+		int partitions = (int) Math.max(1, (nameCount + NAME_PARTITION_SIZE - 1) / NAME_PARTITION_SIZE);
+		select = "select p.patientId, pn.givenName, pn.familyName, p.birthdate, p.gender" + from;
+		for (int partition = 0; partition < partitions; partition++)
+			matchBlocks(select, matcher, false, BLOCK_ON_NAMES, partition, partitions);
+	}
+	
+	/**
+	 * Streams the rows of the given query, groups them by their blocking key and hands every group
+	 * to the matcher. The rows of the identifier query are ordered by identifier and those of the
+	 * birthdate query by birthdate, so their groups are complete and handed over as soon as the
+	 * identifier or birthdate changes. The groups of the name query are only complete after the last
+	 * row, so only the names whose normalized form falls into the given partition are kept. The
+	 * rows of the identifier query start with the identifier type and identifier, the remaining
+	 * columns are the patient id, given name, family name, birthdate and gender.
+	 */
+	private void matchBlocks(String hql, DuplicatePatientMatcher matcher, boolean sharedIdentifier, int blockOn,
+	        int partition, int partitions) {
+		ScrollableResults results = sessionFactory.getCurrentSession().createQuery(hql).setReadOnly(true).scroll(
+		    ScrollMode.FORWARD_ONLY);
+		try {
+			Map<String, List<DuplicatePatientMatcher.Record>> blocks;
+			blocks = new LinkedHashMap<String, List<DuplicatePatientMatcher.Record>>();
+			Object run = null;
+			while (results.next()) {
+				Object[] row = results.get();
+				int offset = blockOn == BLOCK_ON_IDENTIFIER ? 2 : 0;
+				DuplicatePatientMatcher.Record record = new DuplicatePatientMatcher.Record((Integer) row[offset],
+				        (String) row[offset + 1], (String) row[offset + 2], (Date) row[offset + 3],
+				        (String) row[offset + 4]);
+				
+				String key;
+				Object runValue = null;
+				if (blockOn == BLOCK_ON_IDENTIFIER) {
+					key = row[0] + "|" + row[1];
+					runValue = key;
+				} else if (blockOn == BLOCK_ON_BIRTHDATE_AND_FAMILY_NAME) {
+					key = DuplicatePatientMatcher.normalize(record.getFamilyName());
+					runValue = record.getBirthdate().getTime();
+				} else {
+					key = DuplicatePatientMatcher.normalize(record.getFamilyName()) + "|"
+					        + DuplicatePatientMatcher.normalize(record.getGivenName());
+					if ((key.hashCode() & Integer.MAX_VALUE) % partitions != partition)
+						continue;
+				}
+				
+				if (!OpenmrsUtil.nullSafeEquals(runValue, run)) {
+					addBlocks(matcher, blocks, sharedIdentifier);
+					run = runValue;
+				}
+				List<DuplicatePatientMatcher.Record> block = blocks.get(key);
+				if (block == null) {
+					block = new ArrayList<DuplicatePatientMatcher.Record>();
+					blocks.put(key, block);
+				}
+				block.add(record);
+			}
+			addBlocks(matcher, blocks, sharedIdentifier);
+		}
+		finally {
+			results.close();
+		}
+	}
+	
+	/**
+	 * Hands the given blocks to the matcher and clears them
+	 */
+	private static void addBlocks(DuplicatePatientMatcher matcher, Map<String, List<DuplicatePatientMatcher.Record>> blocks,
+	        boolean sharedIdentifier) {
+		for (List<DuplicatePatientMatcher.Record> block : blocks.values())
+			matcher.addBlock(block, sharedIdentifier);
+		blocks.clear();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#saveDuplicatePatientCandidates(java.util.List)
+	 */
+	public void saveDuplicatePatientCandidates(List<DuplicatePatientMatcher.Match> matches) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		Date dateCreated = new Date();
+		int count = 0;
+		for (DuplicatePatientMatcher.Match match : matches) {
+			DuplicatePatientCandidate candidate = new DuplicatePatientCandidate();
+			candidate.setPatient((Patient) session.load(Patient.class, match.getPatientId()));
+			candidate.setDuplicate((Patient) session.load(Patient.class, match.getDuplicateId()));
+			candidate.setScore(match.getScore());
+			candidate.setMatchedOn(match.getMatchedOn());
+			candidate.setDateCreated(dateCreated);
+			session.save(candidate);
+			
+			// keep memory consumption low
+			if (++count % 100 == 0) {
+				session.flush();
+				session.clear();
+			}
+		}
+		session.flush();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#deleteDuplicatePatientCandidates()
+	 */
+	public void deleteDuplicatePatientCandidates() throws DAOException {
+		sessionFactory.getCurrentSession().createQuery("delete from DuplicatePatientCandidate").executeUpdate();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#getDuplicatePatientCandidates(java.lang.Integer,
+	 *      java.lang.Integer)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<DuplicatePatientCandidate> getDuplicatePatientCandidates(Integer start, Integer length)
+	        throws DAOException {
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "from DuplicatePatientCandidate c where c.patient.voided = false and c.duplicate.voided = false "
+		            + "order by c.score desc, c.duplicatePatientCandidateId");
+		if (start != null)
+			query.setFirstResult(start);
+		if (length != null && length > 0)
+			query.setMaxResults(length);
+		
+		return query.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#getCountOfDuplicatePatientCandidates()
+	 */
+	public Long getCountOfDuplicatePatientCandidates() throws DAOException {
+		return (Long) sessionFactory.getCurrentSession().createQuery(
+		    "select count(*) from DuplicatePatientCandidate c where c.patient.voided = false "
+		            + "and c.duplicate.voided = false").uniqueResult();
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.PatientDAO#getPatientByUuid(java.lang.String)
 	 */
@@ -578,6 +986,22 @@ public class HibernatePatientDAO implements PatientDAO {
 	 */
 	public Long getCountOfPatients(String name, String identifier, List<PatientIdentifierType> identifierTypes,
 	        boolean matchIdentifierExactly, boolean searchOnNamesOrIdentifiers) {
+		if (isNameIndexSearch(name, identifier, identifierTypes, searchOnNamesOrIdentifiers)) {
+			PersonNameTokenIndex index = new PersonNameTokenIndex(sessionFactory);
+			if (!searchOnNamesOrIdentifiers)
+				return index.getCountOfPatients(name, null);
+			
+			// the patients with a matching identifier that do not have a matching name
+			String nameSearch = name != null ? name : identifier;
+			List<Integer> identifierMatches = getPatientIdsByIdentifier(identifier != null ? identifier : name,
+			    matchIdentifierExactly, null);
+			long count = index.getCountOfPatients(nameSearch, null) + identifierMatches.size();
+			for (int i = 0; i < identifierMatches.size(); i += 1000)
+				count -= index.getCountOfPatients(nameSearch, identifierMatches.subList(i, Math.min(i + 1000,
+				    identifierMatches.size())));
+			return count;
+		}
+		
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Patient.class);
 		//Skip the ordering of names because H2(and i think PostgreSQL) will require one of the ordered
 		//columns to be in the resultset which then contradicts with the combination of 
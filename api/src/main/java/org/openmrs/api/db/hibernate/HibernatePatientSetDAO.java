@@ -46,6 +46,8 @@ import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.ProjectionList;
@@ -86,6 +88,7 @@ import org.openmrs.api.PatientSetService.TimeModifier;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PatientSetDAO;
+import org.openmrs.util.IntegerBitmapSet;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -461,10 +464,38 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		Query query = sessionFactory.getCurrentSession().createQuery("select patientId from Patient p where p.voided = '0'");
 		
-		Set<Integer> ids = new HashSet<Integer>();
-		ids.addAll(query.list());
+		Cohort ret = getCohort(query);
+		ret.setName("All patients");
+		ret.setDescription("");
+		return ret;
+	}
+	
+	/**
+	 * Scrolls through the results of a query that selects patient ids and collects them into a
+	 * cohort backed by an {@link IntegerBitmapSet}, instead of listing all of them as objects first
+	 * 
+	 * @param query a query that selects one patient id per row
+	 * @return a cohort with the selected patient ids
+	 */
+	private Cohort getCohort(Query query) {
+		IntegerBitmapSet ids = new IntegerBitmapSet();
+		ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.next()) {
+				Object id = results.get(0);
+				if (id instanceof Number)
+					ids.add(((Number) id).intValue());
+				else if (id != null)
+					ids.add(Integer.parseInt(id.toString()));
+			}
+		}
+		finally {
+			results.close();
+		}
 		
-		return new Cohort("All patients", "", ids);
+		Cohort ret = new Cohort();
+		ret.setMemberIds(ids);
+		return ret;
 	}
 	
 	/**
@@ -532,7 +563,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		if (toDate != null)
 			query.setDate("toDate", toDate);
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	/**
@@ -560,7 +591,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		if (toDate != null)
 			query.setDate("toDate", toDate);
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	public Cohort getPatientsHavingObs(Integer conceptId, PatientSetService.TimeModifier timeModifier,
@@ -717,9 +748,9 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		Cohort ret;
 		if (doInvert) {
 			ret = getAllPatients();
-			ret.getMemberIds().removeAll(query.list());
+			ret.getMemberIds().removeAll(getCohort(query).getMemberIds());
 		} else {
-			ret = new Cohort(query.list());
+			ret = getCohort(query);
 		}
 		
 		return ret;
@@ -794,7 +825,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		if (maxCount != null)
 			query.setInteger("maxCount", maxCount);
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	/**
@@ -819,7 +850,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		query.setDate("startValue", startTime);
 		query.setDate("endValue", endTime);
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	public Cohort getPatientsHavingNumericObs(Integer conceptId, PatientSetService.TimeModifier timeModifier,
@@ -888,9 +919,9 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		Cohort ret;
 		if (doInvert) {
 			ret = getAllPatients();
-			ret.getMemberIds().removeAll(query.list());
+			ret.getMemberIds().removeAll(getCohort(query).getMemberIds());
 		} else {
-			ret = new Cohort(query.list());
+			ret = getCohort(query);
 		}
 		
 		return ret;
@@ -977,7 +1008,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		}
 		query.setDate("effectiveDate", effectiveDate);
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	private static final long MS_PER_YEAR = 365L * 24 * 60 * 60 * 1000L;
@@ -1613,7 +1644,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			query.setString("value", value);
 		}
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	public Cohort getPatientsHavingLocation(Integer locationId, PatientSetService.PatientLocationMethod method) {
@@ -1667,7 +1698,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			query.setInteger("location_id", locationId);
 		}
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	public Cohort convertPatientIdentifier(List<String> identifiers) throws DAOException {
@@ -1678,7 +1709,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		Query query = sessionFactory.getCurrentSession().createSQLQuery(sb.toString());
 		query.setCacheMode(CacheMode.IGNORE);
 		query.setParameterList("identifiers", identifiers, new StringType());
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -1986,7 +2017,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		if (value != null)
 			query.setString("value", value);
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	public Cohort getPatientsHavingDrugOrder(List<Drug> drugList, List<Concept> drugConceptList, Date startDateFrom,
@@ -2074,7 +2105,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			query.setParameterList("discontinuedReasonIdList", ids);
 		}
 		
-		return new Cohort(query.list());
+		return getCohort(query);
 	}
 	
 	/**
@@ -2224,10 +2255,10 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		if (size != null)
 			query.setMaxResults(size);
 		
-		Set<Integer> ids = new HashSet<Integer>();
-		ids.addAll(query.list());
-		
-		return new Cohort("Batch of " + size + " patients starting at " + start, "", ids);
+		Cohort ret = getCohort(query);
+		ret.setName("Batch of " + size + " patients starting at " + start);
+		ret.setDescription("");
+		return ret;
 	}
 	
 }
@@ -14,15 +14,18 @@
 package org.openmrs.api.db.hibernate;
 
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.MatchMode;
@@ -41,6 +44,7 @@ import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PersonDAO;
 import org.openmrs.person.PersonMergeLog;
 import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.util.PhoneticUtil;
 
 /**
  * Hibernate specific Person database methods. <br/>
@@ -93,46 +97,66 @@ public class HibernatePersonDAO implements PersonDAO {
 		name = name.replace(", ", " ");
 		String[] names = name.split(" ");
 		
+		// compare the precomputed phonetic keys of the names instead of encoding every name in the query
+		boolean metaphone = PhoneticUtil.METAPHONE.equalsIgnoreCase(Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GP_PERSON_SIMILAR_PEOPLE_PHONETIC_ALGORITHM));
+		String algorithm = metaphone ? PhoneticUtil.METAPHONE : PhoneticUtil.SOUNDEX;
+		String keyType = metaphone ? "Metaphone" : "Soundex";
+		
+		String[] keys = new String[names.length];
+		Set<String> distinctKeys = new HashSet<String>();
+		for (int i = 0; i < names.length; i++) {
+			keys[i] = StringUtils.trimToNull(PhoneticUtil.encode(algorithm, names[i]));
+			if (keys[i] != null)
+				distinctKeys.add(keys[i]);
+		}
+		if (distinctKeys.isEmpty())
+			return people;
+		
 		String q = "select p from Person p left join p.names as pname where p.personVoided = false and pname.voided = false and ";
 		
+		// every way of scoring below needs at least one matching part, so only names with a matching key are scored
+		q += "(pname.givenName" + keyType + " in (:keys) or pname.middleName" + keyType + " in (:keys)";
+		q += " or pname.familyName" + keyType + " in (:keys) or pname.familyName2" + keyType + " in (:keys)) and ";
+		
 		if (names.length == 1) {
 			q += "(";
-			q += " soundex(pname.givenName) = soundex(:n1)";
-			q += " or soundex(pname.middleName) = soundex(:n1)";
-			q += " or soundex(pname.familyName) = soundex(:n1) ";
-			q += " or soundex(pname.familyName2) = soundex(:n1) ";
+			q += " pname.givenName" + keyType + " = :n1";
+			q += " or pname.middleName" + keyType + " = :n1";
+			q += " or pname.familyName" + keyType + " = :n1 ";
+			q += " or pname.familyName2" + keyType + " = :n1 ";
 			q += ")";
 		} else if (names.length == 2) {
 			q += "(";
 			q += " case";
 			q += "  when pname.givenName is null then 1";
 			q += "  when pname.givenName = '' then 1";
-			q += "  when soundex(pname.givenName) = soundex(:n1) then 4";
-			q += "  when soundex(pname.givenName) = soundex(:n2) then 3";
+			q += "  when pname.givenName" + keyType + " = :n1 then 4";
+			q += "  when pname.givenName" + keyType + " = :n2 then 3";
 			q += "  else 0 ";
 			q += " end";
 			q += " + ";
 			q += " case";
 			q += "  when pname.middleName is null then 1";
 			q += "  when pname.middleName = '' then 1";
-			q += "  when soundex(pname.middleName) = soundex(:n1) then 3";
-			q += "  when soundex(pname.middleName) = soundex(:n2) then 4";
+			q += "  when pname.middleName" + keyType + " = :n1 then 3";
+			q += "  when pname.middleName" + keyType + " = :n2 then 4";
 			q += "  else 0 ";
 			q += " end";
 			q += " + ";
 			q += " case";
 			q += "  when pname.familyName is null then 1";
 			q += "  when pname.familyName = '' then 1";
-			q += "  when soundex(pname.familyName) = soundex(:n1) then 3";
-			q += "  when soundex(pname.familyName) = soundex(:n2) then 4";
+			q += "  when pname.familyName" + keyType + " = :n1 then 3";
+			q += "  when pname.familyName" + keyType + " = :n2 then 4";
 			q += "  else 0 ";
 			q += " end";
 			q += " +";
 			q += " case";
 			q += "  when pname.familyName2 is null then 1";
 			q += "  when pname.familyName2 = '' then 1";
-			q += "  when soundex(pname.familyName2) = soundex(:n1) then 3";
-			q += "  when soundex(pname.familyName2) = soundex(:n2) then 4";
+			q += "  when pname.familyName2" + keyType + " = :n1 then 3";
+			q += "  when pname.familyName2" + keyType + " = :n2 then 4";
 			q += "  else 0 ";
 			q += " end";
 			q += ") > 6";
@@ -140,33 +164,33 @@ public class HibernatePersonDAO implements PersonDAO {
 			q += "(";
 			q += " case";
 			q += "  when pname.givenName is null then 0";
-			q += "  when soundex(pname.givenName) = soundex(:n1) then 3";
-			q += "  when soundex(pname.givenName) = soundex(:n2) then 2";
-			q += "  when soundex(pname.givenName) = soundex(:n3) then 1";
+			q += "  when pname.givenName" + keyType + " = :n1 then 3";
+			q += "  when pname.givenName" + keyType + " = :n2 then 2";
+			q += "  when pname.givenName" + keyType + " = :n3 then 1";
 			q += "  else 0 ";
 			q += " end";
 			q += " + ";
 			q += " case";
 			q += "  when pname.middleName is null then 0";
-			q += "  when soundex(pname.middleName) = soundex(:n1) then 2";
-			q += "  when soundex(pname.middleName) = soundex(:n2) then 3";
-			q += "  when soundex(pname.middleName) = soundex(:n3) then 1";
+			q += "  when pname.middleName" + keyType + " = :n1 then 2";
+			q += "  when pname.middleName" + keyType + " = :n2 then 3";
+			q += "  when pname.middleName" + keyType + " = :n3 then 1";
 			q += "  else 0";
 			q += " end";
 			q += " + ";
 			q += " case";
 			q += "  when pname.familyName is null then 0";
-			q += "  when soundex(pname.familyName) = soundex(:n1) then 1";
-			q += "  when soundex(pname.familyName) = soundex(:n2) then 2";
-			q += "  when soundex(pname.familyName) = soundex(:n3) then 3";
+			q += "  when pname.familyName" + keyType + " = :n1 then 1";
+			q += "  when pname.familyName" + keyType + " = :n2 then 2";
+			q += "  when pname.familyName" + keyType + " = :n3 then 3";
 			q += "  else 0";
 			q += " end";
 			q += " +";
 			q += " case";
 			q += "  when pname.familyName2 is null then 0";
-			q += "  when soundex(pname.familyName2) = soundex(:n1) then 1";
-			q += "  when soundex(pname.familyName2) = soundex(:n2) then 2";
-			q += "  when soundex(pname.familyName2) = soundex(:n3) then 3";
+			q += "  when pname.familyName2" + keyType + " = :n1 then 1";
+			q += "  when pname.familyName2" + keyType + " = :n2 then 2";
+			q += "  when pname.familyName2" + keyType + " = :n3 then 3";
 			q += "  else 0";
 			q += " end";
 			q += ") >= 5";
@@ -181,7 +205,7 @@ public class HibernatePersonDAO implements PersonDAO {
 			q += " case";
 			q += "  when pname.givenName is null then 0";
 			for (int i = 0; i < names.length; i++) {
-				q += "  when soundex(pname.givenName) = soundex(:n" + (i + 1) + ") then 1";
+				q += "  when pname.givenName" + keyType + " = :n" + (i + 1) + " then 1";
 			}
 			q += "  else 0";
 			q += " end";
@@ -191,7 +215,7 @@ public class HibernatePersonDAO implements PersonDAO {
 			q += " case";
 			q += "  when pname.middleName is null then 0";
 			for (int i = 0; i < names.length; i++) {
-				q += "  when soundex(pname.middleName) = soundex(:n" + (i + 1) + ") then 1";
+				q += "  when pname.middleName" + keyType + " = :n" + (i + 1) + " then 1";
 			}
 			q += "  else 0";
 			q += " end";
@@ -201,7 +225,7 @@ public class HibernatePersonDAO implements PersonDAO {
 			q += " case";
 			q += "  when pname.familyName is null then 0";
 			for (int i = 0; i < names.length; i++) {
-				q += "  when soundex(pname.familyName) = soundex(:n" + (i + 1) + ") then 1";
+				q += "  when pname.familyName" + keyType + " = :n" + (i + 1) + " then 1";
 			}
 			q += "  else 0";
 			q += " end";
@@ -211,7 +235,7 @@ public class HibernatePersonDAO implements PersonDAO {
 			q += " case";
 			q += "  when pname.familyName2 is null then 0";
 			for (int i = 0; i < names.length; i++) {
-				q += "  when soundex(pname.familyName2) = soundex(:n" + (i + 1) + ") then 1";
+				q += "  when pname.familyName2" + keyType + " = :n" + (i + 1) + " then 1";
 			}
 			q += "  else 0";
 			q += " end";
@@ -233,14 +257,15 @@ public class HibernatePersonDAO implements PersonDAO {
 		
 		q += " order by pname.givenName asc,";
 		q += " pname.middleName asc,";
-		q += " pname.familyName asc";
+		q += " pname.familyName asc,";
 		q += " pname.familyName2 asc";
 		
 		Query query = sessionFactory.getCurrentSession().createQuery(q);
 		
 		for (int nameIndex = 0; nameIndex < names.length; nameIndex++) {
-			query.setString("n" + (nameIndex + 1), names[nameIndex]);
+			query.setString("n" + (nameIndex + 1), keys[nameIndex]);
 		}
+		query.setParameterList("keys", distinctKeys);
 		
 		if (q.contains(":gender"))
 			query.setString("gender", gender);
@@ -250,6 +275,48 @@ public class HibernatePersonDAO implements PersonDAO {
 		return people;
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.PersonDAO#updatePersonNamePhoneticKeys(java.lang.Integer)
+	 */
+	@SuppressWarnings("unchecked")
+	public Integer updatePersonNamePhoneticKeys(Integer batchSize) throws DAOException {
+		String[] parts = { "givenName", "middleName", "familyName", "familyName2" };
+		String missing = "";
+		String keys = "";
+		for (String part : parts) {
+			missing += (missing.length() > 0 ? " or " : "") + "(n." + part + " is not null and (n." + part
+			        + "Soundex is null or n." + part + "Metaphone is null))";
+			keys += (keys.length() > 0 ? ", " : "") + part + "Soundex = :" + part + "Soundex, " + part + "Metaphone = :"
+			        + part + "Metaphone";
+		}
+		
+		Session session = sessionFactory.getCurrentSession();
+		List<Object[]> rows = session.createQuery(
+		    "select n.personNameId, n.givenName, n.middleName, n.familyName, n.familyName2 from PersonName n where "
+		            + missing + " order by n.personNameId").setMaxResults(batchSize).list();
+		
+		// bulk updates, so that the names are neither loaded nor marked as changed
+		Query update = session.createQuery("update PersonName set " + keys + " where personNameId = :personNameId");
+		for (Object[] row : rows) {
+			PersonName name = new PersonName((String) row[1], (String) row[2], (String) row[3]);
+			name.setFamilyName2((String) row[4]);
+			PhoneticUtil.setPhoneticKeys(name);
+			
+			update.setString("givenNameSoundex", name.getGivenNameSoundex());
+			update.setString("middleNameSoundex", name.getMiddleNameSoundex());
+			update.setString("familyNameSoundex", name.getFamilyNameSoundex());
+			update.setString("familyName2Soundex", name.getFamilyName2Soundex());
+			update.setString("givenNameMetaphone", name.getGivenNameMetaphone());
+			update.setString("middleNameMetaphone", name.getMiddleNameMetaphone());
+			update.setString("familyNameMetaphone", name.getFamilyNameMetaphone());
+			update.setString("familyName2Metaphone", name.getFamilyName2Metaphone());
+			update.setInteger("personNameId", (Integer) row[0]);
+			update.executeUpdate();
+		}
+		
+		return rows.size();
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.PersonDAO#getPeople(java.lang.String, java.lang.Boolean)
 	 */
@@ -524,6 +591,7 @@ public class HibernatePersonDAO implements PersonDAO {
 	 */
 	public Person savePerson(Person person) throws DAOException {
 		sessionFactory.getCurrentSession().saveOrUpdate(person);
+		new PersonNameTokenIndex(sessionFactory).updateTokens(person);
 		return person;
 	}
 	
@@ -572,6 +640,7 @@ public class HibernatePersonDAO implements PersonDAO {
 		sessionFactory.getCurrentSession().evict(person.getAttributes());
 		person.setAttributes(null);
 		
+		new PersonNameTokenIndex(sessionFactory).deleteTokens(person);
 		for (PersonName name : person.getNames()) {
 			if (name.getDateCreated() == null)
 				sessionFactory.getCurrentSession().evict(name);
@@ -728,6 +797,7 @@ public class HibernatePersonDAO implements PersonDAO {
 	 */
 	public PersonName savePersonName(PersonName personName) {
 		sessionFactory.getCurrentSession().saveOrUpdate(personName);
+		new PersonNameTokenIndex(sessionFactory).updateTokens(personName.getPerson());
 		return personName;
 	}
 	
@@ -20,14 +20,17 @@ import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.hibernate.Criteria;
+import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.openmrs.Concept;
 import org.openmrs.Location;
 import org.openmrs.Patient;
+import org.openmrs.User;
 import org.openmrs.Visit;
 import org.openmrs.VisitAttribute;
 import org.openmrs.VisitAttributeType;
@@ -281,4 +284,51 @@ public class HibernateVisitDAO implements VisitDAO {
 		
 		return (Visit) criteria.uniqueResult();
 	}
+	
+	/**
+	 * @see org.openmrs.api.db.VisitDAO#getNextActiveVisitIds(Integer, Collection, Date, int)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Integer> getNextActiveVisitIds(Integer previousVisitId, Collection<VisitType> visitTypes,
+	        Date maximumStartDate, int maxResults) {
+		Criteria criteria = getCurrentSession().createCriteria(Visit.class);
+		criteria.add(Restrictions.eq("voided", false)).add(
+		    Restrictions.gt("visitId", (previousVisitId != null) ? previousVisitId : 0)).add(
+		    Restrictions.isNull("stopDatetime")).setProjection(Projections.property("visitId")).addOrder(
+		    Order.asc("visitId")).setMaxResults(maxResults);
+		if (maximumStartDate != null)
+			criteria.add(Restrictions.le("startDatetime", maximumStartDate));
+		
+		if (CollectionUtils.isNotEmpty(visitTypes))
+			criteria.add(Restrictions.in("visitType", visitTypes));
+		
+		return criteria.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.VisitDAO#stopVisits(Integer, Integer, Collection, Date, Date, User)
+	 */
+	@Override
+	public int stopVisits(Integer fromVisitId, Integer toVisitId, Collection<VisitType> visitTypes,
+	        Date maximumStartDate, Date stopDate, User changedBy) {
+		// the same conditions as getNextActiveVisitIds, so that visits changed since are left alone
+		StringBuilder hql = new StringBuilder("update Visit set stopDatetime = :stopDate, changedBy = :changedBy, "
+		        + "dateChanged = :dateChanged where visitId between :fromVisitId and :toVisitId "
+		        + "and voided = false and stopDatetime is null");
+		if (maximumStartDate != null)
+			hql.append(" and startDatetime <= :maximumStartDate");
+		if (CollectionUtils.isNotEmpty(visitTypes))
+			hql.append(" and visitType in (:visitTypes)");
+		
+		Query query = getCurrentSession().createQuery(hql.toString());
+		query.setTimestamp("stopDate", stopDate).setParameter("changedBy", changedBy).setTimestamp("dateChanged",
+		    new Date()).setInteger("fromVisitId", fromVisitId).setInteger("toVisitId", toVisitId);
+		if (maximumStartDate != null)
+			query.setTimestamp("maximumStartDate", maximumStartDate);
+		if (CollectionUtils.isNotEmpty(visitTypes))
+			query.setParameterList("visitTypes", visitTypes);
+		
+		return query.executeUpdate();
+	}
 }
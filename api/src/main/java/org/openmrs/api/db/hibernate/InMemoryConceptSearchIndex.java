@@ -0,0 +1,612 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.Concept;
+import org.openmrs.ConceptClass;
+import org.openmrs.ConceptDatatype;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptSearchResult;
+import org.openmrs.ConceptWord;
+import org.openmrs.api.db.ConceptSearchIndex;
+import org.openmrs.api.db.DAOException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A {@link ConceptSearchIndex} that keeps the contents of the concept_word table in memory as an
+ * inverted index from word to the concept names containing it. Words are kept sorted so that a
+ * prefix match is a range lookup, and the class, datatype and retired flag of every indexed
+ * concept are kept alongside so that filtering, counting and paging need no database query. Only
+ * the concepts and names of the returned page are loaded through hibernate. <br/>
+ * <br/>
+ * The index is built from the database on the first search and is then kept up to date through
+ * {@link #updateConceptWords(Concept, Collection)} and {@link #removeConcept(Concept)}. If a
+ * transaction that changed a concept is rolled back, only the words of that concept are discarded
+ * and reloaded from the database on the next search.
+ * 
+ * @since 1.9.9
+ */
+public class InMemoryConceptSearchIndex implements ConceptSearchIndex {
+	
+	private static final Log log = LogFactory.getLog(InMemoryConceptSearchIndex.class);
+	
+	private SessionFactory sessionFactory;
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	/**
+	 * word to all indexed occurrences of that word
+	 */
+	private final TreeMap<String, List<Posting>> postingsByWord = new TreeMap<String, List<Posting>>();
+	
+	/**
+	 * conceptId to the indexed concept
+	 */
+	private final Map<Integer, IndexedConcept> concepts = new HashMap<Integer, IndexedConcept>();
+	
+	private boolean built = false;
+	
+	/**
+	 * ids of the concepts whose words have to be reloaded from the database before the next search
+	 */
+	private final Set<Integer> staleConceptIds = new HashSet<Integer>();
+	
+	/**
+	 * Sets the session factory used to build the index and to load search results
+	 * 
+	 * @param sessionFactory
+	 */
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptSearchIndex#getConcepts(java.util.List, java.util.List,
+	 *      boolean, java.util.List, java.util.List, java.util.List, java.util.List,
+	 *      java.util.Collection, java.lang.Integer, java.lang.Integer)
+	 * @should return one result per concept and word with the highest weight
+	 * @should match the search words to the start of the indexed words
+	 * @should only return concepts with a name that contains all search words
+	 * @should exclude concepts of the excluded classes
+	 * @should return the requested page of results
+	 * @should apply null class and datatype filters like the criteria search
+	 */
+	public List<ConceptSearchResult> getConcepts(List<String> words, List<Locale> locales, boolean includeRetired,
+	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
+	        List<ConceptDatatype> excludeDatatypes, Collection<Concept> answers, Integer start, Integer size)
+	        throws DAOException {
+		
+		List<Posting> matches = findMatches(words, locales, includeRetired, requireClasses, excludeClasses,
+		    requireDatatypes, excludeDatatypes, answers);
+		
+		// one result per concept and word, using the highest weight and the lowest concept name id
+		// for that word, the same as the group by in the criteria search
+		Map<String, Hit> hitsByKey = new HashMap<String, Hit>();
+		for (Posting posting : matches) {
+			String key = posting.concept.conceptId + " " + posting.word;
+			Hit hit = hitsByKey.get(key);
+			if (hit == null) {
+				hitsByKey.put(key, new Hit(posting));
+			} else {
+				if (posting.conceptNameId < hit.posting.conceptNameId)
+					hit.posting = posting;
+				hit.weight = Math.max(hit.weight, posting.weight);
+			}
+		}
+		
+		List<Hit> hits = new ArrayList<Hit>(hitsByKey.values());
+		Collections.sort(hits, new Comparator<Hit>() {
+			
+			public int compare(Hit a, Hit b) {
+				int result = Double.compare(b.weight, a.weight);
+				if (result == 0)
+					result = a.posting.concept.conceptId.compareTo(b.posting.concept.conceptId);
+				if (result == 0)
+					result = a.posting.word.compareTo(b.posting.word);
+				return result;
+			}
+		});
+		
+		int from = start == null ? 0 : Math.max(start, 0);
+		int to = hits.size();
+		if (size != null && size > 0)
+			to = Math.min(to, from + size);
+		if (from >= to)
+			return new ArrayList<ConceptSearchResult>();
+		
+		List<Hit> page = hits.subList(from, to);
+		
+		// load the concepts and names of this page with one query each instead of one per result
+		Set<Integer> conceptIds = new HashSet<Integer>();
+		Set<Integer> conceptNameIds = new HashSet<Integer>();
+		for (Hit hit : page) {
+			conceptIds.add(hit.posting.concept.conceptId);
+			conceptNameIds.add(hit.posting.conceptNameId);
+		}
+		Session session = sessionFactory.getCurrentSession();
+		session.createQuery("from Concept c where c.conceptId in (:ids)").setParameterList("ids", conceptIds).list();
+		session.createQuery("from ConceptName cn where cn.conceptNameId in (:ids)").setParameterList("ids",
+		    conceptNameIds).list();
+		
+		List<ConceptSearchResult> results = new ArrayList<ConceptSearchResult>(page.size());
+		for (Hit hit : page) {
+			Concept concept = (Concept) session.get(Concept.class, hit.posting.concept.conceptId);
+			ConceptName conceptName = (ConceptName) session.get(ConceptName.class, hit.posting.conceptNameId);
+			results.add(new ConceptSearchResult(hit.posting.word, concept, conceptName, hit.weight));
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptSearchIndex#getCountOfConceptWords(java.util.List,
+	 *      java.util.List, boolean, java.util.List, java.util.List, java.util.List,
+	 *      java.util.List, java.util.Collection, boolean)
+	 * @should count each concept once for unique concepts
+	 */
+	public Long getCountOfConceptWords(List<String> words, List<Locale> locales, boolean includeRetired,
+	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
+	        List<ConceptDatatype> excludeDatatypes, Collection<Concept> answers, boolean forUniqueConcepts)
+	        throws DAOException {
+		
+		List<Posting> matches = findMatches(words, locales, includeRetired, requireClasses, excludeClasses,
+		    requireDatatypes, excludeDatatypes, answers);
+		
+		if (!forUniqueConcepts)
+			return (long) matches.size();
+		
+		Set<Integer> conceptIds = new HashSet<Integer>();
+		for (Posting posting : matches)
+			conceptIds.add(posting.concept.conceptId);
+		
+		return (long) conceptIds.size();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptSearchIndex#updateConceptWords(org.openmrs.Concept,
+	 *      java.util.Collection)
+	 * @should replace the indexed words of the concept
+	 */
+	public void updateConceptWords(Concept concept, Collection<ConceptWord> words) {
+		if (concept == null || concept.getConceptId() == null)
+			return;
+		
+		// registered even if the index is not built yet, since a search later in this transaction
+		// would build it with the words written by the transaction
+		invalidateOnRollback(concept.getConceptId());
+		
+		lock.writeLock().lock();
+		try {
+			// the next search builds the whole index from the database anyway
+			if (!built)
+				return;
+			
+			removeConceptInternal(concept.getConceptId());
+			staleConceptIds.remove(concept.getConceptId());
+			
+			IndexedConcept indexed = new IndexedConcept(concept.getConceptId(), concept.isRetired(),
+			        concept.getConceptClass() == null ? null : concept.getConceptClass().getConceptClassId(), concept
+			                .getDatatype() == null ? null : concept.getDatatype().getConceptDatatypeId());
+			concepts.put(indexed.conceptId, indexed);
+			
+			for (ConceptWord word : words) {
+				if (word.getConceptName() == null || word.getConceptName().getConceptNameId() == null)
+					continue;
+				addPosting(indexed, word.getConceptName().getConceptNameId(), word.getWord(), word.getLocale(), word
+				        .getWeight());
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptSearchIndex#removeConcept(org.openmrs.Concept)
+	 */
+	public void removeConcept(Concept concept) {
+		if (concept == null || concept.getConceptId() == null)
+			return;
+		
+		invalidateOnRollback(concept.getConceptId());
+		
+		lock.writeLock().lock();
+		try {
+			if (!built)
+				return;
+			
+			removeConceptInternal(concept.getConceptId());
+			staleConceptIds.remove(concept.getConceptId());
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptSearchIndex#clear()
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			built = false;
+			postingsByWord.clear();
+			concepts.clear();
+			staleConceptIds.clear();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * @return the number of concepts currently in the index
+	 */
+	public int getSize() {
+		lock.readLock().lock();
+		try {
+			return concepts.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Finds all indexed words matching the search arguments. The first search word is matched to
+	 * the start of the indexed word, every other search word has to be found at the start of a word
+	 * in the same concept name.
+	 */
+	private List<Posting> findMatches(List<String> words, List<Locale> locales, boolean includeRetired,
+	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
+	        List<ConceptDatatype> excludeDatatypes, Collection<Concept> answers) {
+		
+		Set<Locale> localeSet = new HashSet<Locale>(locales);
+		Set<Integer> requireClassIds = getClassIds(requireClasses);
+		Set<Integer> excludeClassIds = getClassIds(excludeClasses);
+		Set<Integer> requireDatatypeIds = getDatatypeIds(requireDatatypes);
+		Set<Integer> excludeDatatypeIds = getDatatypeIds(excludeDatatypes);
+		Set<Integer> answerIds = null;
+		if (answers != null) {
+			answerIds = new HashSet<Integer>();
+			for (Concept answer : answers)
+				answerIds.add(answer.getConceptId());
+		}
+		
+		ensureBuilt();
+		
+		List<Posting> matches = new ArrayList<Posting>();
+		
+		lock.readLock().lock();
+		try {
+			Collection<List<Posting>> candidates;
+			if (words.isEmpty())
+				candidates = postingsByWord.values();
+			else
+				candidates = getPostingsWithPrefix(words.get(0)).values();
+			
+			// the concept names that contain each of the other words
+			List<Set<Integer>> namesWithOtherWords = new ArrayList<Set<Integer>>();
+			for (int i = 1; i < words.size(); i++) {
+				Set<Integer> conceptNameIds = new HashSet<Integer>();
+				for (List<Posting> postings : getPostingsWithPrefix(words.get(i)).values()) {
+					for (Posting posting : postings) {
+						if (localeSet.contains(posting.locale))
+							conceptNameIds.add(posting.conceptNameId);
+					}
+				}
+				namesWithOtherWords.add(conceptNameIds);
+			}
+			
+			for (List<Posting> postings : candidates) {
+				for (Posting posting : postings) {
+					if (!localeSet.contains(posting.locale))
+						continue;
+					
+					IndexedConcept concept = posting.concept;
+					if (!includeRetired && concept.retired)
+						continue;
+					if (answerIds != null && !answerIds.contains(concept.conceptId))
+						continue;
+					if (!requireClassIds.isEmpty() && !requireClassIds.contains(concept.conceptClassId))
+						continue;
+					if (!excludeClassIds.isEmpty() && !isNotIn(concept.conceptClassId, excludeClassIds))
+						continue;
+					if (!requireDatatypeIds.isEmpty() && !requireDatatypeIds.contains(concept.datatypeId))
+						continue;
+					if (!excludeDatatypeIds.isEmpty() && !isNotIn(concept.datatypeId, excludeDatatypeIds))
+						continue;
+					
+					boolean containsAllWords = true;
+					for (Set<Integer> conceptNameIds : namesWithOtherWords) {
+						if (!conceptNameIds.contains(posting.conceptNameId)) {
+							containsAllWords = false;
+							break;
+						}
+					}
+					
+					if (containsAllWords)
+						matches.add(posting);
+				}
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		return matches;
+	}
+	
+	private SortedMap<String, List<Posting>> getPostingsWithPrefix(String prefix) {
+		return postingsByWord.subMap(prefix, prefix + Character.MAX_VALUE);
+	}
+	
+	/**
+	 * Evaluates <code>id not in (ids)</code> the way the database does, which is not true if the id
+	 * or any of the ids is null
+	 */
+	private static boolean isNotIn(Integer id, Set<Integer> ids) {
+		return id != null && !ids.contains(null) && !ids.contains(id);
+	}
+	
+	/**
+	 * Builds the index from the concept_word table if that has not been done yet, and reloads the
+	 * concepts that were invalidated since the last search
+	 */
+	private void ensureBuilt() {
+		lock.readLock().lock();
+		try {
+			if (built && staleConceptIds.isEmpty())
+				return;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		lock.writeLock().lock();
+		try {
+			if (!built) {
+				long startTime = System.currentTimeMillis();
+				int words = loadConcepts(null);
+				built = true;
+				
+				if (log.isDebugEnabled())
+					log.debug("Built the concept search index with " + words + " words for " + concepts.size()
+					        + " concepts in " + (System.currentTimeMillis() - startTime) + "ms");
+			} else if (!staleConceptIds.isEmpty()) {
+				loadConcepts(new ArrayList<Integer>(staleConceptIds));
+			}
+			staleConceptIds.clear();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Loads the given concepts and their words from the database into the index. Should be called
+	 * with the write lock held.
+	 * 
+	 * @param conceptIds the ids of the concepts to load, null to load all concepts
+	 * @return the number of words loaded
+	 */
+	@SuppressWarnings("unchecked")
+	private int loadConcepts(List<Integer> conceptIds) {
+		Session session = sessionFactory.getCurrentSession();
+		String conceptQuery = "select c.conceptId, c.retired, cc.conceptClassId, dt.conceptDatatypeId from Concept c "
+		        + "left join c.conceptClass cc left join c.datatype dt";
+		String wordQuery = "select cw.concept.conceptId, cw.conceptName.conceptNameId, cw.word, cw.locale, cw.weight "
+		        + "from ConceptWord cw";
+		
+		Query conceptRows = null;
+		Query wordRows = null;
+		if (conceptIds == null) {
+			conceptRows = session.createQuery(conceptQuery);
+			wordRows = session.createQuery(wordQuery);
+		} else {
+			conceptRows = session.createQuery(conceptQuery + " where c.conceptId in (:ids)").setParameterList("ids",
+			    conceptIds);
+			wordRows = session.createQuery(wordQuery + " where cw.concept.conceptId in (:ids)").setParameterList("ids",
+			    conceptIds);
+		}
+		
+		List<Object[]> rows = conceptRows.list();
+		for (Object[] row : rows) {
+			removeConceptInternal((Integer) row[0]);
+			IndexedConcept indexed = new IndexedConcept((Integer) row[0], Boolean.TRUE.equals(row[1]),
+			        (Integer) row[2], (Integer) row[3]);
+			concepts.put(indexed.conceptId, indexed);
+		}
+		
+		rows = wordRows.list();
+		for (Object[] row : rows) {
+			IndexedConcept indexed = concepts.get(row[0]);
+			if (indexed != null && row[1] != null && row[2] != null)
+				addPosting(indexed, (Integer) row[1], (String) row[2], (Locale) row[3], (Double) row[4]);
+		}
+		
+		return rows.size();
+	}
+	
+	/**
+	 * Should be called with the write lock held
+	 */
+	private void addPosting(IndexedConcept concept, Integer conceptNameId, String word, Locale locale, Double weight) {
+		Posting posting = new Posting(concept, conceptNameId, word, locale, weight == null ? 0.0 : weight);
+		List<Posting> postings = postingsByWord.get(word);
+		if (postings == null) {
+			postings = new ArrayList<Posting>(2);
+			postingsByWord.put(word, postings);
+		}
+		postings.add(posting);
+		concept.postings.add(posting);
+	}
+	
+	/**
+	 * Should be called with the write lock held
+	 */
+	private void removeConceptInternal(Integer conceptId) {
+		IndexedConcept indexed = concepts.remove(conceptId);
+		if (indexed == null)
+			return;
+		
+		for (Posting posting : indexed.postings) {
+			List<Posting> postings = postingsByWord.get(posting.word);
+			if (postings != null) {
+				postings.remove(posting);
+				if (postings.isEmpty())
+					postingsByWord.remove(posting.word);
+			}
+		}
+	}
+	
+	/**
+	 * Discards the words of the given concept if the current transaction does not commit, since the
+	 * index may contain changes made by it. The concept is reloaded from the database on the next
+	 * search.
+	 * 
+	 * @param conceptId the id of the concept changed in the current transaction
+	 */
+	private void invalidateOnRollback(final Integer conceptId) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (status != TransactionSynchronization.STATUS_COMMITTED)
+						invalidate(conceptId);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Removes the given concept from the index and marks it to be reloaded on the next search
+	 */
+	private void invalidate(Integer conceptId) {
+		lock.writeLock().lock();
+		try {
+			if (!built)
+				return;
+			
+			removeConceptInternal(conceptId);
+			staleConceptIds.add(conceptId);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	private Set<Integer> getClassIds(List<ConceptClass> classes) {
+		Set<Integer> ids = new HashSet<Integer>();
+		if (classes != null) {
+			for (ConceptClass cc : classes)
+				ids.add(cc == null ? null : cc.getConceptClassId());
+		}
+		return ids;
+	}
+	
+	private Set<Integer> getDatatypeIds(List<ConceptDatatype> datatypes) {
+		Set<Integer> ids = new HashSet<Integer>();
+		if (datatypes != null) {
+			for (ConceptDatatype dt : datatypes)
+				ids.add(dt == null ? null : dt.getConceptDatatypeId());
+		}
+		return ids;
+	}
+	
+	/**
+	 * The fields of a concept that searches are filtered on, along with all of its indexed words
+	 */
+	private static class IndexedConcept {
+		
+		private final Integer conceptId;
+		
+		private final boolean retired;
+		
+		private final Integer conceptClassId;
+		
+		private final Integer datatypeId;
+		
+		private final List<Posting> postings = new ArrayList<Posting>();
+		
+		public IndexedConcept(Integer conceptId, boolean retired, Integer conceptClassId, Integer datatypeId) {
+			this.conceptId = conceptId;
+			this.retired = retired;
+			this.conceptClassId = conceptClassId;
+			this.datatypeId = datatypeId;
+		}
+	}
+	
+	/**
+	 * A search result before the concept and name have been loaded
+	 */
+	private static class Hit {
+		
+		private Posting posting;
+		
+		private double weight;
+		
+		public Hit(Posting posting) {
+			this.posting = posting;
+			this.weight = posting.weight;
+		}
+	}
+	
+	/**
+	 * One row of the concept_word table
+	 */
+	private static class Posting {
+		
+		private final IndexedConcept concept;
+		
+		private final Integer conceptNameId;
+		
+		private final String word;
+		
+		private final Locale locale;
+		
+		private final double weight;
+		
+		public Posting(IndexedConcept concept, Integer conceptNameId, String word, Locale locale, double weight) {
+			this.concept = concept;
+			this.conceptNameId = conceptNameId;
+			this.word = word;
+			this.locale = locale;
+			this.weight = weight;
+		}
+	}
+}
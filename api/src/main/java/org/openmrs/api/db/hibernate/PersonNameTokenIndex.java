@@ -0,0 +1,226 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.PersonNameToken;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * The PersonNameTokenIndex class keeps the {@link PersonNameToken}s of the names of a person up to
+ * date and searches patients by name in them. Every word of a search phrase has to match a word of
+ * the same non-voided name, and the patients are ranked by how well their best name matches: a
+ * whole word counts 3, the start of a word 2 and any other part of a word 1.
+ */
+public class PersonNameTokenIndex {
+	
+	/**
+	 * The maximum number of values bound to one 'in' parameter
+	 */
+	private static final int BATCH_SIZE = 1000;
+	
+	private final SessionFactory sessionFactory;
+	
+	/**
+	 * @param sessionFactory
+	 */
+	public PersonNameTokenIndex(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+	
+	/**
+	 * @return true if patients should be searched by name in this index
+	 */
+	public static boolean isEnabled() {
+		return Context.getAdministrationService().getGlobalPropertyValue(
+		    OpenmrsConstants.GP_PATIENT_SEARCH_USE_NAME_INDEX, Boolean.FALSE);
+	}
+	
+	/**
+	 * Brings the tokens of the given person in line with its names. Only the tokens that changed
+	 * are deleted or inserted, so saving a person whose names did not change only reads its tokens.
+	 * 
+	 * @param person the saved person
+	 */
+	@SuppressWarnings("unchecked")
+	public void updateTokens(Person person) {
+		if (person == null || person.getPersonId() == null)
+			return;
+		
+		Session session = sessionFactory.getCurrentSession();
+		Map<String, PersonNameToken> missing = new HashMap<String, PersonNameToken>();
+		for (PersonName name : person.getNames()) {
+			List<PersonNameToken> tokens = PersonNameToken.makeTokens(name);
+			// names added to a saved person are only inserted when the session is flushed
+			if (!tokens.isEmpty() && name.getPersonNameId() == null)
+				session.saveOrUpdate(name);
+			for (PersonNameToken token : tokens) {
+				token.setPerson(person);
+				missing.put(getKey(name.getPersonNameId(), token.getToken(), token.getStartPosition()), token);
+			}
+		}
+		
+		List<Object[]> rows = session.createQuery(
+		    "select t.personNameTokenId, t.personName.personNameId, t.token, t.startPosition"
+		            + " from PersonNameToken t where t.person = :person").setParameter("person", person).list();
+		List<Integer> obsolete = new ArrayList<Integer>();
+		for (Object[] row : rows) {
+			if (missing.remove(getKey((Integer) row[1], (String) row[2], (Integer) row[3])) == null)
+				obsolete.add((Integer) row[0]);
+		}
+		
+		for (int i = 0; i < obsolete.size(); i += BATCH_SIZE) {
+			session.createQuery("delete from PersonNameToken t where t.personNameTokenId in (:ids)").setParameterList(
+			    "ids", obsolete.subList(i, Math.min(i + BATCH_SIZE, obsolete.size()))).executeUpdate();
+		}
+		for (PersonNameToken token : missing.values()) {
+			session.save(token);
+			session.evict(token);
+		}
+	}
+	
+	/**
+	 * Deletes all tokens of the given person, before the person or its names are purged
+	 * 
+	 * @param person the person to purge
+	 */
+	public void deleteTokens(Person person) {
+		if (person == null || person.getPersonId() == null)
+			return;
+		
+		sessionFactory.getCurrentSession().createQuery("delete from PersonNameToken t where t.person = :person")
+		        .setParameter("person", person).executeUpdate();
+	}
+	
+	/**
+	 * Gets the ids of the non-voided patients with a name that matches the given phrase, best
+	 * matches first and patients that match equally well by id
+	 * 
+	 * @param name the search phrase
+	 * @param among if not null, only these patients are searched
+	 * @param start the index of the first result to return
+	 * @param length the maximum number of results to return
+	 * @return the patient ids
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Integer> getPatientIds(String name, Collection<Integer> among, Integer start, Integer length) {
+		Set<String> terms = PersonNameToken.getWords(name);
+		if (terms.isEmpty())
+			return new ArrayList<Integer>();
+		
+		SQLQuery query = createQuery("select n.person_id, max(n.score) as best from (", terms, among,
+		    ") n inner join patient p on p.patient_id = n.person_id where p.voided = :voided"
+		            + " group by n.person_id order by best desc, n.person_id");
+		query.addScalar("person_id", Hibernate.INTEGER);
+		if (start != null)
+			query.setFirstResult(start);
+		if (length != null)
+			query.setMaxResults(length);
+		return query.list();
+	}
+	
+	/**
+	 * Gets the number of non-voided patients with a name that matches the given phrase
+	 * 
+	 * @param name the search phrase
+	 * @param among if not null, only these patients are counted
+	 * @return the number of patients
+	 */
+	public Long getCountOfPatients(String name, Collection<Integer> among) {
+		Set<String> terms = PersonNameToken.getWords(name);
+		if (terms.isEmpty())
+			return 0L;
+		
+		SQLQuery query = createQuery("select count(distinct n.person_id) from (", terms, among,
+		    ") n inner join patient p on p.patient_id = n.person_id where p.voided = :voided");
+		return ((Number) query.uniqueResult()).longValue();
+	}
+	
+	/**
+	 * Creates a query around the names that match all the given terms together with their score,
+	 * which is the sum of the best match of each term
+	 */
+	private SQLQuery createQuery(String prefix, Set<String> terms, Collection<Integer> among, String suffix) {
+		Integer minChars = Context.getAdministrationService().getGlobalPropertyValue(
+		    OpenmrsConstants.GLOBAL_PROPERTY_MIN_SEARCH_CHARACTERS,
+		    OpenmrsConstants.GLOBAL_PROPERTY_DEFAULT_MIN_SEARCH_CHARACTERS);
+		boolean anywhere = OpenmrsConstants.GLOBAL_PROPERTY_PATIENT_SEARCH_MATCH_ANYWHERE.equalsIgnoreCase(Context
+		        .getAdministrationService().getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_PATIENT_SEARCH_MATCH_MODE));
+		
+		StringBuilder match = new StringBuilder();
+		StringBuilder score = new StringBuilder();
+		StringBuilder having = new StringBuilder();
+		int i = 0;
+		for (String term : terms) {
+			String whole = "(t.token = :term" + i + " and t.start_position = 0)";
+			String start = "(t.token like :prefix" + i + " and t.start_position = 0)";
+			String part = "(t.token like :prefix" + i + ")";
+			
+			// short terms only match whole words, like the search on the person_name columns
+			String quality;
+			if (term.length() < minChars) {
+				match.append(i > 0 ? " or " : "").append(whole);
+				quality = "max(case when " + whole + " then 3 else 0 end)";
+			} else if (anywhere) {
+				match.append(i > 0 ? " or " : "").append(part);
+				quality = "max(case when " + whole + " then 3 when " + start + " then 2 when " + part
+				        + " then 1 else 0 end)";
+			} else {
+				match.append(i > 0 ? " or " : "").append(start);
+				quality = "max(case when " + whole + " then 3 when " + start + " then 2 else 0 end)";
+			}
+			score.append(i > 0 ? " + " : "").append(quality);
+			having.append(i > 0 ? " and " : "").append(quality).append(" > 0");
+			i++;
+		}
+		
+		StringBuilder sql = new StringBuilder(prefix);
+		sql.append("select t.person_id, ").append(score).append(" as score from person_name_token t where (");
+		sql.append(match).append(")");
+		if (among != null)
+			sql.append(" and t.person_id in (:among)");
+		sql.append(" group by t.person_id, t.person_name_id having ").append(having);
+		sql.append(suffix);
+		
+		SQLQuery query = sessionFactory.getCurrentSession().createSQLQuery(sql.toString());
+		i = 0;
+		for (String term : terms) {
+			query.setString("term" + i, term);
+			if (term.length() >= minChars)
+				query.setString("prefix" + i, term + "%");
+			i++;
+		}
+		if (among != null)
+			query.setParameterList("among", among);
+		query.setBoolean("voided", false);
+		return query;
+	}
+	
+	private static String getKey(Integer personNameId, String token, Integer startPosition) {
+		return personNameId + ":" + startPosition + ":" + token;
+	}
+}
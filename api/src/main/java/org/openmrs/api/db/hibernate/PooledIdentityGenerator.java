@@ -0,0 +1,319 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.engine.TransactionHelper;
+import org.hibernate.exception.JDBCExceptionHelper;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.IdentityGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.type.Type;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * <b>pooled-identity</b><br>
+ * <br>
+ * By default this generator behaves like "native": on databases with identity columns like MySQL
+ * the database assigns the id of a new row when it is inserted, on other databases the generator
+ * that the dialect uses for "native" is used, e.g. with the sequence set by the "sequence" mapping
+ * parameter. With identity columns, Hibernate has to insert every new object on its own as soon as
+ * it is saved, so that saving an encounter with hundreds of obs takes hundreds of round trips to
+ * the database. <br/>
+ * <br/>
+ * When the {@link OpenmrsConstants#POOLED_ID_GENERATOR_RUNTIME_PROPERTY} runtime property is true,
+ * ids are instead handed out from blocks of consecutive ids that are reserved in the pooled_id
+ * table, one row per entity table. The inserts are then delayed until the session is flushed and
+ * sent in JDBC batches of hibernate.jdbc.batch_size statements. A block never starts below the
+ * highest id in the entity table, so ids that were assigned by the database before pooling was
+ * enabled, or by sql scripts that insert rows directly, are not handed out again. Ids of a block
+ * that was not used up before a restart are skipped. <br/>
+ * <br/>
+ * While pooling is enabled, no one else may let the database assign ids in these tables, neither a
+ * server without pooling nor a sql script that relies on auto increment. Such an insert takes the
+ * next auto increment value, which can lie inside a block that is reserved but not used up yet, and
+ * the later insert of that id fails with a duplicate key error. <br/>
+ * <br/>
+ * The pooled_id table is created by liquibase and its rows are added by this generator.
+ * 
+ * @since 1.9.9
+ */
+public class PooledIdentityGenerator extends IdentityGenerator implements PersistentIdentifierGenerator, Configurable {
+	
+	private static final Log log = LogFactory.getLog(PooledIdentityGenerator.class);
+	
+	/**
+	 * The name of the table that holds the next free id of every entity table
+	 */
+	public static final String POOL_TABLE = "pooled_id";
+	
+	/**
+	 * The name of the mapping parameter that sets the number of ids reserved at once
+	 */
+	public static final String INCREMENT = "increment";
+	
+	/**
+	 * The name of the mapping parameter that overrides the runtime property which enables pooling
+	 */
+	public static final String ENABLED = "enabled";
+	
+	/**
+	 * The number of ids reserved at once if the mapping does not set it
+	 */
+	public static final int DEFAULT_INCREMENT = 100;
+	
+	private String tableName;
+	
+	private String selectMaxQuery;
+	
+	private boolean enabled;
+	
+	private int increment;
+	
+	private Class<?> returnedClass;
+	
+	/**
+	 * The generator that "native" resolves to if it does not use identity columns, used while
+	 * pooling is disabled
+	 */
+	private IdentifierGenerator nativeGenerator;
+	
+	/**
+	 * The next id to hand out, ids from here up to {@link #limit} are reserved for this generator
+	 */
+	private long next;
+	
+	private long limit;
+	
+	/**
+	 * The highest id in the entity table, as seen by the transaction that needs a new block
+	 */
+	private long highestId;
+	
+	private final TransactionHelper blockReserver = new TransactionHelper() {
+		
+		/**
+		 * Reserves the next block of ids and returns its first id
+		 * 
+		 * @see org.hibernate.engine.TransactionHelper#doWorkInCurrentTransaction(java.sql.Connection,
+		 *      java.lang.String)
+		 */
+		@Override
+		public Serializable doWorkInCurrentTransaction(Connection conn, String sql) throws SQLException {
+			while (true) {
+				Long current = getNextValue(conn);
+				if (current == null) {
+					execute(conn, "insert into " + POOL_TABLE + " (table_name, next_value) values (?, ?)", tableName,
+					    highestId + 1);
+					continue;
+				}
+				
+				// another process may have reserved the same block in the meantime
+				long start = Math.max(current, highestId + 1);
+				if (execute(conn, "update " + POOL_TABLE + " set next_value = ? where table_name = ? and next_value = ?",
+				    start + increment, tableName, current) > 0)
+					return start;
+			}
+		}
+	};
+	
+	/**
+	 * @see org.hibernate.id.Configurable#configure(org.hibernate.type.Type, java.util.Properties,
+	 *      org.hibernate.dialect.Dialect)
+	 */
+	@Override
+	public void configure(Type type, Properties params, Dialect dialect) throws MappingException {
+		tableName = params.getProperty(TABLE);
+		String columnName = params.getProperty(PK);
+		if (tableName == null || columnName == null)
+			throw new MappingException("no table or primary key column for " + params.getProperty(ENTITY_NAME));
+		
+		returnedClass = type.getReturnedClass();
+		if (!Integer.class.equals(returnedClass) && !Long.class.equals(returnedClass))
+			throw new MappingException("pooled ids can only be integers or longs, not " + returnedClass.getName());
+		
+		String enabledValue = params.getProperty(ENABLED);
+		if (enabledValue == null)
+			enabledValue = Context.getRuntimeProperties().getProperty(OpenmrsConstants.POOLED_ID_GENERATOR_RUNTIME_PROPERTY);
+		enabled = Boolean.valueOf(enabledValue == null ? null : enabledValue.trim());
+		
+		increment = DEFAULT_INCREMENT;
+		if (params.getProperty(INCREMENT) != null)
+			increment = Integer.valueOf(params.getProperty(INCREMENT));
+		if (increment < 1)
+			throw new MappingException("the increment of the pooled ids of " + tableName + " must be positive");
+		
+		selectMaxQuery = "select max(" + columnName + ") from " + tableName;
+		
+		if (!enabled) {
+			Class<?> nativeClass = dialect.getNativeIdentifierGeneratorClass();
+			if (!IdentityGenerator.class.isAssignableFrom(nativeClass)) {
+				try {
+					nativeGenerator = (IdentifierGenerator) nativeClass.newInstance();
+				}
+				catch (Exception e) {
+					throw new MappingException("could not instantiate the native id generator " + nativeClass.getName(), e);
+				}
+				if (nativeGenerator instanceof Configurable)
+					((Configurable) nativeGenerator).configure(type, params, dialect);
+			}
+		}
+	}
+	
+	/**
+	 * @return true if ids are handed out from reserved blocks, false if the database assigns them
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * @see org.hibernate.id.AbstractPostInsertGenerator#generate(org.hibernate.engine.SessionImplementor,
+	 *      java.lang.Object)
+	 * @should leave the id to the database if pooling is disabled and the dialect uses identity
+	 *         columns
+	 * @should hand out consecutive ids above the highest id in the table
+	 * @should reserve a new block when the current one is used up
+	 */
+	@Override
+	public synchronized Serializable generate(SessionImplementor session, Object entity) throws HibernateException {
+		if (!enabled)
+			return nativeGenerator != null ? nativeGenerator.generate(session, entity) : super.generate(session, entity);
+		
+		if (next >= limit) {
+			highestId = getHighestId(session);
+			next = ((Number) blockReserver.doWorkInNewTransaction(session)).longValue();
+			limit = next + increment;
+			if (log.isDebugEnabled())
+				log.debug("Reserved the ids " + next + " to " + (limit - 1) + " of " + tableName);
+		}
+		
+		long id = next++;
+		if (Long.class.equals(returnedClass))
+			return id;
+		return (int) id;
+	}
+	
+	/**
+	 * @see org.hibernate.id.PersistentIdentifierGenerator#sqlCreateStrings(org.hibernate.dialect.Dialect)
+	 */
+	@Override
+	public String[] sqlCreateStrings(Dialect dialect) throws HibernateException {
+		return new String[] { dialect.getCreateTableString() + " " + POOL_TABLE + " (table_name "
+		        + dialect.getTypeName(Types.VARCHAR, 50, 0, 0) + " not null, next_value " + dialect.getTypeName(Types.BIGINT)
+		        + " not null, primary key (table_name))" };
+	}
+	
+	/**
+	 * @see org.hibernate.id.PersistentIdentifierGenerator#sqlDropStrings(org.hibernate.dialect.Dialect)
+	 */
+	@Override
+	public String[] sqlDropStrings(Dialect dialect) throws HibernateException {
+		StringBuilder sql = new StringBuilder("drop table ");
+		if (dialect.supportsIfExistsBeforeTableName())
+			sql.append("if exists ");
+		sql.append(POOL_TABLE).append(dialect.getCascadeConstraintsString());
+		if (dialect.supportsIfExistsAfterTableName())
+			sql.append(" if exists");
+		return new String[] { sql.toString() };
+	}
+	
+	/**
+	 * All entity tables share the pooled_id table, so it is only created once
+	 * 
+	 * @see org.hibernate.id.PersistentIdentifierGenerator#generatorKey()
+	 */
+	@Override
+	public Object generatorKey() {
+		return POOL_TABLE;
+	}
+	
+	/**
+	 * Reads the highest id in the entity table in the current transaction, so that the rows that
+	 * this transaction inserted without this generator are seen as well
+	 */
+	private long getHighestId(SessionImplementor session) {
+		PreparedStatement statement = null;
+		try {
+			statement = session.connection().prepareStatement(selectMaxQuery);
+			ResultSet rs = statement.executeQuery();
+			long highest = rs.next() ? rs.getLong(1) : 0;
+			rs.close();
+			return highest;
+		}
+		catch (SQLException e) {
+			throw JDBCExceptionHelper.convert(session.getFactory().getSQLExceptionConverter(), e,
+			    "could not read the highest id of " + tableName, selectMaxQuery);
+		}
+		finally {
+			close(statement);
+		}
+	}
+	
+	/**
+	 * @return the next free id of the entity table, null if the table has no row in pooled_id yet
+	 */
+	private Long getNextValue(Connection conn) throws SQLException {
+		PreparedStatement statement = conn.prepareStatement("select next_value from " + POOL_TABLE
+		        + " where table_name = ?");
+		try {
+			statement.setString(1, tableName);
+			ResultSet rs = statement.executeQuery();
+			Long value = rs.next() ? rs.getLong(1) : null;
+			rs.close();
+			return value;
+		}
+		finally {
+			close(statement);
+		}
+	}
+	
+	private static int execute(Connection conn, String sql, Object... parameters) throws SQLException {
+		PreparedStatement statement = conn.prepareStatement(sql);
+		try {
+			for (int i = 0; i < parameters.length; i++)
+				statement.setObject(i + 1, parameters[i]);
+			return statement.executeUpdate();
+		}
+		finally {
+			close(statement);
+		}
+	}
+	
+	private static void close(PreparedStatement statement) {
+		if (statement != null) {
+			try {
+				statement.close();
+			}
+			catch (SQLException e) {
+				log.warn("Failed to close the statement", e);
+			}
+		}
+	}
+}
@@ -18,11 +18,12 @@ import java.util.Date;
 import org.openmrs.PersonName;
 import org.openmrs.User;
 import org.openmrs.annotation.Handler;
+import org.openmrs.util.PhoneticUtil;
 
 /**
- * This is called every time a {@link PersonName} object is saved. The current implemention just
- * trims out the whitespace from the beginning and end of the given/middle/familyname/familyName2
- * attributes
+ * This is called every time a {@link PersonName} object is saved. The current implemention trims
+ * out the whitespace from the beginning and end of the given/middle/familyname/familyName2
+ * attributes and computes their phonetic keys
  */
 @Handler(supports = PersonName.class)
 public class PersonNameSaveHandler implements SaveHandler<PersonName> {
@@ -30,6 +31,7 @@ public class PersonNameSaveHandler implements SaveHandler<PersonName> {
 	/**
 	 * @see org.openmrs.api.handler.SaveHandler#handle(org.openmrs.OpenmrsObject, org.openmrs.User,
 	 *      java.util.Date, java.lang.String)
+	 * @should trim the parts of the name and set their phonetic keys
 	 */
 	public void handle(PersonName personName, User creator, Date dateCreated, String other) {
 		if (personName.getGivenName() != null) {
@@ -44,6 +46,7 @@ public class PersonNameSaveHandler implements SaveHandler<PersonName> {
 		if (personName.getFamilyName2() != null) {
 			personName.setFamilyName2(personName.getFamilyName2().trim());
 		}
+		PhoneticUtil.setPhoneticKeys(personName);
 	}
 	
 }
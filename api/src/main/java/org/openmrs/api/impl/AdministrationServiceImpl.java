@@ -95,6 +95,11 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	
 	private HttpClient implementationIdHttpClient;
 	
+	/**
+	 * Cached global property values, may be null in which case every read goes to the database
+	 */
+	private GlobalPropertyCache globalPropertyCache;
+	
 	/**
 	 * Default empty constructor
 	 */
@@ -112,6 +117,17 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		this.eventListeners = eventListeners;
 	}
 	
+	/**
+	 * Used by spring to set the cache that global property reads are answered from. The cache
+	 * should also be registered as a global property listener so that it sees all changes.
+	 * 
+	 * @param globalPropertyCache the cache to use
+	 * @since 1.9.9
+	 */
+	public void setGlobalPropertyCache(GlobalPropertyCache globalPropertyCache) {
+		this.globalPropertyCache = globalPropertyCache;
+	}
+	
 	/**
 	 * @see org.openmrs.api.AdministrationService#createEncounterType(org.openmrs.EncounterType)
 	 * @deprecated
@@ -645,7 +661,31 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (propertyName == null)
 			return null;
 		
-		return dao.getGlobalProperty(propertyName);
+		if (globalPropertyCache == null)
+			return dao.getGlobalProperty(propertyName);
+		
+		return getCachedGlobalProperty(propertyName).getValue();
+	}
+	
+	/**
+	 * Gets the given property from the global property cache, reading it from the database first if
+	 * it has not been cached yet. The first read loads all global properties at once.
+	 * 
+	 * @param propertyName the name of the global property
+	 * @return the cached value, never null
+	 */
+	private GlobalPropertyCache.CachedValue getCachedGlobalProperty(String propertyName) {
+		GlobalPropertyCache.CachedValue cached = globalPropertyCache.get(propertyName);
+		if (cached != null)
+			return cached;
+		
+		if (!globalPropertyCache.isLoaded()) {
+			globalPropertyCache.load(dao.getAllGlobalProperties());
+			// all existing properties are cached now, so this only marks a missing property
+			return globalPropertyCache.putIfAbsent(propertyName, null);
+		}
+		
+		return globalPropertyCache.putIfAbsent(propertyName, dao.getGlobalProperty(propertyName));
 	}
 	
 	/**
@@ -799,6 +839,10 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (sql == null || sql.trim().equals(""))
 			return null;
 		
+		// the statement may change the global_property table behind the cache's back
+		if (!selectOnly && globalPropertyCache != null)
+			globalPropertyCache.clear();
+		
 		return dao.executeSQL(sql, selectOnly);
 	}
 	
@@ -1074,12 +1118,35 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (defaultValue == null)
 			throw new IllegalArgumentException("The defaultValue argument cannot be null");
 		
-		String propVal = getGlobalProperty(propertyName);
+		if (propertyName == null)
+			return defaultValue;
+		
+		GlobalPropertyCache.CachedValue cached = null;
+		String propVal;
+		if (globalPropertyCache == null) {
+			propVal = dao.getGlobalProperty(propertyName);
+		} else {
+			cached = getCachedGlobalProperty(propertyName);
+			propVal = cached.getValue();
+		}
+		
 		if (!StringUtils.hasLength(propVal))
 			return defaultValue;
 		
+		// reuse the value parsed by a previous call
+		Class<T> type = (Class<T>) defaultValue.getClass();
+		if (cached != null) {
+			T parsedValue = cached.getParsedValue(type);
+			if (parsedValue != null)
+				return parsedValue;
+		}
+		
 		try {
-			return (T) defaultValue.getClass().getDeclaredConstructor(String.class).newInstance(propVal);
+			T parsedValue = type.getDeclaredConstructor(String.class).newInstance(propVal);
+			// only the java.lang types are immutable and safe to share between callers
+			if (cached != null && type.getName().startsWith("java.lang."))
+				cached.setParsedValue(type, parsedValue);
+			return parsedValue;
 		}
 		catch (InstantiationException e) {
 			throw new APIException(defaultValue.getClass().getName() + " is not able to be instantiated with value: "
@@ -1154,7 +1221,11 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 				put("SystemInfo.Memory.totalMemory", convertToMegaBytes(runtime.totalMemory()));
 				put("SystemInfo.Memory.freeMemory", convertToMegaBytes(runtime.freeMemory()));
 				put("SystemInfo.Memory.maximumHeapSize", convertToMegaBytes(runtime.maxMemory()));
-				
+				if (globalPropertyCache != null) {
+					put("SystemInfo.Memory.globalPropertyCacheSize", String.valueOf(globalPropertyCache.getSize()));
+					put("SystemInfo.Memory.globalPropertyCacheHits", String.valueOf(globalPropertyCache.getHits()));
+					put("SystemInfo.Memory.globalPropertyCacheMisses", String.valueOf(globalPropertyCache.getMisses()));
+				}
 			}
 		});
 		
@@ -1824,12 +1824,16 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 */
 	@Override
 	public void updateConceptIndexes(Integer conceptIdStart, Integer conceptIdEnd) throws APIException {
+		rebuildConceptIndexes(conceptIdStart, conceptIdEnd);
+	}
+	
+	/**
+	 * @see ConceptService#rebuildConceptIndexes(Integer, Integer)
+	 */
+	@Override
+	public Integer rebuildConceptIndexes(Integer conceptIdStart, Integer conceptIdEnd) throws APIException {
 		checkIfLocked();
-		Integer i = conceptIdStart;
-		ConceptService cs = Context.getConceptService();
-		while (i++ <= conceptIdEnd) {
-			updateConceptWord(cs.getConcept(i));
-		}
+		return dao.updateConceptWords(conceptIdStart, conceptIdEnd);
 	}
 	
 	/**
@@ -114,6 +114,8 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 		Date originalDate = null;
 		Location newLocation = encounter.getLocation();
 		Location originalLocation = null;
+		// only new obs and obs that are moved to another datetime or patient can change the latest obs
+		List<Obs> changedObs = new ArrayList<Obs>();
 		// check permissions
 		if (encounter.getEncounterId() == null) {
 			isNewEncounter = true;
@@ -147,6 +149,8 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 			
 			Patient p = encounter.getPatient();
 			for (Obs obs : encounter.getAllObs(true)) {
+				boolean changed = obs.getObsId() == null;
+				
 				// if the date was changed
 				if (OpenmrsUtil.compare(originalDate, newDate) != 0) {
 					
@@ -154,6 +158,7 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 					// original encounter datetime, fix it
 					if (OpenmrsUtil.compare(obs.getObsDatetime(), originalDate) == 0) {
 						obs.setObsDatetime(newDate);
+						changed = true;
 					}
 					
 				}
@@ -168,7 +173,11 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 				// encounter, fix it
 				if (!obs.getPerson().getPersonId().equals(p.getPatientId())) {
 					obs.setPerson(p);
+					changed = true;
 				}
+				
+				if (changed)
+					changedObs.add(obs);
 			}
 			
 			// same goes for Orders
@@ -177,11 +186,18 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 					o.setPatient(p);
 				}
 			}
+		} else {
+			changedObs.addAll(encounter.getAllObs(true));
 		}
 		
 		// do the actual saving to the database
 		dao.saveEncounter(encounter);
 		
+		// the obs are saved with the encounter rather than by the obs service
+		ObsService obsService = Context.getObsService();
+		for (Obs obs : changedObs)
+			obsService.updateLatestObs(obs);
+		
 		return encounter;
 	}
 	
@@ -795,6 +811,15 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 		return dao.getEncountersByVisitsAndPatient(patient, includeVoided, query, start, length);
 	}
 	
+	/**
+	 * @see org.openmrs.api.EncounterService#getNextEncountersByVisitsAndPatient(org.openmrs.Patient, boolean, java.lang.String, org.openmrs.Encounter, java.lang.Integer)
+	 */
+	@Override
+	public List<Encounter> getNextEncountersByVisitsAndPatient(Patient patient, boolean includeVoided, String query,
+	        Encounter previous, Integer length) throws APIException {
+		return dao.getNextEncountersByVisitsAndPatient(patient, includeVoided, query, previous, length);
+	}
+	
 	/**
 	 * @see org.openmrs.api.EncounterService#getEncountersByVisitsAndPatientCount(org.openmrs.Patient, boolean, java.lang.String)
 	 */
@@ -0,0 +1,267 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.impl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.GlobalPropertyListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * An in-memory cache of the global property values used by {@link AdministrationServiceImpl} so
+ * that reading a global property does not need a database query. <br/>
+ * <br/>
+ * The cache is filled with all global properties on the first read and is kept up to date by
+ * being registered as a {@link GlobalPropertyListener}. Properties that do not exist are cached
+ * as well so that repeated reads of unset properties are cheap. Changes made in a transaction that
+ * is rolled back are evicted again once the rollback completes. <br/>
+ * <br/>
+ * Property names are compared case-insensitively, the same as the database lookup.
+ * 
+ * @since 1.9.9
+ */
+public class GlobalPropertyCache implements GlobalPropertyListener {
+	
+	private static final Log log = LogFactory.getLog(GlobalPropertyCache.class);
+	
+	/**
+	 * The default maximum number of property names to cache
+	 */
+	public static final int DEFAULT_MAX_SIZE = 5000;
+	
+	private final ConcurrentMap<String, CachedValue> values = new ConcurrentHashMap<String, CachedValue>();
+	
+	private volatile boolean loaded = false;
+	
+	private int maxSize = DEFAULT_MAX_SIZE;
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	/**
+	 * Gets the cached value for the given property name
+	 * 
+	 * @param propertyName the name of the global property
+	 * @return the cached value or null if the property has not been cached yet. A property that is
+	 *         known not to exist is returned as a {@link CachedValue} with a null value.
+	 * @should return null for a property that is not cached
+	 * @should return a cached value for a property that does not exist
+	 */
+	public CachedValue get(String propertyName) {
+		CachedValue value = values.get(getKey(propertyName));
+		if (value != null)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		
+		return value;
+	}
+	
+	/**
+	 * Caches a value that was read from the database. An existing entry (e.g. one put there by a
+	 * concurrent save) is not replaced.
+	 * 
+	 * @param propertyName the name of the global property
+	 * @param propertyValue the value read from the database, null if the property does not exist
+	 * @return the value now in the cache
+	 * @should not replace a value that is already cached
+	 * @should not cache more than the maximum number of properties
+	 */
+	public CachedValue putIfAbsent(String propertyName, String propertyValue) {
+		String key = getKey(propertyName);
+		CachedValue existing = values.get(key);
+		if (existing != null)
+			return existing;
+		
+		CachedValue value = new CachedValue(propertyValue);
+		if (values.size() >= maxSize)
+			return value;
+		
+		existing = values.putIfAbsent(key, value);
+		return existing == null ? value : existing;
+	}
+	
+	/**
+	 * Caches all of the given global properties unless the cache has already been loaded
+	 * 
+	 * @param globalProperties all global properties in the database
+	 */
+	public void load(List<GlobalProperty> globalProperties) {
+		if (loaded)
+			return;
+		
+		for (GlobalProperty gp : globalProperties) {
+			putIfAbsent(gp.getProperty(), gp.getPropertyValue());
+		}
+		loaded = true;
+		
+		if (log.isDebugEnabled())
+			log.debug("Loaded " + values.size() + " global properties into the cache");
+	}
+	
+	/**
+	 * @return true if {@link #load(List)} has been called since the last {@link #clear()}
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+	
+	/**
+	 * Removes everything from the cache. The next read will load all properties again.
+	 */
+	public void clear() {
+		loaded = false;
+		values.clear();
+	}
+	
+	/**
+	 * Removes the given property from the cache so that the next read goes to the database
+	 * 
+	 * @param propertyName the name of the global property
+	 */
+	public void evict(String propertyName) {
+		values.remove(getKey(propertyName));
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 * @should replace the cached value
+	 */
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		update(newValue.getProperty(), newValue.getPropertyValue());
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyDeleted(java.lang.String)
+	 * @should cache the property as not existing
+	 */
+	public void globalPropertyDeleted(String propertyName) {
+		update(propertyName, null);
+	}
+	
+	/**
+	 * This listener needs to hear about all global properties
+	 * 
+	 * @see org.openmrs.api.GlobalPropertyListener#supportsPropertyName(java.lang.String)
+	 */
+	public boolean supportsPropertyName(String propertyName) {
+		return true;
+	}
+	
+	/**
+	 * Replaces the cached value of the given property. If a transaction is active the property is
+	 * evicted again if that transaction is rolled back.
+	 */
+	private void update(final String propertyName, String propertyValue) {
+		values.put(getKey(propertyName), new CachedValue(propertyValue));
+		
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (status != TransactionSynchronization.STATUS_COMMITTED)
+						evict(propertyName);
+				}
+			});
+		}
+	}
+	
+	private String getKey(String propertyName) {
+		return propertyName.toLowerCase();
+	}
+	
+	/**
+	 * @return the number of reads that were answered by the cache, i.e. the number of database
+	 *         queries avoided
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of reads that had to go to the database
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * @return the number of property names currently cached
+	 */
+	public int getSize() {
+		return values.size();
+	}
+	
+	/**
+	 * @return the maximum number of property names to cache
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * @param maxSize the maximum number of property names to cache
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * A cached global property value along with the typed values it has been parsed into
+	 */
+	public static class CachedValue {
+		
+		private final String value;
+		
+		private final ConcurrentMap<Class<?>, Object> parsedValues = new ConcurrentHashMap<Class<?>, Object>();
+		
+		public CachedValue(String value) {
+			this.value = value;
+		}
+		
+		/**
+		 * @return the property value, or null if the property does not exist
+		 */
+		public String getValue() {
+			return value;
+		}
+		
+		/**
+		 * @param type the type the value was parsed into
+		 * @return the previously parsed value or null if it has not been parsed into this type yet
+		 */
+		@SuppressWarnings("unchecked")
+		public <T> T getParsedValue(Class<T> type) {
+			return (T) parsedValues.get(type);
+		}
+		
+		/**
+		 * @param type the type the value was parsed into
+		 * @param parsedValue the parsed value
+		 */
+		public <T> void setParsedValue(Class<T> type, T parsedValue) {
+			parsedValues.put(type, parsedValue);
+		}
+	}
+}
@@ -13,7 +13,9 @@
  */
 package org.openmrs.api.impl;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -106,7 +108,9 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		
 		if (obs.getObsId() == null) {
 			Context.requirePrivilege(PrivilegeConstants.ADD_OBS);
-			return dao.saveObs(obs);
+			dao.saveObs(obs);
+			updateLatestObsAndGroupMembers(obs);
+			return obs;
 		} else {
 			Context.requirePrivilege(PrivilegeConstants.EDIT_OBS);
 			
@@ -153,6 +157,8 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 				Context.removeProxyPrivilege(PrivilegeConstants.DELETE_OBS);
 			}
 			
+			updateLatestObsAndGroupMembers(newObs);
+			
 			return newObs;
 		}
 	}
@@ -182,7 +188,9 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	 * @throws APIException
 	 */
 	public Obs voidObs(Obs obs, String reason) throws APIException {
-		return dao.saveObs(obs);
+		dao.saveObs(obs);
+		updateLatestObsAndGroupMembers(obs);
+		return obs;
 	}
 	
 	/**
@@ -197,7 +205,48 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	 * @throws APIException
 	 */
 	public Obs unvoidObs(Obs obs) throws APIException {
-		return dao.saveObs(obs);
+		dao.saveObs(obs);
+		updateLatestObsAndGroupMembers(obs);
+		return obs;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#updateLatestObs(org.openmrs.Obs)
+	 */
+	public void updateLatestObs(Obs obs) throws APIException {
+		dao.updateLatestObs(obs);
+	}
+	
+	/**
+	 * Updates the latest obs for the given obs and its group members, which are voided and unvoided
+	 * with it by the handlers
+	 */
+	private void updateLatestObsAndGroupMembers(Obs obs) {
+		dao.updateLatestObs(obs);
+		if (obs.hasGroupMembers(true)) {
+			for (Obs member : obs.getGroupMembers(true))
+				updateLatestObsAndGroupMembers(member);
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getLatestObs(org.openmrs.Person, java.util.List)
+	 */
+	public List<Obs> getLatestObs(Person who, List<Concept> concepts) throws APIException {
+		if (who == null || who.getPersonId() == null || concepts == null || concepts.isEmpty())
+			return new ArrayList<Obs>();
+		
+		Map<Integer, Obs> latestObsByConceptId = new HashMap<Integer, Obs>();
+		for (Obs obs : dao.getLatestObs(who, concepts))
+			latestObsByConceptId.put(obs.getConcept().getConceptId(), obs);
+		
+		List<Obs> latestObs = new ArrayList<Obs>();
+		for (Concept concept : concepts) {
+			Obs obs = latestObsByConceptId.remove(concept.getConceptId());
+			if (obs != null)
+				latestObs.add(obs);
+		}
+		return latestObs;
 	}
 	
 	/**
@@ -215,6 +264,7 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 			// orders?
 		}
 		
+		dao.deleteLatestObs(obs);
 		dao.deleteObs(obs);
 	}
 	
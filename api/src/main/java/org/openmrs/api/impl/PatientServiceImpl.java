@@ -29,6 +29,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
+import org.openmrs.DuplicatePatientCandidate;
 import org.openmrs.Encounter;
 import org.openmrs.Location;
 import org.openmrs.Obs;
@@ -63,7 +64,9 @@ import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.PatientDAO;
 import org.openmrs.order.OrderUtil;
+import org.openmrs.patient.DuplicatePatientMatcher;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.patient.PatientSearchResult;
 import org.openmrs.patient.impl.LuhnIdentifierValidator;
 import org.openmrs.person.PersonMergeLog;
 import org.openmrs.person.PersonMergeLogData;
@@ -1592,6 +1595,19 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		return dao.getPatients(query, null, Collections.EMPTY_LIST, false, start, length, true);
 	}
 	
+	/**
+	 * @see PatientService#getPatientSearchResults(String, Integer, Integer)
+	 */
+	@Override
+	public List<PatientSearchResult> getPatientSearchResults(String query, Integer start, Integer length)
+	        throws APIException {
+		if (StringUtils.isBlank(query))
+			return new Vector<PatientSearchResult>();
+		
+		return dao.getPatientSearchResults(query, null, Collections.<PatientIdentifierType> emptyList(), false, start,
+		    length, true);
+	}
+	
 	/**
 	 * @see PatientService#getPatients(String, String, List, boolean, Integer, Integer)
 	 */
@@ -1603,4 +1619,43 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		
 		return dao.getPatients(name, identifier, identifierTypes, matchIdentifierExactly, start, length, false);
 	}
+	
+	/**
+	 * @see PatientService#detectDuplicatePatients(Double, Integer)
+	 */
+	@Override
+	public Integer detectDuplicatePatients(Double minimumScore, Integer maxBlockSize) throws APIException {
+		long startTime = System.currentTimeMillis();
+		DuplicatePatientMatcher matcher = new DuplicatePatientMatcher(minimumScore != null ? minimumScore
+		        : DuplicatePatientMatcher.DEFAULT_MINIMUM_SCORE, maxBlockSize != null ? maxBlockSize
+		        : DuplicatePatientMatcher.DEFAULT_MAX_BLOCK_SIZE);
+		dao.matchDuplicatePatients(matcher);
+		
+		List<DuplicatePatientMatcher.Match> matches = matcher.getMatches();
+		dao.deleteDuplicatePatientCandidates();
+		dao.saveDuplicatePatientCandidates(matches);
+		
+		log.info("Found " + matches.size() + " duplicate patient candidates in "
+		        + (System.currentTimeMillis() - startTime) + "ms, skipped " + matcher.getSkippedBlocks()
+		        + " blocks that were too large");
+		
+		return matches.size();
+	}
+	
+	/**
+	 * @see PatientService#getDuplicatePatientCandidates(Integer, Integer)
+	 */
+	@Override
+	public List<DuplicatePatientCandidate> getDuplicatePatientCandidates(Integer start, Integer length)
+	        throws APIException {
+		return dao.getDuplicatePatientCandidates(start, length);
+	}
+	
+	/**
+	 * @see PatientService#getCountOfDuplicatePatientCandidates()
+	 */
+	@Override
+	public Integer getCountOfDuplicatePatientCandidates() throws APIException {
+		return OpenmrsUtil.convertToInteger(dao.getCountOfDuplicatePatientCandidates());
+	}
 }
@@ -79,6 +79,13 @@ public class PersonServiceImpl extends BaseOpenmrsService implements PersonServi
 		return dao.getSimilarPeople(name, birthyear, gender);
 	}
 	
+	/**
+	 * @see org.openmrs.api.PersonService#updatePersonNamePhoneticKeys(java.lang.Integer)
+	 */
+	public Integer updatePersonNamePhoneticKeys(Integer batchSize) throws APIException {
+		return dao.updatePersonNamePhoneticKeys(batchSize);
+	}
+	
 	/**
 	 * @see org.openmrs.api.PersonService#getSimilarPeople(java.lang.String, java.lang.Integer,
 	 *      java.lang.String, java.lang.String)
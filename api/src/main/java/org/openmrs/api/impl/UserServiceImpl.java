@@ -24,6 +24,7 @@ import org.openmrs.api.APIAuthenticationException;
 import org.openmrs.api.APIException;
 import org.openmrs.api.UserService;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.UserDAO;
 import org.openmrs.patient.impl.LuhnIdentifierValidator;
@@ -99,7 +100,9 @@ public class UserServiceImpl extends BaseOpenmrsService implements UserService {
 			OpenmrsUtil.validatePassword(user.getUsername(), password, user.getSystemId());
 		}
 		
-		return dao.saveUser(user, password);
+		User savedUser = dao.saveUser(user, password);
+		UserContext.privilegesChanged();
+		return savedUser;
 	}
 	
 	/**
@@ -248,13 +251,16 @@ public class UserServiceImpl extends BaseOpenmrsService implements UserService {
 			throw new APIException("Cannot delete a core privilege");
 		
 		dao.deletePrivilege(privilege);
+		UserContext.privilegesChanged();
 	}
 	
 	/**
 	 * @see org.openmrs.api.UserService#savePrivilege(org.openmrs.Privilege)
 	 */
 	public Privilege savePrivilege(Privilege privilege) throws APIException {
-		return dao.savePrivilege(privilege);
+		Privilege savedPrivilege = dao.savePrivilege(privilege);
+		UserContext.privilegesChanged();
+		return savedPrivilege;
 	}
 	
 	/**
@@ -302,6 +308,7 @@ public class UserServiceImpl extends BaseOpenmrsService implements UserService {
 			throw new APIException("Cannot delete a core role");
 		
 		dao.deleteRole(role);
+		UserContext.privilegesChanged();
 	}
 	
 	/**
@@ -316,7 +323,9 @@ public class UserServiceImpl extends BaseOpenmrsService implements UserService {
 		
 		checkPrivileges(role);
 		
-		return dao.saveRole(role);
+		Role savedRole = dao.saveRole(role);
+		UserContext.privilegesChanged();
+		return savedRole;
 	}
 	
 	/**
@@ -531,6 +540,7 @@ public class UserServiceImpl extends BaseOpenmrsService implements UserService {
 	 */
 	public void purgeUser(User user) throws APIException {
 		dao.deleteUser(user);
+		UserContext.privilegesChanged();
 	}
 	
 	/**
@@ -542,6 +552,7 @@ public class UserServiceImpl extends BaseOpenmrsService implements UserService {
 		}
 		
 		dao.deleteUser(user);
+		UserContext.privilegesChanged();
 	}
 	
 	/**
@@ -22,6 +22,8 @@ import java.util.Map;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
 import org.openmrs.Location;
 import org.openmrs.Patient;
@@ -46,6 +48,13 @@ import org.openmrs.validator.ValidateUtil;
  */
 public class VisitServiceImpl extends BaseOpenmrsService implements VisitService {
 	
+	private static final Log log = LogFactory.getLog(VisitServiceImpl.class);
+	
+	/**
+	 * The number of visits stopped with each update by {@link #stopVisits(Date)}
+	 */
+	private static final int STOP_VISITS_BATCH_SIZE = 1000;
+	
 	private VisitDAO dao;
 	
 	/**
@@ -339,22 +348,47 @@ public class VisitServiceImpl extends BaseOpenmrsService implements VisitService
 			}
 			
 			if (visitTypesToStop.size() > 0) {
-				int counter = 0;
+				// the visits are stopped with updates that bypass the session, so persist pending changes first
+				Context.flushSession();
+				
+				int stopped = 0;
+				int batches = 0;
+				long start = System.currentTimeMillis();
 				Date stopDate = new Date();
-				Visit nextVisit = dao.getNextVisit(null, visitTypesToStop, maximumStartDate);
-				while (nextVisit != null) {
-					nextVisit.setStopDatetime(stopDate);
-					dao.saveVisit(nextVisit);
-					if (counter++ > 50) {
-						//ensure changes are persisted to DB before reclaiming memory
-						Context.flushSession();
-						Context.clearSession();
-						counter = 0;
-					}
+				List<Integer> visitIds = dao.getNextActiveVisitIds(null, visitTypesToStop, maximumStartDate,
+				    STOP_VISITS_BATCH_SIZE);
+				while (visitIds.size() > 0) {
+					long batchStart = System.currentTimeMillis();
+					Integer lastVisitId = visitIds.get(visitIds.size() - 1);
+					// through the proxy, so that every batch is committed on its own
+					int count = vs.stopVisits(visitIds.get(0), lastVisitId, visitTypesToStop, maximumStartDate, stopDate);
+					stopped += count;
+					batches++;
+					if (log.isDebugEnabled())
+						log.debug("Stopped " + count + " visits with ids from " + visitIds.get(0) + " to " + lastVisitId
+						        + " in " + (System.currentTimeMillis() - batchStart) + " ms");
 					
-					nextVisit = dao.getNextVisit(nextVisit, visitTypesToStop, maximumStartDate);
+					visitIds = dao.getNextActiveVisitIds(lastVisitId, visitTypesToStop, maximumStartDate,
+					    STOP_VISITS_BATCH_SIZE);
+				}
+				
+				if (stopped > 0) {
+					// the visits in the session don't know that they were stopped
+					Context.clearSession();
+					log.info("Stopped " + stopped + " visits in " + batches + " batches in "
+					        + (System.currentTimeMillis() - start) + " ms");
 				}
 			}
 		}
 	}
+	
+	/**
+	 * @see org.openmrs.api.VisitService#stopVisits(Integer, Integer, List, Date, Date)
+	 */
+	@Override
+	public Integer stopVisits(Integer fromVisitId, Integer toVisitId, List<VisitType> visitTypes, Date maximumStartDate,
+	        Date stopDate) {
+		return dao.stopVisits(fromVisitId, toVisitId, visitTypes, maximumStartDate, stopDate, Context
+		        .getAuthenticatedUser());
+	}
 }
@@ -0,0 +1,239 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+
+/**
+ * An append-only store for the data of migrated hl7 in archives. Instead of one file per archive,
+ * the messages are appended to segment files that are rolled over once they reach a maximum size.
+ * Every message is written as its own gzip member, so a message can be read back by seeking to its
+ * offset, and a whole segment can still be decompressed with standard gzip tools. <br/>
+ * <br/>
+ * The location of a message, as stored in {@link HL7InArchive#getHL7Data()} once it is migrated,
+ * looks like <code>hl7segment:segment-000001.gz/1024/315</code>.
+ * 
+ * @see HL7Service#migrateHl7InArchivesToFileSystem(Map)
+ * @since 1.9.9
+ */
+public class HL7ArchiveSegmentStore {
+	
+	private static final Log log = LogFactory.getLog(HL7ArchiveSegmentStore.class);
+	
+	/**
+	 * The prefix of the locations of messages in the segment files
+	 */
+	public static final String LOCATION_PREFIX = "hl7segment:";
+	
+	/**
+	 * The name of the directory in the hl7 archives directory that holds the segment files
+	 */
+	public static final String SEGMENT_DIRECTORY_NAME = "segments";
+	
+	/**
+	 * The default size in bytes after which a new segment file is started
+	 */
+	public static final long DEFAULT_MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+	
+	private static final String SEGMENT_PREFIX = "segment-";
+	
+	private static final String SEGMENT_SUFFIX = ".gz";
+	
+	private static final String ENCODING = "UTF-8";
+	
+	private final File directory;
+	
+	private long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+	
+	/**
+	 * @param directory the directory to keep the segment files in, it is created if it does not
+	 *            exist
+	 */
+	public HL7ArchiveSegmentStore(File directory) {
+		this.directory = directory;
+	}
+	
+	/**
+	 * @return the directory the segment files are kept in
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * @param maxSegmentSize the size in bytes after which a new segment file is started
+	 */
+	public void setMaxSegmentSize(long maxSegmentSize) {
+		this.maxSegmentSize = maxSegmentSize;
+	}
+	
+	/**
+	 * Appends the data of the given archives to the current segment file. The segment is synced to
+	 * disk once for the whole batch.
+	 * 
+	 * @param archives the archives to append, with their data loaded
+	 * @return the locations of the archives, in the order of the given archives
+	 * @throws APIException if the segment could not be written
+	 * @should return locations the archives can be read back from
+	 * @should start a new segment once the maximum size is reached
+	 */
+	public synchronized List<String> append(List<HL7InArchive> archives) throws APIException {
+		List<String> locations = new ArrayList<String>(archives.size());
+		if (archives.isEmpty())
+			return locations;
+		
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new APIException("could not create the hl7 archive segment directory " + directory);
+		
+		File segment = getCurrentSegment();
+		FileOutputStream segmentOut = null;
+		try {
+			segmentOut = new FileOutputStream(segment, true);
+			long offset = segment.length();
+			
+			for (HL7InArchive archive : archives) {
+				byte[] record = compress(archive.getHL7Data());
+				segmentOut.write(record);
+				
+				String location = LOCATION_PREFIX + segment.getName() + "/" + offset + "/" + record.length;
+				locations.add(location);
+				offset += record.length;
+			}
+			
+			segmentOut.getFD().sync();
+		}
+		catch (IOException e) {
+			throw new APIException("could not write hl7 archives to segment " + segment, e);
+		}
+		finally {
+			IOUtils.closeQuietly(segmentOut);
+		}
+		
+		return locations;
+	}
+	
+	/**
+	 * Reads the message at the given location
+	 * 
+	 * @param location a location returned by {@link #append(List)}
+	 * @return the hl7 message
+	 * @throws APIException if the location is malformed or cannot be read
+	 * @should fail if the location is malformed
+	 */
+	public String read(String location) throws APIException {
+		String[] parts = StringUtils.split(StringUtils.removeStart(location, LOCATION_PREFIX), '/');
+		if (!isSegmentLocation(location) || parts.length != 3)
+			throw new APIException("malformed HL7 archive segment location: " + location);
+		
+		File segment = new File(directory, parts[0]);
+		RandomAccessFile file = null;
+		try {
+			long offset = Long.parseLong(parts[1]);
+			byte[] record = new byte[Integer.parseInt(parts[2])];
+			file = new RandomAccessFile(segment, "r");
+			file.seek(offset);
+			file.readFully(record);
+			return decompress(record);
+		}
+		catch (NumberFormatException e) {
+			throw new APIException("malformed HL7 archive segment location: " + location, e);
+		}
+		catch (IOException e) {
+			throw new APIException("unable to read HL7 archive from segment: " + location, e);
+		}
+		finally {
+			if (file != null) {
+				try {
+					file.close();
+				}
+				catch (IOException e) {
+					log.debug("Unable to close segment " + segment, e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param location the value of {@link HL7InArchive#getHL7Data()} of a migrated archive
+	 * @return true if the location points into a segment file
+	 */
+	public static boolean isSegmentLocation(String location) {
+		return location != null && location.startsWith(LOCATION_PREFIX);
+	}
+	
+	/**
+	 * @return the newest segment file, or a new one if the newest has reached the maximum size
+	 */
+	private File getCurrentSegment() {
+		File[] segments = listSegments();
+		if (segments.length > 0 && segments[segments.length - 1].length() < maxSegmentSize)
+			return segments[segments.length - 1];
+		
+		return new File(directory, SEGMENT_PREFIX + new DecimalFormat("000000").format(segments.length + 1)
+		        + SEGMENT_SUFFIX);
+	}
+	
+	private File[] listSegments() {
+		File[] segments = directory.listFiles(new FileFilter() {
+			
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().startsWith(SEGMENT_PREFIX)
+				        && file.getName().endsWith(SEGMENT_SUFFIX);
+			}
+		});
+		if (segments == null)
+			return new File[0];
+		
+		// the names are zero padded, so they sort in the order they were created
+		Arrays.sort(segments);
+		return segments;
+	}
+	
+	private byte[] compress(String data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(data.getBytes(ENCODING));
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	private String decompress(byte[] record) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(record));
+		try {
+			return IOUtils.toString(in, ENCODING);
+		}
+		finally {
+			in.close();
+		}
+	}
+}
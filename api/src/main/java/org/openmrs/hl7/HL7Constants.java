@@ -170,6 +170,22 @@ public class HL7Constants {
 	 */
 	public static final int MIGRATION_MAX_BATCH_SIZE = 2000;
 	
+	/**
+	 * storage format where migrated hl7 archives are appended to compressed segment files
+	 * 
+	 * @see HL7ArchiveSegmentStore
+	 * @since 1.9.9
+	 */
+	public static final String HL7_ARCHIVE_STORAGE_SEGMENTS = "segments";
+	
+	/**
+	 * storage format where every migrated hl7 archive is written to a file of its own in a
+	 * year/month/day directory
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String HL7_ARCHIVE_STORAGE_FILES = "files";
+	
 	// List of datatypes that do not require complex definitions
 	public static final Hashtable<String, String> simpleDatatypes = new Hashtable<String, String>();
 	
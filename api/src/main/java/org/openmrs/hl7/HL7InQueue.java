@@ -14,6 +14,7 @@
 package org.openmrs.hl7;
 
 import java.io.Serializable;
+import java.util.Date;
 
 /**
  * Represents an hl7 message that has yet to be processed.
@@ -30,6 +31,10 @@ public class HL7InQueue extends HL7QueueItem implements Serializable {
 	
 	private Integer messageState;
 	
+	private String claimedBy;
+	
+	private Date dateClaimed;
+	
 	/**
 	 * Default constructor
 	 */
@@ -112,6 +117,40 @@ public class HL7InQueue extends HL7QueueItem implements Serializable {
 		this.messageState = messageState;
 	}
 	
+	/**
+	 * @return the token of the processor that claimed this item for processing, null if it has not
+	 *         been claimed
+	 * @since 1.9.9
+	 * @see HL7Service#claimHL7InQueues(String, int)
+	 */
+	public String getClaimedBy() {
+		return claimedBy;
+	}
+	
+	/**
+	 * @param claimedBy the token of the processor that claimed this item for processing
+	 * @since 1.9.9
+	 */
+	public void setClaimedBy(String claimedBy) {
+		this.claimedBy = claimedBy;
+	}
+	
+	/**
+	 * @return the date this item was claimed for processing
+	 * @since 1.9.9
+	 */
+	public Date getDateClaimed() {
+		return dateClaimed;
+	}
+	
+	/**
+	 * @param dateClaimed the date this item was claimed for processing
+	 * @since 1.9.9
+	 */
+	public void setDateClaimed(Date dateClaimed) {
+		this.dateClaimed = dateClaimed;
+	}
+	
 	/**
 	 * @see org.openmrs.OpenmrsObject#getId()
 	 * @since 1.5
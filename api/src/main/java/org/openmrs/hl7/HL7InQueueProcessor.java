@@ -13,9 +13,19 @@
  */
 package org.openmrs.hl7;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.util.OpenmrsConstants;
 import org.springframework.transaction.annotation.Transactional;
 
 import ca.uhn.hl7v2.HL7Exception;
@@ -24,7 +34,14 @@ import ca.uhn.hl7v2.HL7Exception;
  * Processes message in the HL7 inbound queue. Messages are moved into either the archive or error
  * table depending on success or failure of the processing. You may, however, set a global property
  * that causes the processor to ignore messages regarding unknown patients from a non-local HL7
- * source. (i.e. those messages neither go to the archive or the error table.)
+ * source. (i.e. those messages neither go to the archive or the error table.) <br/>
+ * <br/>
+ * The queue is processed in batches that are claimed with
+ * {@link HL7Service#claimHL7InQueues(String, int)}, so several servers sharing one database can
+ * process the queue at the same time without processing a message twice. Each batch is split by
+ * the patient identifier in the PID segment between the number of threads set in the
+ * {@link OpenmrsConstants#GP_HL7_PROCESSOR_WORKERS} global property, so that the messages of one
+ * patient are processed by one thread in the order they were received.
  * 
  * @version 1.0
  */
@@ -33,9 +50,10 @@ public class HL7InQueueProcessor /* implements Runnable */{
 	
 	private final Log log = LogFactory.getLog(this.getClass());
 	
-	private static Boolean isRunning = false; // allow only one running
+	private static final AtomicBoolean isRunning = new AtomicBoolean(false); // allow only one running
 	
-	private static Integer count = 0;
+	// shared by the worker threads
+	private static final AtomicInteger count = new AtomicInteger();
 	
 	// processor per JVM
 	
@@ -64,7 +82,7 @@ public class HL7InQueueProcessor /* implements Runnable */{
 			log.error("Unable to process hl7 in queue", e);
 		}
 		
-		if (++count > 25) {
+		if (count.incrementAndGet() > 25) {
 			// clean up memory after processing each queue entry (otherwise, the
 			// memory-intensive process may crash or eat up all our memory)
 			try {
@@ -98,22 +116,157 @@ public class HL7InQueueProcessor /* implements Runnable */{
 	 * Starts up a thread to process all existing HL7InQueue entries
 	 */
 	public void processHL7InQueue() throws HL7Exception {
-		synchronized (isRunning) {
-			if (isRunning) {
-				log.warn("HL7 processor aborting (another processor already running)");
-				return;
-			}
-			isRunning = true;
+		if (!isRunning.compareAndSet(false, true)) {
+			log.warn("HL7 processor aborting (another processor already running)");
+			return;
 		}
 		try {
 			log.debug("Start processing hl7 in queue");
-			while (processNextHL7InQueue()) {
-				// loop until queue is empty
+			HL7Service hl7Service = Context.getHL7Service();
+			int workers = Math.max(getIntGlobalProperty(OpenmrsConstants.GP_HL7_PROCESSOR_WORKERS, 1), 1);
+			int batchSize = Math.max(getIntGlobalProperty(OpenmrsConstants.GP_HL7_PROCESSOR_BATCH_SIZE, 50), 1);
+			
+			// put back messages that were claimed by a processor that never finished them
+			int claimTimeout = getIntGlobalProperty(OpenmrsConstants.GP_HL7_PROCESSOR_CLAIM_TIMEOUT, 60);
+			Integer released = hl7Service.releaseHL7InQueueClaims(new Date(System.currentTimeMillis() - claimTimeout
+			        * 60000L));
+			if (released > 0)
+				log.warn("Released " + released + " hl7 in queue entries that were claimed more than " + claimTimeout
+				        + " minutes ago");
+			
+			String claimToken = UUID.randomUUID().toString();
+			List<HL7InQueue> batch = hl7Service.claimHL7InQueues(claimToken, batchSize);
+			while (!batch.isEmpty()) {
+				processBatch(batch, workers);
+				Context.clearSession();
+				batch = hl7Service.claimHL7InQueues(claimToken, batchSize);
 			}
 			log.debug("Done processing hl7 in queue");
 		}
 		finally {
-			isRunning = false;
+			isRunning.set(false);
+		}
+	}
+	
+	/**
+	 * Processes a claimed batch of queue entries. If there is more than one worker and this is a
+	 * daemon thread, each partition of the batch is processed in its own daemon thread with its own
+	 * session, otherwise the partitions are processed one after the other in this thread.
+	 * 
+	 * @param batch the claimed queue entries
+	 * @param workers the number of threads to use
+	 */
+	private void processBatch(List<HL7InQueue> batch, int workers) {
+		if (workers == 1 || batch.size() == 1 || !Daemon.isDaemonThread()) {
+			for (HL7InQueue hl7InQueue : batch)
+				processHL7InQueue(hl7InQueue);
+			return;
+		}
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		for (List<HL7InQueue> partition : partitionByPatient(batch, workers)) {
+			if (partition.isEmpty())
+				continue;
+			
+			// the entries are loaded again in the session of the worker thread
+			final List<Integer> queueIds = new ArrayList<Integer>();
+			for (HL7InQueue hl7InQueue : partition)
+				queueIds.add(hl7InQueue.getHL7InQueueId());
+			
+			threads.add(Daemon.runInNewDaemonThread(new Runnable() {
+				
+				public void run() {
+					for (Integer queueId : queueIds) {
+						HL7InQueue hl7InQueue = Context.getHL7Service().getHL7InQueue(queueId);
+						if (hl7InQueue != null)
+							processHL7InQueue(hl7InQueue);
+					}
+				}
+			}));
+		}
+		
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				log.warn("Interrupted while waiting for the hl7 processor threads", e);
+			}
+		}
+	}
+	
+	/**
+	 * Splits the given queue entries into the given number of partitions, keeping all entries with
+	 * the same patient identifier in the same partition and in their original order
+	 * 
+	 * @param batch the queue entries in queue order
+	 * @param partitions the number of partitions
+	 * @return the partitions, some of which may be empty
+	 * @should put entries for the same patient in the same partition
+	 * @should keep the order of the entries within a partition
+	 */
+	static List<List<HL7InQueue>> partitionByPatient(List<HL7InQueue> batch, int partitions) {
+		List<List<HL7InQueue>> result = new ArrayList<List<HL7InQueue>>(partitions);
+		for (int i = 0; i < partitions; i++)
+			result.add(new ArrayList<HL7InQueue>());
+		
+		for (HL7InQueue hl7InQueue : batch) {
+			String patientIdentifier = getPatientIdentifier(hl7InQueue.getHL7Data());
+			int hash = patientIdentifier != null ? patientIdentifier.hashCode() : hl7InQueue.getHL7InQueueId();
+			result.get((hash & Integer.MAX_VALUE) % partitions).add(hl7InQueue);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Gets the first patient identifier out of the PID segment of the given message without
+	 * parsing the whole message
+	 * 
+	 * @param hl7Data the hl7 message
+	 * @return the id part of the first PID-3 identifier, or null if the message has none
+	 * @should return the first identifier of the PID segment
+	 * @should return null if there is no PID segment
+	 */
+	static String getPatientIdentifier(String hl7Data) {
+		if (hl7Data == null || hl7Data.length() < 8 || !hl7Data.startsWith("MSH"))
+			return null;
+		
+		// MSH-1 is the field separator and MSH-2 starts with the component separator
+		char fieldSeparator = hl7Data.charAt(3);
+		char componentSeparator = hl7Data.charAt(4);
+		char repetitionSeparator = hl7Data.charAt(5);
+		
+		for (String segment : hl7Data.split("[\\r\\n]+")) {
+			if (segment.startsWith("PID" + fieldSeparator)) {
+				String[] fields = StringUtils.splitPreserveAllTokens(segment, fieldSeparator);
+				if (fields.length < 4)
+					return null;
+				
+				String identifier = StringUtils.substringBefore(fields[3], String.valueOf(repetitionSeparator));
+				identifier = StringUtils.substringBefore(identifier, String.valueOf(componentSeparator));
+				return StringUtils.isBlank(identifier) ? null : identifier;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return the value of the given global property as an int, or the default value if it is not
+	 *         set or not a number
+	 */
+	private int getIntGlobalProperty(String propertyName, int defaultValue) {
+		String value = Context.getAdministrationService().getGlobalProperty(propertyName);
+		if (StringUtils.isBlank(value))
+			return defaultValue;
+		
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e) {
+			log.warn("Global property " + propertyName + " is not a number: " + value);
+			return defaultValue;
 		}
 	}
 	
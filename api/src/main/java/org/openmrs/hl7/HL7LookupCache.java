@@ -0,0 +1,264 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.Location;
+import org.openmrs.Provider;
+import org.openmrs.User;
+import org.openmrs.hl7.handler.ORUR01Handler;
+
+/**
+ * A bounded cache of the ids that the hl7 handlers resolved the codes in a message to, shared by
+ * all messages that are processed. For example the concept mapped to the code of an OBX segment or
+ * the location given in a PV1 segment is only looked up once, after that the handler can load the
+ * object by its id, which is answered from the hibernate caches. <br/>
+ * <br/>
+ * Only ids are cached, never the objects themselves, since those belong to the session of the
+ * message that loaded them. <br/>
+ * <br/>
+ * This class is registered as a hibernate interceptor so that a region is cleared whenever one of
+ * the objects it is resolved from is saved or deleted, and once more after that transaction has
+ * completed so that lookups made by other threads in the meantime are not kept.
+ * 
+ * @see ORUR01Handler
+ * @since 1.9.9
+ */
+public class HL7LookupCache extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final Log log = LogFactory.getLog(HL7LookupCache.class);
+	
+	/**
+	 * The default maximum number of codes to cache per region
+	 */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	
+	/**
+	 * The kinds of codes that are cached
+	 */
+	public enum Region {
+		CONCEPT, LOCATION, PROVIDER, USER
+	}
+	
+	private final Map<Region, Map<String, Integer>> regions = new LinkedHashMap<Region, Map<String, Integer>>();
+	
+	private final ThreadLocal<boolean[]> changedRegions = new ThreadLocal<boolean[]>();
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	private int maxSize = DEFAULT_MAX_SIZE;
+	
+	public HL7LookupCache() {
+		for (Region region : Region.values())
+			regions.put(region, new LinkedHashMap<String, Integer>(16, 0.75f, true));
+	}
+	
+	/**
+	 * Gets the id that the given code was resolved to
+	 * 
+	 * @param region the kind of code
+	 * @param key the code, including the coding system or assigning authority
+	 * @return the cached id or null if the code has not been cached
+	 * @should return null for a code that is not cached
+	 * @should return the id the code was cached with
+	 */
+	public Integer get(Region region, String key) {
+		Map<String, Integer> ids = regions.get(region);
+		Integer id;
+		synchronized (ids) {
+			id = ids.get(key);
+		}
+		
+		if (id != null)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		
+		return id;
+	}
+	
+	/**
+	 * Caches the id that the given code was resolved to. When the region is full, the least
+	 * recently used code is removed.
+	 * 
+	 * @param region the kind of code
+	 * @param key the code, including the coding system or assigning authority
+	 * @param id the id of the object the code was resolved to, nothing is cached if this is null
+	 * @should not cache more than the maximum number of codes per region
+	 */
+	public void put(Region region, String key, Integer id) {
+		if (id == null)
+			return;
+		
+		Map<String, Integer> ids = regions.get(region);
+		synchronized (ids) {
+			ids.put(key, id);
+			if (ids.size() > maxSize)
+				ids.remove(ids.keySet().iterator().next());
+		}
+	}
+	
+	/**
+	 * Removes all codes of the given region from the cache
+	 * 
+	 * @param region the region to clear
+	 */
+	public void clear(Region region) {
+		Map<String, Integer> ids = regions.get(region);
+		synchronized (ids) {
+			ids.clear();
+		}
+	}
+	
+	/**
+	 * Removes everything from the cache
+	 */
+	public void clear() {
+		for (Region region : Region.values())
+			clear(region);
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onSave(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		entityChanged(entity);
+		return false;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onFlushDirty(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 * @should clear the concept region when a concept is changed
+	 */
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		entityChanged(entity);
+		return false;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onDelete(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		entityChanged(entity);
+	}
+	
+	/**
+	 * Clears the regions that were changed in this transaction again, in case another thread
+	 * cached the state from before the transaction was committed
+	 * 
+	 * @see org.hibernate.EmptyInterceptor#afterTransactionCompletion(org.hibernate.Transaction)
+	 */
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		boolean[] changed = changedRegions.get();
+		if (changed == null)
+			return;
+		
+		changedRegions.remove();
+		for (Region region : Region.values()) {
+			if (changed[region.ordinal()])
+				clear(region);
+		}
+	}
+	
+	private void entityChanged(Object entity) {
+		if (entity instanceof Concept || entity instanceof ConceptMap || entity instanceof ConceptReferenceTerm
+		        || entity instanceof ConceptSource) {
+			regionChanged(Region.CONCEPT);
+		} else if (entity instanceof Location) {
+			regionChanged(Region.LOCATION);
+		} else if (entity instanceof Provider) {
+			regionChanged(Region.PROVIDER);
+		} else if (entity instanceof User) {
+			regionChanged(Region.USER);
+		}
+	}
+	
+	private void regionChanged(Region region) {
+		clear(region);
+		
+		boolean[] changed = changedRegions.get();
+		if (changed == null) {
+			changed = new boolean[Region.values().length];
+			changedRegions.set(changed);
+		}
+		changed[region.ordinal()] = true;
+		
+		if (log.isTraceEnabled())
+			log.trace("Cleared the " + region + " region of the hl7 lookup cache");
+	}
+	
+	/**
+	 * @return the number of lookups that were answered by the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of lookups that had to go to the database
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * @param region the region
+	 * @return the number of codes currently cached in the given region
+	 */
+	public int getSize(Region region) {
+		Map<String, Integer> ids = regions.get(region);
+		synchronized (ids) {
+			return ids.size();
+		}
+	}
+	
+	/**
+	 * @return the maximum number of codes to cache per region
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * @param maxSize the maximum number of codes to cache per region
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+}
@@ -14,6 +14,7 @@
 package org.openmrs.hl7;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +26,7 @@ import org.openmrs.api.APIException;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.hl7.db.HL7DAO;
 import org.openmrs.util.PrivilegeConstants;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import ca.uhn.hl7v2.HL7Exception;
@@ -292,6 +294,38 @@ public interface HL7Service extends OpenmrsService {
 	@Authorized(HL7Constants.PRIV_VIEW_HL7_IN_QUEUE)
 	public HL7InQueue getNextHL7InQueue() throws APIException;
 	
+	/**
+	 * Claims the next pending queue items for processing by setting them to
+	 * {@link HL7Constants#HL7_STATUS_PROCESSING} and stamping them with the given claim token. An
+	 * item is only claimed if it is still pending when it is updated, so processors in other
+	 * threads or on other servers sharing the database never claim the same item.
+	 * 
+	 * @param claimToken a token unique to the processor claiming the items
+	 * @param batchSize the maximum number of items to claim
+	 * @return the items claimed by this call in queue order, an empty list if there are no pending
+	 *         items
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should claim pending queue items in queue order
+	 * @should not claim items claimed by another processor
+	 * @should not return items claimed by an earlier call with the same token
+	 */
+	@Authorized(HL7Constants.PRIV_UPDATE_HL7_IN_QUEUE)
+	public List<HL7InQueue> claimHL7InQueues(String claimToken, int batchSize) throws APIException;
+	
+	/**
+	 * Sets items that were claimed before the given date but never finished processing back to
+	 * pending, for example because the server processing them was stopped
+	 * 
+	 * @param claimedBefore items claimed before this date are released
+	 * @return the number of released items
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should release items claimed before the given date
+	 */
+	@Authorized(HL7Constants.PRIV_UPDATE_HL7_IN_QUEUE)
+	public Integer releaseHL7InQueueClaims(Date claimedBefore) throws APIException;
+	
 	/**
 	 * Completely delete the hl7 in queue item from the database.
 	 * 
@@ -569,13 +603,15 @@ public interface HL7Service extends OpenmrsService {
 	 * If an error occurs while processing, a new {@link HL7InError} is created and saved. <br/>
 	 * If no error occurs, a new {@link HL7InArchive} is created and saved.<br/>
 	 * The given {@link HL7InQueue} is removed from the hl7 in queue table regardless of success or
-	 * failure of the processing.
+	 * failure of the processing. An item that is already processing is only processed if it was
+	 * claimed with {@link #claimHL7InQueues(String, int)}.
 	 * 
 	 * @param inQueue the {@link HL7InQueue} to parse and save all encounters/obs to the db
 	 * @return the processed {@link HL7InQueue}
 	 * @should create HL7InArchive after successful parsing
 	 * @should create HL7InError after failed parsing
 	 * @should fail if given inQueue is already marked as processing
+	 * @should process an inQueue that was claimed for processing
 	 * @should parse oru r01 message using overridden parser provided by a module
 	 */
 	public HL7InQueue processHL7InQueue(HL7InQueue inQueue) throws HL7Exception;
@@ -617,6 +653,42 @@ public interface HL7Service extends OpenmrsService {
 	        HL7Constants.PRIV_ADD_HL7_IN_QUEUE })
 	public void migrateHl7InArchivesToFileSystem(Map<String, Integer> progressStatusMap) throws APIException;
 	
+	/**
+	 * Moves the data of archives that have already been migrated to the file system into the given
+	 * storage format, i.e. from the files of their own into the segment files or back. The archives
+	 * are moved in batches with {@link #convertNextHL7InArchives(String)}, each batch in a
+	 * transaction of its own unless this method is called within a transaction.
+	 * 
+	 * @param storageFormat {@link HL7Constants#HL7_ARCHIVE_STORAGE_SEGMENTS} or
+	 *            {@link HL7Constants#HL7_ARCHIVE_STORAGE_FILES}
+	 * @param progressStatusMap the map holding the number of archives moved, may be null
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should move archives from files into segments
+	 * @should move archives from segments into files
+	 */
+	@Authorized(requireAll = true, value = { HL7Constants.PRIV_VIEW_HL7_IN_ARCHIVE, HL7Constants.PRIV_PURGE_HL7_IN_ARCHIVE,
+	        HL7Constants.PRIV_ADD_HL7_IN_QUEUE })
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public void convertHL7InArchiveStorage(String storageFormat, Map<String, Integer> progressStatusMap)
+	        throws APIException;
+	
+	/**
+	 * Moves the data of the next {@link HL7Constants#MIGRATION_MAX_BATCH_SIZE} migrated archives
+	 * that are not stored in the given storage format yet into that format, see
+	 * {@link #convertHL7InArchiveStorage(String, Map)}
+	 * 
+	 * @param storageFormat {@link HL7Constants#HL7_ARCHIVE_STORAGE_SEGMENTS} or
+	 *            {@link HL7Constants#HL7_ARCHIVE_STORAGE_FILES}
+	 * @return the number of archives moved, 0 if there are none left to move
+	 * @throws APIException
+	 * @since 1.9.9
+	 * @should return the number of archives moved
+	 */
+	@Authorized(requireAll = true, value = { HL7Constants.PRIV_VIEW_HL7_IN_ARCHIVE, HL7Constants.PRIV_PURGE_HL7_IN_ARCHIVE,
+	        HL7Constants.PRIV_ADD_HL7_IN_QUEUE })
+	public int convertNextHL7InArchives(String storageFormat) throws APIException;
+	
 	/**
 	 * finds a UUID from an array of identifiers
 	 * 
@@ -13,6 +13,7 @@
  */
 package org.openmrs.hl7.db;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.api.db.DAOException;
@@ -84,6 +85,16 @@ public interface HL7DAO {
 	 */
 	public HL7InQueue getNextHL7InQueue() throws DAOException;
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#claimHL7InQueues(String, int)
+	 */
+	public List<HL7InQueue> claimHL7InQueues(String claimToken, int batchSize) throws DAOException;
+	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#releaseHL7InQueueClaims(Date)
+	 */
+	public Integer releaseHL7InQueueClaims(Date claimedBefore) throws DAOException;
+	
 	/**
 	 * @see org.openmrs.hl7.HL7Service#deleteHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 */
@@ -163,6 +174,16 @@ public interface HL7DAO {
 	 */
 	public List<HL7InArchive> getHL7InArchivesToMigrate();
 	
+	/**
+	 * Gets migrated archives that are either stored in segment files or in a file of their own
+	 * 
+	 * @param inSegments true to get archives stored in segment files, false for the others
+	 * @param maxResults the maximum number of archives to get
+	 * @return the archives ordered by id
+	 * @since 1.9.9
+	 */
+	public List<HL7InArchive> getMigratedHL7InArchives(boolean inSegments, int maxResults);
+	
 	/* HL7InError */
 
 	/**
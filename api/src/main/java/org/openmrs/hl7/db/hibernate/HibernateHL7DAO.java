@@ -13,7 +13,9 @@
  */
 package org.openmrs.hl7.db.hibernate;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -22,12 +24,14 @@ import org.hibernate.Criteria;
 import org.hibernate.Hibernate;
 import org.hibernate.Query;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
+import org.openmrs.hl7.HL7ArchiveSegmentStore;
 import org.openmrs.hl7.HL7Constants;
 import org.openmrs.hl7.HL7InArchive;
 import org.openmrs.hl7.HL7InError;
@@ -200,6 +204,47 @@ public class HibernateHL7DAO implements HL7DAO {
 		return (HL7InQueue) query.uniqueResult();
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.db.HL7DAO#claimHL7InQueues(java.lang.String, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<HL7InQueue> claimHL7InQueues(String claimToken, int batchSize) throws DAOException {
+		List<Integer> pendingIds = sessionFactory.getCurrentSession().createQuery(
+		    "select hiq.HL7InQueueId from HL7InQueue hiq where hiq.messageState = :pending order by hiq.HL7InQueueId")
+		        .setParameter("pending", HL7Constants.HL7_STATUS_PENDING, Hibernate.INTEGER).setMaxResults(batchSize)
+		        .list();
+		if (pendingIds.isEmpty())
+			return new ArrayList<HL7InQueue>();
+		
+		// only rows that are still pending are updated, so rows claimed by a concurrent processor
+		// between the select and the update are left alone
+		sessionFactory.getCurrentSession().createQuery(
+		    "update HL7InQueue set messageState = :processing, claimedBy = :claimToken, dateClaimed = :now "
+		            + "where messageState = :pending and HL7InQueueId in (:ids)").setParameter("processing",
+		    HL7Constants.HL7_STATUS_PROCESSING, Hibernate.INTEGER).setString("claimToken", claimToken).setTimestamp(
+		    "now", new Date()).setParameter("pending", HL7Constants.HL7_STATUS_PENDING, Hibernate.INTEGER)
+		        .setParameterList("ids", pendingIds).executeUpdate();
+		
+		// items claimed by an earlier call with the same token are not returned again
+		return sessionFactory.getCurrentSession().createQuery(
+		    "from HL7InQueue hiq where hiq.claimedBy = :claimToken and hiq.messageState = :processing "
+		            + "and hiq.HL7InQueueId in (:ids) order by hiq.HL7InQueueId").setString("claimToken", claimToken)
+		        .setParameter("processing", HL7Constants.HL7_STATUS_PROCESSING, Hibernate.INTEGER).setParameterList("ids",
+		            pendingIds).list();
+	}
+	
+	/**
+	 * @see org.openmrs.hl7.db.HL7DAO#releaseHL7InQueueClaims(java.util.Date)
+	 */
+	public Integer releaseHL7InQueueClaims(Date claimedBefore) throws DAOException {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "update HL7InQueue set messageState = :pending, claimedBy = null, dateClaimed = null "
+		            + "where messageState = :processing and claimedBy is not null and dateClaimed < :claimedBefore")
+		        .setParameter("pending", HL7Constants.HL7_STATUS_PENDING, Hibernate.INTEGER).setParameter("processing",
+		            HL7Constants.HL7_STATUS_PROCESSING, Hibernate.INTEGER).setTimestamp("claimedBefore", claimedBefore)
+		        .executeUpdate();
+	}
+	
 	/**
 	 * @see org.openmrs.hl7.db.HL7DAO#deleteHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 */
@@ -347,4 +392,17 @@ public class HibernateHL7DAO implements HL7DAO {
 		return crit.list();
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.db.HL7DAO#getMigratedHL7InArchives(boolean, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<HL7InArchive> getMigratedHL7InArchives(boolean inSegments, int maxResults) {
+		Criterion inSegment = Restrictions.like("HL7Data", HL7ArchiveSegmentStore.LOCATION_PREFIX, MatchMode.START);
+		return sessionFactory.getCurrentSession().createCriteria(HL7InArchive.class).add(
+		    Restrictions.eq("messageState", HL7Constants.HL7_STATUS_MIGRATED)).add(
+		    inSegments ? inSegment : Restrictions.not(inSegment)).addOrder(Order.asc("HL7InArchiveId")).setMaxResults(
+		    maxResults).list();
+	}
+	
 }
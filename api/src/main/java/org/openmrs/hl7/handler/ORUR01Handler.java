@@ -82,6 +82,8 @@ import org.openmrs.User;
 import org.openmrs.api.context.Context;
 import org.openmrs.hl7.HL7Constants;
 import org.openmrs.hl7.HL7InQueueProcessor;
+import org.openmrs.hl7.HL7LookupCache;
+import org.openmrs.hl7.HL7LookupCache.Region;
 import org.openmrs.hl7.HL7Service;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.util.OpenmrsConstants;
@@ -102,6 +104,17 @@ public class ORUR01Handler implements Application {
 	
 	private static EncounterRole unknownRole = null;
 	
+	private HL7LookupCache lookupCache;
+	
+	/**
+	 * @param lookupCache the cache of resolved concept, location, provider and user codes shared
+	 *            by all messages, no codes are cached if this is not set
+	 * @since 1.9.9
+	 */
+	public void setLookupCache(HL7LookupCache lookupCache) {
+		this.lookupCache = lookupCache;
+	}
+	
 	/**
 	 * Always returns true, assuming that the router calling this handler will only call this
 	 * handler with ORU_R01 messages.
@@ -183,6 +196,8 @@ public class ORUR01Handler implements Application {
 		// sending application.
 		// String sendingApplication = getSendingApplication(oru);
 		
+		long startTime = System.currentTimeMillis();
+		
 		// validate message
 		validate(oru);
 		
@@ -360,6 +375,7 @@ public class ORUR01Handler implements Application {
 			log.debug("Current thread: " + Thread.currentThread());
 			log.debug("Creating the encounter object");
 		}
+		long resolvedTime = System.currentTimeMillis();
 		Context.getEncounterService().saveEncounter(encounter);
 		
 		// Notify HL7 service that we have created a new encounter, allowing
@@ -382,6 +398,10 @@ public class ORUR01Handler implements Application {
 			Context.getConceptService().saveConceptProposal(proposal);
 		}
 		
+		if (log.isDebugEnabled())
+			log.debug("Processed message " + messageControlId + " (resolve: " + (resolvedTime - startTime)
+			        + "ms, persist: " + (System.currentTimeMillis() - resolvedTime) + "ms)");
+		
 		return oru;
 		
 	}
@@ -923,6 +943,7 @@ public class ORUR01Handler implements Application {
 	 * @should return null if codingSystem not found
 	 * @should return a Concept if given local coding system
 	 * @should return a mapped Concept if given a valid mapping
+	 * @should return a mapped Concept that was looked up before from the lookup cache
 	 */
 	protected Concept getConcept(String hl7ConceptId, String codingSystem, String uid) throws HL7Exception {
 		if (codingSystem == null || HL7Constants.HL7_LOCAL_CONCEPT.equals(codingSystem)) {
@@ -936,7 +957,15 @@ public class ORUR01Handler implements Application {
 			}
 		} else {
 			// the concept is not local, look it up in our mapping
-			return Context.getConceptService().getConceptByMapping(hl7ConceptId, codingSystem);
+			String key = codingSystem + "^" + hl7ConceptId;
+			Integer conceptId = getCachedId(Region.CONCEPT, key);
+			if (conceptId != null)
+				return Context.getConceptService().getConcept(conceptId);
+			
+			Concept concept = Context.getConceptService().getConceptByMapping(hl7ConceptId, codingSystem);
+			if (concept != null)
+				putCachedId(Region.CONCEPT, key, concept.getConceptId());
+			return concept;
 		}
 	}
 	
@@ -1001,6 +1030,14 @@ public class ORUR01Handler implements Application {
 		String id = hl7Provider.getIDNumber().getValue();
 		String assignAuth = hl7Provider.getAssigningAuthority().getUniversalID().getValue();
 		String type = hl7Provider.getAssigningAuthority().getUniversalIDType().getValue();
+		String key = type + "^" + assignAuth + "^" + id;
+		Integer providerId = getCachedId(Region.PROVIDER, key);
+		if (providerId != null) {
+			provider = Context.getProviderService().getProvider(providerId);
+			if (provider != null)
+				return provider;
+		}
+		
 		String errorMessage = "";
 		if (StringUtils.hasText(id)) {
 			String specificErrorMsg = "";
@@ -1042,6 +1079,7 @@ public class ORUR01Handler implements Application {
 			throw new HL7Exception(errorMessage);
 		}
 		
+		putCachedId(Region.PROVIDER, key, provider.getProviderId());
 		return provider;
 	}
 	
@@ -1070,9 +1108,14 @@ public class ORUR01Handler implements Application {
 	
 	private Location getLocation(PV1 pv1) throws HL7Exception {
 		PL hl7Location = pv1.getAssignedPatientLocation();
-		Integer locationId = Context.getHL7Service().resolveLocationId(hl7Location);
-		if (locationId == null)
-			throw new HL7Exception("Could not resolve location");
+		String key = hl7Location.getPointOfCare().getValue() + "^" + hl7Location.getFacility().getUniversalID().getValue();
+		Integer locationId = getCachedId(Region.LOCATION, key);
+		if (locationId == null) {
+			locationId = Context.getHL7Service().resolveLocationId(hl7Location);
+			if (locationId == null)
+				throw new HL7Exception("Could not resolve location");
+			putCachedId(Region.LOCATION, key, locationId);
+		}
 		
 		return Context.getLocationService().getLocation(locationId);
 	}
@@ -1111,14 +1154,29 @@ public class ORUR01Handler implements Application {
 	
 	private User getEnterer(ORC orc) throws HL7Exception {
 		XCN hl7Enterer = orc.getEnteredBy(0);
-		Integer entererId = Context.getHL7Service().resolveUserId(hl7Enterer);
-		if (entererId == null)
-			throw new HL7Exception("Could not resolve enterer");
+		String key = hl7Enterer.getIDNumber().getValue() + "^" + hl7Enterer.getFamilyName().getSurname().getValue() + "^"
+		        + hl7Enterer.getGivenName().getValue();
+		Integer entererId = getCachedId(Region.USER, key);
+		if (entererId == null) {
+			entererId = Context.getHL7Service().resolveUserId(hl7Enterer);
+			if (entererId == null)
+				throw new HL7Exception("Could not resolve enterer");
+			putCachedId(Region.USER, key, entererId);
+		}
 		User enterer = new User();
 		enterer.setUserId(entererId);
 		return enterer;
 	}
 	
+	private Integer getCachedId(Region region, String key) {
+		return lookupCache == null ? null : lookupCache.get(region, key);
+	}
+	
+	private void putCachedId(Region region, String key, Integer id) {
+		if (lookupCache != null)
+			lookupCache.put(region, key, id);
+	}
+	
 	//TODO: Debug (and use) methods in HL7Util instead
 	private Date tsToDate(TS ts) throws HL7Exception {
 		// need to handle timezone
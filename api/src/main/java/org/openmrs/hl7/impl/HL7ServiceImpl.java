@@ -26,9 +26,11 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -44,8 +46,8 @@ import org.openmrs.User;
 import org.openmrs.api.APIException;
 import org.openmrs.api.PatientIdentifierException;
 import org.openmrs.api.context.Context;
-import org.openmrs.api.db.DAOException;
 import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.hl7.HL7ArchiveSegmentStore;
 import org.openmrs.hl7.HL7Constants;
 import org.openmrs.hl7.HL7InArchive;
 import org.openmrs.hl7.HL7InError;
@@ -61,6 +63,9 @@ import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.validator.PatientIdentifierValidator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.app.Application;
@@ -96,6 +101,8 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	
 	private MessageTypeRouter router;
 	
+	private HL7ArchiveSegmentStore segmentStore;
+	
 	/**
 	 * Private constructor to only support on singleton instance.
 	 * 
@@ -346,6 +353,20 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		return dao.getNextHL7InQueue();
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#claimHL7InQueues(java.lang.String, int)
+	 */
+	public List<HL7InQueue> claimHL7InQueues(String claimToken, int batchSize) throws APIException {
+		return dao.claimHL7InQueues(claimToken, batchSize);
+	}
+	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#releaseHL7InQueueClaims(java.util.Date)
+	 */
+	public Integer releaseHL7InQueueClaims(Date claimedBefore) throws APIException {
+		return dao.releaseHL7InQueueClaims(claimedBefore);
+	}
+	
 	/**
 	 * @see org.openmrs.hl7.HL7Service#deleteHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 * @deprecated
@@ -438,9 +459,16 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	
 	/**
 	 * get a list of archives to be migrated to the filesystem
+	 * 
+	 * @param failedIds the ids of the archives that could not be migrated, they are left out
 	 */
-	private List<HL7InArchive> getHL7InArchivesToMigrate() {
-		return dao.getHL7InArchivesToMigrate();
+	private List<HL7InArchive> getHL7InArchivesToMigrate(Set<Integer> failedIds) {
+		List<HL7InArchive> archives = dao.getHL7InArchivesToMigrate();
+		for (Iterator<HL7InArchive> i = archives.iterator(); i.hasNext();) {
+			if (failedIds.contains(i.next().getHL7InArchiveId()))
+				i.remove();
+		}
+		return archives;
 	}
 	
 	/**
@@ -786,8 +814,10 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		if (hl7InQueue == null)
 			throw new HL7Exception("hl7InQueue argument cannot be null");
 		
-		// mark this queue object as processing so that it isn't processed twice
-		if (OpenmrsUtil.nullSafeEquals(HL7Constants.HL7_STATUS_PROCESSING, hl7InQueue.getMessageState()))
+		// mark this queue object as processing so that it isn't processed twice, unless it was
+		// claimed by a queue processor, which already marks the items it claims as processing
+		if (OpenmrsUtil.nullSafeEquals(HL7Constants.HL7_STATUS_PROCESSING, hl7InQueue.getMessageState())
+		        && hl7InQueue.getClaimedBy() == null)
 			throw new HL7Exception("The hl7InQueue message with id: " + hl7InQueue.getHL7InQueueId()
 			        + " is already processing. " + ",key=" + hl7InQueue.getHL7SourceKey() + ")");
 		else
@@ -803,7 +833,11 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 			// Parse the inbound HL7 message using the parser
 			// NOT making a direct call here so that AOP can happen around this
 			// method
+			long startTime = System.currentTimeMillis();
 			Message parsedMessage = Context.getHL7Service().parseHL7String(hl7Message);
+			if (log.isDebugEnabled())
+				log.debug("Parsed HL7 inbound queue entry " + hl7InQueue.getHL7InQueueId() + " in "
+				        + (System.currentTimeMillis() - startTime) + "ms");
 			
 			// Send the parsed message to our receiver routine for processing
 			// into db
@@ -833,7 +867,13 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 			            OpenmrsConstants.GLOBAL_PROPERTY_IGNORE_MISSING_NONLOCAL_PATIENTS, "false").equals("true")) {
 				skipError = true;
 			}
-			if (!skipError)
+			if (skipError) {
+				// the message stays in the queue as processing, without a claim so that it is not
+				// released and processed again after the claim timeout
+				hl7InQueue.setClaimedBy(null);
+				hl7InQueue.setDateClaimed(null);
+				Context.getHL7Service().saveHL7InQueue(hl7InQueue);
+			} else
 				setFatalError(hl7InQueue, "Trouble parsing HL7 message (" + hl7InQueue.getHL7SourceKey() + ")", e);
 			
 		}
@@ -1105,6 +1145,12 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		if (!OpenmrsUtil.nullSafeEquals(archive.getMessageState(), HL7Constants.HL7_STATUS_MIGRATED) || archive.isLoaded())
 			return;
 		
+		if (HL7ArchiveSegmentStore.isSegmentLocation(archive.getHL7Data())) {
+			archive.setHL7Data(getSegmentStore().read(archive.getHL7Data()));
+			archive.setLoaded(true);
+			return;
+		}
+		
 		try {
 			archive.setHL7Data(OpenmrsUtil.getFileAsString(new File(new URI(archive.getHL7Data()))));
 			archive.setLoaded(true);
@@ -1124,13 +1170,45 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		int numberTransferred = 0;
 		int numberOfFailedTransfers = 0;
 		
+		// failed archives stay in the processed state, so they are remembered to not fetch them again
+		Set<Integer> failedIds = new HashSet<Integer>();
+		
 		// HL7Constants.HL7_STATUS_ARCHIVED indicates the HL7 has been archived to the filesystem
-		List<HL7InArchive> hl7InArchives = getHL7InArchivesToMigrate();
+		List<HL7InArchive> hl7InArchives = getHL7InArchivesToMigrate(failedIds);
+		boolean inSegments = isSegmentStorage();
 		
 		// while we still we have any archives to be processed, process them
 		while (Hl7InArchivesMigrateThread.isActive() && Hl7InArchivesMigrateThread.getTransferStatus() == Status.RUNNING
 		        && hl7InArchives != null && hl7InArchives.size() > 0) {
 			
+			if (inSegments) {
+				// the whole batch is appended to the current segment file at once, if that fails the
+				// archives are appended one by one so that only the ones that fail are skipped
+				try {
+					migrateHL7InArchivesToSegments(hl7InArchives);
+					numberTransferred += hl7InArchives.size();
+				}
+				catch (APIException e) {
+					log.warn("Could not migrate the batch of hl7 archives at once, migrating them one by one", e);
+					for (HL7InArchive archive : hl7InArchives) {
+						try {
+							migrateHL7InArchivesToSegments(Collections.singletonList(archive));
+							numberTransferred++;
+						}
+						catch (APIException ex) {
+							log.error("Could not migrate the hl7 archive with id " + archive.getHL7InArchiveId(), ex);
+							failedIds.add(archive.getHL7InArchiveId());
+							numberOfFailedTransfers++;
+						}
+					}
+				}
+				progressStatusMap.put(HL7Constants.NUMBER_TRANSFERRED_KEY, numberTransferred);
+				progressStatusMap.put(HL7Constants.NUMBER_OF_FAILED_TRANSFERS_KEY, numberOfFailedTransfers);
+				
+				hl7InArchives = getHL7InArchivesToMigrate(failedIds);
+				continue;
+			}
+			
 			Iterator<HL7InArchive> iterator = hl7InArchives.iterator();
 			
 			while (Hl7InArchivesMigrateThread.isActive() && Hl7InArchivesMigrateThread.getTransferStatus() == Status.RUNNING
@@ -1141,13 +1219,15 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 					migrateHL7InArchive(archive);
 					progressStatusMap.put(HL7Constants.NUMBER_TRANSFERRED_KEY, numberTransferred++);
 				}
-				catch (DAOException e) {
+				catch (APIException e) {
+					log.error("Could not migrate the hl7 archive with id " + archive.getHL7InArchiveId(), e);
+					failedIds.add(archive.getHL7InArchiveId());
 					progressStatusMap.put(HL7Constants.NUMBER_OF_FAILED_TRANSFERS_KEY, numberOfFailedTransfers++);
 				}
 			}
 			
 			// fetch more archives to be processed
-			hl7InArchives = getHL7InArchivesToMigrate();
+			hl7InArchives = getHL7InArchivesToMigrate(failedIds);
 		}
 		
 		if (log.isDebugEnabled())
@@ -1179,6 +1259,142 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		
 	}
 	
+	/**
+	 * moves the data of the given archives to the current segment file
+	 * 
+	 * @param archives the archives to migrate
+	 * @throws APIException
+	 */
+	private void migrateHL7InArchivesToSegments(List<HL7InArchive> archives) throws APIException {
+		for (HL7InArchive archive : archives) {
+			if (!OpenmrsUtil.nullSafeEquals(archive.getMessageState(), HL7Constants.HL7_STATUS_PROCESSED))
+				throw new APIException("could not migrate HL7 archive not in 'processed' state");
+			if (archive.getHL7Data() == null)
+				throw new APIException("could not migrate HL7 archive without data");
+		}
+		
+		List<String> locations = getSegmentStore().append(archives);
+		for (int i = 0; i < archives.size(); i++) {
+			HL7InArchive archive = archives.get(i);
+			archive.setHL7Data(locations.get(i));
+			archive.setMessageState(HL7Constants.HL7_STATUS_MIGRATED);
+			saveHL7InArchive(archive);
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#convertHL7InArchiveStorage(String, Map)
+	 */
+	public void convertHL7InArchiveStorage(String storageFormat, Map<String, Integer> progressStatusMap)
+	        throws APIException {
+		isSegmentStorage(storageFormat);
+		
+		// through the proxy, so that every batch is committed on its own
+		HL7Service hl7Service = Context.getHL7Service();
+		int numberConverted = 0;
+		int converted;
+		while ((converted = hl7Service.convertNextHL7InArchives(storageFormat)) > 0) {
+			numberConverted += converted;
+			if (progressStatusMap != null)
+				progressStatusMap.put(HL7Constants.NUMBER_TRANSFERRED_KEY, numberConverted);
+		}
+		
+		if (log.isDebugEnabled())
+			log.debug("Moved " + numberConverted + " hl7 archives to the '" + storageFormat + "' storage format");
+	}
+	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#convertNextHL7InArchives(String)
+	 */
+	public int convertNextHL7InArchives(String storageFormat) throws APIException {
+		boolean toSegments = isSegmentStorage(storageFormat);
+		List<HL7InArchive> archives = dao.getMigratedHL7InArchives(!toSegments, HL7Constants.MIGRATION_MAX_BATCH_SIZE);
+		if (archives.isEmpty())
+			return 0;
+		
+		final List<File> replacedFiles = new ArrayList<File>();
+		for (HL7InArchive archive : archives) {
+			if (toSegments) {
+				try {
+					replacedFiles.add(new File(new URI(archive.getHL7Data())));
+				}
+				catch (URISyntaxException e) {
+					throw new APIException("malformed HL7 archive location: " + archive.getHL7Data(), e);
+				}
+			}
+			loadHL7InArchiveData(archive);
+		}
+		
+		if (toSegments) {
+			List<String> locations = getSegmentStore().append(archives);
+			for (int i = 0; i < archives.size(); i++)
+				archives.get(i).setHL7Data(locations.get(i));
+		} else {
+			// the segment files are append-only, so the old copies stay in them
+			for (HL7InArchive archive : archives)
+				archive.setHL7Data(writeHL7InArchiveToFileSystem(archive).toString());
+		}
+		
+		for (HL7InArchive archive : archives) {
+			archive.setLoaded(false);
+			saveHL7InArchive(archive);
+		}
+		Context.flushSession();
+		Context.clearSession();
+		
+		// only remove the per-archive files once the new locations are committed
+		if (!replacedFiles.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (status == TransactionSynchronization.STATUS_COMMITTED) {
+						for (File file : replacedFiles) {
+							if (!file.delete())
+								log.warn("Unable to delete hl7 archive file " + file);
+						}
+					}
+				}
+			});
+		}
+		
+		return archives.size();
+	}
+	
+	/**
+	 * @return true if migrated archives are appended to segment files, false if every archive is
+	 *         written to a file of its own
+	 */
+	private boolean isSegmentStorage() {
+		String storageFormat = Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GP_HL7_ARCHIVE_STORAGE_FORMAT, HL7Constants.HL7_ARCHIVE_STORAGE_FILES);
+		return HL7Constants.HL7_ARCHIVE_STORAGE_SEGMENTS.equalsIgnoreCase(storageFormat.trim());
+	}
+	
+	/**
+	 * @param storageFormat {@link HL7Constants#HL7_ARCHIVE_STORAGE_SEGMENTS} or
+	 *            {@link HL7Constants#HL7_ARCHIVE_STORAGE_FILES}
+	 * @return true if the given storage format is the one of the segment files
+	 * @throws APIException if the storage format is neither of the two
+	 */
+	private boolean isSegmentStorage(String storageFormat) throws APIException {
+		boolean toSegments = HL7Constants.HL7_ARCHIVE_STORAGE_SEGMENTS.equals(storageFormat);
+		if (!toSegments && !HL7Constants.HL7_ARCHIVE_STORAGE_FILES.equals(storageFormat))
+			throw new APIException("Unknown hl7 archive storage format: " + storageFormat);
+		return toSegments;
+	}
+	
+	/**
+	 * @return the segment store in the current hl7 archives directory
+	 */
+	private synchronized HL7ArchiveSegmentStore getSegmentStore() {
+		File directory = new File(HL7Util.getHl7ArchivesDirectory(), HL7ArchiveSegmentStore.SEGMENT_DIRECTORY_NAME);
+		if (segmentStore == null || !segmentStore.getDirectory().equals(directory))
+			segmentStore = new HL7ArchiveSegmentStore(directory);
+		
+		return segmentStore;
+	}
+	
 	/**
 	 * writes a given hl7 archive to the file system
 	 * 
@@ -39,13 +39,16 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.GlobalProperty;
 import org.openmrs.Privilege;
+import org.openmrs.aop.RequiredDataAdvice;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.Daemon;
+import org.openmrs.api.impl.GlobalPropertyCache;
 import org.openmrs.module.Extension.MEDIA_TYPE;
 import org.openmrs.util.DatabaseUpdateException;
 import org.openmrs.util.DatabaseUpdater;
+import org.openmrs.util.HandlerUtil;
 import org.openmrs.util.InputRequiredException;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
@@ -657,6 +660,9 @@ public class ModuleFactory {
 		
 		// refresh spring service context?
 		
+		// the module may have contributed handlers
+		HandlerUtil.clearCachedHandlers();
+		
 		return module;
 	}
 	
@@ -807,6 +813,10 @@ public class ModuleFactory {
 			try {
 				// run liquibase.xml by Liquibase API
 				DatabaseUpdater.executeChangelog(MODULE_CHANGELOG_FILENAME, null, null, null, getModuleClassLoader(module));
+				
+				// the changesets may have changed the global_property table behind the cache's back
+				for (GlobalPropertyCache cache : Context.getRegisteredComponents(GlobalPropertyCache.class))
+					cache.clear();
 			}
 			catch (InputRequiredException ire) {
 				// the user would be stepped through the questions returned here.
@@ -1011,6 +1021,10 @@ public class ModuleFactory {
 					log.warn("Unable to delete libcachefolder for " + moduleId);
 				}
 			}
+			
+			// handlers loaded by the module class loader must no longer be returned
+			HandlerUtil.clearCachedHandlers();
+			RequiredDataAdvice.clearHandlingPlans();
 		}
 		
 		return dependentModulesStopped;
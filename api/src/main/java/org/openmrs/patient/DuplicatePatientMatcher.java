@@ -0,0 +1,317 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.text.Normalizer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.DuplicatePatientCandidate;
+import org.openmrs.api.PatientService;
+
+/**
+ * Scores the patients in blocks of possible duplicates against each other. A block holds the
+ * patients that share a blocking key, e.g. the same identifier or the same birthdate and family
+ * name, so only the patients within one block are compared instead of every patient with every
+ * other patient. <br/>
+ * <br/>
+ * The score of a pair is the sum of the weights of the fields that match, from 0 to 1. A pair that
+ * is found in more than one block is only kept once, with its highest score. Blocks that are larger
+ * than the maximum block size, like a birthdate that was defaulted to the first of january for
+ * many patients, are skipped.
+ * 
+ * @see PatientService#detectDuplicatePatients(Double, Integer)
+ * @since 1.9.9
+ */
+public class DuplicatePatientMatcher {
+	
+	/**
+	 * The default minimum score of the pairs that are kept
+	 */
+	public static final double DEFAULT_MINIMUM_SCORE = 0.6;
+	
+	/**
+	 * The default maximum number of patients in a block
+	 */
+	public static final int DEFAULT_MAX_BLOCK_SIZE = 50;
+	
+	public static final double FAMILY_NAME_WEIGHT = 0.3;
+	
+	public static final double GIVEN_NAME_WEIGHT = 0.25;
+	
+	public static final double GIVEN_NAME_INITIAL_WEIGHT = 0.1;
+	
+	public static final double BIRTHDATE_WEIGHT = 0.35;
+	
+	public static final double BIRTH_YEAR_WEIGHT = 0.1;
+	
+	public static final double GENDER_WEIGHT = 0.1;
+	
+	public static final double IDENTIFIER_WEIGHT = 0.5;
+	
+	private final double minimumScore;
+	
+	private final int maxBlockSize;
+	
+	private final Map<Long, Match> matches = new HashMap<Long, Match>();
+	
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+	
+	private int skippedBlocks = 0;
+	
+	/**
+	 * @param minimumScore the minimum score of the pairs to keep
+	 * @param maxBlockSize the maximum number of patients in a block, larger blocks are skipped
+	 */
+	public DuplicatePatientMatcher(double minimumScore, int maxBlockSize) {
+		this.minimumScore = minimumScore;
+		this.maxBlockSize = maxBlockSize;
+	}
+	
+	/**
+	 * Compares all patients of a block with each other and keeps the pairs that score at least the
+	 * minimum score. A patient can be in the block more than once, e.g. once for each name.
+	 * 
+	 * @param block the records of the patients that share the blocking key
+	 * @param sharedIdentifier true if the patients in the block share an identifier
+	 * @should keep pairs that score at least the minimum score
+	 * @should skip blocks that are larger than the maximum block size
+	 * @should keep the highest score of a pair found in more than one block
+	 */
+	public void addBlock(List<Record> block, boolean sharedIdentifier) {
+		if (block.size() < 2)
+			return;
+		if (block.size() > maxBlockSize) {
+			skippedBlocks++;
+			return;
+		}
+		
+		for (int i = 0; i < block.size(); i++) {
+			for (int j = i + 1; j < block.size(); j++) {
+				Record a = block.get(i);
+				Record b = block.get(j);
+				if (a.getPatientId().equals(b.getPatientId()))
+					continue;
+				
+				List<String> matchedOn = new ArrayList<String>();
+				double score = score(a, b, sharedIdentifier, matchedOn);
+				if (score < minimumScore)
+					continue;
+				
+				Record first = a.getPatientId() < b.getPatientId() ? a : b;
+				Record second = first == a ? b : a;
+				Long key = ((long) first.getPatientId() << 32) | second.getPatientId();
+				Match match = matches.get(key);
+				if (match == null || match.getScore() < score)
+					matches.put(key, new Match(first.getPatientId(), second.getPatientId(), score, StringUtils.join(
+					    matchedOn, ",")));
+			}
+		}
+	}
+	
+	/**
+	 * Scores two patient records against each other
+	 * 
+	 * @param a a patient record
+	 * @param b another patient record
+	 * @param sharedIdentifier true if the patients share an identifier
+	 * @param matchedOn the names of the matching fields are added to this list
+	 * @return the score of the pair, between 0 and 1
+	 * @should ignore case and accents when comparing names
+	 * @should add the identifier weight for a shared identifier
+	 */
+	public double score(Record a, Record b, boolean sharedIdentifier, List<String> matchedOn) {
+		double score = 0;
+		if (sharedIdentifier) {
+			score += IDENTIFIER_WEIGHT;
+			matchedOn.add("identifier");
+		}
+		
+		String familyName = normalize(a.getFamilyName());
+		if (familyName.length() > 0 && familyName.equals(normalize(b.getFamilyName()))) {
+			score += FAMILY_NAME_WEIGHT;
+			matchedOn.add("familyName");
+		}
+		
+		String givenName = normalize(a.getGivenName());
+		String otherGivenName = normalize(b.getGivenName());
+		if (givenName.length() > 0 && givenName.equals(otherGivenName)) {
+			score += GIVEN_NAME_WEIGHT;
+			matchedOn.add("givenName");
+		} else if (givenName.length() > 0 && otherGivenName.length() > 0 && givenName.charAt(0) == otherGivenName.charAt(0)) {
+			score += GIVEN_NAME_INITIAL_WEIGHT;
+		}
+		
+		if (a.getBirthdate() != null && b.getBirthdate() != null) {
+			String birthdate = dateFormat.format(a.getBirthdate());
+			String otherBirthdate = dateFormat.format(b.getBirthdate());
+			if (birthdate.equals(otherBirthdate)) {
+				score += BIRTHDATE_WEIGHT;
+				matchedOn.add("birthdate");
+			} else if (birthdate.substring(0, 4).equals(otherBirthdate.substring(0, 4))) {
+				score += BIRTH_YEAR_WEIGHT;
+			}
+		}
+		
+		if (a.getGender() != null && a.getGender().equalsIgnoreCase(b.getGender())) {
+			score += GENDER_WEIGHT;
+			matchedOn.add("gender");
+		}
+		
+		return Math.min(score, 1.0);
+	}
+	
+	/**
+	 * @return the pairs that were kept, highest score first
+	 */
+	public List<Match> getMatches() {
+		List<Match> result = new ArrayList<Match>(matches.values());
+		Collections.sort(result, new Comparator<Match>() {
+			
+			public int compare(Match m1, Match m2) {
+				int result = Double.compare(m2.getScore(), m1.getScore());
+				if (result == 0)
+					result = m1.getPatientId().compareTo(m2.getPatientId());
+				if (result == 0)
+					result = m1.getDuplicateId().compareTo(m2.getDuplicateId());
+				return result;
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * @return the number of blocks that were skipped because they were too large
+	 */
+	public int getSkippedBlocks() {
+		return skippedBlocks;
+	}
+	
+	/**
+	 * Normalizes a name for comparing and blocking by removing accents and everything that is not a
+	 * letter or digit, and upper casing the rest
+	 * 
+	 * @param name the name to normalize
+	 * @return the normalized name, an empty string if the name is null
+	 * @should remove accents, punctuation and white space
+	 */
+	public static String normalize(String name) {
+		if (name == null)
+			return "";
+		
+		String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+		StringBuilder sb = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			if (Character.isLetterOrDigit(c))
+				sb.append(Character.toUpperCase(c));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * The fields of a patient that are compared, one record per name of the patient
+	 */
+	public static class Record {
+		
+		private final Integer patientId;
+		
+		private final String givenName;
+		
+		private final String familyName;
+		
+		private final Date birthdate;
+		
+		private final String gender;
+		
+		public Record(Integer patientId, String givenName, String familyName, Date birthdate, String gender) {
+			this.patientId = patientId;
+			this.givenName = givenName;
+			this.familyName = familyName;
+			this.birthdate = birthdate;
+			this.gender = gender;
+		}
+		
+		public Integer getPatientId() {
+			return patientId;
+		}
+		
+		public String getGivenName() {
+			return givenName;
+		}
+		
+		public String getFamilyName() {
+			return familyName;
+		}
+		
+		public Date getBirthdate() {
+			return birthdate;
+		}
+		
+		public String getGender() {
+			return gender;
+		}
+	}
+	
+	/**
+	 * A pair of patients that are possibly duplicates, see {@link DuplicatePatientCandidate} for
+	 * the persisted form
+	 */
+	public static class Match {
+		
+		private final Integer patientId;
+		
+		private final Integer duplicateId;
+		
+		private final double score;
+		
+		private final String matchedOn;
+		
+		public Match(Integer patientId, Integer duplicateId, double score, String matchedOn) {
+			this.patientId = patientId;
+			this.duplicateId = duplicateId;
+			this.score = score;
+			this.matchedOn = matchedOn;
+		}
+		
+		/**
+		 * @return the lower of the two patient ids
+		 */
+		public Integer getPatientId() {
+			return patientId;
+		}
+		
+		/**
+		 * @return the higher of the two patient ids
+		 */
+		public Integer getDuplicateId() {
+			return duplicateId;
+		}
+		
+		public double getScore() {
+			return score;
+		}
+		
+		public String getMatchedOn() {
+			return matchedOn;
+		}
+	}
+}
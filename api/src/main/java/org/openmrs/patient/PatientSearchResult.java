@@ -0,0 +1,185 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.api.PatientService;
+
+/**
+ * A read-only summary of a patient that is found by a search: the non-voided names and identifiers
+ * and the demographics that are shown in a list of search results. Unlike a {@link Patient} it is
+ * read with a few queries for a whole page of results and does not load the addresses and
+ * attributes of the patient, which makes it suited for showing pages of search results. The names
+ * and identifiers are transient objects that are not attached to the session. The full patient
+ * should be loaded once one of the results is opened.
+ * 
+ * @see PatientService#getPatientSearchResults(String, Integer, Integer)
+ * @since 1.9.9
+ */
+public class PatientSearchResult implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final Integer patientId;
+	
+	private final String uuid;
+	
+	private final String gender;
+	
+	private final Date birthdate;
+	
+	private final Boolean birthdateEstimated;
+	
+	private final Integer age;
+	
+	private final Boolean dead;
+	
+	private final Date deathDate;
+	
+	private final List<PersonName> names;
+	
+	private final List<PatientIdentifier> identifiers;
+	
+	/**
+	 * @param patientId the id of the patient
+	 * @param uuid the uuid of the patient
+	 * @param gender the gender of the patient
+	 * @param birthdate the birthdate of the patient
+	 * @param birthdateEstimated whether the birthdate is estimated
+	 * @param dead whether the patient is dead
+	 * @param deathDate the date of death, up to which the age is counted
+	 * @param names the non-voided names of the patient, the preferred name first
+	 * @param identifiers the non-voided identifiers of the patient, the preferred identifier first
+	 */
+	public PatientSearchResult(Integer patientId, String uuid, String gender, Date birthdate, Boolean birthdateEstimated,
+	    Boolean dead, Date deathDate, List<PersonName> names, List<PatientIdentifier> identifiers) {
+		this.patientId = patientId;
+		this.uuid = uuid;
+		this.gender = gender;
+		this.birthdate = birthdate;
+		this.birthdateEstimated = birthdateEstimated;
+		this.dead = dead;
+		this.deathDate = deathDate;
+		this.names = Collections.unmodifiableList(new ArrayList<PersonName>(names));
+		this.identifiers = Collections.unmodifiableList(new ArrayList<PatientIdentifier>(identifiers));
+		
+		// the age is computed like the age of a person
+		Person person = new Person();
+		person.setBirthdate(birthdate);
+		person.setDeathDate(deathDate);
+		this.age = person.getAge();
+	}
+	
+	public Integer getPatientId() {
+		return patientId;
+	}
+	
+	public String getUuid() {
+		return uuid;
+	}
+	
+	/**
+	 * @return the non-voided names of the patient, the preferred name first
+	 */
+	public List<PersonName> getNames() {
+		return names;
+	}
+	
+	/**
+	 * @return the non-voided identifiers of the patient, the preferred identifier first
+	 */
+	public List<PatientIdentifier> getIdentifiers() {
+		return identifiers;
+	}
+	
+	/**
+	 * @return the given name of the preferred name
+	 */
+	public String getGivenName() {
+		return names.isEmpty() ? null : names.get(0).getGivenName();
+	}
+	
+	/**
+	 * @return the middle name of the preferred name
+	 */
+	public String getMiddleName() {
+		return names.isEmpty() ? null : names.get(0).getMiddleName();
+	}
+	
+	/**
+	 * @return the family name of the preferred name
+	 */
+	public String getFamilyName() {
+		return names.isEmpty() ? null : names.get(0).getFamilyName();
+	}
+	
+	/**
+	 * @return the preferred identifier, null if the patient has no identifier
+	 */
+	public String getIdentifier() {
+		return identifiers.isEmpty() ? null : identifiers.get(0).getIdentifier();
+	}
+	
+	/**
+	 * @return the name of the type of the preferred identifier
+	 */
+	public String getIdentifierTypeName() {
+		return identifiers.isEmpty() ? null : identifiers.get(0).getIdentifierType().getName();
+	}
+	
+	public String getGender() {
+		return gender;
+	}
+	
+	public Date getBirthdate() {
+		return birthdate;
+	}
+	
+	public Boolean getBirthdateEstimated() {
+		return birthdateEstimated;
+	}
+	
+	/**
+	 * @return the age of the patient today or at the date of death, null if the birthdate is not
+	 *         known
+	 */
+	public Integer getAge() {
+		return age;
+	}
+	
+	public Boolean getDead() {
+		return dead;
+	}
+	
+	public Date getDeathDate() {
+		return deathDate;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PatientSearchResult#" + patientId;
+	}
+}
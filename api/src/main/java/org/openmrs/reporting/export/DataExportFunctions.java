@@ -55,6 +55,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.report.EvaluationContext;
 import org.openmrs.reporting.PatientFilter;
 import org.openmrs.reporting.PatientSearchReportObject;
+import org.openmrs.util.IntegerBitmapSet;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -74,6 +75,11 @@ public class DataExportFunctions {
 	
 	protected boolean isAllPatients = false;
 	
+	// the ids of all patients in the export when it is generated in batches, in the order of the rows
+	protected int[] exportPatientIds = null;
+	
+	protected int batchSize = 0;
+	
 	private Integer patientCounter = 0; // used for garbage collection (Clean up every x patients)
 	
 	protected String separator = "	";
@@ -293,6 +299,106 @@ public class DataExportFunctions {
 		this.isAllPatients = isAllPatients;
 	}
 	
+	/**
+	 * @return the number of patients whose data is loaded at a time
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * @param batchSize the number of patients whose data is loaded at a time, 0 or less to load the
+	 *            data of all patients at once. Must be set before {@link #setExportPatientSet(Cohort)}
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Sets the patients of the whole export. If a batch size is set, the export template then goes
+	 * through the patients one batch at a time, see {@link #setPatientSetFromBatch(Integer)}, so
+	 * that the data of each column is only loaded for the patients of the current batch.
+	 * 
+	 * @param exportPatientSet the patients of the export
+	 * @should split the patients into batches of the batch size
+	 */
+	public void setExportPatientSet(Cohort exportPatientSet) {
+		if (exportPatientSet == null || batchSize <= 0) {
+			exportPatientIds = null;
+			return;
+		}
+		
+		exportPatientIds = IntegerBitmapSet.valueOf(exportPatientSet.getMemberIds()).toIntArray();
+	}
+	
+	/**
+	 * Used by the export template to loop over the batches of patients. The template loops from 0
+	 * up to and including this value, so this is the index of the last batch.
+	 * 
+	 * @return the index of the last batch, or null if the export is not generated in batches
+	 * @see DataExportReportObject#generateTemplate()
+	 */
+	public Integer getPatientSetBatchCount() {
+		if (exportPatientIds == null)
+			return null;
+		
+		return Math.max(exportPatientIds.length - 1, 0) / batchSize;
+	}
+	
+	/**
+	 * Releases the data loaded for the previous batch and makes the patients of the given batch the
+	 * current patient set. Does nothing if the export is not generated in batches.
+	 * 
+	 * @param batchIndex the index of the batch, starting at 0
+	 * @should only load column data for the patients in the current batch
+	 */
+	public void setPatientSetFromBatch(Integer batchIndex) {
+		if (exportPatientIds == null)
+			return;
+		
+		clearBatch();
+		
+		IntegerBitmapSet batch = new IntegerBitmapSet();
+		int from = batchIndex * batchSize;
+		for (int i = from; i < exportPatientIds.length && i < from + batchSize; i++)
+			batch.add(exportPatientIds[i]);
+		
+		Cohort batchCohort = new Cohort();
+		batchCohort.setMemberIds(batch);
+		setPatientSet(batchCohort);
+		
+		log.debug("Exporting batch " + batchIndex + " with " + batch.size() + " patients");
+	}
+	
+	/**
+	 * Empties the maps with the data of the patients in the current batch and the hibernate session
+	 * it was loaded into
+	 */
+	@SuppressWarnings("unchecked")
+	protected void clearBatch() {
+		List<Map<String, ? extends Map>> maps = new Vector<Map<String, ? extends Map>>();
+		maps.add(patientEncounterMap);
+		maps.add(patientIdentifierMap);
+		maps.add(patientFirstEncounterMap);
+		maps.add(conceptAttrObsMap);
+		maps.add(relationshipMap);
+		maps.add(programMap);
+		maps.add(drugOrderMap);
+		maps.add(currentDrugOrderMap);
+		maps.add(patientAttributeMap);
+		maps.add(personAttributeMap);
+		for (Map<String, ? extends Map> map : maps) {
+			for (Map patientMap : map.values())
+				patientMap.clear();
+			map.clear();
+		}
+		cohortMap.clear();
+		conceptNameMap.clear();
+		
+		setPatient(null);
+		Context.clearSession();
+	}
+	
 	/**
 	 * @return Returns the separator.
 	 */
@@ -1194,12 +1300,13 @@ public class DataExportFunctions {
 	}
 	
 	/**
-	 * Returns the patient set only if it is a subset of all patients. Returns null other wise
+	 * Returns the patient set only if it is a subset of all patients or the current batch of
+	 * patients. Returns null other wise
 	 * 
 	 * @return PatientSet object with patients or null if it isn't needed
 	 */
 	public Cohort getPatientSetIfNotAllPatients() {
-		if (isAllPatients)
+		if (isAllPatients && exportPatientIds == null)
 			return null;
 		return getPatientSet();
 	}
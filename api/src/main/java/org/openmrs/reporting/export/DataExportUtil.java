@@ -32,6 +32,7 @@ import org.openmrs.Cohort;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.report.EvaluationContext;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -163,6 +164,11 @@ public class DataExportUtil {
 			functions.setAllPatients(dataExport.isAllPatients());
 		}
 		
+		// load the data of the columns one batch of patients at a time, see DataExportReportObject.generateTemplate()
+		functions.setBatchSize(Context.getAdministrationService().getGlobalPropertyValue(
+		    OpenmrsConstants.GP_DATA_EXPORT_BATCH_SIZE, 1000));
+		functions.setExportPatientSet(patientSet);
+		
 		// add the error handler
 		EventCartridge ec = new EventCartridge();
 		ec.addEventHandler(new VelocityExceptionHandler());
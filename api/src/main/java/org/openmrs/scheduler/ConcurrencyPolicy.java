@@ -0,0 +1,56 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler;
+
+/**
+ * What the scheduler does when a task is due to run while a previous execution of the same task is
+ * still running. The policy of a task is set with the
+ * {@link SchedulerConstants#SCHEDULER_CONCURRENCY_POLICY_PROPERTY} property of its
+ * {@link TaskDefinition} <br>
+ * <br>
+ * <b>SKIP_IF_RUNNING</b> - The execution is skipped, this is the default <br>
+ * <br>
+ * <b>QUEUE</b> - The execution waits until the previous one has finished <br>
+ * <br>
+ * <b>PARALLEL</b> - The execution starts right away, alongside the previous one
+ * 
+ * @since 1.9.9
+ */
+public enum ConcurrencyPolicy {
+	
+	SKIP_IF_RUNNING, QUEUE, PARALLEL;
+	
+	/**
+	 * Gets the concurrency policy of the given task definition
+	 * 
+	 * @param taskDefinition the task definition to get the policy of
+	 * @return the policy named by the task property, or {@link #SKIP_IF_RUNNING} if it is not set
+	 *         or not valid
+	 * @should return skip if running if the property is not set
+	 * @should return the policy named by the property ignoring case
+	 */
+	public static ConcurrencyPolicy getPolicy(TaskDefinition taskDefinition) {
+		String value = taskDefinition == null ? null : taskDefinition
+		        .getProperty(SchedulerConstants.SCHEDULER_CONCURRENCY_POLICY_PROPERTY);
+		if (value != null) {
+			try {
+				return valueOf(value.trim().toUpperCase());
+			}
+			catch (IllegalArgumentException e) {
+				// fall back to the default
+			}
+		}
+		return SKIP_IF_RUNNING;
+	}
+}
@@ -53,4 +53,18 @@ public class SchedulerConstants {
 	/** Scheduler admin email property - Used to email administrator if a task fails */
 	public static String SCHEDULER_ADMIN_EMAIL_PROPERTY = "scheduler.admin_email";
 	
+	/**
+	 * Task property with the {@link ConcurrencyPolicy} of a task
+	 * 
+	 * @since 1.9.9
+	 */
+	public final static String SCHEDULER_CONCURRENCY_POLICY_PROPERTY = "concurrencyPolicy";
+	
+	/**
+	 * Default number of threads that run the scheduled tasks
+	 * 
+	 * @since 1.9.9
+	 */
+	public final static int SCHEDULER_DEFAULT_THREAD_POOL_SIZE = 5;
+	
 }
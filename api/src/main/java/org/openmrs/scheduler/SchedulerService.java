@@ -37,6 +37,50 @@ public interface SchedulerService extends OpenmrsService {
 	@Authorized( { "Manage Scheduler" })
 	public String getStatus(Integer id);
 	
+	/**
+	 * Gets the statistics of the executions of a scheduled task, such as how long the last execution
+	 * took, how late it started and how many executions failed
+	 * 
+	 * @param id the identifier of the task
+	 * @return the statistics of the task, or null if it is not scheduled
+	 * @should return the statistics of a scheduled task
+	 * @should return null if the task is not scheduled
+	 * @since 1.9.9
+	 */
+	@Authorized( { "Manage Scheduler" })
+	@Transactional(readOnly = true)
+	public TaskExecutionStatistics getTaskExecutionStatistics(Integer id);
+	
+	/**
+	 * Takes or renews the lease of this server on a task before running it. Several servers that
+	 * share one database all schedule the same tasks, the lease makes sure only one of them runs a
+	 * task at a time. A server keeps its leases while it is running, if it stops renewing them
+	 * another server takes them over once they expire.
+	 * 
+	 * @param task the task that is about to run
+	 * @return true if this server may run the task, which is always the case if the
+	 *         {@link org.openmrs.util.OpenmrsConstants#GP_SCHEDULER_CLUSTERED} global property is
+	 *         not true
+	 * @should take a lease that no server holds
+	 * @should not take a lease that another server holds until it expires
+	 * @should always return true if the scheduler is not clustered
+	 * @since 1.9.9
+	 */
+	@Authorized( { "Manage Scheduler" })
+	@Logging(ignore = true)
+	public boolean acquireTaskLease(TaskDefinition task);
+	
+	/**
+	 * Renews all leases held by this server, this is called regularly while the server holds any
+	 * leases
+	 * 
+	 * @see #acquireTaskLease(TaskDefinition)
+	 * @since 1.9.9
+	 */
+	@Authorized( { "Manage Scheduler" })
+	@Logging(ignore = true)
+	public void renewTaskLeases();
+	
 	/**
 	 * Start all tasks that are scheduled to run on startup.
 	 */
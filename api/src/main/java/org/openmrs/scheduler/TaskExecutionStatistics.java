@@ -0,0 +1,188 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler;
+
+import java.util.Date;
+
+/**
+ * A snapshot of how the executions of a scheduled task went since it was scheduled
+ * 
+ * @see SchedulerService#getTaskExecutionStatistics(Integer)
+ * @since 1.9.9
+ */
+public class TaskExecutionStatistics {
+	
+	private int executionCount;
+	
+	private int failureCount;
+	
+	private int skippedCount;
+	
+	private int runningCount;
+	
+	private int queuedCount;
+	
+	private Date lastExecutionTime;
+	
+	private Long lastDuration;
+	
+	private Long lastLag;
+	
+	private Throwable lastFailure;
+	
+	private Date nextExecutionTime;
+	
+	/**
+	 * @return the number of executions that have finished
+	 */
+	public int getExecutionCount() {
+		return executionCount;
+	}
+	
+	/**
+	 * @param executionCount the number of executions that have finished
+	 */
+	public void setExecutionCount(int executionCount) {
+		this.executionCount = executionCount;
+	}
+	
+	/**
+	 * @return the number of executions that ended with an error
+	 */
+	public int getFailureCount() {
+		return failureCount;
+	}
+	
+	/**
+	 * @param failureCount the number of executions that ended with an error
+	 */
+	public void setFailureCount(int failureCount) {
+		this.failureCount = failureCount;
+	}
+	
+	/**
+	 * @return the number of executions that were skipped because the task was still running
+	 * @see ConcurrencyPolicy#SKIP_IF_RUNNING
+	 */
+	public int getSkippedCount() {
+		return skippedCount;
+	}
+	
+	/**
+	 * @param skippedCount the number of executions that were skipped
+	 */
+	public void setSkippedCount(int skippedCount) {
+		this.skippedCount = skippedCount;
+	}
+	
+	/**
+	 * @return the number of executions that are running right now
+	 */
+	public int getRunningCount() {
+		return runningCount;
+	}
+	
+	/**
+	 * @param runningCount the number of executions that are running right now
+	 */
+	public void setRunningCount(int runningCount) {
+		this.runningCount = runningCount;
+	}
+	
+	/**
+	 * @return the number of executions that wait for the running one to finish
+	 * @see ConcurrencyPolicy#QUEUE
+	 */
+	public int getQueuedCount() {
+		return queuedCount;
+	}
+	
+	/**
+	 * @param queuedCount the number of executions that wait for the running one to finish
+	 */
+	public void setQueuedCount(int queuedCount) {
+		this.queuedCount = queuedCount;
+	}
+	
+	/**
+	 * @return when the last finished execution started
+	 */
+	public Date getLastExecutionTime() {
+		return lastExecutionTime;
+	}
+	
+	/**
+	 * @param lastExecutionTime when the last finished execution started
+	 */
+	public void setLastExecutionTime(Date lastExecutionTime) {
+		this.lastExecutionTime = lastExecutionTime;
+	}
+	
+	/**
+	 * @return how many milliseconds the last finished execution took
+	 */
+	public Long getLastDuration() {
+		return lastDuration;
+	}
+	
+	/**
+	 * @param lastDuration how many milliseconds the last finished execution took
+	 */
+	public void setLastDuration(Long lastDuration) {
+		this.lastDuration = lastDuration;
+	}
+	
+	/**
+	 * @return how many milliseconds the last finished execution started after it was due, which
+	 *         grows when all threads of the scheduler are busy
+	 */
+	public Long getLastLag() {
+		return lastLag;
+	}
+	
+	/**
+	 * @param lastLag how many milliseconds the last finished execution started after it was due
+	 */
+	public void setLastLag(Long lastLag) {
+		this.lastLag = lastLag;
+	}
+	
+	/**
+	 * @return the error of the last execution that failed
+	 */
+	public Throwable getLastFailure() {
+		return lastFailure;
+	}
+	
+	/**
+	 * @param lastFailure the error of the last execution that failed
+	 */
+	public void setLastFailure(Throwable lastFailure) {
+		this.lastFailure = lastFailure;
+	}
+	
+	/**
+	 * @return when the task is due to run next, or null if it will not run again
+	 */
+	public Date getNextExecutionTime() {
+		return nextExecutionTime;
+	}
+	
+	/**
+	 * @param nextExecutionTime when the task is due to run next
+	 */
+	public void setNextExecutionTime(Date nextExecutionTime) {
+		this.nextExecutionTime = nextExecutionTime;
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler;
+
+import java.util.Date;
+
+/**
+ * Records which node of a cluster of servers sharing one database may run a scheduled task. A node
+ * keeps the lease by renewing it before it expires, once it expires another node can take it over.
+ * 
+ * @see SchedulerService#acquireTaskLease(TaskDefinition)
+ * @since 1.9.9
+ */
+public class TaskLease {
+	
+	private Integer taskId;
+	
+	private String nodeId;
+	
+	private Date leaseExpires;
+	
+	/** Default constructor */
+	public TaskLease() {
+	}
+	
+	/**
+	 * @param taskId the id of the leased task definition
+	 * @param nodeId the node that holds the lease
+	 * @param leaseExpires when the lease expires unless it is renewed
+	 */
+	public TaskLease(Integer taskId, String nodeId, Date leaseExpires) {
+		this.taskId = taskId;
+		this.nodeId = nodeId;
+		this.leaseExpires = leaseExpires;
+	}
+	
+	/**
+	 * @return the id of the leased task definition
+	 */
+	public Integer getTaskId() {
+		return taskId;
+	}
+	
+	/**
+	 * @param taskId the id of the leased task definition
+	 */
+	public void setTaskId(Integer taskId) {
+		this.taskId = taskId;
+	}
+	
+	/**
+	 * @return the node that holds the lease
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+	
+	/**
+	 * @param nodeId the node that holds the lease
+	 */
+	public void setNodeId(String nodeId) {
+		this.nodeId = nodeId;
+	}
+	
+	/**
+	 * @return when the lease expires unless it is renewed
+	 */
+	public Date getLeaseExpires() {
+		return leaseExpires;
+	}
+	
+	/**
+	 * @param leaseExpires when the lease expires unless it is renewed
+	 */
+	public void setLeaseExpires(Date leaseExpires) {
+		this.leaseExpires = leaseExpires;
+	}
+}
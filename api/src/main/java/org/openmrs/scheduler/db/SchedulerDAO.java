@@ -13,6 +13,7 @@
  */
 package org.openmrs.scheduler.db;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.api.db.DAOException;
@@ -59,6 +60,41 @@ public interface SchedulerDAO {
 	 */
 	public List<TaskDefinition> getTasks() throws DAOException;
 	
+	/**
+	 * Takes the lease on a task for the given node if no other node holds an unexpired lease on it,
+	 * or renews it if the node already holds it
+	 * 
+	 * @param taskId the id of the task definition
+	 * @param nodeId the node that wants to run the task
+	 * @param now the current time, leases that expired before it can be taken over
+	 * @param leaseExpires when the lease expires unless it is renewed
+	 * @return true if the node holds the lease
+	 * @throws DAOException
+	 * @since 1.9.9
+	 */
+	public boolean acquireTaskLease(Integer taskId, String nodeId, Date now, Date leaseExpires) throws DAOException;
+	
+	/**
+	 * Renews all leases held by the given node
+	 * 
+	 * @param nodeId the node that holds the leases
+	 * @param leaseExpires when the leases expire unless they are renewed again
+	 * @return the number of renewed leases
+	 * @throws DAOException
+	 * @since 1.9.9
+	 */
+	public int renewTaskLeases(String nodeId, Date leaseExpires) throws DAOException;
+	
+	/**
+	 * Gives up the lease of the given node on a task, so that another node can take it right away
+	 * 
+	 * @param taskId the id of the task definition
+	 * @param nodeId the node that holds the lease
+	 * @throws DAOException
+	 * @since 1.9.9
+	 */
+	public void releaseTaskLease(Integer taskId, String nodeId) throws DAOException;
+	
 	/**
 	 * Delete task from database.
 	 * 
@@ -13,16 +13,19 @@
  */
 package org.openmrs.scheduler.db.hibernate;
 
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.scheduler.Schedule;
 import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.TaskLease;
 import org.openmrs.scheduler.db.SchedulerDAO;
 import org.springframework.orm.ObjectRetrievalFailureException;
 
@@ -124,6 +127,49 @@ public class HibernateSchedulerDAO implements SchedulerDAO {
 		return sessionFactory.getCurrentSession().createCriteria(TaskDefinition.class).list();
 	}
 	
+	/**
+	 * @see org.openmrs.scheduler.db.SchedulerDAO#acquireTaskLease(java.lang.Integer,
+	 *      java.lang.String, java.util.Date, java.util.Date)
+	 */
+	public boolean acquireTaskLease(Integer taskId, String nodeId, Date now, Date leaseExpires) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		int updated = session.createQuery(
+		    "update TaskLease set nodeId = :nodeId, leaseExpires = :leaseExpires "
+		            + "where taskId = :taskId and (nodeId = :nodeId or leaseExpires < :now)").setString("nodeId", nodeId)
+		        .setTimestamp("leaseExpires", leaseExpires).setInteger("taskId", taskId).setTimestamp("now", now)
+		        .executeUpdate();
+		if (updated > 0)
+			return true;
+		
+		Number leases = (Number) session.createQuery("select count(*) from TaskLease where taskId = :taskId").setInteger(
+		    "taskId", taskId).uniqueResult();
+		if (leases.intValue() == 0) {
+			// flush right away so that the primary key makes this fail if another node inserted the lease first
+			session.save(new TaskLease(taskId, nodeId, leaseExpires));
+			session.flush();
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.db.SchedulerDAO#renewTaskLeases(java.lang.String, java.util.Date)
+	 */
+	public int renewTaskLeases(String nodeId, Date leaseExpires) throws DAOException {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "update TaskLease set leaseExpires = :leaseExpires where nodeId = :nodeId").setTimestamp("leaseExpires",
+		    leaseExpires).setString("nodeId", nodeId).executeUpdate();
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.db.SchedulerDAO#releaseTaskLease(java.lang.Integer, java.lang.String)
+	 */
+	public void releaseTaskLease(Integer taskId, String nodeId) throws DAOException {
+		sessionFactory.getCurrentSession().createQuery("delete from TaskLease where taskId = :taskId and nodeId = :nodeId")
+		        .setInteger("taskId", taskId).setString("nodeId", nodeId).executeUpdate();
+	}
+	
 	/**
 	 * Delete task from database.
 	 * 
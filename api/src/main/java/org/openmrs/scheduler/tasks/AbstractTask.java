@@ -33,6 +33,9 @@ public abstract class AbstractTask implements Task {
 	// The task definition of the running task
 	protected TaskDefinition taskDefinition;
 	
+	// Indicates whether the scheduler has shut the task down
+	private volatile boolean cancelled = false;
+	
 	/**
 	 * Default constructor
 	 */
@@ -82,6 +85,27 @@ public abstract class AbstractTask implements Task {
 		taskDefinition = null;
 	}
 	
+	/**
+	 * Tells the task that the scheduler has shut it down. This is called before {@link #shutdown()}
+	 * and works even if a subclass overrides shutdown() without calling it.
+	 * 
+	 * @since 1.9.9
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * Long running executions should check this regularly and return as soon as it is true, the
+	 * remaining work is picked up by the next execution.
+	 * 
+	 * @return true if the scheduler has shut the task down
+	 * @since 1.9.9
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
 	/**
 	 * Callback method that tells the task that it has started executing.
 	 */
@@ -13,6 +13,16 @@
  */
 package org.openmrs.scheduler.tasks;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
@@ -21,74 +31,80 @@ import org.openmrs.api.APIException;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
 import org.openmrs.api.impl.ConceptServiceImpl;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.TaskDefinition;
 import org.openmrs.util.OpenmrsConstants;
 
 /**
- * A utility class for updating concept words in a scheduled task.
+ * A utility class for updating concept words in a scheduled task. <br/>
+ * <br/>
+ * By default the concepts are re-indexed one at a time. If the {@value #PROPERTY_WORKERS} task
+ * property is set to a positive number the whole concept index is instead rebuilt in partitions of
+ * {@value #PROPERTY_PARTITION_SIZE} concept ids by that many threads in parallel, see
+ * {@link ConceptService#rebuildConceptIndexes(Integer, Integer)}. Every partition that is finished
+ * is recorded in a global property so that a rebuild which was stopped or failed continues where
+ * it left off the next time the task runs. <br/>
+ * <br/>
+ * The number of concepts indexed and the throughput of the last run are saved as the
+ * {@value #PROPERTY_LAST_RUN_CONCEPT_COUNT} and {@value #PROPERTY_LAST_RUN_CONCEPTS_PER_SECOND}
+ * task properties so that they show up in the scheduler.
  */
 public class ConceptIndexUpdateTask extends AbstractTask {
 	
+	/**
+	 * The task property with the number of threads to rebuild the index with
+	 */
+	public static final String PROPERTY_WORKERS = "workers";
+	
+	/**
+	 * The task property with the number of concept ids per partition
+	 */
+	public static final String PROPERTY_PARTITION_SIZE = "partitionSize";
+	
+	/**
+	 * The task property the number of concepts indexed by the last run is saved in
+	 */
+	public static final String PROPERTY_LAST_RUN_CONCEPT_COUNT = "lastRunConceptCount";
+	
+	/**
+	 * The task property the throughput of the last run is saved in
+	 */
+	public static final String PROPERTY_LAST_RUN_CONCEPTS_PER_SECOND = "lastRunConceptsPerSecond";
+	
+	private static final int DEFAULT_PARTITION_SIZE = 1000;
+	
 	private Log log = LogFactory.getLog(ConceptIndexUpdateTask.class);
 	
-	private boolean shouldExecute = true;
+	private volatile boolean shouldExecute = true;
+	
+	private final AtomicInteger conceptCount = new AtomicInteger();
 	
 	/**
 	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 * @should resume after the last updated concept
+	 * @should skip the partitions completed by an earlier run
+	 * @should rebuild all partitions if the earlier run used another partition size
 	 */
 	@Override
 	public void execute() {
 		if (!isExecuting) {
 			isExecuting = true;
 			shouldExecute = true;
-			AdministrationService as = Context.getAdministrationService();
-			ConceptService cs = Context.getConceptService();
-			GlobalProperty gp = as
-			        .getGlobalPropertyObject(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT);
-			if (gp == null)
-				gp = new GlobalProperty(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT);
+			conceptCount.set(0);
+			long startTime = System.currentTimeMillis();
 			
 			if (log.isDebugEnabled())
 				log.debug("Updating concept words ... ");
 			try {
-				Concept currentConcept = null; // assumes that all conceptIds are positive
-				//check if we have a saved last updated concept id
-				try {
-					currentConcept = cs.getConcept(Integer.valueOf(gp.getPropertyValue()));
-				}
-				catch (NumberFormatException e) {
-					//do nothing, most likely there was none
-				}
-				
-				if (currentConcept == null)
-					currentConcept = new Concept(0);
-				
-				currentConcept = cs.getNextConcept(currentConcept);
-				int counter = 0;
-				while (currentConcept != null && shouldExecute) {
-					if (log.isDebugEnabled())
-						log.debug("updateConceptWords() : current concept: " + currentConcept);
-					cs.updateConceptIndex(currentConcept);
-					
-					// keep memory consumption low
-					if (counter++ > 25) {
-						gp.setPropertyValue(currentConcept.getConceptId().toString());
-						as.saveGlobalProperty(gp);
-						
-						//persist to DB prior to releasing memory
-						Context.flushSession();
-						Context.clearSession();
-						counter = 0;
-					}
-					
-					currentConcept = cs.getNextConcept(currentConcept);
-				}
-				
-				//we have reached the end, get rid of the GP
-				if (currentConcept == null)
-					as.purgeGlobalProperty(gp);
+				TaskDefinition taskDef = Context.getSchedulerService().getTaskByName(
+				    ConceptServiceImpl.CONCEPT_WORD_UPDATE_TASK_NAME);
+				int workers = getIntProperty(taskDef, PROPERTY_WORKERS, 0);
+				if (workers > 0)
+					rebuildInPartitions(workers, getIntProperty(taskDef, PROPERTY_PARTITION_SIZE, DEFAULT_PARTITION_SIZE));
+				else
+					updateOneByOne();
 			}
 			catch (APIException e) {
 				log.error("ConceptWordUpdateTask failed, because:", e);
@@ -104,12 +120,234 @@ public class ConceptIndexUpdateTask extends AbstractTask {
 				//Otherwise it will always return false
 				if (conceptWordUpdateTaskDef.getStartOnStartup())
 					conceptWordUpdateTaskDef.setStartOnStartup(false);
+				
+				long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+				double conceptsPerSecond = conceptCount.get() * 1000.0 / elapsed;
+				conceptWordUpdateTaskDef.setProperty(PROPERTY_LAST_RUN_CONCEPT_COUNT, String.valueOf(conceptCount.get()));
+				conceptWordUpdateTaskDef.setProperty(PROPERTY_LAST_RUN_CONCEPTS_PER_SECOND, String.format("%.1f",
+				    conceptsPerSecond));
+				log.info("Indexed " + conceptCount.get() + " concepts in " + elapsed + "ms ("
+				        + conceptWordUpdateTaskDef.getProperty(PROPERTY_LAST_RUN_CONCEPTS_PER_SECOND) + " concepts/s)");
+				
 				ss.saveTask(conceptWordUpdateTaskDef);
 				log.debug("Task set to stopped.");
 			}
 		}
 	}
 	
+	/**
+	 * Re-indexes the concepts one at a time, starting after the concept saved in the
+	 * {@link OpenmrsConstants#GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT} global property
+	 */
+	private void updateOneByOne() {
+		AdministrationService as = Context.getAdministrationService();
+		ConceptService cs = Context.getConceptService();
+		GlobalProperty gp = as.getGlobalPropertyObject(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT);
+		if (gp == null)
+			gp = new GlobalProperty(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT);
+		
+		Concept currentConcept = null; // assumes that all conceptIds are positive
+		//check if we have a saved last updated concept id
+		try {
+			currentConcept = cs.getConcept(Integer.valueOf(gp.getPropertyValue()));
+		}
+		catch (NumberFormatException e) {
+			//do nothing, most likely there was none
+		}
+		
+		if (currentConcept == null)
+			currentConcept = new Concept(0);
+		
+		currentConcept = cs.getNextConcept(currentConcept);
+		int counter = 0;
+		while (currentConcept != null && shouldExecute) {
+			if (log.isDebugEnabled())
+				log.debug("updateConceptWords() : current concept: " + currentConcept);
+			cs.updateConceptIndex(currentConcept);
+			conceptCount.incrementAndGet();
+			
+			// keep memory consumption low
+			if (counter++ > 25) {
+				gp.setPropertyValue(currentConcept.getConceptId().toString());
+				as.saveGlobalProperty(gp);
+				
+				//persist to DB prior to releasing memory
+				Context.flushSession();
+				Context.clearSession();
+				counter = 0;
+			}
+			
+			currentConcept = cs.getNextConcept(currentConcept);
+		}
+		
+		//we have reached the end, get rid of the GP
+		if (currentConcept == null)
+			as.purgeGlobalProperty(gp);
+	}
+	
+	/**
+	 * Rebuilds the index of all concepts by splitting the concept ids into partitions that are
+	 * rebuilt by the given number of daemon threads, or by the thread of the task if there is only
+	 * one. Partitions that were finished by an earlier run with the same partition size are skipped.
+	 * When the task is interrupted the threads are interrupted as well and stop after their current
+	 * partition.
+	 * 
+	 * @param workers the number of threads to use
+	 * @param partitionSize the number of concept ids per partition
+	 */
+	private void rebuildInPartitions(int workers, final int partitionSize) {
+		Integer maxConceptId = Context.getConceptService().getMaxConceptId();
+		if (maxConceptId == null)
+			return;
+		
+		final Set<Integer> completedPartitions = getCompletedPartitions(partitionSize);
+		final Queue<Integer> pendingPartitions = new ConcurrentLinkedQueue<Integer>();
+		for (int partition = 0; partition <= maxConceptId / partitionSize; partition++) {
+			if (!completedPartitions.contains(partition))
+				pendingPartitions.add(partition);
+		}
+		
+		log.info("Rebuilding the concept index in " + pendingPartitions.size() + " partitions of " + partitionSize
+		        + " concept ids with " + workers + " threads, " + completedPartitions.size()
+		        + " partitions were already done");
+		
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		Runnable worker = new Runnable() {
+			
+			public void run() {
+				try {
+					Integer partition;
+					while (shouldExecute && !Thread.currentThread().isInterrupted() && failures.isEmpty()
+					        && (partition = pendingPartitions.poll()) != null) {
+						rebuildPartition(partition, partitionSize, completedPartitions);
+					}
+				}
+				catch (Throwable t) {
+					log.error("Failed to rebuild a partition of the concept index", t);
+					failures.add(t);
+				}
+			}
+		};
+		
+		if (workers == 1) {
+			// there is no need for another thread
+			worker.run();
+		} else {
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int i = 0; i < workers; i++)
+				threads.add(Daemon.runInNewDaemonThread(worker));
+			
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				}
+				catch (InterruptedException e) {
+					// stop the other threads and leave the rest for the next run
+					shouldExecute = false;
+					for (Thread workerThread : threads)
+						workerThread.interrupt();
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		
+		if (!failures.isEmpty())
+			throw new APIException("Unable to rebuild the concept index", failures.get(0));
+		
+		//we have reached the end, get rid of the GP
+		if (shouldExecute && pendingPartitions.isEmpty()) {
+			AdministrationService as = Context.getAdministrationService();
+			GlobalProperty gp = as
+			        .getGlobalPropertyObject(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS);
+			if (gp != null)
+				as.purgeGlobalProperty(gp);
+		}
+	}
+	
+	/**
+	 * Rebuilds the index of one partition of concept ids in the current thread and records it as
+	 * completed
+	 */
+	private void rebuildPartition(Integer partition, int partitionSize, Set<Integer> completedPartitions) {
+		long startTime = System.currentTimeMillis();
+		int conceptIdStart = partition * partitionSize;
+		int conceptIdEnd = conceptIdStart + partitionSize - 1;
+		
+		int count = Context.getConceptService().rebuildConceptIndexes(conceptIdStart, conceptIdEnd);
+		Context.flushSession();
+		Context.clearSession();
+		conceptCount.addAndGet(count);
+		
+		saveCompletedPartition(partition, partitionSize, completedPartitions);
+		
+		if (log.isDebugEnabled())
+			log.debug("Rebuilt the index of " + count + " concepts with ids " + conceptIdStart + " to " + conceptIdEnd
+			        + " in " + (System.currentTimeMillis() - startTime) + "ms");
+	}
+	
+	/**
+	 * Reads the partitions completed by an earlier run from the
+	 * {@link OpenmrsConstants#GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS} global property,
+	 * which is saved as the partition size followed by a colon and the comma separated partition
+	 * numbers
+	 * 
+	 * @param partitionSize the partition size of this run
+	 * @return the completed partitions, empty if the earlier run used a different partition size
+	 */
+	private Set<Integer> getCompletedPartitions(int partitionSize) {
+		Set<Integer> completedPartitions = new TreeSet<Integer>();
+		String value = Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS);
+		if (StringUtils.isBlank(value) || !value.startsWith(partitionSize + ":"))
+			return completedPartitions;
+		
+		for (String partition : StringUtils.split(value.substring(value.indexOf(':') + 1), ',')) {
+			try {
+				completedPartitions.add(Integer.valueOf(partition.trim()));
+			}
+			catch (NumberFormatException e) {
+				log.warn("Ignoring invalid partition number: " + partition);
+			}
+		}
+		
+		return completedPartitions;
+	}
+	
+	/**
+	 * Adds the given partition to the completed partitions and saves them. This is synchronized
+	 * because all of the threads update the same set and global property.
+	 */
+	private synchronized void saveCompletedPartition(Integer partition, int partitionSize, Set<Integer> completedPartitions) {
+		completedPartitions.add(partition);
+		
+		AdministrationService as = Context.getAdministrationService();
+		GlobalProperty gp = as.getGlobalPropertyObject(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS);
+		if (gp == null)
+			gp = new GlobalProperty(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS);
+		
+		gp.setPropertyValue(partitionSize + ":" + StringUtils.join(completedPartitions, ','));
+		as.saveGlobalProperty(gp);
+	}
+	
+	/**
+	 * @return the value of the given task property as an int, or the default value if it is not
+	 *         set or not a number
+	 */
+	private int getIntProperty(TaskDefinition taskDef, String name, int defaultValue) {
+		String value = taskDef == null ? null : taskDef.getProperty(name);
+		if (StringUtils.isBlank(value))
+			return defaultValue;
+		
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e) {
+			log.warn("Task property " + name + " is not a number: " + value);
+			return defaultValue;
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.scheduler.Task#initialize(org.openmrs.scheduler.TaskDefinition)
 	 */
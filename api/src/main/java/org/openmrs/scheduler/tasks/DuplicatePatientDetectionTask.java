@@ -0,0 +1,77 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.tasks;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.PatientService;
+import org.openmrs.api.context.Context;
+
+/**
+ * A scheduled task that finds the patients that are possibly duplicates of each other and saves
+ * them, so that they can be reviewed page by page instead of being searched for on demand. The
+ * minimum score of the saved pairs and the maximum size of a block of patients can be set with the
+ * {@value #PROPERTY_MINIMUM_SCORE} and {@value #PROPERTY_MAX_BLOCK_SIZE} task properties.
+ * 
+ * @see PatientService#detectDuplicatePatients(Double, Integer)
+ * @since 1.9.9
+ */
+public class DuplicatePatientDetectionTask extends AbstractTask {
+	
+	/**
+	 * The task property with the minimum score of the pairs to save
+	 */
+	public static final String PROPERTY_MINIMUM_SCORE = "minimumScore";
+	
+	/**
+	 * The task property with the maximum number of patients in a block
+	 */
+	public static final String PROPERTY_MAX_BLOCK_SIZE = "maxBlockSize";
+	
+	private static final Log log = LogFactory.getLog(DuplicatePatientDetectionTask.class);
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled())
+				log.debug("Starting Duplicate Patient Detection Task...");
+			
+			startExecuting();
+			try {
+				Double minimumScore = null;
+				Integer maxBlockSize = null;
+				if (taskDefinition != null) {
+					String value = taskDefinition.getProperty(PROPERTY_MINIMUM_SCORE);
+					if (StringUtils.isNotBlank(value))
+						minimumScore = Double.valueOf(value.trim());
+					value = taskDefinition.getProperty(PROPERTY_MAX_BLOCK_SIZE);
+					if (StringUtils.isNotBlank(value))
+						maxBlockSize = Integer.valueOf(value.trim());
+				}
+				
+				Context.getPatientService().detectDuplicatePatients(minimumScore, maxBlockSize);
+			}
+			catch (Exception e) {
+				log.error("Error while detecting duplicate patients:", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.tasks;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.PersonService;
+import org.openmrs.api.context.Context;
+
+/**
+ * A scheduled task that computes the phonetic keys of the person names that do not have them yet,
+ * one batch per transaction, so that existing names can be found by
+ * {@link PersonService#getSimilarPeople(String, Integer, String)}. The number of names updated at
+ * once can be set with the {@value #PROPERTY_BATCH_SIZE} task property.
+ * 
+ * @see PersonService#updatePersonNamePhoneticKeys(Integer)
+ * @since 1.9.9
+ */
+public class PersonNamePhoneticKeysTask extends AbstractTask {
+	
+	/**
+	 * The task property with the number of names to update at once
+	 */
+	public static final String PROPERTY_BATCH_SIZE = "batchSize";
+	
+	/**
+	 * The number of names updated at once if the task property is not set
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	
+	private static final Log log = LogFactory.getLog(PersonNamePhoneticKeysTask.class);
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled())
+				log.debug("Starting Person Name Phonetic Keys Task...");
+			
+			startExecuting();
+			try {
+				int batchSize = DEFAULT_BATCH_SIZE;
+				if (taskDefinition != null) {
+					String value = taskDefinition.getProperty(PROPERTY_BATCH_SIZE);
+					if (StringUtils.isNotBlank(value))
+						batchSize = Integer.valueOf(value.trim());
+				}
+				
+				int total = 0;
+				int updated;
+				do {
+					updated = Context.getPersonService().updatePersonNamePhoneticKeys(batchSize);
+					total += updated;
+					Context.flushSession();
+					Context.clearSession();
+				} while (updated == batchSize);
+				
+				if (log.isDebugEnabled())
+					log.debug("Computed the phonetic keys of " + total + " person names");
+			}
+			catch (Exception e) {
+				log.error("Error while computing the phonetic keys of person names:", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+}
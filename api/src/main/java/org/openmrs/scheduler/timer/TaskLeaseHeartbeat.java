@@ -0,0 +1,62 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.timer;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.scheduler.SchedulerService;
+import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskDefinition;
+
+/**
+ * Renews the task leases of this server, it is run by the scheduler itself and has no task
+ * definition
+ * 
+ * @see SchedulerService#renewTaskLeases()
+ * @since 1.9.9
+ */
+class TaskLeaseHeartbeat implements Task {
+	
+	/**
+	 * @see org.openmrs.scheduler.Task#execute()
+	 */
+	public void execute() {
+		Context.getSchedulerService().renewTaskLeases();
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.Task#initialize(org.openmrs.scheduler.TaskDefinition)
+	 */
+	public void initialize(TaskDefinition definition) {
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.Task#getTaskDefinition()
+	 */
+	public TaskDefinition getTaskDefinition() {
+		return null;
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.Task#isExecuting()
+	 */
+	public boolean isExecuting() {
+		return false;
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.Task#shutdown()
+	 */
+	public void shutdown() {
+	}
+}
@@ -13,8 +13,10 @@
  */
 package org.openmrs.scheduler.timer;
 
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -22,28 +24,38 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.Timer;
 import java.util.TreeMap;
-import java.util.WeakHashMap;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.scheduler.ConcurrencyPolicy;
 import org.openmrs.scheduler.SchedulerConstants;
 import org.openmrs.scheduler.SchedulerException;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.SchedulerUtil;
 import org.openmrs.scheduler.Task;
 import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.TaskExecutionStatistics;
 import org.openmrs.scheduler.TaskFactory;
 import org.openmrs.scheduler.db.SchedulerDAO;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsMemento;
 import org.springframework.orm.ObjectRetrievalFailureException;
 
 /**
- * Simple scheduler service that uses JDK timer to trigger and execute scheduled tasks.
+ * Simple scheduler service that triggers the scheduled tasks on a thread of its own and executes
+ * them on a shared pool of threads, the size of which is set by the
+ * {@link OpenmrsConstants#GP_SCHEDULER_THREAD_POOL_SIZE} global property.
  */
 public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements SchedulerService {
 	
@@ -60,17 +72,39 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 	/**
 	 * Scheduled Task Map
 	 */
-	private static Map<Integer, TimerSchedulerTask> scheduledTasks = new WeakHashMap<Integer, TimerSchedulerTask>();
+	private Map<Integer, TimerSchedulerTask> scheduledTasks = Collections
+	        .synchronizedMap(new HashMap<Integer, TimerSchedulerTask>());
 	
 	/**
-	 * A single timer used to keep track of all scheduled tasks. The Timer's associated thread
-	 * should run as a daemon. A deamon thread is called for if the timer will be used to schedule
-	 * repeating "maintenance activities", which must be performed as long as the application is
+	 * The threads that execute all scheduled tasks. The threads run as daemons because the tasks
+	 * are repeating "maintenance activities", which must be performed as long as the application is
 	 * running, but should not prolong the lifetime of the application.
-	 * 
-	 * @see java.util.Timer#Timer(boolean)
 	 */
-	private Map<TaskDefinition, Timer> taskDefinitionTimerMap = new HashMap<TaskDefinition, Timer>();
+	private ThreadPoolExecutor executor;
+	
+	/**
+	 * The thread that fires the scheduled tasks when they are due and hands them to the
+	 * {@link #executor}. It is separate from the executor, so that long running tasks that occupy
+	 * all scheduler threads cannot delay when the other tasks fire.
+	 */
+	private ScheduledThreadPoolExecutor triggerExecutor;
+	
+	/**
+	 * Identifies this server in the leases of the tasks it runs
+	 */
+	private static final String NODE_ID = createNodeId();
+	
+	/**
+	 * Renews the task leases of this server, started when it takes its first lease
+	 */
+	private TimerSchedulerTask leaseHeartbeat;
+	
+	/**
+	 * The thread that runs the {@link #leaseHeartbeat}. It is separate from the {@link #executor}, so
+	 * that long running tasks that occupy all scheduler threads cannot keep the leases from being
+	 * renewed.
+	 */
+	private ScheduledThreadPoolExecutor heartbeatExecutor;
 	
 	/**
 	 * Global data access object context
@@ -126,23 +160,37 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		// gracefully shutdown all tasks and remove all references to the timers, scheduler
 		try {
 			shutdownAllTasks();
-			cancelAllTimers(); // Just a precaution - this shouldn't be necessary if shutdownAllTasks() does its job
 		}
 		catch (APIException e) {
 			log.error("Failed to stop all tasks due to API exception", e);
 		}
 		finally {
-			scheduledTasks = null;
+			scheduledTasks.clear();
+			shutdownExecutor(); // stops the tasks that shutdownAllTasks() could not
 		}
 		
 	}
 	
 	/**
-	 * Convenience method to stop all tasks in the {@link #taskDefinitionTimerMap}
+	 * Stops the {@link #triggerExecutor}, the {@link #executor} and the {@link #heartbeatExecutor},
+	 * letting the running executions finish
 	 */
-	private void cancelAllTimers() {
-		for (Timer timer : taskDefinitionTimerMap.values()) {
-			timer.cancel();
+	private synchronized void shutdownExecutor() {
+		if (leaseHeartbeat != null) {
+			leaseHeartbeat.shutdown();
+			leaseHeartbeat = null;
+		}
+		if (heartbeatExecutor != null) {
+			heartbeatExecutor.shutdown();
+			heartbeatExecutor = null;
+		}
+		if (triggerExecutor != null) {
+			triggerExecutor.shutdown();
+			triggerExecutor = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
 		}
 	}
 	
@@ -168,22 +216,58 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 	}
 	
 	/**
-	 * Get the {@link Timer} that is assigned to the given {@link TaskDefinition} object. If a Timer
-	 * doesn't exist yet, one is created, added to {@link #taskDefinitionTimerMap} and then returned
+	 * Gets the {@link #executor} that runs all scheduled tasks, creating it if it doesn't exist yet
 	 * 
-	 * @param taskDefinition the {@link TaskDefinition} to look for
-	 * @return the {@link Timer} associated with the given {@link TaskDefinition}
+	 * @return the scheduler threads
 	 */
-	private Timer getTimer(TaskDefinition taskDefinition) {
-		Timer timer;
-		if (taskDefinitionTimerMap.containsKey(taskDefinition)) {
-			timer = taskDefinitionTimerMap.get(taskDefinition);
-		} else {
-			timer = new Timer(true);
-			taskDefinitionTimerMap.put(taskDefinition, timer);
+	private synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			int poolSize = SchedulerConstants.SCHEDULER_DEFAULT_THREAD_POOL_SIZE;
+			try {
+				poolSize = Context.getAdministrationService().getGlobalPropertyValue(
+				    OpenmrsConstants.GP_SCHEDULER_THREAD_POOL_SIZE, poolSize);
+			}
+			catch (Exception e) {
+				log.warn("Unable to read the " + OpenmrsConstants.GP_SCHEDULER_THREAD_POOL_SIZE
+				        + " global property, using the default of " + poolSize + " threads", e);
+			}
+			
+			poolSize = Math.max(1, poolSize);
+			final AtomicInteger threadNumber = new AtomicInteger();
+			ThreadFactory threadFactory = new ThreadFactory() {
+				
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "OpenMRS Scheduler-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			};
+			executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+			        new LinkedBlockingQueue<Runnable>(), threadFactory);
+		}
+		
+		return executor;
+	}
+	
+	/**
+	 * Gets the {@link #triggerExecutor} that fires all scheduled tasks, creating it if it doesn't
+	 * exist yet
+	 * 
+	 * @return the scheduler trigger thread
+	 */
+	private synchronized ScheduledThreadPoolExecutor getTriggerExecutor() {
+		if (triggerExecutor == null) {
+			triggerExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "OpenMRS Scheduler-trigger");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
 		}
 		
-		return timer;
+		return triggerExecutor;
 	}
 	
 	/**
@@ -213,11 +297,10 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 				// if we were unable to get a class, just quit
 				if (clientTask != null) {
 					
-					schedulerTask = new TimerSchedulerTask(clientTask);
+					schedulerTask = new TimerSchedulerTask(clientTask, ConcurrencyPolicy.getPolicy(taskDefinition));
 					taskDefinition.setTaskInstance(clientTask);
 					
-					// Once this method is called, the timer is set to start at the given start time.
-					// NOTE:  We need to adjust the repeat interval as the JDK Timer expects time in milliseconds and 
+					// NOTE:  We need to adjust the repeat interval as the executor expects time in milliseconds and 
 					// we record by seconds.  
 					
 					long repeatInterval = 0;
@@ -226,23 +309,25 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 					
 					if (taskDefinition.getStartTime() != null) {
 						// Need to calculate the "next execution time" because the scheduled time is most likely in the past
-						// and the JDK timer will run the task X number of times from the start time until now to catch up.
+						// and a fixed rate schedule would run the task X number of times from the start time until now to catch up.
 						Date nextTime = SchedulerUtil.getNextExecution(taskDefinition);
 						
 						// Start task at fixed rate at given future date and repeat as directed 							
 						log.info("Starting task ... the task will execute for the first time at " + nextTime);
 						
 						// Schedule the task to run at a fixed rate
-						getTimer(taskDefinition).scheduleAtFixedRate(schedulerTask, nextTime, repeatInterval);
+						long delay = Math.max(0, nextTime.getTime() - System.currentTimeMillis());
+						schedulerTask.schedule(getTriggerExecutor(), getExecutor(), delay, repeatInterval);
 					} else if (repeatInterval > 0) {
 						// Start task on repeating schedule, delay for SCHEDULER_DEFAULT_DELAY seconds	
 						log.info("Delaying start time by " + SchedulerConstants.SCHEDULER_DEFAULT_DELAY + " seconds");
-						getTimer(taskDefinition).scheduleAtFixedRate(schedulerTask,
-						    SchedulerConstants.SCHEDULER_DEFAULT_DELAY, repeatInterval);
+						schedulerTask.schedule(getTriggerExecutor(), getExecutor(),
+						    SchedulerConstants.SCHEDULER_DEFAULT_DELAY * SchedulerConstants.SCHEDULER_MILLIS_PER_SECOND,
+						    repeatInterval);
 					} else {
 						// schedule for single execution, starting now
 						log.info("Starting one-shot task");
-						getTimer(taskDefinition).schedule(schedulerTask, new Date());
+						schedulerTask.schedule(getTriggerExecutor(), getExecutor(), 0, 0);
 					}
 					
 					// Update task that has been started
@@ -279,6 +364,10 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 				schedulerTask.shutdown(); // Stops the timer and tells the timer task to release its resources 
 			}
 			
+			// Let another server take the task over right away
+			if (taskDefinition.getId() != null && isClustered())
+				getSchedulerDAO().releaseTaskLease(taskDefinition.getId(), NODE_ID);
+			
 			// Update task that has been started
 			taskDefinition.setStarted(false);
 			saveTask(taskDefinition);
@@ -326,7 +415,10 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		// The real list of scheduled tasks is kept up-to-date in the scheduledTasks map
 		// TODO change the index for the scheduledTasks map to be the TaskDefinition rather than the ID
 		List<TaskDefinition> list = new ArrayList<TaskDefinition>();
-		Set<Integer> taskIds = scheduledTasks.keySet();
+		Set<Integer> taskIds;
+		synchronized (scheduledTasks) {
+			taskIds = new HashSet<Integer>(scheduledTasks.keySet());
+		}
 		for (Integer id : taskIds) {
 			TaskDefinition task = getTask(id);
 			log.debug("Adding scheduled task " + id + " to list (" + task.getRepeatInterval() + ")");
@@ -488,13 +580,102 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		TimerSchedulerTask scheduledTask = scheduledTasks.get(id);
 		
 		if (scheduledTask != null) {
-			if (scheduledTask.scheduledExecutionTime() > 0) {
-				return "Scheduled to execute at " + new Date(scheduledTask.scheduledExecutionTime());
-			} else {
+			TaskExecutionStatistics statistics = scheduledTask.getStatistics();
+			if (statistics.getRunningCount() > 0) {
 				return "Currently executing";
+			} else if (statistics.getNextExecutionTime() != null) {
+				return "Scheduled to execute at " + statistics.getNextExecutionTime();
 			}
 		}
 		return "Not Running";
 	}
 	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#getTaskExecutionStatistics(java.lang.Integer)
+	 */
+	public TaskExecutionStatistics getTaskExecutionStatistics(Integer id) {
+		TimerSchedulerTask scheduledTask = scheduledTasks.get(id);
+		return scheduledTask == null ? null : scheduledTask.getStatistics();
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#acquireTaskLease(org.openmrs.scheduler.TaskDefinition)
+	 */
+	public boolean acquireTaskLease(TaskDefinition task) {
+		if (task == null || task.getId() == null || !isClustered())
+			return true;
+		
+		long now = System.currentTimeMillis();
+		boolean acquired = getSchedulerDAO().acquireTaskLease(task.getId(), NODE_ID, new Date(now),
+		    new Date(now + getLeaseTimeout()));
+		if (acquired)
+			startLeaseHeartbeat();
+		else if (log.isDebugEnabled())
+			log.debug("Another server holds the lease on task " + task.getName());
+		
+		return acquired;
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#renewTaskLeases()
+	 */
+	public void renewTaskLeases() {
+		int renewed = getSchedulerDAO().renewTaskLeases(NODE_ID, new Date(System.currentTimeMillis() + getLeaseTimeout()));
+		if (log.isDebugEnabled())
+			log.debug("Renewed " + renewed + " task leases of " + NODE_ID);
+	}
+	
+	/**
+	 * Starts renewing the leases of this server a few times per lease timeout, unless it is
+	 * already doing so
+	 */
+	private synchronized void startLeaseHeartbeat() {
+		if (leaseHeartbeat == null) {
+			long period = getLeaseTimeout() / 3;
+			heartbeatExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "OpenMRS Scheduler-lease heartbeat");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			leaseHeartbeat = new TimerSchedulerTask(new TaskLeaseHeartbeat());
+			leaseHeartbeat.schedule(heartbeatExecutor, heartbeatExecutor, period, period);
+		}
+	}
+	
+	/**
+	 * @return true if servers take a lease on a task before running it
+	 */
+	private boolean isClustered() {
+		return Context.getAdministrationService().getGlobalPropertyValue(OpenmrsConstants.GP_SCHEDULER_CLUSTERED,
+		    Boolean.FALSE);
+	}
+	
+	/**
+	 * @return the number of milliseconds after which a lease expires unless it is renewed
+	 */
+	private long getLeaseTimeout() {
+		Integer seconds = Context.getAdministrationService().getGlobalPropertyValue(
+		    OpenmrsConstants.GP_SCHEDULER_LEASE_TIMEOUT, 120);
+		return Math.max(10, seconds) * (long) SchedulerConstants.SCHEDULER_MILLIS_PER_SECOND;
+	}
+	
+	/**
+	 * @return an identifier of this server that is unique across restarts
+	 */
+	private static String createNodeId() {
+		String host = "unknown";
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		}
+		catch (Exception e) {
+			// the random part is enough to tell servers apart
+		}
+		if (host.length() > 200)
+			host = host.substring(0, 200);
+		return host + "-" + UUID.randomUUID();
+	}
+	
 }
@@ -14,49 +14,244 @@
 package org.openmrs.scheduler.timer;
 
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.Daemon;
+import org.openmrs.scheduler.ConcurrencyPolicy;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.SchedulerUtil;
 import org.openmrs.scheduler.Task;
 import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.TaskExecutionStatistics;
+import org.openmrs.scheduler.tasks.AbstractTask;
 
+/**
+ * Runs a {@link Task} each time it is due on the threads of the scheduler, following the
+ * {@link ConcurrencyPolicy} of the task, and keeps statistics about its executions. <br/>
+ * <br/>
+ * The scheduler no longer uses a {@link java.util.Timer}, but this class still extends
+ * {@link TimerTask} so that code written against the earlier versions keeps working. Only
+ * {@link #cancel()} and {@link #scheduledExecutionTime()} are meaningful, the task is triggered by
+ * {@link #schedule(ScheduledExecutorService, Executor, long, long)}.
+ */
 public class TimerSchedulerTask extends TimerTask {
 	
-	/** The task that will be executed by the JDK timer. */
+	/** The task that will be executed by the scheduler. */
 	private Task task;
 	
+	/** What to do when the task is due while it is still running */
+	private ConcurrencyPolicy policy;
+	
+	/** The threads that run the executions, null to run them on the calling thread */
+	private Executor executor;
+	
+	/** The trigger of the executions, cancelled when the task is shut down */
+	private ScheduledFuture<?> future;
+	
+	/** The number of milliseconds between executions, 0 if the task runs once */
+	private long period;
+	
+	/** When the task is due next, 0 if it will not run again */
+	private long nextExecutionTime;
+	
+	/** When the most recent execution was due, 0 if the task has not run yet */
+	private long lastDueTime;
+	
+	private boolean cancelled = false;
+	
+	/** When each of the executions that wait for the running one were due */
+	private LinkedList<Long> queued = new LinkedList<Long>();
+	
+	private int running = 0;
+	
+	private int executionCount = 0;
+	
+	private int failureCount = 0;
+	
+	private int skippedCount = 0;
+	
+	private Date lastExecutionTime;
+	
+	private Long lastDuration;
+	
+	private Long lastLag;
+	
+	private Throwable lastFailure;
+	
 	/** Logger */
 	private static Log log = LogFactory.getLog(TimerSchedulerTask.class);
 	
 	/** * Public constructor */
 	public TimerSchedulerTask(Task task) {
+		this(task, ConcurrencyPolicy.SKIP_IF_RUNNING);
+	}
+	
+	/**
+	 * @param task the task to run
+	 * @param policy what to do when the task is due while it is still running
+	 * @since 1.9.9
+	 */
+	public TimerSchedulerTask(Task task, ConcurrencyPolicy policy) {
 		this.task = task;
+		this.policy = policy;
+	}
+	
+	/**
+	 * Starts triggering the task on the given trigger thread and hands each execution to the given
+	 * executor, so that a long execution does not hold up the trigger. The trigger should not share
+	 * its threads with the executor, or long running executions that occupy them all delay when
+	 * the tasks fire.
+	 * 
+	 * @param trigger the thread that fires the task when it is due
+	 * @param executor the threads that run the executions
+	 * @param delay the number of milliseconds until the first execution
+	 * @param period the number of milliseconds between executions, 0 to run the task once
+	 * @since 1.9.9
+	 */
+	public synchronized void schedule(ScheduledExecutorService trigger, Executor executor, long delay, long period) {
+		this.executor = executor;
+		this.period = period;
+		this.nextExecutionTime = System.currentTimeMillis() + delay;
+		if (period > 0)
+			future = trigger.scheduleAtFixedRate(this, delay, period, TimeUnit.MILLISECONDS);
+		else
+			future = trigger.schedule(this, delay, TimeUnit.MILLISECONDS);
 	}
 	
 	/**
-	 * * Executes the action to be performed by this timer task.
+	 * Called each time the task is due. Starts an execution unless the concurrency policy says to
+	 * skip or queue it because the previous execution is still running.
 	 * 
-	 * @see java.util.TimerTask#run()
+	 * @see java.lang.Runnable#run()
+	 * @should skip the execution if the task is running and the policy is skip if running
+	 * @should run the queued executions one after the other if the policy is queue
 	 */
 	@Override
 	public void run() {
+		final long dueTime;
+		synchronized (this) {
+			if (cancelled)
+				return;
+			dueTime = nextExecutionTime;
+			lastDueTime = dueTime;
+			nextExecutionTime = period > 0 ? dueTime + period : 0;
+			if (running > 0 && policy == ConcurrencyPolicy.SKIP_IF_RUNNING) {
+				skippedCount++;
+				if (log.isDebugEnabled())
+					log.debug("Skipping execution of task [" + task.getClass() + "] because it is still running");
+				return;
+			} else if (running > 0 && policy == ConcurrencyPolicy.QUEUE) {
+				queued.add(dueTime);
+				return;
+			}
+			running++;
+		}
+		
+		Runnable execution = new Runnable() {
+			
+			public void run() {
+				executeWhileQueued(dueTime);
+			}
+		};
+		if (executor == null) {
+			execution.run();
+		} else {
+			try {
+				executor.execute(execution);
+			}
+			catch (RejectedExecutionException e) {
+				// the scheduler is shutting down
+				synchronized (this) {
+					running--;
+				}
+				log.warn("Unable to start task [" + task.getClass() + "] because the scheduler is shut down");
+			}
+		}
+	}
+	
+	/**
+	 * Runs the execution that was due at the given time and then the executions that were queued
+	 * while it ran
+	 */
+	private void executeWhileQueued(long dueTime) {
+		Long next = dueTime;
+		while (next != null) {
+			execute(next);
+			synchronized (this) {
+				next = queued.poll();
+				if (next == null)
+					running--;
+			}
+		}
+	}
+	
+	/**
+	 * Runs the task as the daemon user and records how it went
+	 */
+	private void execute(long dueTime) {
+		long start = System.currentTimeMillis();
+		Throwable failure = null;
 		try {
 			Daemon.executeScheduledTask(task);
 		}
 		catch (Throwable t) {
 			// Fix #862: IllegalStateException: Timer already cancelled.
-			// Suppress error in order to keep the scheduler's Timer from completely failing.
+			// Suppress error in order to keep the scheduler from completely failing.
 			log.error(
 			    "FATAL ERROR: Task [" + task.getClass() + "] failed due to exception [" + t.getClass().getName() + "]", t);
 			SchedulerUtil.sendSchedulerError(t);
+			failure = t;
+		}
+		
+		synchronized (this) {
+			executionCount++;
+			lastExecutionTime = new Date(start);
+			lastDuration = System.currentTimeMillis() - start;
+			lastLag = dueTime > 0 ? Math.max(0, start - dueTime) : 0;
+			if (failure != null) {
+				failureCount++;
+				lastFailure = failure;
+			}
 		}
 	}
 	
+	/**
+	 * @return true if an execution of the task is running
+	 * @since 1.9.9
+	 */
+	public synchronized boolean isExecuting() {
+		return running > 0;
+	}
+	
+	/**
+	 * @return a snapshot of the statistics of the executions of the task
+	 * @since 1.9.9
+	 */
+	public synchronized TaskExecutionStatistics getStatistics() {
+		TaskExecutionStatistics statistics = new TaskExecutionStatistics();
+		statistics.setExecutionCount(executionCount);
+		statistics.setFailureCount(failureCount);
+		statistics.setSkippedCount(skippedCount);
+		statistics.setRunningCount(running);
+		statistics.setQueuedCount(queued.size());
+		statistics.setLastExecutionTime(lastExecutionTime);
+		statistics.setLastDuration(lastDuration);
+		statistics.setLastLag(lastLag);
+		statistics.setLastFailure(lastFailure);
+		if (!cancelled && nextExecutionTime > 0)
+			statistics.setNextExecutionTime(new Date(nextExecutionTime));
+		return statistics;
+	}
+	
 	/**
 	 * Save the last execution time in the TaskDefinition
 	 */
@@ -84,17 +279,77 @@ public class TimerSchedulerTask extends TimerTask {
 	}
 	
 	/**
-	 * Shutdown the timer task and invoke the task's shutdown() callback method.
+	 * @return when the most recent execution was due, 0 if the task has not run yet
+	 * @see java.util.TimerTask#scheduledExecutionTime()
+	 */
+	@Override
+	public synchronized long scheduledExecutionTime() {
+		return lastDueTime;
+	}
+	
+	/**
+	 * Stops triggering the task and drops the queued executions. A running execution is not
+	 * interrupted.
+	 * 
+	 * @return true if this prevented executions that were still due
+	 * @see java.util.TimerTask#cancel()
+	 */
+	@Override
+	public synchronized boolean cancel() {
+		boolean due = !cancelled && nextExecutionTime > 0;
+		cancelled = true;
+		queued.clear();
+		if (future != null)
+			future.cancel(false);
+		return due;
+	}
+	
+	/**
+	 * @return true if the task has been cancelled or shut down
+	 * @since 1.9.9
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Stops triggering the task, drops the queued executions and invokes the task's shutdown()
+	 * callback method. A running execution is not interrupted, but tasks that extend
+	 * {@link AbstractTask} are cancelled first so that a long execution can stop early by checking
+	 * {@link AbstractTask#isCancelled()}.
+	 * 
+	 * @should cancel the running task
 	 */
 	public void shutdown() {
-		super.cancel();
+		cancel();
+		if (task instanceof AbstractTask)
+			((AbstractTask) task).cancel();
 		task.shutdown();
 	}
 	
 	/**
-	 * Executes the given task.
+	 * Executes the given task, unless another server holds the lease on it.
+	 * 
+	 * @see SchedulerService#acquireTaskLease(TaskDefinition)
 	 */
 	public static void execute(Task task) {
+		if (task instanceof TaskLeaseHeartbeat) {
+			task.execute();
+			return;
+		}
+		
+		boolean leased;
+		try {
+			leased = Context.getSchedulerService().acquireTaskLease(task.getTaskDefinition());
+		}
+		catch (Exception e) {
+			// most likely another server took the lease at the same time
+			log.warn("Unable to take the lease on task [" + task.getClass() + "]", e);
+			leased = false;
+		}
+		if (!leased)
+			return;
+		
 		task.execute();
 		saveLastExecutionTime(task);
 	}
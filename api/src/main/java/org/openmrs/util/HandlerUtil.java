@@ -17,23 +17,83 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.annotation.Handler;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
 
 /**
  * Utility class that provides useful methods for working with classes that are annotated with the
- * {@link Handler} annotation
+ * {@link Handler} annotation. <br/>
+ * <br/>
+ * The ordered list of handlers for each (handlerType, type) pair is resolved once and cached. The
+ * cache is cleared whenever the Spring context is refreshed or a module is started or stopped, see
+ * {@link #clearCachedHandlers()}.
  * 
  * @since 1.5
  */
-public class HandlerUtil {
+@Component
+public class HandlerUtil implements ApplicationListener<ContextRefreshedEvent> {
 	
 	private static Log log = LogFactory.getLog(HandlerUtil.class);
 	
+	/**
+	 * Ordered handler lists keyed by the handlerType and the type they were looked up for
+	 */
+	private static final Map<HandlerKey, List<?>> cachedHandlers = new ConcurrentHashMap<HandlerKey, List<?>>();
+	
+	private static final AtomicLong cacheHits = new AtomicLong();
+	
+	private static final AtomicLong cacheMisses = new AtomicLong();
+	
+	/**
+	 * Clears the cached handlers when the application context is (re)started so that handlers
+	 * added or removed by modules are picked up
+	 * 
+	 * @see org.springframework.context.ApplicationListener#onApplicationEvent(org.springframework.context.ApplicationEvent)
+	 */
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		clearCachedHandlers();
+	}
+	
+	/**
+	 * Discards all cached handler lists so that the next call to
+	 * {@link #getHandlersForType(Class, Class)} scans the registered components again
+	 * 
+	 * @since 1.9.9
+	 */
+	public static void clearCachedHandlers() {
+		if (log.isDebugEnabled())
+			log.debug("Clearing " + cachedHandlers.size() + " cached handler lists");
+		cachedHandlers.clear();
+	}
+	
+	/**
+	 * @return the number of calls to {@link #getHandlersForType(Class, Class)} answered from the
+	 *         cache
+	 * @since 1.9.9
+	 */
+	public static long getCacheHits() {
+		return cacheHits.get();
+	}
+	
+	/**
+	 * @return the number of calls to {@link #getHandlersForType(Class, Class)} that had to scan
+	 *         the registered components
+	 * @since 1.9.9
+	 */
+	public static long getCacheMisses() {
+		return cacheMisses.get();
+	}
+	
 	/**
 	 * Retrieves a List of all registered components from the Context that are of the passed
 	 * handlerType and one or more of the following is true:
@@ -50,8 +110,32 @@ public class HandlerUtil {
 	 * @should return a list of all classes that can handle the passed type
 	 * @should return classes registered in a module
 	 * @should return an empty list if no classes can handle the passed type
+	 * @should return cached handlers on subsequent calls
+	 * @should rescan the registered components after the cache is cleared
 	 */
+	@SuppressWarnings("unchecked")
 	public static <H, T> List<H> getHandlersForType(Class<H> handlerType, Class<T> type) {
+		HandlerKey key = new HandlerKey(handlerType, type);
+		List<H> handlers = (List<H>) cachedHandlers.get(key);
+		if (handlers != null) {
+			cacheHits.incrementAndGet();
+		} else {
+			cacheMisses.incrementAndGet();
+			handlers = Collections.unmodifiableList(findHandlersForType(handlerType, type));
+			cachedHandlers.put(key, handlers);
+		}
+		
+		// callers are free to modify the returned list
+		return new ArrayList<H>(handlers);
+	}
+	
+	/**
+	 * Scans all registered components for handlers of the given handlerType that support the given
+	 * type
+	 * 
+	 * @see #getHandlersForType(Class, Class)
+	 */
+	private static <H, T> List<H> findHandlersForType(Class<H> handlerType, Class<T> type) {
 		
 		List<H> handlers = new ArrayList<H>();
 		
@@ -140,4 +224,35 @@ public class HandlerUtil {
 		}
 		return annotation.order();
 	}
+	
+	/**
+	 * Key of the {@link HandlerUtil#cachedHandlers} map
+	 */
+	private static class HandlerKey {
+		
+		private final Class<?> handlerType;
+		
+		private final Class<?> type;
+		
+		public HandlerKey(Class<?> handlerType, Class<?> type) {
+			this.handlerType = handlerType;
+			this.type = type;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof HandlerKey))
+				return false;
+			HandlerKey other = (HandlerKey) obj;
+			return handlerType == other.handlerType && type == other.type;
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = 31 + (handlerType == null ? 0 : handlerType.hashCode());
+			return 31 * result + (type == null ? 0 : type.hashCode());
+		}
+	}
 }
@@ -0,0 +1,644 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openmrs.Cohort;
+
+/**
+ * A compressed set of integers, used to hold the members of a {@link Cohort}. The values are split
+ * into chunks of 65536 by their upper 16 bits. A chunk with few values keeps them as a sorted
+ * array of their lower 16 bits, a chunk with more than {@value #MAX_ARRAY_SIZE} values as a bitmap
+ * of 8kB, so a set of a million patient ids takes a few hundred kilobytes instead of the tens of
+ * megabytes of a set of boxed integers. <br/>
+ * <br/>
+ * {@link #or(IntegerBitmapSet, IntegerBitmapSet)}, {@link #and(IntegerBitmapSet, IntegerBitmapSet)}
+ * and {@link #andNot(IntegerBitmapSet, IntegerBitmapSet)} work on the chunks directly, as do
+ * {@link #addAll(Collection)}, {@link #retainAll(Collection)} and {@link #removeAll(Collection)}
+ * when they are given another IntegerBitmapSet. <br/>
+ * <br/>
+ * Values are iterated in ascending order, with negative values after the positive ones. This
+ * class is not thread safe.
+ * 
+ * @since 1.9.9
+ */
+public class IntegerBitmapSet extends AbstractSet<Integer> implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * The maximum number of values a chunk keeps as an array before it switches to a bitmap
+	 */
+	public static final int MAX_ARRAY_SIZE = 4096;
+	
+	private static final int BITMAP_WORDS = 1024;
+	
+	private int[] keys;
+	
+	private Container[] containers;
+	
+	private int count;
+	
+	public IntegerBitmapSet() {
+		this(4);
+	}
+	
+	/**
+	 * @param values the values to add
+	 */
+	public IntegerBitmapSet(Collection<? extends Integer> values) {
+		this();
+		addAll(values);
+	}
+	
+	private IntegerBitmapSet(int capacity) {
+		keys = new int[Math.max(capacity, 4)];
+		containers = new Container[keys.length];
+	}
+	
+	/**
+	 * @param values a collection of integers
+	 * @return the given collection if it is an IntegerBitmapSet, otherwise a new IntegerBitmapSet
+	 *         with the same values
+	 */
+	public static IntegerBitmapSet valueOf(Collection<? extends Integer> values) {
+		if (values instanceof IntegerBitmapSet)
+			return (IntegerBitmapSet) values;
+		
+		return new IntegerBitmapSet(values);
+	}
+	
+	/**
+	 * @param value the value to add
+	 * @return true if the value was not in the set yet
+	 * @should keep the values in ascending order
+	 * @should switch between array and bitmap chunks
+	 */
+	public boolean add(int value) {
+		int key = value >>> 16;
+		int i = indexOf(key);
+		if (i < 0) {
+			i = -i - 1;
+			insertContainer(i, key, new Container());
+		}
+		return containers[i].add((char) value);
+	}
+	
+	/**
+	 * @param value the value to look for
+	 * @return true if the value is in the set
+	 */
+	public boolean contains(int value) {
+		int i = indexOf(value >>> 16);
+		return i >= 0 && containers[i].contains((char) value);
+	}
+	
+	/**
+	 * @param value the value to remove
+	 * @return true if the value was in the set
+	 */
+	public boolean remove(int value) {
+		int i = indexOf(value >>> 16);
+		if (i < 0)
+			return false;
+		
+		boolean removed = containers[i].remove((char) value);
+		if (containers[i].cardinality == 0)
+			removeContainer(i);
+		return removed;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#add(java.lang.Object)
+	 */
+	@Override
+	public boolean add(Integer value) {
+		return add(value.intValue());
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer && contains(((Integer) o).intValue());
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		return o instanceof Integer && remove(((Integer) o).intValue());
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < count; i++)
+			size += containers[i].cardinality;
+		return size;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#clear()
+	 */
+	@Override
+	public void clear() {
+		keys = new int[4];
+		containers = new Container[4];
+		count = 0;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			
+			private long next = ceiling(0);
+			
+			private long last = -1;
+			
+			public boolean hasNext() {
+				return next >= 0;
+			}
+			
+			public Integer next() {
+				if (next < 0)
+					throw new NoSuchElementException();
+				
+				last = next;
+				next = last < 0xFFFFFFFFL ? ceiling(last + 1) : -1;
+				return (int) last;
+			}
+			
+			public void remove() {
+				if (last < 0)
+					throw new IllegalStateException();
+				
+				IntegerBitmapSet.this.remove((int) last);
+				last = -1;
+			}
+		};
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#addAll(java.util.Collection)
+	 * @should add all values of another bitmap set
+	 */
+	@Override
+	public boolean addAll(Collection<? extends Integer> c) {
+		if (c instanceof IntegerBitmapSet) {
+			int size = size();
+			replaceWith(or(this, (IntegerBitmapSet) c));
+			return size() != size;
+		}
+		
+		return super.addAll(c);
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#retainAll(java.util.Collection)
+	 */
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		int size = size();
+		if (c instanceof IntegerBitmapSet) {
+			replaceWith(and(this, (IntegerBitmapSet) c));
+		} else {
+			IntegerBitmapSet retained = new IntegerBitmapSet();
+			for (Iterator<Integer> i = iterator(); i.hasNext();) {
+				Integer value = i.next();
+				if (c.contains(value))
+					retained.add(value.intValue());
+			}
+			replaceWith(retained);
+		}
+		return size() != size;
+	}
+	
+	/**
+	 * @see java.util.AbstractSet#removeAll(java.util.Collection)
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		if (c instanceof IntegerBitmapSet) {
+			int size = size();
+			replaceWith(andNot(this, (IntegerBitmapSet) c));
+			return size() != size;
+		}
+		
+		boolean changed = false;
+		for (Object o : c)
+			changed |= remove(o);
+		return changed;
+	}
+	
+	/**
+	 * @return the values of this set, in the order they are iterated
+	 */
+	public int[] toIntArray() {
+		int[] values = new int[size()];
+		int n = 0;
+		for (int i = 0; i < count; i++)
+			n = containers[i].copyValues(keys[i] << 16, values, n);
+		return values;
+	}
+	
+	/**
+	 * @param a a set
+	 * @param b another set
+	 * @return a new set with the values of both sets
+	 */
+	public static IntegerBitmapSet or(IntegerBitmapSet a, IntegerBitmapSet b) {
+		IntegerBitmapSet result = new IntegerBitmapSet(a.count + b.count);
+		int i = 0;
+		int j = 0;
+		while (i < a.count && j < b.count) {
+			if (a.keys[i] < b.keys[j]) {
+				result.append(a.keys[i], a.containers[i++].copy());
+			} else if (a.keys[i] > b.keys[j]) {
+				result.append(b.keys[j], b.containers[j++].copy());
+			} else {
+				result.append(a.keys[i], Container.or(a.containers[i++], b.containers[j++]));
+			}
+		}
+		for (; i < a.count; i++)
+			result.append(a.keys[i], a.containers[i].copy());
+		for (; j < b.count; j++)
+			result.append(b.keys[j], b.containers[j].copy());
+		return result;
+	}
+	
+	/**
+	 * @param a a set
+	 * @param b another set
+	 * @return a new set with the values that are in both sets
+	 * @should return the values that are in both sets
+	 */
+	public static IntegerBitmapSet and(IntegerBitmapSet a, IntegerBitmapSet b) {
+		IntegerBitmapSet result = new IntegerBitmapSet(Math.min(a.count, b.count));
+		int i = 0;
+		int j = 0;
+		while (i < a.count && j < b.count) {
+			if (a.keys[i] < b.keys[j]) {
+				i++;
+			} else if (a.keys[i] > b.keys[j]) {
+				j++;
+			} else {
+				result.append(a.keys[i], Container.and(a.containers[i++], b.containers[j++]));
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @param a a set
+	 * @param b the set to subtract
+	 * @return a new set with the values of the first set that are not in the second
+	 * @should return the values that are only in the first set
+	 */
+	public static IntegerBitmapSet andNot(IntegerBitmapSet a, IntegerBitmapSet b) {
+		IntegerBitmapSet result = new IntegerBitmapSet(a.count);
+		int j = 0;
+		for (int i = 0; i < a.count; i++) {
+			while (j < b.count && b.keys[j] < a.keys[i])
+				j++;
+			if (j < b.count && b.keys[j] == a.keys[i])
+				result.append(a.keys[i], Container.andNot(a.containers[i], b.containers[j]));
+			else
+				result.append(a.keys[i], a.containers[i].copy());
+		}
+		return result;
+	}
+	
+	/**
+	 * Finds the smallest value in the set that is at least the given value, comparing both as
+	 * unsigned integers
+	 * 
+	 * @param from the unsigned value to start at
+	 * @return the unsigned value found, or -1 if there is none
+	 */
+	private long ceiling(long from) {
+		int key = (int) (from >>> 16);
+		int i = indexOf(key);
+		int low = (int) (from & 0xFFFF);
+		if (i < 0) {
+			i = -i - 1;
+			low = 0;
+		}
+		for (; i < count; i++) {
+			int value = containers[i].nextValue(keys[i] == key ? low : 0);
+			if (value >= 0)
+				return ((long) keys[i] << 16) | value;
+		}
+		return -1;
+	}
+	
+	private int indexOf(int key) {
+		return Arrays.binarySearch(keys, 0, count, key);
+	}
+	
+	private void insertContainer(int index, int key, Container container) {
+		if (count == keys.length) {
+			keys = Arrays.copyOf(keys, count * 2);
+			containers = Arrays.copyOf(containers, count * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, count - index);
+		System.arraycopy(containers, index, containers, index + 1, count - index);
+		keys[index] = key;
+		containers[index] = container;
+		count++;
+	}
+	
+	private void removeContainer(int index) {
+		System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+		count--;
+		containers[count] = null;
+	}
+	
+	private void append(int key, Container container) {
+		if (container != null)
+			insertContainer(count, key, container);
+	}
+	
+	private void replaceWith(IntegerBitmapSet other) {
+		keys = other.keys;
+		containers = other.containers;
+		count = other.count;
+	}
+	
+	/**
+	 * The values of one chunk, either as a sorted array of their lower 16 bits or as a bitmap
+	 */
+	private static final class Container implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private char[] array;
+		
+		private long[] bitmap;
+		
+		private int cardinality;
+		
+		Container() {
+			array = new char[4];
+		}
+		
+		Container(char[] array, int cardinality) {
+			this.array = array;
+			this.cardinality = cardinality;
+		}
+		
+		Container(long[] bitmap) {
+			this.bitmap = bitmap;
+			for (long word : bitmap)
+				cardinality += Long.bitCount(word);
+			toArrayIfSmall();
+		}
+		
+		boolean contains(char low) {
+			if (bitmap != null)
+				return (bitmap[low >>> 6] & (1L << low)) != 0;
+			
+			return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+		}
+		
+		boolean add(char low) {
+			if (bitmap != null) {
+				long mask = 1L << low;
+				if ((bitmap[low >>> 6] & mask) != 0)
+					return false;
+				
+				bitmap[low >>> 6] |= mask;
+				cardinality++;
+				return true;
+			}
+			
+			int i = Arrays.binarySearch(array, 0, cardinality, low);
+			if (i >= 0)
+				return false;
+			
+			if (cardinality == MAX_ARRAY_SIZE) {
+				bitmap = getBits();
+				array = null;
+				return add(low);
+			}
+			
+			i = -i - 1;
+			if (cardinality == array.length)
+				array = Arrays.copyOf(array, Math.min(array.length * 2, MAX_ARRAY_SIZE));
+			System.arraycopy(array, i, array, i + 1, cardinality - i);
+			array[i] = low;
+			cardinality++;
+			return true;
+		}
+		
+		boolean remove(char low) {
+			if (bitmap != null) {
+				long mask = 1L << low;
+				if ((bitmap[low >>> 6] & mask) == 0)
+					return false;
+				
+				bitmap[low >>> 6] &= ~mask;
+				cardinality--;
+				toArrayIfSmall();
+				return true;
+			}
+			
+			int i = Arrays.binarySearch(array, 0, cardinality, low);
+			if (i < 0)
+				return false;
+			
+			System.arraycopy(array, i + 1, array, i, cardinality - i - 1);
+			cardinality--;
+			return true;
+		}
+		
+		/**
+		 * @return the smallest lower 16 bits in this chunk that are at least the given ones, or -1
+		 */
+		int nextValue(int fromLow) {
+			if (bitmap != null) {
+				int w = fromLow >>> 6;
+				long word = bitmap[w] & (-1L << fromLow);
+				while (true) {
+					if (word != 0)
+						return w * 64 + Long.numberOfTrailingZeros(word);
+					if (++w == BITMAP_WORDS)
+						return -1;
+					word = bitmap[w];
+				}
+			}
+			
+			int i = Arrays.binarySearch(array, 0, cardinality, (char) fromLow);
+			if (i < 0)
+				i = -i - 1;
+			return i < cardinality ? array[i] : -1;
+		}
+		
+		int copyValues(int high, int[] values, int n) {
+			if (bitmap != null) {
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					long word = bitmap[w];
+					while (word != 0) {
+						values[n++] = high | (w * 64 + Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+			} else {
+				for (int i = 0; i < cardinality; i++)
+					values[n++] = high | array[i];
+			}
+			return n;
+		}
+		
+		Container copy() {
+			if (bitmap != null) {
+				Container copy = new Container(null, cardinality);
+				copy.bitmap = bitmap.clone();
+				return copy;
+			}
+			
+			return new Container(Arrays.copyOf(array, Math.max(cardinality, 4)), cardinality);
+		}
+		
+		/**
+		 * @return a copy of the values of this chunk as a bitmap
+		 */
+		long[] getBits() {
+			if (bitmap != null)
+				return bitmap.clone();
+			
+			long[] bits = new long[BITMAP_WORDS];
+			for (int i = 0; i < cardinality; i++)
+				bits[array[i] >>> 6] |= 1L << array[i];
+			return bits;
+		}
+		
+		private void toArrayIfSmall() {
+			if (bitmap == null || cardinality > MAX_ARRAY_SIZE)
+				return;
+			
+			char[] values = new char[Math.max(cardinality, 4)];
+			int n = 0;
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				long word = bitmap[w];
+				while (word != 0) {
+					values[n++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			array = values;
+			bitmap = null;
+		}
+		
+		static Container or(Container a, Container b) {
+			if (a.bitmap == null && b.bitmap == null && a.cardinality + b.cardinality <= MAX_ARRAY_SIZE) {
+				char[] values = new char[Math.max(a.cardinality + b.cardinality, 4)];
+				int i = 0;
+				int j = 0;
+				int n = 0;
+				while (i < a.cardinality && j < b.cardinality) {
+					if (a.array[i] < b.array[j])
+						values[n++] = a.array[i++];
+					else if (a.array[i] > b.array[j])
+						values[n++] = b.array[j++];
+					else {
+						values[n++] = a.array[i++];
+						j++;
+					}
+				}
+				while (i < a.cardinality)
+					values[n++] = a.array[i++];
+				while (j < b.cardinality)
+					values[n++] = b.array[j++];
+				return new Container(values, n);
+			}
+			
+			long[] bits = a.getBits();
+			if (b.bitmap != null) {
+				for (int w = 0; w < BITMAP_WORDS; w++)
+					bits[w] |= b.bitmap[w];
+			} else {
+				for (int j = 0; j < b.cardinality; j++)
+					bits[b.array[j] >>> 6] |= 1L << b.array[j];
+			}
+			return new Container(bits);
+		}
+		
+		static Container and(Container a, Container b) {
+			if (a.bitmap == null || b.bitmap == null) {
+				Container small = a.bitmap == null ? a : b;
+				Container other = small == a ? b : a;
+				char[] values = new char[Math.max(small.cardinality, 4)];
+				int n = 0;
+				for (int i = 0; i < small.cardinality; i++) {
+					if (other.contains(small.array[i]))
+						values[n++] = small.array[i];
+				}
+				return n == 0 ? null : new Container(values, n);
+			}
+			
+			long[] bits = new long[BITMAP_WORDS];
+			for (int w = 0; w < BITMAP_WORDS; w++)
+				bits[w] = a.bitmap[w] & b.bitmap[w];
+			Container result = new Container(bits);
+			return result.cardinality == 0 ? null : result;
+		}
+		
+		static Container andNot(Container a, Container b) {
+			if (a.bitmap == null) {
+				char[] values = new char[Math.max(a.cardinality, 4)];
+				int n = 0;
+				for (int i = 0; i < a.cardinality; i++) {
+					if (!b.contains(a.array[i]))
+						values[n++] = a.array[i];
+				}
+				return n == 0 ? null : new Container(values, n);
+			}
+			
+			long[] bits = a.bitmap.clone();
+			if (b.bitmap != null) {
+				for (int w = 0; w < BITMAP_WORDS; w++)
+					bits[w] &= ~b.bitmap[w];
+			} else {
+				for (int j = 0; j < b.cardinality; j++)
+					bits[b.array[j] >>> 6] &= ~(1L << b.array[j]);
+			}
+			Container result = new Container(bits);
+			return result.cardinality == 0 ? null : result;
+		}
+	}
+}
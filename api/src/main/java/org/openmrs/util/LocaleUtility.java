@@ -13,11 +13,14 @@
  */
 package org.openmrs.util;
 
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.LocaleUtils;
 import org.apache.commons.logging.Log;
@@ -46,6 +49,12 @@ public class LocaleUtility implements GlobalPropertyListener {
 	 */
 	private static List<Locale> localesAllowedListCache = null;
 	
+	/**
+	 * Cached results of {@link #getLocalesInOrder()} by the locale of the user, so that the set is
+	 * not built again for every concept name that is looked up
+	 */
+	private static Map<Locale, Set<Locale>> localesInOrderCache = new ConcurrentHashMap<Locale, Set<Locale>>();
+	
 	/**
 	 * Default internal locale.
 	 * 
@@ -170,6 +179,9 @@ public class LocaleUtility implements GlobalPropertyListener {
 	 * in the order they are specified in the 'allowed.locale.list' global property and 'en' at the
 	 * very end of the set if it isn't yet among them.
 	 * 
+	 * The returned set is unmodifiable and the same instance is returned for the same user locale
+	 * until one of the locale global properties changes.
+	 * 
 	 * @returns a collection of all specified and allowed locales with no duplicates.
 	 * @should return a set of locales with a predictable order
 	 * @should return a set of locales with no duplicates
@@ -177,12 +189,17 @@ public class LocaleUtility implements GlobalPropertyListener {
 	 * @should have default locale as the second element if user has a preferred locale
 	 * @should always have english included in the returned collection
 	 * @should always have default locale default value included in the returned collection
+	 * @should return the same set until the allowed locales change
 	 * @since 1.7
 	 */
 	public static Set<Locale> getLocalesInOrder() {
+		Locale userLocale = Context.getLocale();
+		Set<Locale> locales = userLocale == null ? null : localesInOrderCache.get(userLocale);
+		if (locales != null)
+			return locales;
 		
-		Set<Locale> locales = new LinkedHashSet<Locale>();
-		locales.add(Context.getLocale());
+		locales = new LinkedHashSet<Locale>();
+		locales.add(userLocale);
 		locales.add(getDefaultLocale());
 		if (localesAllowedListCache == null)
 			localesAllowedListCache = Context.getAdministrationService().getAllowedLocales();
@@ -193,6 +210,11 @@ public class LocaleUtility implements GlobalPropertyListener {
 		locales.add(Locale.ENGLISH);
 		locales.add(fromSpecification(OpenmrsConstants.GLOBAL_PROPERTY_DEFAULT_LOCALE_DEFAULT_VALUE));
 		
+		locales = Collections.unmodifiableSet(locales);
+		// the default locale is not cached either while there is no session
+		if (userLocale != null && Context.isSessionOpen())
+			localesInOrderCache.put(userLocale, locales);
+		
 		return locales;
 	}
 	
@@ -201,6 +223,7 @@ public class LocaleUtility implements GlobalPropertyListener {
 		// reset the value
 		defaultLocaleCache = null;
 		localesAllowedListCache = null;
+		localesInOrderCache.clear();
 	}
 	
 	@Override
@@ -208,6 +231,7 @@ public class LocaleUtility implements GlobalPropertyListener {
 		// reset the value
 		defaultLocaleCache = null;
 		localesAllowedListCache = null;
+		localesInOrderCache.clear();
 	}
 	
 	@Override
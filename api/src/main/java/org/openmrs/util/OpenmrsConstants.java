@@ -211,6 +211,16 @@ public final class OpenmrsConstants {
 	 */
 	public static String AUTO_UPDATE_DATABASE_RUNTIME_PROPERTY = "auto_update_database";
 	
+	/**
+	 * The name of the runtime property that a user can set to true so that obs, encounters and
+	 * persons get their ids from reserved blocks instead of the database, which lets hibernate
+	 * insert them in batches
+	 * 
+	 * @see org.openmrs.api.db.hibernate.PooledIdentityGenerator
+	 * @since 1.9.9
+	 */
+	public static final String POOLED_ID_GENERATOR_RUNTIME_PROPERTY = "pooled_id_generator.enabled";
+	
 	/**
 	 * These words are ignored in concept and patient searches
 	 * 
@@ -762,6 +772,14 @@ public final class OpenmrsConstants {
 	
 	public static final String GLOBAL_PROPERTY_HL7_ARCHIVE_DIRECTORY = "hl7_archive.dir";
 	
+	/**
+	 * Global property name for the format migrated hl7 archives are stored in, either 'files' (the
+	 * default) or 'segments'
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_HL7_ARCHIVE_STORAGE_FORMAT = "hl7_archive.storage_format";
+	
 	public static final String GLOBAL_PROPERTY_DEFAULT_THEME = "default_theme";
 	
 	public static final String GLOBAL_PROPERTY_APPLICATION_NAME = "application.name";
@@ -792,6 +810,21 @@ public final class OpenmrsConstants {
 	
 	public static final String GLOBAL_PROPERTY_GZIP_ENABLED = "gzip.enabled";
 	
+	/**
+	 * Global property name for the number of bytes of a response that the gzip filter keeps in
+	 * memory before it compresses the response on the fly
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_GZIP_THRESHOLD = "gzip.threshold";
+	
+	/**
+	 * Global property name for the compression level of the gzip filter
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_GZIP_COMPRESSION_LEVEL = "gzip.compressionLevel";
+	
 	public static final String GLOBAL_PROPERTY_MEDICAL_RECORD_OBSERVATIONS = "concept.medicalRecordObservations";
 	
 	public static final String GLOBAL_PROPERTY_PROBLEM_LIST = "concept.problemList";
@@ -835,10 +868,48 @@ public final class OpenmrsConstants {
 	
 	public static final String GLOBAL_PROPERTY_PATIENT_SEARCH_MATCH_ANYWHERE = "ANYWHERE";
 	
+	/**
+	 * Global property name for whether patients are searched by name in the person_name_token index
+	 * instead of matching the columns of the person_name table
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_PATIENT_SEARCH_USE_NAME_INDEX = "patientSearch.useNameIndex";
+	
+	/**
+	 * Global property name for the phonetic algorithm, soundex or metaphone, whose precomputed keys
+	 * are compared to find similar people
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_PERSON_SIMILAR_PEOPLE_PHONETIC_ALGORITHM = "person.similarPeople.phoneticAlgorithm";
+	
 	public static final String GLOBAL_PROPERTY_DEFAULT_SERIALIZER = "serialization.defaultSerializer";
 	
 	public static final String GLOBAL_PROPERTY_IGNORE_MISSING_NONLOCAL_PATIENTS = "hl7_processor.ignore_missing_patient_non_local";
 	
+	/**
+	 * Global property name for the number of threads that process the hl7 inbound queue
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_HL7_PROCESSOR_WORKERS = "hl7_processor.workers";
+	
+	/**
+	 * Global property name for the number of hl7 inbound queue items claimed at a time
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_HL7_PROCESSOR_BATCH_SIZE = "hl7_processor.batch_size";
+	
+	/**
+	 * Global property name for the number of minutes after which claimed hl7 inbound queue items
+	 * that have not been processed are released back to the queue
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_HL7_PROCESSOR_CLAIM_TIMEOUT = "hl7_processor.claim_timeout_minutes";
+	
 	public static final String GLOBAL_PROPERTY_TRUE_CONCEPT = "concept.true";
 	
 	public static final String GLOBAL_PROPERTY_FALSE_CONCEPT = "concept.false";
@@ -1018,8 +1089,55 @@ public final class OpenmrsConstants {
 	
 	public static final String GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT = "concept.IndexUpdateTask.lastConceptUpdated";
 	
+	/**
+	 * Global property name for the partitions of concept ids that the concept index update task has
+	 * already rebuilt, used to resume a rebuild that was stopped
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS = "concept.IndexUpdateTask.completedPartitions";
+	
 	public static final String GP_CASE_SENSITIVE_NAMES_IN_CONCEPT_NAME_TABLE = "concept.caseSensitiveNamesInConceptNameTable";
 	
+	/**
+	 * Global property name for whether concept searches use the in-memory concept word index
+	 * instead of querying the concept_word table
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_CONCEPT_SEARCH_USE_IN_MEMORY_INDEX = "concept.search.useInMemoryIndex";
+	
+	/**
+	 * Global property name for the number of patients whose data is loaded at a time when
+	 * generating a data export
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_DATA_EXPORT_BATCH_SIZE = "dataExport.batchSize";
+	
+	/**
+	 * Global property name for the number of threads that run the scheduled tasks
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_SCHEDULER_THREAD_POOL_SIZE = "scheduler.threadPoolSize";
+	
+	/**
+	 * Global property name for whether the scheduler takes a lease on each task before running it,
+	 * so that servers sharing one database do not run the same task at the same time
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_SCHEDULER_CLUSTERED = "scheduler.clustered";
+	
+	/**
+	 * Global property name for the number of seconds after which the lease of a server on a task
+	 * expires if the server stops renewing it
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final String GP_SCHEDULER_LEASE_TIMEOUT = "scheduler.leaseTimeoutSeconds";
+	
 	/**
 	 * At OpenMRS startup these global properties/default values/descriptions are inserted into the
 	 * database if they do not exist yet.
@@ -1251,6 +1369,15 @@ public final class OpenmrsConstants {
 		                "false",
 		                "Set to 'true' to turn on OpenMRS's gzip filter, and have the webapp compress data before sending it to any client that supports it. Generally use this if you are running Tomcat standalone. If you are running Tomcat behind Apache, then you'd want to use Apache to do gzip compression.",
 		                BooleanDatatype.class, null));
+		
+		props.add(new GlobalProperty(GP_GZIP_THRESHOLD, "8192",
+		        "The number of bytes of a response that the gzip filter keeps in memory. Smaller responses are sent "
+		                + "with their length, larger ones are compressed and sent as they are written. Changes take "
+		                + "effect after a restart."));
+		
+		props.add(new GlobalProperty(GP_GZIP_COMPRESSION_LEVEL, "6",
+		        "The compression level of the gzip filter, from 1 for the fastest to 9 for the best compression. "
+		                + "Changes take effect after a restart."));
 		props
 		        .add(new GlobalProperty(GLOBAL_PROPERTY_REPORT_XML_MACROS, "",
 		                "Macros that will be applied to Report Schema XMLs when they are interpreted. This should be java.util.properties format."));
@@ -1342,6 +1469,17 @@ public final class OpenmrsConstants {
 		        "If true, hl7 messages for patients that are not found and are non-local will silently be dropped/ignored",
 		        BooleanDatatype.class, null));
 		
+		props.add(new GlobalProperty(GP_HL7_PROCESSOR_WORKERS, "1",
+		        "The number of threads that process the hl7 inbound queue. Messages for the same patient are always "
+		                + "processed by the same thread, in the order they were received."));
+		
+		props.add(new GlobalProperty(GP_HL7_PROCESSOR_BATCH_SIZE, "50",
+		        "The number of hl7 inbound queue entries that the hl7 processor claims from the queue at a time"));
+		
+		props.add(new GlobalProperty(GP_HL7_PROCESSOR_CLAIM_TIMEOUT, "60",
+		        "The number of minutes after which hl7 inbound queue entries that were claimed by an hl7 processor "
+		                + "but not finished, e.g. because the server was stopped, are put back in the queue"));
+		
 		props
 		        .add(new GlobalProperty(
 		                GLOBAL_PROPERTY_SHOW_PATIENT_NAME,
@@ -1355,6 +1493,10 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_HL7_ARCHIVE_DIRECTORY, HL7Constants.HL7_ARCHIVE_DIRECTORY_NAME,
 		        "The default name or absolute path for the folder where to write the hl7_in_archives."));
 		
+		props.add(new GlobalProperty(GP_HL7_ARCHIVE_STORAGE_FORMAT, HL7Constants.HL7_ARCHIVE_STORAGE_FILES,
+		        "How migrated hl7_in_archives are written to the archive folder: 'files' writes every archive to a "
+		                + "file of its own, 'segments' appends them to compressed segment files"));
+		
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_REPORT_BUG_URL, "http://errors.openmrs.org/scrap",
 		        "The openmrs url where to submit bug reports"));
 		
@@ -1382,6 +1524,15 @@ public final class OpenmrsConstants {
 		                "START",
 		                "Specifies how patient names are matched while searching patient. Valid values are 'ANYWHERE' or 'START'. Defaults to start if missing or invalid value is present."));
 		
+		props.add(new GlobalProperty(GP_PATIENT_SEARCH_USE_NAME_INDEX, "true",
+		        "Set to 'true' to search patients by name in the person_name_token index, which is kept up to date "
+		                + "when patients are saved. Set to 'false' to match the names in the person_name table instead.",
+		        BooleanDatatype.class, null));
+		
+		props.add(new GlobalProperty(GP_PERSON_SIMILAR_PEOPLE_PHONETIC_ALGORITHM, PhoneticUtil.SOUNDEX,
+		        "The phonetic algorithm used to find people with similar names, either 'soundex' or 'metaphone'. "
+		                + "The keys of both are stored with every person name."));
+		
 		props.add(new GlobalProperty(GP_ENABLE_CONCEPT_MAP_TYPE_MANAGEMENT, "false",
 		        "Enables or disables management of concept map types", BooleanDatatype.class, null));
 		
@@ -1445,6 +1596,30 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_USER_REQUIRE_EMAIL_AS_USERNAME, "false",
 		        "Indicates whether a username must be a valid e-mail or not.", BooleanDatatype.class, null));
 		
+		props
+		        .add(new GlobalProperty(
+		                GP_CONCEPT_SEARCH_USE_IN_MEMORY_INDEX,
+		                "false",
+		                "true/false whether concept searches should use an in-memory index of the concept words instead of querying the concept_word table. The index is built on the first search and uses memory in proportion to the size of the dictionary.",
+		                BooleanDatatype.class, null));
+		
+		props.add(new GlobalProperty(GP_DATA_EXPORT_BATCH_SIZE, "1000",
+		        "The number of patients whose data is loaded at a time when generating a data export. Memory use "
+		                + "grows with this number, a value of 0 or less loads the data of all patients at once."));
+		
+		props.add(new GlobalProperty(GP_SCHEDULER_THREAD_POOL_SIZE, "5",
+		        "The number of threads that run the scheduled tasks, tasks that are due while all threads are busy wait "
+		                + "for one to become free. Changes take effect when the scheduler is restarted."));
+		
+		props.add(new GlobalProperty(GP_SCHEDULER_CLUSTERED, "false",
+		        "true/false whether several servers share this database. If true a server takes a lease on a scheduled "
+		                + "task before running it, so that each task runs on one server at a time.", BooleanDatatype.class,
+		        null));
+		
+		props.add(new GlobalProperty(GP_SCHEDULER_LEASE_TIMEOUT, "120",
+		        "The number of seconds after which another server takes over the scheduled tasks of a server that "
+		                + "stopped renewing its leases. The clocks of the servers must differ by much less than this."));
+		
 		for (GlobalProperty gp : ModuleFactory.getGlobalProperties()) {
 			props.add(gp);
 		}
@@ -0,0 +1,287 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.text.Normalizer;
+
+import org.openmrs.PersonName;
+
+/**
+ * Utility methods that encode names into phonetic keys, so that names that sound alike can be found
+ * by comparing their keys. Accents are removed and everything but the letters a to z is ignored.
+ * Values without such letters have an empty key, and null values have a null key.
+ * 
+ * @since 1.9.9
+ */
+public class PhoneticUtil {
+	
+	/**
+	 * The name of the Soundex algorithm
+	 */
+	public static final String SOUNDEX = "soundex";
+	
+	/**
+	 * The name of the Metaphone algorithm
+	 */
+	public static final String METAPHONE = "metaphone";
+	
+	/**
+	 * The maximum length of a Metaphone key
+	 */
+	public static final int MAX_METAPHONE_LENGTH = 6;
+	
+	/**
+	 * The Soundex digits of the letters A to Z, 0 for vowels and '-' for H and W, which do not
+	 * separate letters with the same digit
+	 */
+	private static final String SOUNDEX_DIGITS = "0123012-02245501262301-202";
+	
+	/**
+	 * Encodes the given value with the given algorithm
+	 * 
+	 * @param algorithm {@link #SOUNDEX} or {@link #METAPHONE}
+	 * @param value the value to encode
+	 * @return the phonetic key of the value
+	 * @should encode with the given algorithm
+	 * @should fail for an unknown algorithm
+	 */
+	public static String encode(String algorithm, String value) {
+		if (SOUNDEX.equalsIgnoreCase(algorithm))
+			return soundex(value);
+		if (METAPHONE.equalsIgnoreCase(algorithm))
+			return metaphone(value);
+		
+		throw new IllegalArgumentException("Unknown phonetic algorithm: " + algorithm);
+	}
+	
+	/**
+	 * Computes the Soundex and Metaphone keys of the given, middle and family names of the given
+	 * name, so that similar names can be found by comparing indexed columns
+	 * 
+	 * @param name the name to update
+	 * @should set the keys of every part of the name
+	 */
+	public static void setPhoneticKeys(PersonName name) {
+		name.setGivenNameSoundex(soundex(name.getGivenName()));
+		name.setMiddleNameSoundex(soundex(name.getMiddleName()));
+		name.setFamilyNameSoundex(soundex(name.getFamilyName()));
+		name.setFamilyName2Soundex(soundex(name.getFamilyName2()));
+		name.setGivenNameMetaphone(metaphone(name.getGivenName()));
+		name.setMiddleNameMetaphone(metaphone(name.getMiddleName()));
+		name.setFamilyNameMetaphone(metaphone(name.getFamilyName()));
+		name.setFamilyName2Metaphone(metaphone(name.getFamilyName2()));
+	}
+	
+	/**
+	 * Encodes the given value with the American Soundex algorithm: the first letter followed by the
+	 * digits of the next three consonant sounds
+	 * 
+	 * @param value the value to encode
+	 * @return the four character Soundex key
+	 * @should encode names that sound alike to the same key
+	 * @should return an empty key for a value without letters
+	 */
+	public static String soundex(String value) {
+		String letters = getLetters(value);
+		if (letters == null || letters.length() == 0)
+			return letters;
+		
+		StringBuilder key = new StringBuilder(4).append(letters.charAt(0));
+		char previous = SOUNDEX_DIGITS.charAt(letters.charAt(0) - 'A');
+		for (int i = 1; i < letters.length() && key.length() < 4; i++) {
+			char digit = SOUNDEX_DIGITS.charAt(letters.charAt(i) - 'A');
+			if (digit == '-')
+				continue;
+			if (digit != '0' && digit != previous)
+				key.append(digit);
+			previous = digit;
+		}
+		while (key.length() < 4)
+			key.append('0');
+		return key.toString();
+	}
+	
+	/**
+	 * Encodes the given value with the Metaphone algorithm, which knows more of the rules of
+	 * English spelling than Soundex, for instance that 'ph' sounds like 'f' and 'c' before 'e', 'i'
+	 * or 'y' like 's'. The key is at most {@link #MAX_METAPHONE_LENGTH} characters long, and '0'
+	 * stands for 'th'.
+	 * 
+	 * @param value the value to encode
+	 * @return the Metaphone key
+	 * @should encode names that sound alike to the same key
+	 * @should return an empty key for a value without letters
+	 */
+	public static String metaphone(String value) {
+		String word = getLetters(value);
+		if (word == null || word.length() == 0)
+			return word;
+		
+		// letters that are silent or change at the start of a word
+		if (word.length() > 1) {
+			String start = word.substring(0, 2);
+			if (start.equals("AE") || start.equals("GN") || start.equals("KN") || start.equals("PN")
+			        || start.equals("WR"))
+				word = word.substring(1);
+			else if (start.equals("WH"))
+				word = "W" + word.substring(2);
+		}
+		if (word.charAt(0) == 'X')
+			word = "S" + word.substring(1);
+		
+		StringBuilder key = new StringBuilder();
+		int length = word.length();
+		for (int i = 0; i < length && key.length() < MAX_METAPHONE_LENGTH; i++) {
+			char c = word.charAt(i);
+			char next = i + 1 < length ? word.charAt(i + 1) : 0;
+			char previous = i > 0 ? word.charAt(i - 1) : 0;
+			
+			// double letters sound like one, except for 'cc'
+			if (c == previous && c != 'C')
+				continue;
+			
+			switch (c) {
+				case 'A':
+				case 'E':
+				case 'I':
+				case 'O':
+				case 'U':
+					if (i == 0)
+						key.append(c);
+					break;
+				case 'B':
+					// silent in a final 'mb'
+					if (!(previous == 'M' && i == length - 1))
+						key.append('B');
+					break;
+				case 'C':
+					if (isFrontVowel(next)) {
+						if (next == 'I' && i + 2 < length && word.charAt(i + 2) == 'A')
+							key.append('X');
+						else if (previous != 'S')
+							key.append('S');
+					} else if (next == 'H') {
+						key.append(previous == 'S' ? 'K' : 'X');
+						i++;
+					} else {
+						key.append('K');
+					}
+					break;
+				case 'D':
+					if (next == 'G' && i + 2 < length && isFrontVowel(word.charAt(i + 2))) {
+						key.append('J');
+						i += 2;
+					} else {
+						key.append('T');
+					}
+					break;
+				case 'G':
+					if (next == 'H' && i + 2 < length && !isVowel(word.charAt(i + 2))) {
+						// silent as in 'night'
+					} else if (next == 'N' && (i + 2 == length || word.substring(i + 1).equals("NED"))) {
+						// silent as in 'sign' and 'signed'
+					} else if (isFrontVowel(next) && previous != 'G') {
+						key.append('J');
+					} else {
+						key.append('K');
+					}
+					break;
+				case 'H':
+					if (isVowel(next) && !isVowel(previous) && "CGPST".indexOf(previous) < 0)
+						key.append('H');
+					break;
+				case 'K':
+					if (previous != 'C')
+						key.append('K');
+					break;
+				case 'P':
+					if (next == 'H') {
+						key.append('F');
+						i++;
+					} else {
+						key.append('P');
+					}
+					break;
+				case 'Q':
+					key.append('K');
+					break;
+				case 'S':
+					if (next == 'H') {
+						key.append('X');
+						i++;
+					} else if (next == 'I' && i + 2 < length && "AO".indexOf(word.charAt(i + 2)) >= 0) {
+						key.append('X');
+					} else {
+						key.append('S');
+					}
+					break;
+				case 'T':
+					if (next == 'I' && i + 2 < length && "AO".indexOf(word.charAt(i + 2)) >= 0) {
+						key.append('X');
+					} else if (next == 'H') {
+						key.append('0');
+						i++;
+					} else if (!(next == 'C' && i + 2 < length && word.charAt(i + 2) == 'H')) {
+						key.append('T');
+					}
+					break;
+				case 'V':
+					key.append('F');
+					break;
+				case 'W':
+				case 'Y':
+					if (isVowel(next))
+						key.append(c);
+					break;
+				case 'X':
+					key.append("KS");
+					break;
+				case 'Z':
+					key.append('S');
+					break;
+				default:
+					key.append(c);
+			}
+		}
+		
+		if (key.length() > MAX_METAPHONE_LENGTH)
+			key.setLength(MAX_METAPHONE_LENGTH);
+		return key.toString();
+	}
+	
+	/**
+	 * @return the letters a to z of the given value in upper case, without accents
+	 */
+	private static String getLetters(String value) {
+		if (value == null)
+			return null;
+		
+		String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+		StringBuilder letters = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = Character.toUpperCase(decomposed.charAt(i));
+			if (c >= 'A' && c <= 'Z')
+				letters.append(c);
+		}
+		return letters.toString();
+	}
+	
+	private static boolean isVowel(char c) {
+		return "AEIOU".indexOf(c) >= 0 && c != 0;
+	}
+	
+	private static boolean isFrontVowel(char c) {
+		return "EIY".indexOf(c) >= 0 && c != 0;
+	}
+}
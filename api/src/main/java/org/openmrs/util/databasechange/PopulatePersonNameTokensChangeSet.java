@@ -0,0 +1,144 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util.databasechange;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import liquibase.change.custom.CustomChange;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.PersonName;
+import org.openmrs.PersonNameToken;
+
+/**
+ * This change set fills the person_name_token table with the tokens of all non-voided person names
+ */
+public class PopulatePersonNameTokensChangeSet implements CustomTaskChange {
+	
+	protected final static Log log = LogFactory.getLog(PopulatePersonNameTokensChangeSet.class);
+	
+	/**
+	 * The number of inserts that are sent to the database at once
+	 */
+	private static final int BATCH_SIZE = 1000;
+	
+	private int tokenCount = 0;
+	
+	/**
+	 * @see CustomTaskChange#execute(Database)
+	 */
+	@Override
+	public void execute(Database database) throws CustomChangeException {
+		JdbcConnection connection = (JdbcConnection) database.getConnection();
+		
+		Statement selectStatement = null;
+		PreparedStatement insertStatement = null;
+		try {
+			insertStatement = connection.prepareStatement("INSERT INTO person_name_token"
+			        + " (person_id, person_name_id, token, start_position) VALUES (?, ?, ?, ?)");
+			
+			selectStatement = connection.createStatement();
+			ResultSet names = selectStatement.executeQuery("SELECT person_name_id, person_id, given_name, middle_name,"
+			        + " family_name, family_name2 FROM person_name WHERE voided = 0");
+			int pending = 0;
+			while (names.next()) {
+				PersonName name = new PersonName(names.getString(3), names.getString(4), names.getString(5));
+				name.setFamilyName2(names.getString(6));
+				
+				for (PersonNameToken token : PersonNameToken.makeTokens(name)) {
+					insertStatement.setInt(1, names.getInt(2));
+					insertStatement.setInt(2, names.getInt(1));
+					insertStatement.setString(3, token.getToken());
+					insertStatement.setInt(4, token.getStartPosition());
+					insertStatement.addBatch();
+					tokenCount++;
+					
+					if (++pending == BATCH_SIZE) {
+						insertStatement.executeBatch();
+						pending = 0;
+					}
+				}
+			}
+			if (pending > 0)
+				insertStatement.executeBatch();
+			names.close();
+		}
+		catch (SQLException e) {
+			throw new CustomChangeException("Unable to fill the person_name_token table", e);
+		}
+		catch (DatabaseException dbex) {
+			throw new CustomChangeException("Unable to fill the person_name_token table", dbex);
+		}
+		finally {
+			if (selectStatement != null) {
+				try {
+					selectStatement.close();
+				}
+				catch (SQLException e) {
+					log.warn("Failed to close the select statement", e);
+				}
+			}
+			if (insertStatement != null) {
+				try {
+					insertStatement.close();
+				}
+				catch (SQLException e) {
+					log.warn("Failed to close the insert statement", e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @see CustomChange#getConfirmationMessage()
+	 */
+	@Override
+	public String getConfirmationMessage() {
+		return "Finished indexing person names, " + tokenCount + " tokens created";
+	}
+	
+	/**
+	 * @see CustomChange#setFileOpener(ResourceAccessor)
+	 */
+	@Override
+	public void setFileOpener(ResourceAccessor fo) {
+	}
+	
+	/**
+	 * @see CustomChange#setUp()
+	 */
+	@Override
+	public void setUp() throws SetupException {
+	}
+	
+	/**
+	 * @see CustomChange#validate(Database)
+	 */
+	@Override
+	public ValidationErrors validate(Database db) {
+		return new ValidationErrors();
+	}
+}
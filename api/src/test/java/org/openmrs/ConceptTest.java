@@ -712,6 +712,26 @@ public class ConceptTest {
 		Assert.assertEquals(preferredNameEN, testConcept.getPreferredName(new Locale("en")));
 	}
 	
+	/**
+	 * @see {@link Concept#getPreferredName(Locale)}
+	 */
+	@Test
+	@Verifies(value = "should reflect changes made directly to the names of the concept", method = "getPreferredName(Locale)")
+	public void getPreferredName_shouldReflectChangesMadeDirectlyToTheNamesOfTheConcept() throws Exception {
+		Concept testConcept = createMockConcept(1, Locale.US);
+		ConceptName fullySpecifiedName = testConcept.getFullySpecifiedName(Locale.US);
+		Assert.assertEquals(fullySpecifiedName, testConcept.getPreferredName(Locale.US));
+		
+		ConceptName synonym = createMockConceptName(3, Locale.US, null, false);
+		testConcept.addName(synonym);
+		synonym.setLocalePreferred(true);
+		fullySpecifiedName.setLocalePreferred(false);
+		Assert.assertEquals(synonym, testConcept.getPreferredName(Locale.US));
+		
+		synonym.setVoided(true);
+		Assert.assertEquals(fullySpecifiedName, testConcept.getPreferredName(Locale.US));
+	}
+	
 	/**
 	 * @see {@link Concept#getShortestName(Locale,Boolean)}
 	 */
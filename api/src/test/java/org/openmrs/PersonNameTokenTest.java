@@ -0,0 +1,76 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests methods on the PersonNameToken object
+ */
+public class PersonNameTokenTest {
+	
+	/**
+	 * @see PersonNameToken#makeTokens(PersonName)
+	 */
+	@Test
+	@Verifies(value = "should create a token for every suffix of every word", method = "makeTokens(PersonName)")
+	public void makeTokens_shouldCreateATokenForEverySuffixOfEveryWord() throws Exception {
+		PersonName name = new PersonName("Ann", null, "Doe");
+		
+		List<String> tokens = new ArrayList<String>();
+		for (PersonNameToken token : PersonNameToken.makeTokens(name)) {
+			Assert.assertSame(name, token.getPersonName());
+			tokens.add(token.toString());
+		}
+		Assert.assertEquals(Arrays.asList("ANN@0", "NN@1", "N@2", "DOE@0", "OE@1", "E@2"), tokens);
+	}
+	
+	/**
+	 * @see PersonNameToken#makeTokens(PersonName)
+	 */
+	@Test
+	@Verifies(value = "should not create tokens for a voided name", method = "makeTokens(PersonName)")
+	public void makeTokens_shouldNotCreateTokensForAVoidedName() throws Exception {
+		PersonName name = new PersonName("Ann", null, "Doe");
+		name.setVoided(true);
+		
+		Assert.assertTrue(PersonNameToken.makeTokens(name).isEmpty());
+	}
+	
+	/**
+	 * @see PersonNameToken#getWords(String[])
+	 */
+	@Test
+	@Verifies(value = "should split on white space, commas and hyphens", method = "getWords(String[])")
+	public void getWords_shouldSplitOnWhiteSpaceCommasAndHyphens() throws Exception {
+		Assert.assertEquals(Arrays.asList("MARY", "JANE", "SMITH", "JONES"), new ArrayList<String>(PersonNameToken.getWords(
+		    " Mary-Jane ", null, "Smith,  Jones", "jane")));
+	}
+	
+	/**
+	 * @see PersonNameToken#getWords(String[])
+	 */
+	@Test
+	@Verifies(value = "should remove accents and punctuation and convert to upper case", method = "getWords(String[])")
+	public void getWords_shouldRemoveAccentsAndPunctuationAndConvertToUpperCase() throws Exception {
+		Assert.assertEquals(Arrays.asList("OBRIEN", "MULLER"), new ArrayList<String>(PersonNameToken.getWords(
+		    "O'Brien M\u00fcller.")));
+	}
+}
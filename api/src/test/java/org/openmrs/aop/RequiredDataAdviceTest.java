@@ -27,6 +27,7 @@ import org.openmrs.OpenmrsObject;
 import org.openmrs.Person;
 import org.openmrs.User;
 import org.openmrs.annotation.DisableHandlers;
+import org.openmrs.annotation.Independent;
 import org.openmrs.api.APIException;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
@@ -40,6 +41,7 @@ import org.openmrs.api.handler.UnvoidHandler;
 import org.openmrs.api.handler.VoidHandler;
 import org.openmrs.api.impl.ConceptServiceImpl;
 import org.openmrs.test.Verifies;
+import org.openmrs.util.HandlerUtil;
 import org.openmrs.util.Reflect;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -93,6 +95,9 @@ public class RequiredDataAdviceTest {
 		when(Context.getRegisteredComponents(VoidHandler.class)).thenReturn(Arrays.asList(voidHandler));
 		AdministrationService administrationService = mock(AdministrationService.class);
 		when(Context.getAdministrationService()).thenReturn(administrationService);
+		
+		// the handlers are mocked per test, so do not reuse those cached by a previous test
+		HandlerUtil.clearCachedHandlers();
 	}
 	
 	/**
@@ -624,6 +629,80 @@ public class RequiredDataAdviceTest {
 		
 	}
 	
+	/**
+	 * Some OpenmrsData with a collection annotated with @Independent
+	 */
+	private class ClassWithIndependentCollection extends BaseOpenmrsData {
+		
+		@Independent
+		private List<Location> locations;
+		
+		private List<Person> persons;
+		
+		public List<Location> getLocations() {
+			return locations;
+		}
+		
+		public List<Person> getPersons() {
+			return persons;
+		}
+		
+		public Integer getId() {
+			return null;
+		}
+		
+		public void setId(Integer id) {
+		}
+	}
+	
+	/**
+	 * @see RequiredDataAdvice#getHandlingPlan(Class)
+	 */
+	@Test
+	@Verifies(value = "should skip fields marked as independent", method = "getHandlingPlan(Class)")
+	public void getHandlingPlan_shouldSkipFieldsMarkedAsIndependent() throws Exception {
+		List<RequiredDataAdvice.ChildCollectionAccessor> plan = RequiredDataAdvice
+		        .getHandlingPlan(ClassWithIndependentCollection.class);
+		Assert.assertEquals(1, plan.size());
+		
+		ClassWithIndependentCollection openmrsObject = new ClassWithIndependentCollection();
+		openmrsObject.persons = new ArrayList<Person>();
+		Assert.assertSame(openmrsObject.persons, plan.get(0).get(openmrsObject));
+	}
+	
+	/**
+	 * @see RequiredDataAdvice#getHandlingPlan(Class)
+	 */
+	@Test
+	@Verifies(value = "should return the same plan on subsequent calls", method = "getHandlingPlan(Class)")
+	public void getHandlingPlan_shouldReturnTheSamePlanOnSubsequentCalls() throws Exception {
+		List<RequiredDataAdvice.ChildCollectionAccessor> plan = RequiredDataAdvice
+		        .getHandlingPlan(ClassWithDisableHandlersAnnotation.class);
+		Assert.assertEquals(2, plan.size());
+		Assert.assertSame(plan, RequiredDataAdvice.getHandlingPlan(ClassWithDisableHandlersAnnotation.class));
+	}
+	
+	@Test
+	public void before_shouldCallHandlerOnceForAnObjectContainedInSeveralCollections() throws Throwable {
+		
+		Method m = WithAppropriatelyNamedMethod.class.getMethod("voidClassWithDisableHandlersAnnotation",
+		    ClassWithDisableHandlersAnnotation.class);
+		
+		ClassWithDisableHandlersAnnotation openmrsObject = new ClassWithDisableHandlersAnnotation();
+		
+		// add the same person twice
+		List<Person> persons = new ArrayList<Person>();
+		Person person = new Person();
+		persons.add(person);
+		persons.add(person);
+		openmrsObject.setNotAnnotatedPersons(persons);
+		
+		requiredDataAdvice.before(m, new Object[] { openmrsObject, "void reason" }, new WithAppropriatelyNamedMethod());
+		
+		verify(voidHandler, times(1)).handle(eq(person), Matchers.<User> anyObject(), Matchers.<Date> anyObject(),
+		    anyString());
+	}
+	
 	class SomeOpenmrsData extends BaseOpenmrsData {
 		
 		@Override
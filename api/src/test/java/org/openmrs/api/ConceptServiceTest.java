@@ -39,6 +39,7 @@ import junit.framework.Assert;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.BooleanUtils;
+import org.hibernate.Hibernate;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -312,6 +313,23 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(numberofconcepts, iteratorCount);
 	}
 	
+	/**
+	 * @see {@link ConceptService#conceptIterator()}
+	 */
+	@Test
+	@Verifies(value = "should return the concepts in order of their ids with their names loaded", method = "conceptIterator()")
+	public void conceptIterator_shouldReturnTheConceptsInOrderOfTheirIdsWithTheirNamesLoaded() throws Exception {
+		Iterator<Concept> iterator = Context.getConceptService().conceptIterator();
+		int previousConceptId = 0;
+		while (iterator.hasNext()) {
+			Concept concept = iterator.next();
+			Assert.assertTrue(concept.getConceptId() > previousConceptId);
+			Assert.assertTrue(Hibernate.isInitialized(concept.getNames(true)));
+			previousConceptId = concept.getConceptId();
+		}
+		Assert.assertEquals(Context.getConceptService().getMaxConceptId().intValue(), previousConceptId);
+	}
+	
 	/**
 	 * @see {@link ConceptService#saveConcept(Concept)}
 	 */
@@ -2558,4 +2576,35 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		
 		cs.mapConceptProposalToConcept(cp, mappedConcept, locale);
 	}
+	
+	/**
+	 * @see {@link ConceptService#rebuildConceptIndexes(Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should rebuild the index of all concepts in the range", method = "rebuildConceptIndexes(Integer,Integer)")
+	public void rebuildConceptIndexes_shouldRebuildTheIndexOfAllConceptsInTheRange() throws Exception {
+		Assert.assertEquals(0, conceptService.getConcepts("CD4", Collections.singletonList(Locale.ENGLISH), false, null,
+		    null, null, null, null, null, null).size());
+		
+		Assert.assertEquals(1, conceptService.rebuildConceptIndexes(5497, 5497).intValue());
+		
+		List<ConceptSearchResult> searchResults = conceptService.getConcepts("CD4", Collections
+		        .singletonList(Locale.ENGLISH), false, null, null, null, null, null, null, null);
+		Assert.assertEquals(1, searchResults.size());
+		Assert.assertEquals(5497, searchResults.get(0).getConcept().getConceptId().intValue());
+	}
+	
+	/**
+	 * @see {@link ConceptService#rebuildConceptIndexes(Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should not change the index of concepts outside the range", method = "rebuildConceptIndexes(Integer,Integer)")
+	public void rebuildConceptIndexes_shouldNotChangeTheIndexOfConceptsOutsideTheRange() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-words.xml");
+		
+		conceptService.rebuildConceptIndexes(5000, 5497);
+		
+		Assert.assertEquals(2, conceptService.getConcepts("TRUST", Collections.singletonList(Locale.ENGLISH), false,
+		    null, null, null, null, null, null, null).size());
+	}
 }
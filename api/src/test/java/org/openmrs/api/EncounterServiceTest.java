@@ -2046,4 +2046,72 @@ public class EncounterServiceTest extends BaseContextSensitiveTest {
 		
 		encounterService.purgeEncounterType(encounterType);
 	}
+	
+	/**
+	 * @see EncounterService#getEncountersByVisitsAndPatient(Patient,boolean,String,Integer,Integer)
+	 */
+	@Test
+	@Verifies(value = "should return the same results as the corresponding part of all results", method = "getEncountersByVisitsAndPatient(Patient,boolean,String,Integer,Integer)")
+	public void getEncountersByVisitsAndPatient_shouldReturnTheSameResultsAsTheCorrespondingPartOfAllResults()
+	        throws Exception {
+		EncounterService encounterService = Context.getEncounterService();
+		Patient patient = getPatientWithEncountersAndEmptyVisits();
+		
+		List<Encounter> all = encounterService.getEncountersByVisitsAndPatient(patient, true, null, null, null);
+		Assert.assertEquals(Arrays.asList("e2", "e1", "v3", "v2", "e16", "e15"), getTimelineIds(all));
+		
+		for (int start = 0; start <= all.size(); start++) {
+			List<Encounter> page = encounterService.getEncountersByVisitsAndPatient(patient, true, null, start, 2);
+			Assert.assertEquals(getTimelineIds(all.subList(start, Math.min(start + 2, all.size()))), getTimelineIds(page));
+		}
+	}
+	
+	/**
+	 * @see EncounterService#getNextEncountersByVisitsAndPatient(Patient,boolean,String,Encounter,Integer)
+	 */
+	@Test
+	@Verifies(value = "should page through all results one page after another", method = "getNextEncountersByVisitsAndPatient(Patient,boolean,String,Encounter,Integer)")
+	public void getNextEncountersByVisitsAndPatient_shouldPageThroughAllResultsOnePageAfterAnother() throws Exception {
+		EncounterService encounterService = Context.getEncounterService();
+		Patient patient = getPatientWithEncountersAndEmptyVisits();
+		
+		List<Encounter> all = encounterService.getEncountersByVisitsAndPatient(patient, true, null, null, null);
+		for (int length = 1; length <= 3; length++) {
+			List<Encounter> paged = new ArrayList<Encounter>();
+			Encounter previous = null;
+			for (int i = 0; i <= all.size(); i++) {
+				List<Encounter> page = encounterService.getNextEncountersByVisitsAndPatient(patient, true, null, previous,
+				    length);
+				if (page.isEmpty())
+					break;
+				Assert.assertTrue(page.size() <= length);
+				paged.addAll(page);
+				previous = page.get(page.size() - 1);
+			}
+			Assert.assertEquals(getTimelineIds(all), getTimelineIds(paged));
+		}
+	}
+	
+	/**
+	 * Moves the empty visits 2 and 3, which start on the same date as encounter 1, to patient 3 who
+	 * also has encounters with and without a visit
+	 */
+	private Patient getPatientWithEncountersAndEmptyVisits() {
+		Patient patient = Context.getPatientService().getPatient(3);
+		for (Integer visitId : Arrays.asList(2, 3)) {
+			Visit visit = Context.getVisitService().getVisit(visitId);
+			visit.setPatient(patient);
+			Context.getVisitService().saveVisit(visit);
+		}
+		return patient;
+	}
+	
+	private List<String> getTimelineIds(List<Encounter> encounters) {
+		List<String> ids = new ArrayList<String>();
+		for (Encounter encounter : encounters) {
+			ids.add((encounter.getEncounterId() == null) ? "v" + encounter.getVisit().getVisitId() : "e"
+			        + encounter.getEncounterId());
+		}
+		return ids;
+	}
 }
@@ -1574,4 +1574,94 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		assertEquals(changeMessage, obs.getVoidReason());
 	}
 	
+	/**
+	 * @see ObsService#getLatestObs(Person,List)
+	 */
+	@Test
+	@Verifies(value = "should return the latest obs of the person for each concept", method = "getLatestObs(Person,List)")
+	public void getLatestObs_shouldReturnTheLatestObsOfThePersonForEachConcept() throws Exception {
+		ObsService os = Context.getObsService();
+		ConceptService cs = Context.getConceptService();
+		Person person = new Person(7);
+		Concept weight = cs.getConcept(5089);
+		Concept cd4 = cs.getConcept(5497);
+		
+		Obs older = new Obs(person, weight, new Date(1230768000000L), new Location(1));
+		older.setValueNumeric(60.0);
+		os.saveObs(older, null);
+		Obs latest = new Obs(person, weight, new Date(1262304000000L), new Location(1));
+		latest.setValueNumeric(61.0);
+		os.saveObs(latest, null);
+		
+		List<Obs> obs = os.getLatestObs(person, Arrays.asList(cd4, weight));
+		assertEquals(2, obs.size());
+		assertEquals(11, obs.get(0).getObsId().intValue());
+		assertEquals(latest, obs.get(1));
+		assertTrue(os.getLatestObs(new Person(7), new ArrayList<Concept>()).isEmpty());
+	}
+	
+	/**
+	 * @see ObsService#getLatestObs(Person,List)
+	 */
+	@Test
+	@Verifies(value = "should return the previous obs when the latest obs is voided", method = "getLatestObs(Person,List)")
+	public void getLatestObs_shouldReturnThePreviousObsWhenTheLatestObsIsVoided() throws Exception {
+		ObsService os = Context.getObsService();
+		Person person = new Person(7);
+		Concept weight = Context.getConceptService().getConcept(5089);
+		
+		Obs previous = new Obs(person, weight, new Date(1230768000000L), new Location(1));
+		previous.setValueNumeric(60.0);
+		os.saveObs(previous, null);
+		Obs latest = new Obs(person, weight, new Date(1262304000000L), new Location(1));
+		latest.setValueNumeric(61.0);
+		os.saveObs(latest, null);
+		
+		os.voidObs(latest, "wrong value");
+		assertEquals(previous, os.getLatestObs(person, Collections.singletonList(weight)).get(0));
+		
+		os.unvoidObs(latest);
+		assertEquals(latest, os.getLatestObs(person, Collections.singletonList(weight)).get(0));
+	}
+	
+	/**
+	 * @see ObsService#getLatestObs(Person,List)
+	 */
+	@Test
+	@Verifies(value = "should return the previous obs when the latest obs is purged", method = "getLatestObs(Person,List)")
+	public void getLatestObs_shouldReturnThePreviousObsWhenTheLatestObsIsPurged() throws Exception {
+		ObsService os = Context.getObsService();
+		Person person = new Person(7);
+		Concept weight = Context.getConceptService().getConcept(5089);
+		
+		Obs previous = new Obs(person, weight, new Date(1230768000000L), new Location(1));
+		previous.setValueNumeric(60.0);
+		os.saveObs(previous, null);
+		Obs latest = new Obs(person, weight, new Date(1262304000000L), new Location(1));
+		latest.setValueNumeric(61.0);
+		os.saveObs(latest, null);
+		
+		os.purgeObs(latest);
+		assertEquals(previous, os.getLatestObs(person, Collections.singletonList(weight)).get(0));
+	}
+	
+	/**
+	 * @see ObsService#getLatestObs(Person,List)
+	 */
+	@Test
+	@Verifies(value = "should return an obs that was saved with an encounter", method = "getLatestObs(Person,List)")
+	public void getLatestObs_shouldReturnAnObsThatWasSavedWithAnEncounter() throws Exception {
+		EncounterService es = Context.getEncounterService();
+		Concept cd4 = Context.getConceptService().getConcept(5497);
+		Encounter encounter = es.getEncounter(3);
+		
+		Obs obs = new Obs(encounter.getPatient(), cd4, new Date(1262304000000L), new Location(1));
+		obs.setValueNumeric(300.0);
+		encounter.addObs(obs);
+		es.saveEncounter(encounter);
+		
+		List<Obs> latest = Context.getObsService().getLatestObs(encounter.getPatient(), Collections.singletonList(cd4));
+		assertEquals(1, latest.size());
+		assertEquals(obs, latest.get(0));
+	}
 }
@@ -49,6 +49,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 import org.openmrs.Concept;
+import org.openmrs.DuplicatePatientCandidate;
 import org.openmrs.Encounter;
 import org.openmrs.GlobalProperty;
 import org.openmrs.Location;
@@ -72,6 +73,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.PatientServiceImpl;
 import org.openmrs.comparator.PatientIdentifierTypeDefaultComparator;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.patient.PatientSearchResult;
 import org.openmrs.person.PersonMergeLog;
 import org.openmrs.person.PersonMergeLogData;
 import org.openmrs.serialization.SerializationException;
@@ -112,6 +114,8 @@ public class PatientServiceTest extends BaseContextSensitiveTest {
 	
 	private static final String PATIENT_MERGE_XML = "org/openmrs/api/include/PatientServiceTest-mergePatients.xml";
 	
+	private static final String DUPLICATE_PATIENTS_XML = "org/openmrs/api/include/PatientServiceTest-duplicatePatients.xml";
+	
 	// Services
 	protected static PatientService patientService = null;
 	
@@ -3250,6 +3254,160 @@ public class PatientServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(1, patientService.getCountOfPatients(identifier).intValue());
 	}
 	
+	/**
+	 * Enables the name index and indexes the names of the patients with the given ids
+	 */
+	private void indexPatientNames(Integer... patientIds) {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_PATIENT_SEARCH_USE_NAME_INDEX, "true"));
+		for (Integer patientId : patientIds)
+			patientService.savePatient(patientService.getPatient(patientId));
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatients(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should rank patients by how well their names match when the name index is enabled", method = "getPatients(String,Integer,Integer)")
+	public void getPatients_shouldRankPatientsByHowWellTheirNamesMatchWhenTheNameIndexIsEnabled() throws Exception {
+		indexPatientNames(2, 6, 7);
+		Patient patient = patientService.getPatient(8);
+		patient.addName(new PersonName("Anet", null, "Horn"));
+		patientService.savePatient(patient);
+		
+		List<Patient> patients = patientService.getPatients("horn", 0, null);
+		Assert.assertEquals(2, patients.size());
+		Assert.assertEquals(8, patients.get(0).getPatientId().intValue());
+		Assert.assertEquals(2, patients.get(1).getPatientId().intValue());
+		
+		patients = patientService.getPatients("test chebask", 0, null);
+		Assert.assertEquals(1, patients.size());
+		Assert.assertEquals(7, patients.get(0).getPatientId().intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatients(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should page through the patients found in the name index", method = "getPatients(String,Integer,Integer)")
+	public void getPatients_shouldPageThroughThePatientsFoundInTheNameIndex() throws Exception {
+		indexPatientNames(2, 6, 7, 8);
+		
+		List<Patient> patients = patientService.getPatients("Test", 1, 2);
+		Assert.assertEquals(2, patients.size());
+		Assert.assertEquals(6, patients.get(0).getPatientId().intValue());
+		Assert.assertEquals(7, patients.get(1).getPatientId().intValue());
+		
+		patients = patientService.getPatients("Test", 3, 2);
+		Assert.assertEquals(1, patients.size());
+		Assert.assertEquals(8, patients.get(0).getPatientId().intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientSearchResults(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the same patients in the same order as getPatients", method = "getPatientSearchResults(String,Integer,Integer)")
+	public void getPatientSearchResults_shouldReturnTheSamePatientsInTheSameOrderAsGetPatients() throws Exception {
+		Assert.assertEquals(getPatientIds(patientService.getPatients("Test", 0, null)), getSearchResultIds(patientService
+		        .getPatientSearchResults("Test", 0, null)));
+		Assert.assertEquals(getPatientIds(patientService.getPatients("Test", 1, 2)), getSearchResultIds(patientService
+		        .getPatientSearchResults("Test", 1, 2)));
+		
+		indexPatientNames(2, 6, 7, 8);
+		List<Integer> patientIds = getSearchResultIds(patientService.getPatientSearchResults("Test", 1, 2));
+		Assert.assertEquals(Arrays.asList(6, 7), patientIds);
+		Assert.assertEquals(getPatientIds(patientService.getPatients("Test", 1, 2)), patientIds);
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientSearchResults(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the preferred name and identifier of each patient", method = "getPatientSearchResults(String,Integer,Integer)")
+	public void getPatientSearchResults_shouldReturnThePreferredNameAndIdentifierOfEachPatient() throws Exception {
+		Patient patient = patientService.getPatient(2);
+		PatientSearchResult result = null;
+		for (PatientSearchResult r : patientService.getPatientSearchResults("Hornblower", 0, null)) {
+			if (r.getPatientId().equals(2))
+				result = r;
+		}
+		
+		Assert.assertNotNull(result);
+		Assert.assertEquals(patient.getUuid(), result.getUuid());
+		Assert.assertEquals("Horatio", result.getGivenName());
+		Assert.assertEquals("Test", result.getMiddleName());
+		Assert.assertEquals("Hornblower", result.getFamilyName());
+		Assert.assertEquals("101-6", result.getIdentifier());
+		Assert.assertEquals("OpenMRS Identification Number", result.getIdentifierTypeName());
+		Assert.assertEquals("M", result.getGender());
+		Assert.assertEquals(patient.getBirthdate().getTime(), result.getBirthdate().getTime());
+		Assert.assertEquals(patient.getAge(), result.getAge());
+		Assert.assertFalse(result.getDead());
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientSearchResults(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the other non-voided names and identifiers of each patient", method = "getPatientSearchResults(String,Integer,Integer)")
+	public void getPatientSearchResults_shouldReturnTheOtherNonvoidedNamesAndIdentifiersOfEachPatient() throws Exception {
+		PatientSearchResult result = null;
+		for (PatientSearchResult r : patientService.getPatientSearchResults("Hornblower", 0, null)) {
+			if (r.getPatientId().equals(2))
+				result = r;
+		}
+		
+		Assert.assertNotNull(result);
+		List<String> names = new ArrayList<String>();
+		for (PersonName name : result.getNames())
+			names.add(name.getFullName());
+		Assert.assertEquals(Arrays.asList("Mr. Horatio Test Hornblower Esq.", "Mr. Horatio Peeter Hornblower2 Esq.",
+		    "Mr. John Peeter Hornblower3 Esq."), names);
+		
+		List<String> identifiers = new ArrayList<String>();
+		for (PatientIdentifier identifier : result.getIdentifiers())
+			identifiers.add(identifier.getIdentifier());
+		Assert.assertEquals(Arrays.asList("101-6", "101"), identifiers);
+		Assert.assertTrue(result.getIdentifiers().get(0).getIdentifierType().hasCheckDigit());
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientSearchResults(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty list for a blank query", method = "getPatientSearchResults(String,Integer,Integer)")
+	public void getPatientSearchResults_shouldReturnAnEmptyListForABlankQuery() throws Exception {
+		Assert.assertTrue(patientService.getPatientSearchResults(" ", 0, null).isEmpty());
+	}
+	
+	private List<Integer> getPatientIds(List<Patient> patients) {
+		List<Integer> patientIds = new ArrayList<Integer>();
+		for (Patient patient : patients)
+			patientIds.add(patient.getPatientId());
+		return patientIds;
+	}
+	
+	private List<Integer> getSearchResultIds(List<PatientSearchResult> results) {
+		List<Integer> patientIds = new ArrayList<Integer>();
+		for (PatientSearchResult result : results)
+			patientIds.add(result.getPatientId());
+		return patientIds;
+	}
+	
+	/**
+	 * @see {@link PatientService#getCountOfPatients(String)}
+	 */
+	@Test
+	@Verifies(value = "should count the non-voided patients found in the name index", method = "getCountOfPatients(String)")
+	public void getCountOfPatients_shouldCountTheNonVoidedPatientsFoundInTheNameIndex() throws Exception {
+		indexPatientNames(2, 6, 7, 8);
+		Assert.assertEquals(4, patientService.getCountOfPatients("Test").intValue());
+		
+		patientService.voidPatient(patientService.getPatient(8), "duplicate");
+		Assert.assertEquals(3, patientService.getCountOfPatients("Test").intValue());
+	}
+	
 	/**
 	 * @see {@link PatientService#savePatientIdentifier(PatientIdentifier)}
 	 */
@@ -3273,4 +3431,161 @@ public class PatientServiceTest extends BaseContextSensitiveTest {
 		patientIdentifier.getIdentifierType().setLocationBehavior(PatientIdentifierType.LocationBehavior.REQUIRED);
 		patientService.savePatientIdentifier(patientIdentifier);
 	}
+	
+	/**
+	 * @see {@link PatientService#getDuplicatePatientsByAttributes(List)}
+	 */
+	@Test
+	@Verifies(value = "should fetch patients that exactly match on all given attributes", method = "getDuplicatePatientsByAttributes(List)")
+	public void getDuplicatePatientsByAttributes_shouldFetchPatientsThatExactlyMatchOnAllGivenAttributes() throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		
+		List<Patient> patients = patientService.getDuplicatePatientsByAttributes(Arrays.asList("birthdate", "gender"));
+		
+		Assert.assertEquals(2, patients.size());
+		Assert.assertEquals(7, patients.get(0).getPatientId().intValue());
+		Assert.assertEquals(100, patients.get(1).getPatientId().intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#getDuplicatePatientsByAttributes(List)}
+	 */
+	@Test
+	@Verifies(value = "should not return patients that exactly match on some but not all given attributes", method = "getDuplicatePatientsByAttributes(List)")
+	public void getDuplicatePatientsByAttributes_shouldNotReturnPatientsThatExactlyMatchOnSomeButNotAllGivenAttributes()
+	        throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		
+		List<Patient> patients = patientService.getDuplicatePatientsByAttributes(Arrays.asList("birthdate", "gender",
+		    "middleName"));
+		
+		Assert.assertEquals(0, patients.size());
+	}
+	
+	/**
+	 * @see {@link PatientService#getDuplicatePatientsByAttributes(List)}
+	 */
+	@Test
+	@Verifies(value = "should match text attributes that only differ in case", method = "getDuplicatePatientsByAttributes(List)")
+	public void getDuplicatePatientsByAttributes_shouldMatchTextAttributesThatOnlyDifferInCase() throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		Patient patient = patientService.getPatient(100);
+		patient.setGender(patient.getGender().toLowerCase());
+		patientService.savePatient(patient);
+		
+		List<Patient> patients = patientService.getDuplicatePatientsByAttributes(Arrays.asList("birthdate", "gender"));
+		
+		Assert.assertEquals(2, patients.size());
+		Assert.assertEquals(7, patients.get(0).getPatientId().intValue());
+		Assert.assertEquals(100, patients.get(1).getPatientId().intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#detectDuplicatePatients(Double,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should find patients with the same names and birthdate", method = "detectDuplicatePatients(Double,Integer)")
+	public void detectDuplicatePatients_shouldFindPatientsWithTheSameNamesAndBirthdate() throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		
+		patientService.detectDuplicatePatients(null, null);
+		
+		DuplicatePatientCandidate candidate = getDuplicatePatientCandidate(7, 100);
+		Assert.assertNotNull(candidate);
+		Assert.assertEquals("familyName,birthdate,gender", candidate.getMatchedOn());
+	}
+	
+	/**
+	 * @see {@link PatientService#detectDuplicatePatients(Double,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should find patients that share an identifier", method = "detectDuplicatePatients(Double,Integer)")
+	public void detectDuplicatePatients_shouldFindPatientsThatShareAnIdentifier() throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		
+		patientService.detectDuplicatePatients(0.5, null);
+		
+		DuplicatePatientCandidate candidate = getDuplicatePatientCandidate(6, 101);
+		Assert.assertNotNull(candidate);
+		Assert.assertEquals("identifier,gender", candidate.getMatchedOn());
+	}
+	
+	/**
+	 * @see {@link PatientService#detectDuplicatePatients(Double,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should replace the candidates of the previous run", method = "detectDuplicatePatients(Double,Integer)")
+	public void detectDuplicatePatients_shouldReplaceTheCandidatesOfThePreviousRun() throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		
+		Assert.assertEquals(2, patientService.detectDuplicatePatients(0.5, null).intValue());
+		Assert.assertEquals(1, patientService.detectDuplicatePatients(0.8, null).intValue());
+		Assert.assertEquals(1, patientService.getCountOfDuplicatePatientCandidates().intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#detectDuplicatePatients(Double,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should find patients whose names only differ in case and accents", method = "detectDuplicatePatients(Double,Integer)")
+	public void detectDuplicatePatients_shouldFindPatientsWhoseNamesOnlyDifferInCaseAndAccents() throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		setPreferredName(2, "john", "muller");
+		setPreferredName(100, "Jöhn", "Müller");
+		// sorts between the two names above, but has a different normalized family name
+		setPreferredName(7, "John", "Mullerb");
+		
+		patientService.detectDuplicatePatients(0.5, null);
+		
+		DuplicatePatientCandidate candidate = getDuplicatePatientCandidate(2, 100);
+		Assert.assertNotNull(candidate);
+		Assert.assertEquals("familyName,givenName", candidate.getMatchedOn());
+	}
+	
+	private void setPreferredName(int patientId, String givenName, String familyName) {
+		PersonName name = patientService.getPatient(patientId).getPersonName();
+		name.setGivenName(givenName);
+		name.setFamilyName(familyName);
+		Context.flushSession();
+	}
+	
+	/**
+	 * @see {@link PatientService#getDuplicatePatientCandidates(Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the candidates with the highest score first", method = "getDuplicatePatientCandidates(Integer,Integer)")
+	public void getDuplicatePatientCandidates_shouldReturnTheCandidatesWithTheHighestScoreFirst() throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		patientService.detectDuplicatePatients(0.5, null);
+		
+		List<DuplicatePatientCandidate> candidates = patientService.getDuplicatePatientCandidates(null, null);
+		
+		Assert.assertEquals(2, candidates.size());
+		Assert.assertEquals(100, candidates.get(0).getDuplicate().getPatientId().intValue());
+		Assert.assertEquals(101, candidates.get(1).getDuplicate().getPatientId().intValue());
+		Assert.assertTrue(candidates.get(0).getScore() > candidates.get(1).getScore());
+	}
+	
+	/**
+	 * @see {@link PatientService#getDuplicatePatientCandidates(Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the given page of candidates", method = "getDuplicatePatientCandidates(Integer,Integer)")
+	public void getDuplicatePatientCandidates_shouldReturnTheGivenPageOfCandidates() throws Exception {
+		executeDataSet(DUPLICATE_PATIENTS_XML);
+		patientService.detectDuplicatePatients(0.5, null);
+		
+		List<DuplicatePatientCandidate> candidates = patientService.getDuplicatePatientCandidates(1, 1);
+		
+		Assert.assertEquals(1, candidates.size());
+		Assert.assertEquals(101, candidates.get(0).getDuplicate().getPatientId().intValue());
+	}
+	
+	private DuplicatePatientCandidate getDuplicatePatientCandidate(int patientId, int duplicateId) {
+		for (DuplicatePatientCandidate candidate : patientService.getDuplicatePatientCandidates(null, null)) {
+			if (candidate.getPatient().getPatientId() == patientId && candidate.getDuplicate().getPatientId() == duplicateId)
+				return candidate;
+		}
+		return null;
+	}
 }
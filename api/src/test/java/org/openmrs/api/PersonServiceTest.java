@@ -31,6 +31,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.openmrs.GlobalProperty;
 import org.openmrs.Location;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
@@ -530,6 +531,63 @@ public class PersonServiceTest extends BaseContextSensitiveTest {
 		Assert.assertTrue(TestUtil.containsId(people, 4));
 	}
 	
+	/**
+	 * @see {@link PersonService#getSimilarPeople(String,Integer,String)}
+	 */
+	@Test
+	@Verifies(value = "should compare the keys of the configured phonetic algorithm", method = "getSimilarPeople(String,Integer,String)")
+	public void getSimilarPeople_shouldCompareTheKeysOfTheConfiguredPhoneticAlgorithm() throws Exception {
+		PersonService personService = Context.getPersonService();
+		Person person = new Person();
+		person.setGender("F");
+		person.addName(new PersonName("Kathryn", null, "Smyth"));
+		person = personService.savePerson(person);
+		
+		// the soundex keys of Catherine and Kathryn differ in the first letter
+		Assert.assertFalse(containsId(personService.getSimilarPeople("Catherine Smith", null, "F"), person.getPersonId()));
+		
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_PERSON_SIMILAR_PEOPLE_PHONETIC_ALGORITHM, "metaphone"));
+		Assert.assertTrue(containsId(personService.getSimilarPeople("Catherine Smith", null, "F"), person.getPersonId()));
+	}
+	
+	/**
+	 * @see {@link PersonService#updatePersonNamePhoneticKeys(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should set the keys of the names without keys", method = "updatePersonNamePhoneticKeys(Integer)")
+	public void updatePersonNamePhoneticKeys_shouldSetTheKeysOfTheNamesWithoutKeys() throws Exception {
+		PersonService personService = Context.getPersonService();
+		Assert.assertNull(personService.getPersonName(2).getGivenNameSoundex());
+		
+		Assert.assertTrue(personService.updatePersonNamePhoneticKeys(1000) > 0);
+		Context.clearSession();
+		
+		PersonName name = personService.getPersonName(2);
+		Assert.assertEquals("H630", name.getGivenNameSoundex());
+		Assert.assertEquals("T230", name.getMiddleNameSoundex());
+		Assert.assertEquals("H651", name.getFamilyNameSoundex());
+		Assert.assertNull(name.getFamilyName2Soundex());
+		Assert.assertEquals("HRX", name.getGivenNameMetaphone());
+		Assert.assertEquals("TST", name.getMiddleNameMetaphone());
+		Assert.assertEquals("HRNBLW", name.getFamilyNameMetaphone());
+	}
+	
+	/**
+	 * @see {@link PersonService#updatePersonNamePhoneticKeys(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should not update names that already have keys", method = "updatePersonNamePhoneticKeys(Integer)")
+	public void updatePersonNamePhoneticKeys_shouldNotUpdateNamesThatAlreadyHaveKeys() throws Exception {
+		PersonService personService = Context.getPersonService();
+		int updated = personService.updatePersonNamePhoneticKeys(1);
+		Assert.assertEquals(1, updated);
+		while (updated > 0)
+			updated = personService.updatePersonNamePhoneticKeys(1);
+		
+		Assert.assertEquals(0, personService.updatePersonNamePhoneticKeys(1000).intValue());
+	}
+	
 	/**
 	 * @see {@link PersonService#getAllPersonAttributeTypes()}
 	 */
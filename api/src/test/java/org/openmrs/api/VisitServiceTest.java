@@ -886,6 +886,43 @@ public class VisitServiceTest extends BaseContextSensitiveTest {
 		assertTrue("Not all active unvoided vists were closed", activeVisitCount == 0);
 	}
 	
+	/**
+	 * @see {@link VisitService#stopVisits(Date)}
+	 */
+	@Test
+	@Verifies(value = "should set the user and date changed of the stopped visits", method = "stopVisits(Date)")
+	public void stopVisits_shouldSetTheUserAndDateChangedOfTheStoppedVisits() throws Exception {
+		executeDataSet("org/openmrs/api/include/VisitServiceTest-includeVisitsAndTypeToAutoClose.xml");
+		Assert.assertNull(service.getVisit(104).getStopDatetime());
+		
+		service.stopVisits(null);
+		
+		Visit visit = service.getVisit(104);
+		Assert.assertNotNull(visit.getStopDatetime());
+		Assert.assertEquals(Context.getAuthenticatedUser(), visit.getChangedBy());
+		Assert.assertNotNull(visit.getDateChanged());
+		// voided visits are left alone
+		Assert.assertNull(service.getVisit(103).getStopDatetime());
+	}
+	
+	/**
+	 * @see {@link VisitService#stopVisits(Integer,Integer,List,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should stop only the active visits in the given range", method = "stopVisits(Integer,Integer,List,Date,Date)")
+	public void stopVisits_shouldStopOnlyTheActiveVisitsInTheGivenRange() throws Exception {
+		executeDataSet("org/openmrs/api/include/VisitServiceTest-includeVisitsAndTypeToAutoClose.xml");
+		List<VisitType> visitTypes = Collections.singletonList(service.getVisitType(4));
+		Date stopDate = new Date();
+		
+		Assert.assertEquals(2, service.stopVisits(103, 105, visitTypes, stopDate, stopDate).intValue());
+		Context.clearSession();
+		Assert.assertNotNull(service.getVisit(104).getStopDatetime());
+		Assert.assertNotNull(service.getVisit(105).getStopDatetime());
+		Assert.assertNull(service.getVisit(103).getStopDatetime());
+		Assert.assertNull(service.getVisit(106).getStopDatetime());
+	}
+	
 	/**
 	 * @see {@link VisitService#saveVisit(Visit)}
 	 */
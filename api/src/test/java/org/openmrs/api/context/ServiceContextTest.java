@@ -0,0 +1,85 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.context;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.APIException;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ServiceContext} class
+ */
+public class ServiceContextTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * A service interface that is not registered in the application context
+	 */
+	public static interface TestSnapshotService {
+	}
+	
+	/**
+	 * A service interface that is never set
+	 */
+	public static interface TestMissingService {
+	}
+	
+	/**
+	 * Removes the service registered by the tests, since the service context outlives the test
+	 */
+	@After
+	@SuppressWarnings("unchecked")
+	public void removeTestSnapshotService() {
+		ServiceContext serviceContext = ServiceContext.getInstance();
+		Map<Class, Object> services = new HashMap<Class, Object>(serviceContext.services);
+		services.remove(TestSnapshotService.class);
+		serviceContext.services = Collections.unmodifiableMap(services);
+	}
+	
+	/**
+	 * @see ServiceContext#getService(Class)
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail for a service that has not been set", method = "getService(Class)")
+	public void getService_shouldFailForAServiceThatHasNotBeenSet() throws Exception {
+		ServiceContext.getInstance().getService(TestMissingService.class);
+	}
+	
+	/**
+	 * @see ServiceContext#setService(Class,Object)
+	 */
+	@Test
+	@Verifies(value = "should not publish a service set while refreshing until the refresh is done", method = "setService(Class,Object)")
+	public void setService_shouldNotPublishAServiceSetWhileRefreshingUntilTheRefreshIsDone() throws Exception {
+		ServiceContext serviceContext = ServiceContext.getInstance();
+		serviceContext.startRefreshingContext();
+		try {
+			serviceContext.setService(TestSnapshotService.class, new TestSnapshotService() {});
+			Assert.assertTrue(serviceContext.isRefreshingContext());
+			Assert.assertNull(serviceContext.services.get(TestSnapshotService.class));
+		}
+		finally {
+			serviceContext.doneRefreshingContext();
+		}
+		
+		Assert.assertFalse(serviceContext.isRefreshingContext());
+		Assert.assertNotNull(serviceContext.getService(TestSnapshotService.class));
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.context;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.api.UserService;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.RoleConstants;
+
+/**
+ * Tests the {@link UserContext} class
+ */
+public class UserContextTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see UserContext#hasPrivilege(String)
+	 */
+	@Test
+	@Verifies(value = "should authorize if a role of the user is given the privilege after it was checked", method = "hasPrivilege(String)")
+	public void hasPrivilege_shouldAuthorizeIfARoleOfTheUserIsGivenThePrivilegeAfterItWasChecked() throws Exception {
+		UserContext anonymousContext = new UserContext();
+		Assert.assertFalse(anonymousContext.hasPrivilege("Some New Privilege"));
+		
+		UserService us = Context.getUserService();
+		Privilege privilege = us.savePrivilege(new Privilege("Some New Privilege", "For testing"));
+		Role anonymous = us.getRole(RoleConstants.ANONYMOUS);
+		anonymous.addPrivilege(privilege);
+		us.saveRole(anonymous);
+		
+		Assert.assertTrue(anonymousContext.hasPrivilege("Some New Privilege"));
+	}
+	
+	/**
+	 * @see UserContext#hasPrivilege(String)
+	 */
+	@Test
+	@Verifies(value = "should authorize if proxied user has specified privilege", method = "hasPrivilege(String)")
+	public void hasPrivilege_shouldAuthorizeIfProxiedUserHasSpecifiedPrivilege() throws Exception {
+		UserContext anonymousContext = new UserContext();
+		Assert.assertFalse(anonymousContext.hasPrivilege("Some Proxied Privilege"));
+		
+		anonymousContext.addProxyPrivilege("Some Proxied Privilege");
+		Assert.assertTrue(anonymousContext.hasPrivilege("Some Proxied Privilege"));
+		
+		anonymousContext.removeProxyPrivilege("Some Proxied Privilege");
+		Assert.assertFalse(anonymousContext.hasPrivilege("Some Proxied Privilege"));
+	}
+}
@@ -14,6 +14,7 @@
 package org.openmrs.api.db;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 
 import org.junit.Assert;
@@ -83,4 +84,22 @@ public class VisitDAOTest extends BaseContextSensitiveTest {
 		cal.set(Calendar.MILLISECOND, 999);
 		Assert.assertEquals(105, dao.getNextVisit(dao.getVisit(1), visitTypes, cal.getTime()).getVisitId().intValue());
 	}
+	
+	/**
+	 * @see {@link VisitDAO#getNextActiveVisitIds(Integer,Collection<VisitType>,Date,int)}
+	 */
+	@Test
+	@Verifies(value = "should return the ids of the next unvoided active visits matching the specified types and startDate", method = "getNextActiveVisitIds(Integer,Collection<VisitType>,Date,int)")
+	public void getNextActiveVisitIds_shouldReturnTheIdsOfTheNextUnvoidedActiveVisitsMatchingTheSpecifiedTypesAndStartDate()
+	        throws Exception {
+		executeDataSet(VISITS_INCLUDE_VISITS_TO_AUTO_CLOSE_XML);
+		ArrayList<VisitType> visitTypes = new ArrayList<VisitType>();
+		visitTypes.add(dao.getVisitType(4));
+		Calendar cal = Calendar.getInstance();
+		cal.set(2005, 0, 4, 23, 59, 59);
+		cal.set(Calendar.MILLISECOND, 999);
+		Assert.assertEquals(Arrays.asList(105, 106), dao.getNextActiveVisitIds(null, visitTypes, cal.getTime(), 10));
+		Assert.assertEquals(Arrays.asList(105), dao.getNextActiveVisitIds(1, visitTypes, cal.getTime(), 1));
+		Assert.assertEquals(Arrays.asList(106), dao.getNextActiveVisitIds(105, visitTypes, cal.getTime(), 10));
+	}
 }
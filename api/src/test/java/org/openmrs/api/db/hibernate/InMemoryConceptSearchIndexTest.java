@@ -0,0 +1,205 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.ConceptClass;
+import org.openmrs.ConceptDatatype;
+import org.openmrs.ConceptSearchResult;
+import org.openmrs.ConceptWord;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Tests the {@link InMemoryConceptSearchIndex} class
+ */
+public class InMemoryConceptSearchIndexTest extends BaseContextSensitiveTest {
+	
+	private static final List<Locale> ENGLISH = Collections.singletonList(Locale.ENGLISH);
+	
+	private static final List<ConceptClass> NO_CLASSES = Collections.emptyList();
+	
+	private static final List<ConceptDatatype> NO_DATATYPES = Collections.emptyList();
+	
+	private InMemoryConceptSearchIndex index;
+	
+	private ConceptService conceptService;
+	
+	@Before
+	public void before() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-words.xml");
+		index = new InMemoryConceptSearchIndex();
+		index.setSessionFactory((SessionFactory) applicationContext.getBean("sessionFactory"));
+		conceptService = Context.getConceptService();
+	}
+	
+	private List<ConceptSearchResult> search(List<String> words, List<ConceptClass> excludeClasses, Integer start,
+	        Integer size) {
+		return index.getConcepts(words, ENGLISH, false, NO_CLASSES, excludeClasses, NO_DATATYPES, NO_DATATYPES, null,
+		    start, size);
+	}
+	
+	/**
+	 * Searches on "TRUST" through the concept service, with the criteria search or with the
+	 * in-memory index
+	 * 
+	 * @return the ids of the concepts found
+	 */
+	private Set<Integer> searchConceptIds(boolean useIndex, List<ConceptClass> requireClasses,
+	        List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes, List<ConceptDatatype> excludeDatatypes) {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_CONCEPT_SEARCH_USE_IN_MEMORY_INDEX, String.valueOf(useIndex)));
+		
+		Set<Integer> conceptIds = new HashSet<Integer>();
+		for (ConceptSearchResult result : conceptService.getConcepts("TRUST", new ArrayList<Locale>(ENGLISH), false,
+		    requireClasses, excludeClasses, requireDatatypes, excludeDatatypes, null, null, null))
+			conceptIds.add(result.getConcept().getConceptId());
+		return conceptIds;
+	}
+	
+	/**
+	 * @see InMemoryConceptSearchIndex#getConcepts(List,List,boolean,List,List,List,List,java.util.Collection,Integer,Integer)
+	 */
+	@Test
+	@Verifies(value = "should return one result per concept and word with the highest weight", method = "getConcepts(List,List,boolean,List,List,List,List,Collection,Integer,Integer)")
+	public void getConcepts_shouldReturnOneResultPerConceptAndWordWithTheHighestWeight() throws Exception {
+		List<ConceptSearchResult> results = search(Collections.singletonList("TRUST"), NO_CLASSES, null, null);
+		
+		Assert.assertEquals(2, results.size());
+		Assert.assertEquals(conceptService.getConcept(3000), results.get(0).getConcept());
+		Assert.assertEquals(2.72, results.get(0).getTransientWeight(), 0.0001);
+		Assert.assertEquals(9997, results.get(0).getConceptName().getConceptNameId().intValue());
+		Assert.assertEquals(conceptService.getConcept(4000), results.get(1).getConcept());
+	}
+	
+	/**
+	 * @see InMemoryConceptSearchIndex#getConcepts(List,List,boolean,List,List,List,List,java.util.Collection,Integer,Integer)
+	 */
+	@Test
+	@Verifies(value = "should match the search words to the start of the indexed words", method = "getConcepts(List,List,boolean,List,List,List,List,Collection,Integer,Integer)")
+	public void getConcepts_shouldMatchTheSearchWordsToTheStartOfTheIndexedWords() throws Exception {
+		Assert.assertEquals(2, search(Collections.singletonList("TRU"), NO_CLASSES, null, null).size());
+		Assert.assertEquals(0, search(Collections.singletonList("RUST"), NO_CLASSES, null, null).size());
+	}
+	
+	/**
+	 * @see InMemoryConceptSearchIndex#getConcepts(List,List,boolean,List,List,List,List,java.util.Collection,Integer,Integer)
+	 */
+	@Test
+	@Verifies(value = "should only return concepts with a name that contains all search words", method = "getConcepts(List,List,boolean,List,List,List,List,Collection,Integer,Integer)")
+	public void getConcepts_shouldOnlyReturnConceptsWithANameThatContainsAllSearchWords() throws Exception {
+		List<ConceptSearchResult> results = search(Arrays.asList("SALBUTAMOL", "INHALER"), NO_CLASSES, null,
+		    null);
+		
+		Assert.assertEquals(1, results.size());
+		Assert.assertEquals(798, results.get(0).getConcept().getConceptId().intValue());
+		Assert.assertEquals(3256, results.get(0).getConceptName().getConceptNameId().intValue());
+	}
+	
+	/**
+	 * @see InMemoryConceptSearchIndex#getConcepts(List,List,boolean,List,List,List,List,java.util.Collection,Integer,Integer)
+	 */
+	@Test
+	@Verifies(value = "should exclude concepts of the excluded classes", method = "getConcepts(List,List,boolean,List,List,List,List,Collection,Integer,Integer)")
+	public void getConcepts_shouldExcludeConceptsOfTheExcludedClasses() throws Exception {
+		List<ConceptSearchResult> results = search(Collections.singletonList("TRUST"), Collections
+		        .singletonList(conceptService.getConceptClass(3)), null, null);
+		
+		Assert.assertEquals(1, results.size());
+		Assert.assertEquals(4000, results.get(0).getConcept().getConceptId().intValue());
+	}
+	
+	/**
+	 * @see InMemoryConceptSearchIndex#getConcepts(List,List,boolean,List,List,List,List,java.util.Collection,Integer,Integer)
+	 */
+	@Test
+	@Verifies(value = "should return the requested page of results", method = "getConcepts(List,List,boolean,List,List,List,List,Collection,Integer,Integer)")
+	public void getConcepts_shouldReturnTheRequestedPageOfResults() throws Exception {
+		List<ConceptSearchResult> results = search(Collections.singletonList("TRUST"), NO_CLASSES, 1, 1);
+		
+		Assert.assertEquals(1, results.size());
+		Assert.assertEquals(4000, results.get(0).getConcept().getConceptId().intValue());
+	}
+	
+	/**
+	 * @see InMemoryConceptSearchIndex#getConcepts(List,List,boolean,List,List,List,List,java.util.Collection,Integer,Integer)
+	 */
+	@Test
+	@Verifies(value = "should apply null class and datatype filters like the criteria search", method = "getConcepts(List,List,boolean,List,List,List,List,Collection,Integer,Integer)")
+	public void getConcepts_shouldApplyNullClassAndDatatypeFiltersLikeTheCriteriaSearch() throws Exception {
+		List<ConceptClass> nullClass = Collections.singletonList((ConceptClass) null);
+		List<ConceptDatatype> nullDatatype = Collections.singletonList((ConceptDatatype) null);
+		Assert.assertEquals(2, searchConceptIds(false, NO_CLASSES, NO_CLASSES, NO_DATATYPES, NO_DATATYPES).size());
+		
+		Assert.assertEquals(searchConceptIds(false, NO_CLASSES, NO_CLASSES, NO_DATATYPES, NO_DATATYPES), searchConceptIds(
+		    true, NO_CLASSES, NO_CLASSES, NO_DATATYPES, NO_DATATYPES));
+		Assert.assertEquals(searchConceptIds(false, null, null, null, null), searchConceptIds(true, null, null, null, null));
+		Assert.assertEquals(searchConceptIds(false, nullClass, NO_CLASSES, NO_DATATYPES, NO_DATATYPES), searchConceptIds(
+		    true, nullClass, NO_CLASSES, NO_DATATYPES, NO_DATATYPES));
+		Assert.assertEquals(searchConceptIds(false, NO_CLASSES, nullClass, NO_DATATYPES, NO_DATATYPES), searchConceptIds(
+		    true, NO_CLASSES, nullClass, NO_DATATYPES, NO_DATATYPES));
+		Assert.assertEquals(searchConceptIds(false, NO_CLASSES, NO_CLASSES, nullDatatype, NO_DATATYPES), searchConceptIds(
+		    true, NO_CLASSES, NO_CLASSES, nullDatatype, NO_DATATYPES));
+		Assert.assertEquals(searchConceptIds(false, NO_CLASSES, NO_CLASSES, NO_DATATYPES, nullDatatype), searchConceptIds(
+		    true, NO_CLASSES, NO_CLASSES, NO_DATATYPES, nullDatatype));
+	}
+	
+	/**
+	 * @see InMemoryConceptSearchIndex#getCountOfConceptWords(List,List,boolean,List,List,List,List,java.util.Collection,boolean)
+	 */
+	@Test
+	@Verifies(value = "should count each concept once for unique concepts", method = "getCountOfConceptWords(List,List,boolean,List,List,List,List,Collection,boolean)")
+	public void getCountOfConceptWords_shouldCountEachConceptOnceForUniqueConcepts() throws Exception {
+		List<String> words = Collections.singletonList("TRUST");
+		Assert.assertEquals(3, index.getCountOfConceptWords(words, ENGLISH, false, NO_CLASSES, NO_CLASSES, NO_DATATYPES,
+		    NO_DATATYPES, null, false).intValue());
+		Assert.assertEquals(2, index.getCountOfConceptWords(words, ENGLISH, false, NO_CLASSES, NO_CLASSES, NO_DATATYPES,
+		    NO_DATATYPES, null, true).intValue());
+	}
+	
+	/**
+	 * @see InMemoryConceptSearchIndex#updateConceptWords(Concept,java.util.Collection)
+	 */
+	@Test
+	@Verifies(value = "should replace the indexed words of the concept", method = "updateConceptWords(Concept,Collection)")
+	public void updateConceptWords_shouldReplaceTheIndexedWordsOfTheConcept() throws Exception {
+		Assert.assertEquals(1, search(Collections.singletonList("NOW"), NO_CLASSES, null, null).size());
+		
+		Concept concept = conceptService.getConcept(4000);
+		ConceptWord word = new ConceptWord("TRUSTWORTHY", concept, conceptService.getConceptName(9999), Locale.ENGLISH);
+		word.setWeight(1.0);
+		index.updateConceptWords(concept, Collections.singletonList(word));
+		
+		Assert.assertEquals(0, search(Collections.singletonList("NOW"), NO_CLASSES, null, null).size());
+		List<ConceptSearchResult> results = search(Collections.singletonList("TRUSTW"), NO_CLASSES, null, null);
+		Assert.assertEquals(1, results.size());
+		Assert.assertEquals(concept, results.get(0).getConcept());
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.Date;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.openmrs.ConceptNumeric;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.SkipBaseSetup;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * This class can be run like a junit test, but it is not actually a test. JUnit won't run it
+ * because it does not have "Test" in its class name. It saves encounters with many obs, like the
+ * encounters of a large form, in the database defined by the runtime properties and logs how many
+ * obs were saved per second. Run it once with and once without the
+ * {@link OpenmrsConstants#POOLED_ID_GENERATOR_RUNTIME_PROPERTY} runtime property to compare the
+ * ids assigned by the database with the ids of the {@link PooledIdentityGenerator}. The
+ * encounters are rolled back at the end.
+ */
+@Ignore
+public class PooledIdentityGeneratorBenchmark extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(PooledIdentityGeneratorBenchmark.class);
+	
+	private static final int ENCOUNTERS = 20;
+	
+	private static final int OBS_PER_ENCOUNTER = 300;
+	
+	@Test
+	@SkipBaseSetup
+	public void shouldSaveEncountersWithManyObs() throws Exception {
+		authenticate();
+		
+		Session session = ((SessionFactory) applicationContext.getBean("sessionFactory")).getCurrentSession();
+		Integer patientId = (Integer) session.createQuery(
+		    "select p.patientId from Patient p where p.voided = false order by p.patientId").setMaxResults(1)
+		        .uniqueResult();
+		Integer encounterTypeId = (Integer) session.createQuery(
+		    "select t.encounterTypeId from EncounterType t where t.retired = false order by t.encounterTypeId")
+		        .setMaxResults(1).uniqueResult();
+		Integer conceptId = (Integer) session.createQuery(
+		    "select c.conceptId from ConceptNumeric c where c.retired = false order by c.conceptId").setMaxResults(1)
+		        .uniqueResult();
+		
+		// save one encounter first so that the time to start hibernate is not measured
+		saveEncounter(patientId, encounterTypeId, conceptId);
+		
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < ENCOUNTERS; i++)
+			saveEncounter(patientId, encounterTypeId, conceptId);
+		long millis = Math.max(System.currentTimeMillis() - start, 1);
+		
+		log.info("Saved " + ENCOUNTERS + " encounters with " + OBS_PER_ENCOUNTER + " obs each in " + millis + " ms, "
+		        + (ENCOUNTERS * OBS_PER_ENCOUNTER * 1000L / millis) + " obs per second, pooled ids: "
+		        + Context.getRuntimeProperties().getProperty(OpenmrsConstants.POOLED_ID_GENERATOR_RUNTIME_PROPERTY, "false"));
+	}
+	
+	/**
+	 * Saves an encounter with {@link #OBS_PER_ENCOUNTER} obs and clears the session, so that every
+	 * encounter is saved the same way
+	 */
+	private void saveEncounter(Integer patientId, Integer encounterTypeId, Integer conceptId) {
+		Patient patient = Context.getPatientService().getPatient(patientId);
+		ConceptNumeric concept = Context.getConceptService().getConceptNumeric(conceptId);
+		Location location = Context.getLocationService().getDefaultLocation();
+		Double value = concept.getLowAbsolute() != null ? concept.getLowAbsolute() : 0.0;
+		Date now = new Date();
+		
+		Encounter encounter = new Encounter();
+		encounter.setPatient(patient);
+		encounter.setEncounterType(Context.getEncounterService().getEncounterType(encounterTypeId));
+		encounter.setLocation(location);
+		encounter.setEncounterDatetime(now);
+		for (int i = 0; i < OBS_PER_ENCOUNTER; i++) {
+			Obs obs = new Obs(patient, concept, now, location);
+			obs.setValueNumeric(value);
+			encounter.addObs(obs);
+		}
+		Context.getEncounterService().saveEncounter(encounter);
+		Context.flushSession();
+		Context.clearSession();
+	}
+	
+	/**
+	 * Make sure we use the database defined by the runtime properties and not the in-memory
+	 * database
+	 * 
+	 * @see org.openmrs.test.BaseContextSensitiveTest#useInMemoryDatabase()
+	 */
+	@Override
+	public Boolean useInMemoryDatabase() {
+		return false;
+	}
+}
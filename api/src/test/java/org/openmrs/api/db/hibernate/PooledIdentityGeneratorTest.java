@@ -0,0 +1,104 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.Properties;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Obs;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link PooledIdentityGenerator} class
+ */
+public class PooledIdentityGeneratorTest extends BaseContextSensitiveTest {
+	
+	private Session session;
+	
+	@Before
+	public void before() throws Exception {
+		session = ((SessionFactory) applicationContext.getBean("sessionFactory")).getCurrentSession();
+	}
+	
+	private PooledIdentityGenerator createGenerator(boolean enabled, int increment) {
+		Properties params = new Properties();
+		params.setProperty(PersistentIdentifierGenerator.TABLE, "obs");
+		params.setProperty(PersistentIdentifierGenerator.PK, "obs_id");
+		params.setProperty(PersistentIdentifierGenerator.ENTITY_NAME, Obs.class.getName());
+		params.setProperty(PooledIdentityGenerator.ENABLED, String.valueOf(enabled));
+		params.setProperty(PooledIdentityGenerator.INCREMENT, String.valueOf(increment));
+		
+		PooledIdentityGenerator generator = new PooledIdentityGenerator();
+		generator.configure(Hibernate.INTEGER, params, new H2Dialect());
+		return generator;
+	}
+	
+	private Integer generate(PooledIdentityGenerator generator) {
+		return (Integer) generator.generate((SessionImplementor) session, new Obs());
+	}
+	
+	/**
+	 * @see PooledIdentityGenerator#generate(SessionImplementor,Object)
+	 */
+	@Test
+	@Verifies(value = "should leave the id to the database if pooling is disabled and the dialect uses identity columns", method = "generate(SessionImplementor,Object)")
+	public void generate_shouldLeaveTheIdToTheDatabaseIfPoolingIsDisabledAndTheDialectUsesIdentityColumns() throws Exception {
+		PooledIdentityGenerator generator = createGenerator(false, 10);
+		
+		Assert.assertFalse(generator.isEnabled());
+		Assert.assertSame(IdentifierGeneratorHelper.POST_INSERT_INDICATOR, generator.generate(
+		    (SessionImplementor) session, new Obs()));
+	}
+	
+	/**
+	 * @see PooledIdentityGenerator#generate(SessionImplementor,Object)
+	 */
+	@Test
+	@Verifies(value = "should hand out consecutive ids above the highest id in the table", method = "generate(SessionImplementor,Object)")
+	public void generate_shouldHandOutConsecutiveIdsAboveTheHighestIdInTheTable() throws Exception {
+		Integer highestId = (Integer) session.createQuery("select max(o.obsId) from Obs o").uniqueResult();
+		PooledIdentityGenerator generator = createGenerator(true, 10);
+		
+		Integer first = generate(generator);
+		Assert.assertTrue(first > highestId);
+		for (int i = 1; i < 10; i++)
+			Assert.assertEquals(Integer.valueOf(first + i), generate(generator));
+	}
+	
+	/**
+	 * @see PooledIdentityGenerator#generate(SessionImplementor,Object)
+	 */
+	@Test
+	@Verifies(value = "should reserve a new block when the current one is used up", method = "generate(SessionImplementor,Object)")
+	public void generate_shouldReserveANewBlockWhenTheCurrentOneIsUsedUp() throws Exception {
+		PooledIdentityGenerator generator = createGenerator(true, 2);
+		PooledIdentityGenerator otherGenerator = createGenerator(true, 2);
+		
+		generate(generator);
+		Integer lastOfFirstBlock = generate(generator);
+		Integer otherId = generate(otherGenerator);
+		Assert.assertTrue(otherId > lastOfFirstBlock);
+		Assert.assertTrue(generate(generator) > otherId + 1);
+	}
+}
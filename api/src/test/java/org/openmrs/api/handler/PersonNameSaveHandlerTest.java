@@ -0,0 +1,48 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.handler;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.PersonName;
+import org.openmrs.User;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link PersonNameSaveHandler} class.
+ */
+public class PersonNameSaveHandlerTest {
+	
+	/**
+	 * @see {@link PersonNameSaveHandler#handle(PersonName,User,Date,String)}
+	 */
+	@Test
+	@Verifies(value = "should trim the parts of the name and set their phonetic keys", method = "handle(PersonName,User,Date,String)")
+	public void handle_shouldTrimThePartsOfTheNameAndSetTheirPhoneticKeys() throws Exception {
+		PersonName name = new PersonName(" Catherine ", "", "Smith ");
+		new PersonNameSaveHandler().handle(name, null, null, null);
+		
+		Assert.assertEquals("Catherine", name.getGivenName());
+		Assert.assertEquals("Smith", name.getFamilyName());
+		Assert.assertEquals("C365", name.getGivenNameSoundex());
+		Assert.assertEquals("K0RN", name.getGivenNameMetaphone());
+		Assert.assertEquals("", name.getMiddleNameSoundex());
+		Assert.assertEquals("S530", name.getFamilyNameSoundex());
+		Assert.assertEquals("SM0", name.getFamilyNameMetaphone());
+		Assert.assertNull(name.getFamilyName2Soundex());
+		Assert.assertNull(name.getFamilyName2Metaphone());
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.impl;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link GlobalPropertyCache} class
+ */
+public class GlobalPropertyCacheTest {
+	
+	/**
+	 * @see GlobalPropertyCache#get(String)
+	 */
+	@Test
+	@Verifies(value = "should return null for a property that is not cached", method = "get(String)")
+	public void get_shouldReturnNullForAPropertyThatIsNotCached() throws Exception {
+		GlobalPropertyCache cache = new GlobalPropertyCache();
+		Assert.assertNull(cache.get("some.property"));
+		Assert.assertEquals(1, cache.getMisses());
+	}
+	
+	/**
+	 * @see GlobalPropertyCache#get(String)
+	 */
+	@Test
+	@Verifies(value = "should return a cached value for a property that does not exist", method = "get(String)")
+	public void get_shouldReturnACachedValueForAPropertyThatDoesNotExist() throws Exception {
+		GlobalPropertyCache cache = new GlobalPropertyCache();
+		cache.putIfAbsent("some.property", null);
+		
+		GlobalPropertyCache.CachedValue cached = cache.get("SOME.property");
+		Assert.assertNotNull(cached);
+		Assert.assertNull(cached.getValue());
+		Assert.assertEquals(1, cache.getHits());
+	}
+	
+	/**
+	 * @see GlobalPropertyCache#putIfAbsent(String,String)
+	 */
+	@Test
+	@Verifies(value = "should not replace a value that is already cached", method = "putIfAbsent(String,String)")
+	public void putIfAbsent_shouldNotReplaceAValueThatIsAlreadyCached() throws Exception {
+		GlobalPropertyCache cache = new GlobalPropertyCache();
+		cache.globalPropertyChanged(new GlobalProperty("some.property", "new value"));
+		
+		Assert.assertEquals("new value", cache.putIfAbsent("some.property", "old value").getValue());
+		Assert.assertEquals("new value", cache.get("some.property").getValue());
+	}
+	
+	/**
+	 * @see GlobalPropertyCache#putIfAbsent(String,String)
+	 */
+	@Test
+	@Verifies(value = "should not cache more than the maximum number of properties", method = "putIfAbsent(String,String)")
+	public void putIfAbsent_shouldNotCacheMoreThanTheMaximumNumberOfProperties() throws Exception {
+		GlobalPropertyCache cache = new GlobalPropertyCache();
+		cache.setMaxSize(2);
+		cache.load(Arrays.asList(new GlobalProperty("a", "1"), new GlobalProperty("b", "2"), new GlobalProperty("c", "3")));
+		
+		Assert.assertEquals(2, cache.getSize());
+		Assert.assertEquals("4", cache.putIfAbsent("d", "4").getValue());
+		Assert.assertNull(cache.get("d"));
+	}
+	
+	/**
+	 * @see GlobalPropertyCache#globalPropertyChanged(GlobalProperty)
+	 */
+	@Test
+	@Verifies(value = "should replace the cached value", method = "globalPropertyChanged(GlobalProperty)")
+	public void globalPropertyChanged_shouldReplaceTheCachedValue() throws Exception {
+		GlobalPropertyCache cache = new GlobalPropertyCache();
+		cache.putIfAbsent("some.property", "10");
+		cache.get("some.property").setParsedValue(Integer.class, 10);
+		
+		cache.globalPropertyChanged(new GlobalProperty("some.property", "20"));
+		
+		GlobalPropertyCache.CachedValue cached = cache.get("some.property");
+		Assert.assertEquals("20", cached.getValue());
+		Assert.assertNull(cached.getParsedValue(Integer.class));
+	}
+	
+	/**
+	 * @see GlobalPropertyCache#globalPropertyDeleted(String)
+	 */
+	@Test
+	@Verifies(value = "should cache the property as not existing", method = "globalPropertyDeleted(String)")
+	public void globalPropertyDeleted_shouldCacheThePropertyAsNotExisting() throws Exception {
+		GlobalPropertyCache cache = new GlobalPropertyCache();
+		cache.putIfAbsent("some.property", "value");
+		
+		cache.globalPropertyDeleted("some.property");
+		
+		Assert.assertNull(cache.putIfAbsent("some.property", "value").getValue());
+	}
+}
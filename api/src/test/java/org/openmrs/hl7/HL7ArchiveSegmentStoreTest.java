@@ -0,0 +1,95 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.APIException;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * Tests the {@link HL7ArchiveSegmentStore} class
+ */
+public class HL7ArchiveSegmentStoreTest {
+	
+	private File directory;
+	
+	@Before
+	public void createDirectory() throws Exception {
+		directory = new File(System.getProperty("java.io.tmpdir"), "hl7_archive_segments_test");
+		if (directory.exists())
+			OpenmrsUtil.deleteDirectory(directory);
+	}
+	
+	@After
+	public void deleteDirectory() throws Exception {
+		OpenmrsUtil.deleteDirectory(directory);
+	}
+	
+	private HL7InArchive newArchive(String uuid, String hl7Data) {
+		HL7InArchive archive = new HL7InArchive();
+		archive.setUuid(uuid);
+		archive.setHL7Data(hl7Data);
+		return archive;
+	}
+	
+	/**
+	 * @see HL7ArchiveSegmentStore#append(List)
+	 */
+	@Test
+	@Verifies(value = "should return locations the archives can be read back from", method = "append(List)")
+	public void append_shouldReturnLocationsTheArchivesCanBeReadBackFrom() throws Exception {
+		HL7ArchiveSegmentStore store = new HL7ArchiveSegmentStore(directory);
+		List<String> locations = store.append(Arrays.asList(newArchive("uuid-1", "MSH|first"), newArchive("uuid-2",
+		    "MSH|second")));
+		locations.addAll(store.append(Arrays.asList(newArchive("uuid-3", "MSH|third"))));
+		
+		Assert.assertEquals(3, locations.size());
+		Assert.assertEquals("MSH|third", store.read(locations.get(2)));
+		Assert.assertEquals("MSH|first", store.read(locations.get(0)));
+		Assert.assertEquals("MSH|second", store.read(locations.get(1)));
+	}
+	
+	/**
+	 * @see HL7ArchiveSegmentStore#append(List)
+	 */
+	@Test
+	@Verifies(value = "should start a new segment once the maximum size is reached", method = "append(List)")
+	public void append_shouldStartANewSegmentOnceTheMaximumSizeIsReached() throws Exception {
+		HL7ArchiveSegmentStore store = new HL7ArchiveSegmentStore(directory);
+		store.setMaxSegmentSize(1);
+		String first = store.append(Arrays.asList(newArchive("uuid-1", "MSH|first"))).get(0);
+		String second = store.append(Arrays.asList(newArchive("uuid-2", "MSH|second"))).get(0);
+		
+		Assert.assertTrue(first.startsWith(HL7ArchiveSegmentStore.LOCATION_PREFIX + "segment-000001.gz/0/"));
+		Assert.assertTrue(second.startsWith(HL7ArchiveSegmentStore.LOCATION_PREFIX + "segment-000002.gz/0/"));
+		Assert.assertEquals("MSH|second", store.read(second));
+	}
+	
+	/**
+	 * @see HL7ArchiveSegmentStore#read(String)
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail if the location is malformed", method = "read(String)")
+	public void read_shouldFailIfTheLocationIsMalformed() throws Exception {
+		new HL7ArchiveSegmentStore(directory).read(HL7ArchiveSegmentStore.LOCATION_PREFIX + "segment-000001.gz/abc");
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link HL7InQueueProcessor} class
+ */
+public class HL7InQueueProcessorTest {
+	
+	private static final String MSH = "MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|JqnfhKKtouEz8kzTk6Zo|P|2.5|1||||||||16^AMRS.ELD.FORMID\r";
+	
+	private HL7InQueue newQueueItem(Integer id, String patientIdentifier) {
+		HL7InQueue hl7InQueue = new HL7InQueue();
+		hl7InQueue.setHL7InQueueId(id);
+		hl7InQueue.setHL7Data(MSH + "PID|||" + patientIdentifier + "^^^^||John3^Doe^||\rPV1||O|1^Unknown Location||||1^Super User (1-8)\r");
+		return hl7InQueue;
+	}
+	
+	/**
+	 * @see HL7InQueueProcessor#getPatientIdentifier(String)
+	 */
+	@Test
+	@Verifies(value = "should return the first identifier of the PID segment", method = "getPatientIdentifier(String)")
+	public void getPatientIdentifier_shouldReturnTheFirstIdentifierOfThePIDSegment() throws Exception {
+		Assert.assertEquals("7", HL7InQueueProcessor.getPatientIdentifier(MSH + "PID|||7^^^^~8^^^^||John3^Doe^||\r"));
+	}
+	
+	/**
+	 * @see HL7InQueueProcessor#getPatientIdentifier(String)
+	 */
+	@Test
+	@Verifies(value = "should return null if there is no PID segment", method = "getPatientIdentifier(String)")
+	public void getPatientIdentifier_shouldReturnNullIfThereIsNoPIDSegment() throws Exception {
+		Assert.assertNull(HL7InQueueProcessor.getPatientIdentifier(MSH));
+		Assert.assertNull(HL7InQueueProcessor.getPatientIdentifier("a malformed hl7 message"));
+	}
+	
+	/**
+	 * @see HL7InQueueProcessor#partitionByPatient(List,int)
+	 */
+	@Test
+	@Verifies(value = "should put entries for the same patient in the same partition", method = "partitionByPatient(List,int)")
+	public void partitionByPatient_shouldPutEntriesForTheSamePatientInTheSamePartition() throws Exception {
+		List<HL7InQueue> batch = new ArrayList<HL7InQueue>();
+		for (int i = 1; i <= 20; i++)
+			batch.add(newQueueItem(i, String.valueOf(i % 5)));
+		
+		List<List<HL7InQueue>> partitions = HL7InQueueProcessor.partitionByPatient(batch, 3);
+		Assert.assertEquals(3, partitions.size());
+		
+		int total = 0;
+		for (List<HL7InQueue> partition : partitions) {
+			total += partition.size();
+			for (HL7InQueue hl7InQueue : partition) {
+				// every entry of a patient is in the partition of its first entry
+				for (List<HL7InQueue> other : partitions) {
+					if (other != partition) {
+						for (HL7InQueue otherItem : other)
+							Assert.assertFalse(HL7InQueueProcessor.getPatientIdentifier(hl7InQueue.getHL7Data()).equals(
+							    HL7InQueueProcessor.getPatientIdentifier(otherItem.getHL7Data())));
+					}
+				}
+			}
+		}
+		Assert.assertEquals(20, total);
+	}
+	
+	/**
+	 * @see HL7InQueueProcessor#partitionByPatient(List,int)
+	 */
+	@Test
+	@Verifies(value = "should keep the order of the entries within a partition", method = "partitionByPatient(List,int)")
+	public void partitionByPatient_shouldKeepTheOrderOfTheEntriesWithinAPartition() throws Exception {
+		List<HL7InQueue> batch = new ArrayList<HL7InQueue>();
+		for (int i = 1; i <= 20; i++)
+			batch.add(newQueueItem(i, String.valueOf(i % 3)));
+		
+		for (List<HL7InQueue> partition : HL7InQueueProcessor.partitionByPatient(batch, 2)) {
+			for (int i = 1; i < partition.size(); i++)
+				Assert.assertTrue(partition.get(i - 1).getHL7InQueueId() < partition.get(i).getHL7InQueueId());
+		}
+	}
+}
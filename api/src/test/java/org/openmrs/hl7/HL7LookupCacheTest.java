@@ -0,0 +1,86 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.hl7.HL7LookupCache.Region;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link HL7LookupCache} class
+ */
+public class HL7LookupCacheTest {
+	
+	/**
+	 * @see HL7LookupCache#get(Region,String)
+	 */
+	@Test
+	@Verifies(value = "should return null for a code that is not cached", method = "get(Region,String)")
+	public void get_shouldReturnNullForACodeThatIsNotCached() throws Exception {
+		HL7LookupCache cache = new HL7LookupCache();
+		Assert.assertNull(cache.get(Region.CONCEPT, "SSTRM^WGT234"));
+		Assert.assertEquals(1, cache.getMisses());
+	}
+	
+	/**
+	 * @see HL7LookupCache#get(Region,String)
+	 */
+	@Test
+	@Verifies(value = "should return the id the code was cached with", method = "get(Region,String)")
+	public void get_shouldReturnTheIdTheCodeWasCachedWith() throws Exception {
+		HL7LookupCache cache = new HL7LookupCache();
+		cache.put(Region.CONCEPT, "SSTRM^WGT234", 5089);
+		
+		Assert.assertEquals(5089, cache.get(Region.CONCEPT, "SSTRM^WGT234").intValue());
+		Assert.assertNull(cache.get(Region.LOCATION, "SSTRM^WGT234"));
+		Assert.assertEquals(1, cache.getHits());
+	}
+	
+	/**
+	 * @see HL7LookupCache#put(Region,String,Integer)
+	 */
+	@Test
+	@Verifies(value = "should not cache more than the maximum number of codes per region", method = "put(Region,String,Integer)")
+	public void put_shouldNotCacheMoreThanTheMaximumNumberOfCodesPerRegion() throws Exception {
+		HL7LookupCache cache = new HL7LookupCache();
+		cache.setMaxSize(2);
+		cache.put(Region.LOCATION, "1^", 1);
+		cache.put(Region.LOCATION, "2^", 2);
+		cache.get(Region.LOCATION, "1^");
+		cache.put(Region.LOCATION, "3^", 3);
+		
+		Assert.assertEquals(2, cache.getSize(Region.LOCATION));
+		// the least recently used code is removed
+		Assert.assertNull(cache.get(Region.LOCATION, "2^"));
+		Assert.assertEquals(1, cache.get(Region.LOCATION, "1^").intValue());
+	}
+	
+	/**
+	 * @see HL7LookupCache#onFlushDirty(Object,Serializable,Object[],Object[],String[],Type[])
+	 */
+	@Test
+	@Verifies(value = "should clear the concept region when a concept is changed", method = "onFlushDirty(Object,Serializable,Object[],Object[],String[],Type[])")
+	public void onFlushDirty_shouldClearTheConceptRegionWhenAConceptIsChanged() throws Exception {
+		HL7LookupCache cache = new HL7LookupCache();
+		cache.put(Region.CONCEPT, "SSTRM^WGT234", 5089);
+		cache.put(Region.LOCATION, "1^", 1);
+		
+		cache.onFlushDirty(new Concept(5089), 5089, null, null, null, null);
+		
+		Assert.assertEquals(0, cache.getSize(Region.CONCEPT));
+		Assert.assertEquals(1, cache.getSize(Region.LOCATION));
+	}
+}
@@ -17,10 +17,12 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Assert;
@@ -136,6 +138,93 @@ public class HL7ServiceTest extends BaseContextSensitiveTest {
 		hl7service.processHL7InQueue(queueItem);
 	}
 	
+	/**
+	 * @see {@link HL7Service#processHL7InQueue(HL7InQueue)}
+	 */
+	@Test
+	@Verifies(value = "should process an inQueue that was claimed for processing", method = "processHL7InQueue(HL7InQueue)")
+	public void processHL7InQueue_shouldProcessAnInQueueThatWasClaimedForProcessing() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		List<HL7InQueue> claimed = hl7service.claimHL7InQueues("some claim", 1);
+		Assert.assertEquals(HL7Constants.HL7_STATUS_PROCESSING, claimed.get(0).getMessageState());
+		
+		hl7service.processHL7InQueue(claimed.get(0));
+		
+		Assert.assertNull(hl7service.getHL7InQueue(1));
+	}
+	
+	/**
+	 * @see {@link HL7Service#claimHL7InQueues(String,int)}
+	 */
+	@Test
+	@Verifies(value = "should claim pending queue items in queue order", method = "claimHL7InQueues(String,int)")
+	public void claimHL7InQueues_shouldClaimPendingQueueItemsInQueueOrder() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		List<HL7InQueue> claimed = hl7service.claimHL7InQueues("some claim", 1);
+		Assert.assertEquals(1, claimed.size());
+		Assert.assertEquals(1, claimed.get(0).getHL7InQueueId().intValue());
+		Assert.assertEquals("some claim", claimed.get(0).getClaimedBy());
+		Assert.assertNotNull(claimed.get(0).getDateClaimed());
+		
+		claimed = hl7service.claimHL7InQueues("some claim", 5);
+		Assert.assertEquals(1, claimed.size());
+		Assert.assertEquals(2, claimed.get(0).getHL7InQueueId().intValue());
+	}
+	
+	/**
+	 * @see {@link HL7Service#claimHL7InQueues(String,int)}
+	 */
+	@Test
+	@Verifies(value = "should not return items claimed by an earlier call with the same token", method = "claimHL7InQueues(String,int)")
+	public void claimHL7InQueues_shouldNotReturnItemsClaimedByAnEarlierCallWithTheSameToken() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		Assert.assertEquals(2, hl7service.claimHL7InQueues("some claim", 5).size());
+		Assert.assertEquals(0, hl7service.claimHL7InQueues("some claim", 5).size());
+	}
+	
+	/**
+	 * @see {@link HL7Service#claimHL7InQueues(String,int)}
+	 */
+	@Test
+	@Verifies(value = "should not claim items claimed by another processor", method = "claimHL7InQueues(String,int)")
+	public void claimHL7InQueues_shouldNotClaimItemsClaimedByAnotherProcessor() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		Assert.assertEquals(1, hl7service.claimHL7InQueues("first claim", 1).size());
+		
+		List<HL7InQueue> claimed = hl7service.claimHL7InQueues("second claim", 5);
+		Assert.assertEquals(1, claimed.size());
+		Assert.assertEquals(2, claimed.get(0).getHL7InQueueId().intValue());
+		Assert.assertEquals(0, hl7service.claimHL7InQueues("third claim", 5).size());
+	}
+	
+	/**
+	 * @see {@link HL7Service#releaseHL7InQueueClaims(Date)}
+	 */
+	@Test
+	@Verifies(value = "should release items claimed before the given date", method = "releaseHL7InQueueClaims(Date)")
+	public void releaseHL7InQueueClaims_shouldReleaseItemsClaimedBeforeTheGivenDate() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		Assert.assertEquals(2, hl7service.claimHL7InQueues("some claim", 5).size());
+		
+		Calendar cal = Calendar.getInstance();
+		cal.add(Calendar.HOUR, -1);
+		Assert.assertEquals(0, hl7service.releaseHL7InQueueClaims(cal.getTime()).intValue());
+		
+		cal.add(Calendar.HOUR, 2);
+		Assert.assertEquals(2, hl7service.releaseHL7InQueueClaims(cal.getTime()).intValue());
+		Assert.assertEquals(2, hl7service.claimHL7InQueues("another claim", 5).size());
+	}
+	
 	/**
 	 * @see {@link HL7Service#processHL7Message(Message)}
 	 */
@@ -731,4 +820,79 @@ public class HL7ServiceTest extends BaseContextSensitiveTest {
 		Assert.assertNull(locationId);
 	}
 	
+	
+	/**
+	 * Sets the hl7 archive directory to an empty temporary directory and saves a migrated archive
+	 * with its data in a file of its own
+	 * 
+	 * @return the uuid of the saved archive
+	 */
+	private String saveArchiveMigratedToAFile(String hl7Data) throws Exception {
+		File tempDir = new File(System.getProperty("java.io.tmpdir"), HL7Constants.HL7_ARCHIVE_DIRECTORY_NAME);
+		if (tempDir.exists() && tempDir.isDirectory())
+			Assert.assertEquals(true, OpenmrsUtil.deleteDirectory(tempDir));
+		tempDir.mkdirs();
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_HL7_ARCHIVE_DIRECTORY, tempDir.getAbsolutePath()));
+		
+		File file = new File(tempDir, "archive.txt");
+		FileUtils.writeStringToFile(file, hl7Data, "UTF-8");
+		
+		HL7InArchive archive = new HL7InArchive(Context.getHL7Service().getHL7InQueue(1));
+		archive.setHL7Data(file.toURI().toString());
+		archive.setMessageState(HL7Constants.HL7_STATUS_MIGRATED);
+		Context.getHL7Service().saveHL7InArchive(archive);
+		return archive.getUuid();
+	}
+	
+	/**
+	 * @see {@link HL7Service#convertHL7InArchiveStorage(String,Map)}
+	 */
+	@Test
+	@Verifies(value = "should move archives from files into segments", method = "convertHL7InArchiveStorage(String,Map)")
+	public void convertHL7InArchiveStorage_shouldMoveArchivesFromFilesIntoSegments() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		String uuid = saveArchiveMigratedToAFile("some hl7 data");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		hl7service.convertHL7InArchiveStorage(HL7Constants.HL7_ARCHIVE_STORAGE_SEGMENTS, null);
+		
+		HL7InArchive archive = hl7service.getHL7InArchiveByUuid(uuid);
+		Assert.assertTrue(HL7ArchiveSegmentStore.isSegmentLocation(archive.getHL7Data()));
+		hl7service.loadHL7InArchiveData(archive);
+		Assert.assertEquals("some hl7 data", archive.getHL7Data());
+	}
+	
+	/**
+	 * @see {@link HL7Service#convertHL7InArchiveStorage(String,Map)}
+	 */
+	@Test
+	@Verifies(value = "should move archives from segments into files", method = "convertHL7InArchiveStorage(String,Map)")
+	public void convertHL7InArchiveStorage_shouldMoveArchivesFromSegmentsIntoFiles() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		String uuid = saveArchiveMigratedToAFile("some hl7 data");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		hl7service.convertHL7InArchiveStorage(HL7Constants.HL7_ARCHIVE_STORAGE_SEGMENTS, null);
+		hl7service.convertHL7InArchiveStorage(HL7Constants.HL7_ARCHIVE_STORAGE_FILES, null);
+		
+		HL7InArchive archive = hl7service.getHL7InArchiveByUuid(uuid);
+		Assert.assertTrue(archive.getHL7Data().startsWith("file:"));
+		hl7service.loadHL7InArchiveData(archive);
+		Assert.assertEquals("some hl7 data", archive.getHL7Data());
+	}
+	
+	/**
+	 * @see {@link HL7Service#convertNextHL7InArchives(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the number of archives moved", method = "convertNextHL7InArchives(String)")
+	public void convertNextHL7InArchives_shouldReturnTheNumberOfArchivesMoved() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		saveArchiveMigratedToAFile("some hl7 data");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		Assert.assertEquals(1, hl7service.convertNextHL7InArchives(HL7Constants.HL7_ARCHIVE_STORAGE_SEGMENTS));
+		Assert.assertEquals(0, hl7service.convertNextHL7InArchives(HL7Constants.HL7_ARCHIVE_STORAGE_SEGMENTS));
+	}
 }
@@ -51,6 +51,7 @@ import org.openmrs.api.PersonService;
 import org.openmrs.api.ProviderService;
 import org.openmrs.api.context.Context;
 import org.openmrs.hl7.HL7Constants;
+import org.openmrs.hl7.HL7LookupCache;
 import org.openmrs.obs.ComplexObsHandler;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
@@ -399,6 +400,22 @@ public class ORUR01HandlerTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(5089, new ORUR01Handler().getConcept("WGT234", "SSTRM", "23498343sdnm3").getId().intValue());
 	}
 	
+	/**
+	 * @see {@link ORUR01Handler#getConcept(String,String)}
+	 */
+	@Test
+	@Verifies(value = "should return a mapped Concept that was looked up before from the lookup cache", method = "getConcept(String,String)")
+	public void getConcept_shouldReturnAMappedConceptThatWasLookedUpBeforeFromTheLookupCache() throws Exception {
+		HL7LookupCache lookupCache = new HL7LookupCache();
+		ORUR01Handler handler = new ORUR01Handler();
+		handler.setLookupCache(lookupCache);
+		
+		Assert.assertEquals(5089, handler.getConcept("WGT234", "SSTRM", "23498343sdnm3").getId().intValue());
+		Assert.assertEquals(5089, handler.getConcept("WGT234", "SSTRM", "23498343sdnm3").getId().intValue());
+		Assert.assertEquals(1, lookupCache.getMisses());
+		Assert.assertEquals(1, lookupCache.getHits());
+	}
+	
 	/**
 	 * @see {@link ORUR01Handler#getConcept(String,String)}
 	 */
@@ -0,0 +1,127 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.patient.DuplicatePatientMatcher.Match;
+import org.openmrs.patient.DuplicatePatientMatcher.Record;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link DuplicatePatientMatcher} class
+ */
+public class DuplicatePatientMatcherTest {
+	
+	private static final Date BIRTHDATE = new Date(315532800000L);
+	
+	/**
+	 * @see DuplicatePatientMatcher#addBlock(List,boolean)
+	 */
+	@Test
+	@Verifies(value = "should keep pairs that score at least the minimum score", method = "addBlock(List,boolean)")
+	public void addBlock_shouldKeepPairsThatScoreAtLeastTheMinimumScore() throws Exception {
+		DuplicatePatientMatcher matcher = new DuplicatePatientMatcher(0.6, 10);
+		matcher.addBlock(Arrays.asList(new Record(2, "John", "Doe", BIRTHDATE, "M"), new Record(1, "John", "Doe",
+		        BIRTHDATE, "M"), new Record(3, "Jane", "Doe", null, "F")), false);
+		
+		List<Match> matches = matcher.getMatches();
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(1, matches.get(0).getPatientId().intValue());
+		Assert.assertEquals(2, matches.get(0).getDuplicateId().intValue());
+		Assert.assertEquals(1.0, matches.get(0).getScore(), 0.0001);
+		Assert.assertEquals("familyName,givenName,birthdate,gender", matches.get(0).getMatchedOn());
+	}
+	
+	/**
+	 * @see DuplicatePatientMatcher#addBlock(List,boolean)
+	 */
+	@Test
+	@Verifies(value = "should skip blocks that are larger than the maximum block size", method = "addBlock(List,boolean)")
+	public void addBlock_shouldSkipBlocksThatAreLargerThanTheMaximumBlockSize() throws Exception {
+		DuplicatePatientMatcher matcher = new DuplicatePatientMatcher(0.6, 2);
+		List<Record> block = new ArrayList<Record>();
+		for (int i = 1; i <= 3; i++)
+			block.add(new Record(i, "John", "Doe", BIRTHDATE, "M"));
+		matcher.addBlock(block, false);
+		
+		Assert.assertEquals(0, matcher.getMatches().size());
+		Assert.assertEquals(1, matcher.getSkippedBlocks());
+	}
+	
+	/**
+	 * @see DuplicatePatientMatcher#addBlock(List,boolean)
+	 */
+	@Test
+	@Verifies(value = "should keep the highest score of a pair found in more than one block", method = "addBlock(List,boolean)")
+	public void addBlock_shouldKeepTheHighestScoreOfAPairFoundInMoreThanOneBlock() throws Exception {
+		DuplicatePatientMatcher matcher = new DuplicatePatientMatcher(0.5, 10);
+		List<Record> block = Arrays.asList(new Record(1, "John", "Doe", null, "M"), new Record(2, "Jon", "Doe", null,
+		        "M"));
+		matcher.addBlock(block, false);
+		matcher.addBlock(block, true);
+		matcher.addBlock(block, false);
+		
+		List<Match> matches = matcher.getMatches();
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(1.0, matches.get(0).getScore(), 0.0001);
+		Assert.assertEquals("identifier,familyName,gender", matches.get(0).getMatchedOn());
+	}
+	
+	/**
+	 * @see DuplicatePatientMatcher#score(Record,Record,boolean,List)
+	 */
+	@Test
+	@Verifies(value = "should ignore case and accents when comparing names", method = "score(Record,Record,boolean,List)")
+	public void score_shouldIgnoreCaseAndAccentsWhenComparingNames() throws Exception {
+		DuplicatePatientMatcher matcher = new DuplicatePatientMatcher(0.6, 10);
+		List<String> matchedOn = new ArrayList<String>();
+		double score = matcher.score(new Record(1, "Jos\u00e9", "Garc\u00eda", null, null), new Record(2, "JOSE", "garcia", null,
+		        null), false, matchedOn);
+		
+		Assert.assertEquals(DuplicatePatientMatcher.FAMILY_NAME_WEIGHT + DuplicatePatientMatcher.GIVEN_NAME_WEIGHT, score,
+		    0.0001);
+		Assert.assertEquals(Arrays.asList("familyName", "givenName"), matchedOn);
+	}
+	
+	/**
+	 * @see DuplicatePatientMatcher#score(Record,Record,boolean,List)
+	 */
+	@Test
+	@Verifies(value = "should add the identifier weight for a shared identifier", method = "score(Record,Record,boolean,List)")
+	public void score_shouldAddTheIdentifierWeightForASharedIdentifier() throws Exception {
+		DuplicatePatientMatcher matcher = new DuplicatePatientMatcher(0.6, 10);
+		Record a = new Record(1, "Anet", "Oloo", null, null);
+		Record b = new Record(2, "Collet", "Chebaskwony", null, null);
+		
+		Assert.assertEquals(0.0, matcher.score(a, b, false, new ArrayList<String>()), 0.0001);
+		Assert.assertEquals(DuplicatePatientMatcher.IDENTIFIER_WEIGHT, matcher.score(a, b, true, new ArrayList<String>()),
+		    0.0001);
+	}
+	
+	/**
+	 * @see DuplicatePatientMatcher#normalize(String)
+	 */
+	@Test
+	@Verifies(value = "should remove accents, punctuation and white space", method = "normalize(String)")
+	public void normalize_shouldRemoveAccentsPunctuationAndWhiteSpace() throws Exception {
+		Assert.assertEquals("OBRIENMULLER", DuplicatePatientMatcher.normalize(" O'Brien-M\u00fcller "));
+		Assert.assertEquals("", DuplicatePatientMatcher.normalize(null));
+	}
+}
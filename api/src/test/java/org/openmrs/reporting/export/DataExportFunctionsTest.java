@@ -0,0 +1,75 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting.export;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link DataExportFunctions} class
+ */
+public class DataExportFunctionsTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see DataExportFunctions#setExportPatientSet(Cohort)
+	 */
+	@Test
+	@Verifies(value = "should split the patients into batches of the batch size", method = "setExportPatientSet(Cohort)")
+	public void setExportPatientSet_shouldSplitThePatientsIntoBatchesOfTheBatchSize() throws Exception {
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setBatchSize(2);
+		functions.setExportPatientSet(new Cohort("8,2,7,6,9"));
+		
+		Assert.assertEquals(2, functions.getPatientSetBatchCount().intValue());
+		functions.setPatientSetFromBatch(0);
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(2, 6)), functions.getPatientSet().getMemberIds());
+		functions.setPatientSetFromBatch(2);
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(9)), functions.getPatientSet().getMemberIds());
+		
+		functions.setBatchSize(0);
+		functions.setExportPatientSet(new Cohort("8,2,7,6,9"));
+		Assert.assertNull(functions.getPatientSetBatchCount());
+	}
+	
+	/**
+	 * @see DataExportFunctions#setPatientSetFromBatch(Integer)
+	 */
+	@Test
+	@Verifies(value = "should only load column data for the patients in the current batch", method = "setPatientSetFromBatch(Integer)")
+	public void setPatientSetFromBatch_shouldOnlyLoadColumnDataForThePatientsInTheCurrentBatch() throws Exception {
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setAllPatients(true);
+		functions.setBatchSize(2);
+		functions.setExportPatientSet(new Cohort("2,6,7"));
+		
+		functions.setPatientSetFromBatch(0);
+		functions.setPatientId(2);
+		Assert.assertEquals("M", functions.getPatientAttr("Person", "gender"));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(2, 6)), functions.patientAttributeMap.get("Person.gender")
+		        .keySet());
+		
+		functions.setPatientSetFromBatch(1);
+		Assert.assertTrue(functions.patientAttributeMap.isEmpty());
+		functions.setPatientId(7);
+		Assert.assertEquals("F", functions.getPatientAttr("Person", "gender"));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(7)), functions.patientAttributeMap.get("Person.gender")
+		        .keySet());
+	}
+}
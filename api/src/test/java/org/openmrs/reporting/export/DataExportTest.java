@@ -24,8 +24,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Test;
 import org.openmrs.Cohort;
+import org.openmrs.GlobalProperty;
 import org.openmrs.api.context.Context;
 import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -634,4 +636,32 @@ public class DataExportTest extends BaseContextSensitiveTest {
 		assertEquals("The output is not right.", expectedOutput, output);
 		
 	}
+	
+	/**
+	 * Makes sure that an export that is generated in batches of patients has the same rows as one
+	 * that is generated at once
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void shouldGenerateExportInBatches() throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_DATA_EXPORT_BATCH_SIZE, "2"));
+		
+		DataExportReportObject export = new DataExportReportObject();
+		export.setName("BATCHED EXPORT");
+		export.getColumns().add(new SimpleColumn("PATIENT_ID", "$!{fn.patientId}"));
+		export.getColumns().add(new SimpleColumn("GENDER", "$!{fn.getPatientAttr('Person', 'gender')}"));
+		
+		Cohort patients = new Cohort("8,2,7,6");
+		
+		DataExportUtil.generateExport(export, patients, "\t", null);
+		File exportFile = DataExportUtil.getGeneratedFile(export);
+		
+		String expectedOutput = "PATIENT_ID\tGENDER\n2\tM\n6\tM\n7\tF\n8\tF\n";
+		String output = OpenmrsUtil.getFileAsString(exportFile);
+		exportFile.delete();
+		
+		assertEquals("The output is not right.", expectedOutput, output);
+	}
 }
@@ -0,0 +1,48 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ConcurrencyPolicy} enum
+ */
+public class ConcurrencyPolicyTest {
+	
+	/**
+	 * @see ConcurrencyPolicy#getPolicy(TaskDefinition)
+	 */
+	@Test
+	@Verifies(value = "should return skip if running if the property is not set", method = "getPolicy(TaskDefinition)")
+	public void getPolicy_shouldReturnSkipIfRunningIfThePropertyIsNotSet() throws Exception {
+		Assert.assertEquals(ConcurrencyPolicy.SKIP_IF_RUNNING, ConcurrencyPolicy.getPolicy(new TaskDefinition()));
+		Assert.assertEquals(ConcurrencyPolicy.SKIP_IF_RUNNING, ConcurrencyPolicy.getPolicy(null));
+	}
+	
+	/**
+	 * @see ConcurrencyPolicy#getPolicy(TaskDefinition)
+	 */
+	@Test
+	@Verifies(value = "should return the policy named by the property ignoring case", method = "getPolicy(TaskDefinition)")
+	public void getPolicy_shouldReturnThePolicyNamedByThePropertyIgnoringCase() throws Exception {
+		TaskDefinition taskDefinition = new TaskDefinition();
+		taskDefinition.setProperty(SchedulerConstants.SCHEDULER_CONCURRENCY_POLICY_PROPERTY, " parallel ");
+		Assert.assertEquals(ConcurrencyPolicy.PARALLEL, ConcurrencyPolicy.getPolicy(taskDefinition));
+		
+		taskDefinition.setProperty(SchedulerConstants.SCHEDULER_CONCURRENCY_POLICY_PROPERTY, "sometimes");
+		Assert.assertEquals(ConcurrencyPolicy.SKIP_IF_RUNNING, ConcurrencyPolicy.getPolicy(taskDefinition));
+	}
+}
@@ -20,6 +20,7 @@ import static org.junit.Assert.fail;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -28,10 +29,15 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.openmrs.GlobalProperty;
 import org.openmrs.api.context.Context;
+import org.openmrs.scheduler.db.SchedulerDAO;
 import org.openmrs.scheduler.tasks.AbstractTask;
 import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
 import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.util.OpenmrsConstants;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * TODO test all methods in ScheduleService
@@ -40,6 +46,9 @@ public class SchedulerServiceTest extends BaseContextSensitiveTest {
 	
 	private static Log log = LogFactory.getLog(SchedulerServiceTest.class);
 	
+	@Autowired
+	private SchedulerDAO schedulerDAO;
+	
 	@Before
 	public void setUp() throws Exception {
 		Context.flushSession();
@@ -395,4 +404,107 @@ public class SchedulerServiceTest extends BaseContextSensitiveTest {
 		assertEquals("Last execution time in seconds is wrong", actualExecutionTime.longValue() / 1000, td
 		        .getLastExecutionTime().getTime() / 1000, 1);
 	}
+	
+	/**
+	 * @see SchedulerService#getTaskExecutionStatistics(Integer)
+	 */
+	@Test
+	@Verifies(value = "should return the statistics of a scheduled task", method = "getTaskExecutionStatistics(Integer)")
+	public void getTaskExecutionStatistics_shouldReturnTheStatisticsOfAScheduledTask() throws Exception {
+		SchedulerService service = Context.getSchedulerService();
+		
+		TaskDefinition td = new TaskDefinition();
+		td.setName("Statistics Task");
+		td.setStartOnStartup(false);
+		td.setTaskClass(BareTask.class.getName());
+		td.setStartTime(null);
+		td.setRepeatInterval(3600L);
+		service.saveTask(td);
+		service.scheduleTask(td);
+		
+		TaskExecutionStatistics statistics = service.getTaskExecutionStatistics(td.getId());
+		for (int x = 0; x < 30 && statistics.getExecutionCount() == 0; x++) {
+			Thread.sleep(200);
+			statistics = service.getTaskExecutionStatistics(td.getId());
+		}
+		
+		Assert.assertEquals(1, statistics.getExecutionCount());
+		Assert.assertEquals(0, statistics.getFailureCount());
+		Assert.assertNotNull(statistics.getLastExecutionTime());
+		Assert.assertNotNull(statistics.getNextExecutionTime());
+		service.shutdownTask(td);
+	}
+	
+	/**
+	 * @see SchedulerService#getTaskExecutionStatistics(Integer)
+	 */
+	@Test
+	@Verifies(value = "should return null if the task is not scheduled", method = "getTaskExecutionStatistics(Integer)")
+	public void getTaskExecutionStatistics_shouldReturnNullIfTheTaskIsNotScheduled() throws Exception {
+		Assert.assertNull(Context.getSchedulerService().getTaskExecutionStatistics(Integer.MAX_VALUE));
+	}
+	
+	/**
+	 * Saves a task definition and turns on the leasing of tasks
+	 */
+	private TaskDefinition createLeasedTask() {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_SCHEDULER_CLUSTERED, "true"));
+		
+		TaskDefinition td = new TaskDefinition();
+		td.setName("Leased Task");
+		td.setStartOnStartup(false);
+		td.setTaskClass(BareTask.class.getName());
+		td.setRepeatInterval(3600L);
+		Context.getSchedulerService().saveTaskDefinition(td);
+		return td;
+	}
+	
+	/**
+	 * @see SchedulerService#acquireTaskLease(TaskDefinition)
+	 */
+	@Test
+	@Verifies(value = "should take a lease that no server holds", method = "acquireTaskLease(TaskDefinition)")
+	public void acquireTaskLease_shouldTakeALeaseThatNoServerHolds() throws Exception {
+		TaskDefinition td = createLeasedTask();
+		
+		Assert.assertTrue(Context.getSchedulerService().acquireTaskLease(td));
+		// renewing its own lease
+		Assert.assertTrue(Context.getSchedulerService().acquireTaskLease(td));
+		Assert.assertFalse(schedulerDAO.acquireTaskLease(td.getId(), "another server", new Date(), new Date()));
+	}
+	
+	/**
+	 * @see SchedulerService#acquireTaskLease(TaskDefinition)
+	 */
+	@Test
+	@Verifies(value = "should not take a lease that another server holds until it expires", method = "acquireTaskLease(TaskDefinition)")
+	public void acquireTaskLease_shouldNotTakeALeaseThatAnotherServerHoldsUntilItExpires() throws Exception {
+		TaskDefinition td = createLeasedTask();
+		long now = System.currentTimeMillis();
+		Assert.assertTrue(schedulerDAO.acquireTaskLease(td.getId(), "another server", new Date(now), new Date(
+		        now + 60000)));
+		
+		Assert.assertFalse(Context.getSchedulerService().acquireTaskLease(td));
+		
+		// the other server stopped renewing its lease
+		Assert.assertTrue(schedulerDAO.acquireTaskLease(td.getId(), "another server", new Date(now), new Date(
+		        now - 1000)));
+		Assert.assertTrue(Context.getSchedulerService().acquireTaskLease(td));
+	}
+	
+	/**
+	 * @see SchedulerService#acquireTaskLease(TaskDefinition)
+	 */
+	@Test
+	@Verifies(value = "should always return true if the scheduler is not clustered", method = "acquireTaskLease(TaskDefinition)")
+	public void acquireTaskLease_shouldAlwaysReturnTrueIfTheSchedulerIsNotClustered() throws Exception {
+		TaskDefinition td = createLeasedTask();
+		long now = System.currentTimeMillis();
+		schedulerDAO.acquireTaskLease(td.getId(), "another server", new Date(now), new Date(now + 60000));
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_SCHEDULER_CLUSTERED, "false"));
+		
+		Assert.assertTrue(Context.getSchedulerService().acquireTaskLease(td));
+	}
 }
@@ -0,0 +1,123 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.tasks;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.impl.ConceptServiceImpl;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Tests the {@link ConceptIndexUpdateTask} class
+ */
+public class ConceptIndexUpdateTaskTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * Saves the definition of the task with the given task properties, which the task reads when it
+	 * runs
+	 */
+	private void saveTaskDefinition(String workers, String partitionSize) {
+		TaskDefinition taskDef = new TaskDefinition();
+		taskDef.setName(ConceptServiceImpl.CONCEPT_WORD_UPDATE_TASK_NAME);
+		taskDef.setStartOnStartup(false);
+		taskDef.setTaskClass(ConceptIndexUpdateTask.class.getName());
+		if (workers != null)
+			taskDef.setProperty(ConceptIndexUpdateTask.PROPERTY_WORKERS, workers);
+		if (partitionSize != null)
+			taskDef.setProperty(ConceptIndexUpdateTask.PROPERTY_PARTITION_SIZE, partitionSize);
+		Context.getSchedulerService().saveTaskDefinition(taskDef);
+	}
+	
+	/**
+	 * @return the number of concepts with an id greater than or equal to the given one
+	 */
+	private int countConceptsFrom(int conceptId) {
+		int count = 0;
+		for (Concept concept : Context.getConceptService().getAllConcepts()) {
+			if (concept.getConceptId() >= conceptId)
+				count++;
+		}
+		return count;
+	}
+	
+	private String getLastRunConceptCount() {
+		return Context.getSchedulerService().getTaskByName(ConceptServiceImpl.CONCEPT_WORD_UPDATE_TASK_NAME).getProperty(
+		    ConceptIndexUpdateTask.PROPERTY_LAST_RUN_CONCEPT_COUNT);
+	}
+	
+	/**
+	 * @see ConceptIndexUpdateTask#execute()
+	 */
+	@Test
+	@Verifies(value = "should resume after the last updated concept", method = "execute()")
+	public void execute_shouldResumeAfterTheLastUpdatedConcept() throws Exception {
+		saveTaskDefinition(null, null);
+		int lastUpdatedConceptId = 24;
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT, String
+		            .valueOf(lastUpdatedConceptId)));
+		int remainingConcepts = countConceptsFrom(lastUpdatedConceptId + 1);
+		Assert.assertTrue(remainingConcepts > 0);
+		
+		new ConceptIndexUpdateTask().execute();
+		
+		Assert.assertEquals(String.valueOf(remainingConcepts), getLastRunConceptCount());
+		Assert.assertNull(Context.getAdministrationService().getGlobalPropertyObject(
+		    OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT));
+	}
+	
+	/**
+	 * @see ConceptIndexUpdateTask#execute()
+	 */
+	@Test
+	@Verifies(value = "should skip the partitions completed by an earlier run", method = "execute()")
+	public void execute_shouldSkipThePartitionsCompletedByAnEarlierRun() throws Exception {
+		saveTaskDefinition("1", "10");
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS, "10:0,1"));
+		Context.flushSession();
+		int remainingConcepts = countConceptsFrom(20);
+		Assert.assertTrue(remainingConcepts < countConceptsFrom(0));
+		
+		new ConceptIndexUpdateTask().execute();
+		
+		Assert.assertEquals(String.valueOf(remainingConcepts), getLastRunConceptCount());
+		Assert.assertNull(Context.getAdministrationService().getGlobalPropertyObject(
+		    OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS));
+	}
+	
+	/**
+	 * @see ConceptIndexUpdateTask#execute()
+	 */
+	@Test
+	@Verifies(value = "should rebuild all partitions if the earlier run used another partition size", method = "execute()")
+	public void execute_shouldRebuildAllPartitionsIfTheEarlierRunUsedAnotherPartitionSize() throws Exception {
+		saveTaskDefinition("1", "10");
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS, "5:0,1,2,3"));
+		Context.flushSession();
+		
+		new ConceptIndexUpdateTask().execute();
+		
+		Assert.assertEquals(String.valueOf(countConceptsFrom(0)), getLastRunConceptCount());
+		Assert.assertNull(Context.getAdministrationService().getGlobalPropertyObject(
+		    OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_COMPLETED_PARTITIONS));
+	}
+}
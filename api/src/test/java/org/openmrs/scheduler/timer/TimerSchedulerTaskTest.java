@@ -0,0 +1,176 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.timer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.scheduler.ConcurrencyPolicy;
+import org.openmrs.scheduler.TaskExecutionStatistics;
+import org.openmrs.scheduler.tasks.AbstractTask;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link TimerSchedulerTask} class
+ */
+public class TimerSchedulerTaskTest extends BaseContextSensitiveTest {
+	
+	private ScheduledThreadPoolExecutor executor;
+	
+	/**
+	 * Task that waits until it is released, keeping track of how many executions run at once
+	 */
+	public static class WaitingTask extends AbstractTask {
+		
+		private CountDownLatch started = new CountDownLatch(1);
+		
+		private CountDownLatch release = new CountDownLatch(1);
+		
+		private AtomicInteger running = new AtomicInteger();
+		
+		private AtomicInteger maxRunning = new AtomicInteger();
+		
+		public void execute() {
+			int now = running.incrementAndGet();
+			if (now > maxRunning.get())
+				maxRunning.set(now);
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				// stop waiting
+			}
+			running.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Task that runs until it is cancelled
+	 */
+	public static class CancellableTask extends AbstractTask {
+		
+		private CountDownLatch started = new CountDownLatch(1);
+		
+		public void execute() {
+			started.countDown();
+			for (int x = 0; x < 100 && !isCancelled(); x++) {
+				try {
+					Thread.sleep(100);
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+	
+	@Before
+	public void createExecutor() throws Exception {
+		executor = new ScheduledThreadPoolExecutor(2);
+	}
+	
+	@After
+	public void shutdownExecutor() throws Exception {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Waits until the given number of executions of the task have finished
+	 */
+	private TaskExecutionStatistics waitForExecutions(TimerSchedulerTask schedulerTask, int count) throws Exception {
+		TaskExecutionStatistics statistics = schedulerTask.getStatistics();
+		for (int x = 0; x < 100 && (statistics.getExecutionCount() < count || statistics.getRunningCount() > 0); x++) {
+			Thread.sleep(100);
+			statistics = schedulerTask.getStatistics();
+		}
+		return statistics;
+	}
+	
+	/**
+	 * @see TimerSchedulerTask#run()
+	 */
+	@Test
+	@Verifies(value = "should skip the execution if the task is running and the policy is skip if running", method = "run()")
+	public void run_shouldSkipTheExecutionIfTheTaskIsRunningAndThePolicyIsSkipIfRunning() throws Exception {
+		WaitingTask task = new WaitingTask();
+		TimerSchedulerTask schedulerTask = new TimerSchedulerTask(task, ConcurrencyPolicy.SKIP_IF_RUNNING);
+		schedulerTask.schedule(executor, executor, 60000, 60000);
+		
+		schedulerTask.run();
+		Assert.assertTrue(task.started.await(10, TimeUnit.SECONDS));
+		schedulerTask.run();
+		task.release.countDown();
+		
+		TaskExecutionStatistics statistics = waitForExecutions(schedulerTask, 1);
+		Assert.assertEquals(1, statistics.getExecutionCount());
+		Assert.assertEquals(1, statistics.getSkippedCount());
+		Assert.assertEquals(0, statistics.getFailureCount());
+		Assert.assertNotNull(statistics.getLastDuration());
+		Assert.assertNotNull(statistics.getNextExecutionTime());
+	}
+	
+	/**
+	 * @see TimerSchedulerTask#run()
+	 */
+	@Test
+	@Verifies(value = "should run the queued executions one after the other if the policy is queue", method = "run()")
+	public void run_shouldRunTheQueuedExecutionsOneAfterTheOtherIfThePolicyIsQueue() throws Exception {
+		WaitingTask task = new WaitingTask();
+		TimerSchedulerTask schedulerTask = new TimerSchedulerTask(task, ConcurrencyPolicy.QUEUE);
+		schedulerTask.schedule(executor, executor, 60000, 60000);
+		
+		schedulerTask.run();
+		Assert.assertTrue(task.started.await(10, TimeUnit.SECONDS));
+		schedulerTask.run();
+		schedulerTask.run();
+		Assert.assertEquals(2, schedulerTask.getStatistics().getQueuedCount());
+		task.release.countDown();
+		
+		TaskExecutionStatistics statistics = waitForExecutions(schedulerTask, 3);
+		Assert.assertEquals(3, statistics.getExecutionCount());
+		Assert.assertEquals(0, statistics.getSkippedCount());
+		Assert.assertEquals(1, task.maxRunning.get());
+	}
+	
+	/**
+	 * @see TimerSchedulerTask#shutdown()
+	 */
+	@Test
+	@Verifies(value = "should cancel the running task", method = "shutdown()")
+	public void shutdown_shouldCancelTheRunningTask() throws Exception {
+		CancellableTask task = new CancellableTask();
+		TimerSchedulerTask schedulerTask = new TimerSchedulerTask(task, ConcurrencyPolicy.SKIP_IF_RUNNING);
+		schedulerTask.schedule(executor, executor, 60000, 60000);
+		
+		schedulerTask.run();
+		Assert.assertTrue(task.started.await(10, TimeUnit.SECONDS));
+		schedulerTask.shutdown();
+		Assert.assertTrue(schedulerTask.isCancelled());
+		Assert.assertTrue(task.isCancelled());
+		
+		long start = System.currentTimeMillis();
+		TaskExecutionStatistics statistics = waitForExecutions(schedulerTask, 1);
+		Assert.assertEquals(1, statistics.getExecutionCount());
+		Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+		Assert.assertNull(statistics.getNextExecutionTime());
+	}
+}
@@ -64,6 +64,10 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.api.db.ConceptSearchIndex;
+import org.openmrs.api.impl.GlobalPropertyCache;
+import org.openmrs.hl7.HL7LookupCache;
 import org.openmrs.module.ModuleConstants;
 import org.openmrs.module.ModuleUtil;
 import org.openmrs.util.OpenmrsClassLoader;
@@ -596,6 +600,14 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 			ps.execute();
 			ps.close();
 		}
+		
+		// the dataset may contain global properties, concept words and mappings
+		clearGlobalPropertyCache();
+		clearConceptSearchIndex();
+		clearHL7LookupCache();
+		
+		// the dataset may give roles new privileges
+		UserContext.privilegesChanged();
 	}
 	
 	/**
@@ -641,6 +653,9 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		
 		// clear the (hibernate) session to make sure nothing is cached, etc
 		Context.clearSession();
+		clearGlobalPropertyCache();
+		clearConceptSearchIndex();
+		clearHL7LookupCache();
 		
 		// needed because the authenticatedUser is the only object that sticks
 		// around after tests and the clearSession call
@@ -649,6 +664,30 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		
 	}
 	
+	/**
+	 * Clears the global property cache since rows are added and deleted with dbunit without the
+	 * AdministrationService knowing about it
+	 */
+	public void clearGlobalPropertyCache() {
+		((GlobalPropertyCache) applicationContext.getBean("globalPropertyCache")).clear();
+	}
+	
+	/**
+	 * Clears the in-memory concept search index since concept words are added and deleted with
+	 * dbunit without the ConceptService knowing about it
+	 */
+	public void clearConceptSearchIndex() {
+		((ConceptSearchIndex) applicationContext.getBean("conceptSearchIndex")).clear();
+	}
+	
+	/**
+	 * Clears the codes resolved by the hl7 handlers since concepts, locations, providers and users
+	 * are added and deleted with dbunit without the hibernate interceptors knowing about it
+	 */
+	public void clearHL7LookupCache() {
+		((HL7LookupCache) applicationContext.getBean("hl7LookupCache")).clear();
+	}
+	
 	/**
 	 * Method to clear the hibernate cache
 	 */
@@ -75,4 +75,39 @@ public class HandlerUtilTest extends BaseContextSensitiveTest {
 	public void getPreferredHandler_shouldThrowAAPIExceptionExceptionIfNoHandlerIsFound() throws Exception {
 		HandlerUtil.getPreferredHandler(Validator.class, Patient.class);
 	}
+	
+	/**
+	 * @see {@link HandlerUtil#getHandlersForType(Class, Class)}
+	 */
+	@Test
+	@Verifies(value = "should return cached handlers on subsequent calls", method = "getHandlersForType(Class, Class)")
+	public void getHandlersForType_shouldReturnCachedHandlersOnSubsequentCalls() throws Exception {
+		List<Validator> first = HandlerUtil.getHandlersForType(Validator.class, DrugOrder.class);
+		long hits = HandlerUtil.getCacheHits();
+		long misses = HandlerUtil.getCacheMisses();
+		
+		List<Validator> second = HandlerUtil.getHandlersForType(Validator.class, DrugOrder.class);
+		Assert.assertEquals(first, second);
+		Assert.assertEquals(hits + 1, HandlerUtil.getCacheHits());
+		Assert.assertEquals(misses, HandlerUtil.getCacheMisses());
+		
+		// modifying the returned list must not affect the cache
+		second.clear();
+		Assert.assertEquals(2, HandlerUtil.getHandlersForType(Validator.class, DrugOrder.class).size());
+	}
+	
+	/**
+	 * @see {@link HandlerUtil#getHandlersForType(Class, Class)}
+	 */
+	@Test
+	@Verifies(value = "should rescan the registered components after the cache is cleared", method = "getHandlersForType(Class, Class)")
+	public void getHandlersForType_shouldRescanTheRegisteredComponentsAfterTheCacheIsCleared() throws Exception {
+		HandlerUtil.getHandlersForType(Validator.class, Order.class);
+		HandlerUtil.clearCachedHandlers();
+		long misses = HandlerUtil.getCacheMisses();
+		
+		List<Validator> l = HandlerUtil.getHandlersForType(Validator.class, Order.class);
+		Assert.assertEquals(misses + 1, HandlerUtil.getCacheMisses());
+		Assert.assertEquals(OrderValidator.class, l.get(0).getClass());
+	}
 }
@@ -0,0 +1,133 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link IntegerBitmapSet} class
+ */
+public class IntegerBitmapSetTest {
+	
+	/**
+	 * @see IntegerBitmapSet#add(int)
+	 */
+	@Test
+	@Verifies(value = "should keep the values in ascending order", method = "add(int)")
+	public void add_shouldKeepTheValuesInAscendingOrder() throws Exception {
+		IntegerBitmapSet set = new IntegerBitmapSet();
+		set.add(70000);
+		set.add(7);
+		set.add(3);
+		set.add(65536);
+		set.add(7);
+		
+		Assert.assertEquals(4, set.size());
+		Assert.assertTrue(Arrays.equals(new int[] { 3, 7, 65536, 70000 }, set.toIntArray()));
+		Assert.assertEquals(Arrays.asList(3, 7, 65536, 70000), Arrays.asList(set.toArray()));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(3, 7, 65536, 70000)), set);
+	}
+	
+	/**
+	 * @see IntegerBitmapSet#add(int)
+	 */
+	@Test
+	@Verifies(value = "should switch between array and bitmap chunks", method = "add(int)")
+	public void add_shouldSwitchBetweenArrayAndBitmapChunks() throws Exception {
+		IntegerBitmapSet set = new IntegerBitmapSet();
+		for (int i = 0; i < 3 * IntegerBitmapSet.MAX_ARRAY_SIZE; i += 2)
+			set.add(i);
+		
+		Assert.assertEquals(3 * IntegerBitmapSet.MAX_ARRAY_SIZE / 2, set.size());
+		Assert.assertTrue(set.contains(4));
+		Assert.assertFalse(set.contains(5));
+		
+		for (int i = 0; i < 3 * IntegerBitmapSet.MAX_ARRAY_SIZE; i += 4)
+			set.remove(i);
+		
+		Assert.assertEquals(3 * IntegerBitmapSet.MAX_ARRAY_SIZE / 4, set.size());
+		Assert.assertFalse(set.contains(4));
+		Assert.assertTrue(set.contains(6));
+		int previous = -1;
+		for (Integer value : set) {
+			Assert.assertTrue(value > previous);
+			Assert.assertEquals(2, value % 4);
+			previous = value;
+		}
+	}
+	
+	/**
+	 * @see IntegerBitmapSet#addAll(java.util.Collection)
+	 */
+	@Test
+	@Verifies(value = "should add all values of another bitmap set", method = "addAll(Collection)")
+	public void addAll_shouldAddAllValuesOfAnotherBitmapSet() throws Exception {
+		IntegerBitmapSet set = new IntegerBitmapSet(Arrays.asList(1, 2, 100000));
+		
+		Assert.assertTrue(set.addAll(new IntegerBitmapSet(Arrays.asList(2, 3, 200000))));
+		Assert.assertFalse(set.addAll(new IntegerBitmapSet(Arrays.asList(1, 3))));
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 2, 3, 100000, 200000 }, set.toIntArray()));
+	}
+	
+	/**
+	 * @see IntegerBitmapSet#and(IntegerBitmapSet,IntegerBitmapSet)
+	 */
+	@Test
+	@Verifies(value = "should return the values that are in both sets", method = "and(IntegerBitmapSet,IntegerBitmapSet)")
+	public void and_shouldReturnTheValuesThatAreInBothSets() throws Exception {
+		IntegerBitmapSet evens = new IntegerBitmapSet();
+		Set<Integer> expected = new HashSet<Integer>();
+		for (int i = 0; i < 20000; i += 2)
+			evens.add(i);
+		IntegerBitmapSet threes = new IntegerBitmapSet();
+		for (int i = 0; i < 20000; i += 3) {
+			threes.add(i);
+			if (i % 2 == 0)
+				expected.add(i);
+		}
+		threes.add(100000);
+		
+		IntegerBitmapSet both = IntegerBitmapSet.and(evens, threes);
+		
+		Assert.assertEquals(expected, both);
+		Assert.assertEquals(10000, evens.size());
+	}
+	
+	/**
+	 * @see IntegerBitmapSet#andNot(IntegerBitmapSet,IntegerBitmapSet)
+	 */
+	@Test
+	@Verifies(value = "should return the values that are only in the first set", method = "andNot(IntegerBitmapSet,IntegerBitmapSet)")
+	public void andNot_shouldReturnTheValuesThatAreOnlyInTheFirstSet() throws Exception {
+		IntegerBitmapSet all = new IntegerBitmapSet();
+		for (int i = 0; i < 10000; i++)
+			all.add(i);
+		IntegerBitmapSet odds = new IntegerBitmapSet();
+		for (int i = 1; i < 10000; i += 2)
+			odds.add(i);
+		
+		IntegerBitmapSet evens = IntegerBitmapSet.andNot(all, odds);
+		
+		Assert.assertEquals(5000, evens.size());
+		Assert.assertTrue(evens.contains(9998));
+		Assert.assertFalse(evens.contains(9999));
+		Assert.assertTrue(IntegerBitmapSet.andNot(odds, all).isEmpty());
+	}
+}
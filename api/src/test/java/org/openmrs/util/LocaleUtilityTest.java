@@ -280,6 +280,24 @@ public class LocaleUtilityTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(6, LocaleUtility.getLocalesInOrder().size());
 	}
 	
+	/**
+	 * @see {@link LocaleUtility#getLocalesInOrder()}
+	 */
+	@Test
+	@Verifies(value = "should return the same set until the allowed locales change", method = "getLocalesInOrder()")
+	public void getLocalesInOrder_shouldReturnTheSameSetUntilTheAllowedLocalesChange() throws Exception {
+		Context.setLocale(new Locale("lu", "UG"));
+		Set<Locale> localesInOrder = LocaleUtility.getLocalesInOrder();
+		Assert.assertSame(localesInOrder, LocaleUtility.getLocalesInOrder());
+		
+		GlobalProperty gp = new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_LOCALE_ALLOWED_LIST, "lu, sw_KE, en",
+		        "Test Allowed list of locales");
+		Context.getAdministrationService().saveGlobalProperty(gp);
+		Set<Locale> changed = LocaleUtility.getLocalesInOrder();
+		Assert.assertNotSame(localesInOrder, changed);
+		Assert.assertTrue(changed.contains(new Locale("sw", "KE")));
+	}
+	
 	/**
 	 * This test doesn't really test anything, and it should ALWAYS be the last method in this
 	 * class. <br/>
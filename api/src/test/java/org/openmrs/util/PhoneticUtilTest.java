@@ -0,0 +1,111 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.PersonName;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods in {@link PhoneticUtil}
+ */
+public class PhoneticUtilTest {
+	
+	/**
+	 * @see PhoneticUtil#encode(String,String)
+	 */
+	@Test
+	@Verifies(value = "should encode with the given algorithm", method = "encode(String,String)")
+	public void encode_shouldEncodeWithTheGivenAlgorithm() throws Exception {
+		Assert.assertEquals("P410", PhoneticUtil.encode(PhoneticUtil.SOUNDEX, "Philip"));
+		Assert.assertEquals("FLP", PhoneticUtil.encode("Metaphone", "Philip"));
+	}
+	
+	/**
+	 * @see PhoneticUtil#encode(String,String)
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	@Verifies(value = "should fail for an unknown algorithm", method = "encode(String,String)")
+	public void encode_shouldFailForAnUnknownAlgorithm() throws Exception {
+		PhoneticUtil.encode("nysiis", "Philip");
+	}
+	
+	/**
+	 * @see PhoneticUtil#soundex(String)
+	 */
+	@Test
+	@Verifies(value = "should encode names that sound alike to the same key", method = "soundex(String)")
+	public void soundex_shouldEncodeNamesThatSoundAlikeToTheSameKey() throws Exception {
+		Assert.assertEquals("R163", PhoneticUtil.soundex("Robert"));
+		Assert.assertEquals("R163", PhoneticUtil.soundex("Rupert"));
+		Assert.assertEquals("A261", PhoneticUtil.soundex("Ashcraft"));
+		Assert.assertEquals("T522", PhoneticUtil.soundex("Tymczak"));
+		Assert.assertEquals("P236", PhoneticUtil.soundex("Pfister"));
+		Assert.assertEquals("J520", PhoneticUtil.soundex("J\u00f3nes"));
+	}
+	
+	/**
+	 * @see PhoneticUtil#soundex(String)
+	 */
+	@Test
+	@Verifies(value = "should return an empty key for a value without letters", method = "soundex(String)")
+	public void soundex_shouldReturnAnEmptyKeyForAValueWithoutLetters() throws Exception {
+		Assert.assertEquals("", PhoneticUtil.soundex(" 12-"));
+		Assert.assertNull(PhoneticUtil.soundex(null));
+	}
+	
+	/**
+	 * @see PhoneticUtil#metaphone(String)
+	 */
+	@Test
+	@Verifies(value = "should encode names that sound alike to the same key", method = "metaphone(String)")
+	public void metaphone_shouldEncodeNamesThatSoundAlikeToTheSameKey() throws Exception {
+		Assert.assertEquals("K0RN", PhoneticUtil.metaphone("Catherine"));
+		Assert.assertEquals("K0RN", PhoneticUtil.metaphone("Kathryn"));
+		Assert.assertEquals("SM0", PhoneticUtil.metaphone("Smith"));
+		Assert.assertEquals("SM0", PhoneticUtil.metaphone("Smyth"));
+		Assert.assertEquals("NT", PhoneticUtil.metaphone("Knight"));
+	}
+	
+	/**
+	 * @see PhoneticUtil#metaphone(String)
+	 */
+	@Test
+	@Verifies(value = "should return an empty key for a value without letters", method = "metaphone(String)")
+	public void metaphone_shouldReturnAnEmptyKeyForAValueWithoutLetters() throws Exception {
+		Assert.assertEquals("", PhoneticUtil.metaphone("'"));
+		Assert.assertNull(PhoneticUtil.metaphone(null));
+	}
+	
+	/**
+	 * @see PhoneticUtil#setPhoneticKeys(PersonName)
+	 */
+	@Test
+	@Verifies(value = "should set the keys of every part of the name", method = "setPhoneticKeys(PersonName)")
+	public void setPhoneticKeys_shouldSetTheKeysOfEveryPartOfTheName() throws Exception {
+		PersonName name = new PersonName("Kathryn", "Rupert", "Jones");
+		name.setFamilyName2("Smyth");
+		PhoneticUtil.setPhoneticKeys(name);
+		
+		Assert.assertEquals("K365", name.getGivenNameSoundex());
+		Assert.assertEquals("R163", name.getMiddleNameSoundex());
+		Assert.assertEquals("J520", name.getFamilyNameSoundex());
+		Assert.assertEquals("S530", name.getFamilyName2Soundex());
+		Assert.assertEquals("K0RN", name.getGivenNameMetaphone());
+		Assert.assertEquals("RPRT", name.getMiddleNameMetaphone());
+		Assert.assertEquals("JNS", name.getFamilyNameMetaphone());
+		Assert.assertEquals("SM0", name.getFamilyName2Metaphone());
+	}
+}
@@ -14,6 +14,7 @@
 package org.openmrs.web.controller;
 
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -63,6 +64,11 @@ public class PortletController implements Controller {
 	
 	protected Log log = LogFactory.getLog(this.getClass());
 	
+	/**
+	 * The concept of the return visit date shown in the patient header
+	 */
+	private static final Integer RETURN_VISIT_DATE_CONCEPT_ID = 5096;
+	
 	/**
 	 * This method produces a model containing the following mappings:
 	 * 
@@ -78,7 +84,8 @@ public class PortletController implements Controller {
 	 *     (if the request has a patientId attribute)
 	 *          (Integer) patientId
 	 *          (Patient) patient
-	 *          (List<Obs>) patientObs
+	 *          (List<Obs>) patientObs // loaded the first time it is used
+	 *          (List<Obs>) patientLatestObs // most recent weight, height, cd4 and return visit date obs
 	 *          (List<Encounter>) patientEncounters
 	 *          (List<Visit>) patientVisits
 	 *          (List<Visit>) activeVisits
@@ -113,6 +120,7 @@ public class PortletController implements Controller {
 	 * 
 	 * @should calculate bmi into patientBmiAsString
 	 * @should not fail with empty height and weight properties
+	 * @should load the latest weight and cd4 if the height concept does not exist
 	 */
 	@SuppressWarnings("unchecked")
 	public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException,
@@ -210,37 +218,42 @@ public class PortletController implements Controller {
 						}
 						
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_OBS)) {
-							List<Obs> patientObs = Context.getObsService().getObservationsByPerson(p);
-							model.put("patientObs", patientObs);
+							// the whole history is only loaded by the portlets that use it
+							model.put("patientObs", new PersonObsList(p));
+							List<Obs> patientLatestObs = new ArrayList<Obs>();
 							Obs latestWeight = null;
 							Obs latestHeight = null;
 							String bmiAsString = "?";
+							ConceptNumeric weightConcept = getConceptNumeric("concept.weight");
+							ConceptNumeric heightConcept = getConceptNumeric("concept.height");
+							
+							// the latest values shown by the patient header
+							List<Concept> latestConcepts = new ArrayList<Concept>();
+							if (weightConcept != null)
+								latestConcepts.add(weightConcept);
+							if (heightConcept != null)
+								latestConcepts.add(heightConcept);
+							String cd4String = as.getGlobalProperty("concept.cd4_count");
+							Concept cd4Concept = StringUtils.hasLength(cd4String) ? cs.getConcept(cd4String) : null;
+							if (cd4Concept != null)
+								latestConcepts.add(cd4Concept);
+							Concept returnVisitConcept = cs.getConcept(RETURN_VISIT_DATE_CONCEPT_ID);
+							if (returnVisitConcept != null)
+								latestConcepts.add(returnVisitConcept);
+							if (!latestConcepts.isEmpty())
+								patientLatestObs = Context.getObsService().getLatestObs(p, latestConcepts);
+							
+							for (Obs obs : patientLatestObs) {
+								if (obs.getConcept().equals(weightConcept))
+									latestWeight = obs;
+								else if (obs.getConcept().equals(heightConcept))
+									latestHeight = obs;
+							}
+							if (latestWeight != null)
+								model.put("patientWeight", latestWeight);
+							if (latestHeight != null)
+								model.put("patientHeight", latestHeight);
 							try {
-								String weightString = as.getGlobalProperty("concept.weight");
-								ConceptNumeric weightConcept = null;
-								if (StringUtils.hasLength(weightString))
-									weightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(weightString))
-									        .getConceptId());
-								String heightString = as.getGlobalProperty("concept.height");
-								ConceptNumeric heightConcept = null;
-								if (StringUtils.hasLength(heightString))
-									heightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(heightString))
-									        .getConceptId());
-								for (Obs obs : patientObs) {
-									if (obs.getConcept().equals(weightConcept)) {
-										if (latestWeight == null
-										        || obs.getObsDatetime().compareTo(latestWeight.getObsDatetime()) > 0)
-											latestWeight = obs;
-									} else if (obs.getConcept().equals(heightConcept)) {
-										if (latestHeight == null
-										        || obs.getObsDatetime().compareTo(latestHeight.getObsDatetime()) > 0)
-											latestHeight = obs;
-									}
-								}
-								if (latestWeight != null)
-									model.put("patientWeight", latestWeight);
-								if (latestHeight != null)
-									model.put("patientHeight", latestHeight);
 								if (latestWeight != null && latestHeight != null) {
 									double weightInKg;
 									double heightInM;
@@ -270,9 +283,11 @@ public class PortletController implements Controller {
 								if (latestWeight != null && latestHeight != null)
 									log.error("Failed to calculate BMI even though a weight and height were found", ex);
 							}
+							model.put("patientLatestObs", patientLatestObs);
 							model.put("patientBmiAsString", bmiAsString);
 						} else {
 							model.put("patientObs", new HashSet<Obs>());
+							model.put("patientLatestObs", new HashSet<Obs>());
 						}
 						
 						// information about whether or not the patient has exited care
@@ -473,6 +488,24 @@ public class PortletController implements Controller {
 	protected void populateModel(HttpServletRequest request, Map<String, Object> model) {
 	}
 	
+	/**
+	 * @return the numeric concept whose id is in the given global property, null if the property is
+	 *         not set or does not point to a numeric concept
+	 */
+	private ConceptNumeric getConceptNumeric(String globalPropertyName) {
+		String conceptId = Context.getAdministrationService().getGlobalProperty(globalPropertyName);
+		if (!StringUtils.hasLength(conceptId))
+			return null;
+		
+		try {
+			return Context.getConceptService().getConceptNumeric(Integer.valueOf(conceptId.trim()));
+		}
+		catch (NumberFormatException e) {
+			log.warn("Global property " + globalPropertyName + " is not a concept id: " + conceptId);
+			return null;
+		}
+	}
+	
 	private <T extends ActiveListItem> List<List<T>> separate(List<T> ls) {
 		List<T> active = new ArrayList<T>();
 		List<T> removed = new ArrayList<T>();
@@ -491,4 +524,34 @@ public class PortletController implements Controller {
 		return items;
 	}
 	
+	
+	/**
+	 * The non-voided observations of a person, which are only loaded when the list is first used
+	 */
+	private static class PersonObsList extends AbstractList<Obs> {
+		
+		private final Person person;
+		
+		private List<Obs> obs;
+		
+		public PersonObsList(Person person) {
+			this.person = person;
+		}
+		
+		private List<Obs> getObs() {
+			if (obs == null)
+				obs = Context.getObsService().getObservationsByPerson(person);
+			return obs;
+		}
+		
+		@Override
+		public Obs get(int index) {
+			return getObs().get(index);
+		}
+		
+		@Override
+		public int size() {
+			return getObs().size();
+		}
+	}
 }
@@ -42,6 +42,7 @@ import org.openmrs.api.PatientIdentifierException;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.patient.PatientSearchResult;
 import org.openmrs.patient.UnallowedIdentifierException;
 import org.openmrs.util.OpenmrsConstants;
 
@@ -108,22 +109,29 @@ public class DWRPatientService implements GlobalPropertyListener {
 		List<Object> patientList = new Vector<Object>();
 		
 		PatientService ps = Context.getPatientService();
-		Collection<Patient> patients;
 		
 		try {
-			patients = ps.getPatients(searchValue, start, length);
+			if (isListingAttributes()) {
+				// the attributes to list are only known of fully loaded patients
+				Collection<Patient> patients = ps.getPatients(searchValue, start, length);
+				patientList = new Vector<Object>(patients.size());
+				for (Patient p : patients)
+					patientList.add(new PatientListItem(p, searchValue));
+			} else {
+				List<PatientSearchResult> results = ps.getPatientSearchResults(searchValue, start, length);
+				patientList = new Vector<Object>(results.size());
+				for (PatientSearchResult result : results)
+					patientList.add(new PatientListItem(result, searchValue));
+			}
 		}
 		catch (APIAuthenticationException e) {
 			patientList.add(Context.getMessageSourceService().getMessage("Patient.search.error") + " - " + e.getMessage());
 			return patientList;
 		}
 		
-		patientList = new Vector<Object>(patients.size());
-		for (Patient p : patients)
-			patientList.add(new PatientListItem(p, searchValue));
 		//no results found and a number was in the search --
 		//should check whether the check digit is correct.
-		if (patients.size() == 0 && searchValue.matches(".*\\d+.*")) {
+		if (patientList.size() == 0 && searchValue.matches(".*\\d+.*")) {
 			
 			//Looks through all the patient identifier validators to see if this type of identifier
 			//is supported for any of them.  If it isn't, then no need to warn about a bad check
@@ -324,7 +332,7 @@ public class DWRPatientService implements GlobalPropertyListener {
 			List<Patient> patients = Context.getPatientService().getDuplicatePatientsByAttributes(options);
 			
 			if (patients.size() > 200)
-				patients.subList(0, 200);
+				patients = patients.subList(0, 200);
 			
 			for (Patient p : patients)
 				patientList.add(new PatientListItem(p));
@@ -752,6 +760,17 @@ public class DWRPatientService implements GlobalPropertyListener {
 		maximumResults = OpenmrsConstants.GLOBAL_PROPERTY_PERSON_SEARCH_MAX_RESULTS_DEFAULT_VALUE;
 	}
 	
+	/**
+	 * Search results are read as {@link PatientSearchResult}s, unless the listing has to show
+	 * person attributes
+	 * 
+	 * @return true if the patient listing shows person attributes
+	 */
+	private static boolean isListingAttributes() {
+		return StringUtils.isNotBlank(Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GLOBAL_PROPERTY_PATIENT_LISTING_ATTRIBUTES));
+	}
+	
 	/**
 	 * Fetch the max results value from the global properties table
 	 * 
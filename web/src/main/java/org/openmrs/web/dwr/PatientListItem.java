@@ -17,6 +17,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
+import org.openmrs.PersonName;
+import org.openmrs.patient.PatientSearchResult;
 
 public class PatientListItem extends PersonListItem {
 	
@@ -52,6 +54,7 @@ public class PatientListItem extends PersonListItem {
 				if (first) {
 					identifier = pi.getIdentifier();
 					identifierCheckDigit = pi.getIdentifierType().hasCheckDigit();
+					identifierTypeName = pi.getIdentifierType().getName();
 					first = false;
 				} else {
 					if (!"".equals(otherIdentifiers))
@@ -63,6 +66,39 @@ public class PatientListItem extends PersonListItem {
 		}
 	}
 	
+	/**
+	 * Creates a PatientListItem from the summary of a patient that was found by a search, without
+	 * loading the patient itself. The names and identifiers are listed like those of a loaded
+	 * patient, so that the name that matches the search is shown first.
+	 * 
+	 * @param result the summary of the patient
+	 * @param searchName the search query string of the name, may be null
+	 * @since 1.9.9
+	 * @should copy the fields of the search result
+	 * @should identify the best matching name and list the other names and identifiers
+	 */
+	public PatientListItem(PatientSearchResult result, String searchName) {
+		this(toPatient(result), searchName);
+	}
+	
+	/**
+	 * @return a transient patient with the names, identifiers and demographics of the summary
+	 */
+	private static Patient toPatient(PatientSearchResult result) {
+		Patient patient = new Patient(result.getPatientId());
+		patient.setUuid(result.getUuid());
+		patient.setGender(result.getGender());
+		patient.setBirthdate(result.getBirthdate());
+		patient.setBirthdateEstimated(result.getBirthdateEstimated());
+		patient.setDead(result.getDead());
+		patient.setDeathDate(result.getDeathDate());
+		for (PersonName name : result.getNames())
+			patient.addName(name);
+		for (PatientIdentifier identifier : result.getIdentifiers())
+			patient.addIdentifier(identifier);
+		return patient;
+	}
+	
 	public boolean equals(Object obj) {
 		if (obj instanceof PatientListItem) {
 			PatientListItem pi = (PatientListItem) obj;
@@ -66,6 +66,8 @@ public class PersonListItem {
 	
 	private Boolean voided = false;
 	
+	private Boolean dead = false;
+	
 	private Map<String, String> attributes = new HashMap<String, String>();
 	
 	/**
@@ -135,6 +137,7 @@ public class PersonListItem {
 			birthdateEstimated = person.isBirthdateEstimated();
 			age = person.getAge();
 			voided = person.isPersonVoided();
+			dead = person.isDead();
 			
 			// add in the person attributes
 			for (PersonAttribute attribute : person.getActiveAttributes()) {
@@ -334,6 +337,22 @@ public class PersonListItem {
 		this.voided = voided;
 	}
 	
+	/**
+	 * @return whether the person is dead
+	 * @since 1.9.9
+	 */
+	public Boolean getDead() {
+		return dead;
+	}
+	
+	/**
+	 * @param dead whether the person is dead
+	 * @since 1.9.9
+	 */
+	public void setDead(Boolean dead) {
+		this.dead = dead;
+	}
+	
 	public String getOtherNames() {
 		return otherNames;
 	}
@@ -14,6 +14,8 @@
 package org.openmrs.web.filter;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -31,6 +33,12 @@ import org.springframework.web.filter.OncePerRequestFilter;
  * href="http://www.onjava.com/pub/a/onjava/2003/11/19/filters.html">
  * http://www.onjava.com/pub/a/onjava/2003/11/19/filters.html</a>. &copy; 2003 Jayson Falkner You
  * may freely use the code both commercially and non-commercially.
+ * <p>
+ * Responses are compressed on the fly once they are larger than the
+ * {@link OpenmrsConstants#GP_GZIP_THRESHOLD} and with the
+ * {@link OpenmrsConstants#GP_GZIP_COMPRESSION_LEVEL}. The number of bytes before and after the
+ * compression of all compressed responses are available from {@link #getBytesIn()} and
+ * {@link #getBytesOut()}.
  */
 public class GZIPFilter extends OncePerRequestFilter {
 	
@@ -38,6 +46,16 @@ public class GZIPFilter extends OncePerRequestFilter {
 	
 	private Boolean cachedGZipEnabledFlag = null;
 	
+	private Integer cachedThreshold = null;
+	
+	private Integer cachedCompressionLevel = null;
+	
+	private static final AtomicLong compressedResponses = new AtomicLong();
+	
+	private static final AtomicLong bytesIn = new AtomicLong();
+	
+	private static final AtomicLong bytesOut = new AtomicLong();
+	
 	/**
 	 * @see org.springframework.web.filter.OncePerRequestFilter#doFilterInternal(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
@@ -48,11 +66,22 @@ public class GZIPFilter extends OncePerRequestFilter {
 		if (isGZIPSupported(request) && isGZIPEnabled()) {
 			log.debug("GZIP supported and enabled, compressing response");
 			
-			GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response);
+			GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response, getThreshold(), getCompressionLevel());
 			
 			chain.doFilter(request, wrappedResponse);
 			wrappedResponse.finishResponse();
 			
+			GZIPResponseStream responseStream = wrappedResponse.getResponseStream();
+			if (responseStream != null && responseStream.isCompressed()) {
+				compressedResponses.incrementAndGet();
+				bytesIn.addAndGet(responseStream.getBytesIn());
+				bytesOut.addAndGet(responseStream.getBytesOut());
+				
+				if (log.isDebugEnabled())
+					log.debug("Compressed " + request.getRequestURI() + " from " + responseStream.getBytesIn() + " to "
+					        + responseStream.getBytesOut() + " bytes");
+			}
+			
 			return;
 		}
 		
@@ -104,4 +133,68 @@ public class GZIPFilter extends OncePerRequestFilter {
 			return false;
 		}
 	}
+	
+	/**
+	 * Returns global property gzip.threshold, the number of bytes of a response that are kept in
+	 * memory before it is compressed on the fly
+	 */
+	private int getThreshold() {
+		if (cachedThreshold == null) {
+			cachedThreshold = Math.max(0, getIntegerGlobalProperty(OpenmrsConstants.GP_GZIP_THRESHOLD,
+			    GZIPResponseStream.DEFAULT_THRESHOLD));
+		}
+		return cachedThreshold;
+	}
+	
+	/**
+	 * Returns global property gzip.compressionLevel, from 1 for the fastest to 9 for the best
+	 * compression
+	 */
+	private int getCompressionLevel() {
+		if (cachedCompressionLevel == null) {
+			int level = getIntegerGlobalProperty(OpenmrsConstants.GP_GZIP_COMPRESSION_LEVEL,
+			    Deflater.DEFAULT_COMPRESSION);
+			if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+				log.warn("Invalid value for the global property " + OpenmrsConstants.GP_GZIP_COMPRESSION_LEVEL + ": "
+				        + level + ", using the default compression level");
+				level = Deflater.DEFAULT_COMPRESSION;
+			}
+			cachedCompressionLevel = level;
+		}
+		return cachedCompressionLevel;
+	}
+	
+	private int getIntegerGlobalProperty(String propertyName, int defaultValue) {
+		try {
+			return Context.getAdministrationService().getGlobalPropertyValue(propertyName, defaultValue);
+		}
+		catch (Throwable t) {
+			log.warn("Unable to get the global property: " + propertyName, t);
+			return defaultValue;
+		}
+	}
+	
+	/**
+	 * @return the number of responses that have been compressed since startup
+	 * @since 1.9.9
+	 */
+	public static long getCompressedResponses() {
+		return compressedResponses.get();
+	}
+	
+	/**
+	 * @return the number of bytes of the compressed responses before compression
+	 * @since 1.9.9
+	 */
+	public static long getBytesIn() {
+		return bytesIn.get();
+	}
+	
+	/**
+	 * @return the number of bytes of the compressed responses after compression
+	 * @since 1.9.9
+	 */
+	public static long getBytesOut() {
+		return bytesOut.get();
+	}
 }
@@ -14,21 +14,42 @@
 package org.openmrs.web.filter;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 /**
- * Wraps Response Stream for GZipFilter
+ * Wraps Response Stream for GZipFilter. The first bytes of the response are kept in memory, a
+ * response that fits in the threshold is compressed when the stream is closed and sent with a
+ * Content-Length, while a larger response is compressed on the fly as it is written. Responses with
+ * a content type that is already compressed, such as images, or that already have a
+ * Content-Encoding are sent as they are.
  * 
  * @author Matt Raible
  * @version $Revision: 1.3 $ $Date: 2004/05/16 02:17:00 $
  */
 public class GZIPResponseStream extends ServletOutputStream {
 	
+	/**
+	 * The default number of bytes that are kept in memory before the response is compressed on the
+	 * fly
+	 * 
+	 * @since 1.9.9
+	 */
+	public static final int DEFAULT_THRESHOLD = 8192;
+	
+	/**
+	 * The prefixes of the content types that are not compressed because they are already compressed
+	 */
+	private static final String[] COMPRESSED_CONTENT_TYPES = { "image/", "audio/", "video/", "application/zip",
+	        "application/gzip", "application/x-gzip", "application/x-bzip2", "application/x-7z-compressed",
+	        "application/x-rar-compressed", "application/pdf" };
+	
 	// abstraction of the output stream used for compression
 	protected OutputStream bufferedOutput = null;
 	
@@ -41,8 +62,26 @@ public class GZIPResponseStream extends ServletOutputStream {
 	// reference to the output stream to the client's browser
 	protected ServletOutputStream output = null;
 	
-	// default size of the in-memory buffer
-	private int bufferSize = 50000;
+	// size of the in-memory buffer
+	private int bufferSize = DEFAULT_THRESHOLD;
+	
+	// the compression level of the gzip stream
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	
+	// the content length set by the servlet, sent if the response is not compressed
+	private int contentLength = -1;
+	
+	// whether the response is compressed, only known once the buffer is full or the stream is closed
+	private boolean compressed = false;
+	
+	// the number of bytes written by the servlet
+	private long bytesIn = 0;
+	
+	// the number of bytes sent to the client's browser before the counter was created
+	private long bytesOut = 0;
+	
+	// counts the bytes sent to the client's browser once the response is streamed
+	private CountingOutputStream counter = null;
 	
 	public GZIPResponseStream(HttpServletResponse response) throws IOException {
 		super();
@@ -52,48 +91,42 @@ public class GZIPResponseStream extends ServletOutputStream {
 		bufferedOutput = new ByteArrayOutputStream();
 	}
 	
+	/**
+	 * @param response the response to compress
+	 * @param threshold the number of bytes to keep in memory before compressing on the fly
+	 * @param compressionLevel the compression level from 0 to 9 or -1 for the default level
+	 * @since 1.9.9
+	 */
+	public GZIPResponseStream(HttpServletResponse response, int threshold, int compressionLevel) throws IOException {
+		this(response);
+		this.bufferSize = threshold;
+		this.compressionLevel = compressionLevel;
+	}
+	
+	/**
+	 * @see java.io.OutputStream#close()
+	 * @should compress a small response and set its content length
+	 * @should not compress content types that are already compressed
+	 */
 	public void close() throws IOException {
 		// verify the stream is yet to be closed
 		if (closed) {
 			throw new IOException("This output stream has already been closed");
 		}
 		
-		// if we buffered everything in memory, gzip it
+		// if everything fit in memory, send it now that the length is known
 		if (bufferedOutput instanceof ByteArrayOutputStream) {
-			// get the content
-			ByteArrayOutputStream baos = (ByteArrayOutputStream) bufferedOutput;
-			
-			// prepare a gzip stream
-			ByteArrayOutputStream compressedContent = new ByteArrayOutputStream();
-			GZIPOutputStream gzipstream = new GZIPOutputStream(compressedContent);
-			byte[] bytes = baos.toByteArray();
-			gzipstream.write(bytes);
-			gzipstream.finish();
-			
-			// get the compressed content
-			byte[] compressedBytes = compressedContent.toByteArray();
-			
-			// set appropriate HTTP headers
-			response.setContentLength(compressedBytes.length);
-			response.addHeader("Content-Encoding", "gzip");
-			output.write(compressedBytes);
-			output.flush();
-			output.close();
-			closed = true;
+			startOutput(true);
 		}
-		// if things were not buffered in memory, finish the GZIP stream and response
+		// if things were compressed on the fly, finish the GZIP stream
 		else if (bufferedOutput instanceof GZIPOutputStream) {
-			// cast to appropriate type
-			GZIPOutputStream gzipstream = (GZIPOutputStream) bufferedOutput;
-			
-			// finish the compression
-			gzipstream.finish();
-			
-			// finish the response
-			output.flush();
-			output.close();
-			closed = true;
+			((GZIPOutputStream) bufferedOutput).finish();
 		}
+		
+		// finish the response
+		output.flush();
+		output.close();
+		closed = true;
 	}
 	
 	public void flush() throws IOException {
@@ -114,6 +147,7 @@ public class GZIPResponseStream extends ServletOutputStream {
 		
 		// write the byte to the temporary output
 		bufferedOutput.write((byte) b);
+		bytesIn++;
 	}
 	
 	private void checkBufferSize(int length) throws IOException {
@@ -123,25 +157,92 @@ public class GZIPResponseStream extends ServletOutputStream {
 			
 			if ((baos.size() + length) > bufferSize) {
 				// files too large to keep in memory are sent to the client without Content-Length specified
-				response.addHeader("Content-Encoding", "gzip");
-				
-				// get existing bytes
-				byte[] bytes = baos.toByteArray();
-				
-				// make new gzip stream using the response output stream
-				GZIPOutputStream gzipstream = new GZIPOutputStream(output);
-				gzipstream.write(bytes);
-				
-				// we are no longer buffering, send content via gzipstream
-				bufferedOutput = gzipstream;
+				startOutput(false);
+			}
+		}
+	}
+	
+	/**
+	 * Sends the buffered bytes and makes the following writes go straight to the client's browser,
+	 * compressing them on the fly if the response is to be compressed
+	 * 
+	 * @param complete whether the whole response is in the buffer, so that its length can be sent
+	 */
+	private void startOutput(boolean complete) throws IOException {
+		ByteArrayOutputStream baos = (ByteArrayOutputStream) bufferedOutput;
+		// an empty buffer only means an empty response once the stream is closed, before a first
+		// write that is larger than the buffer it is empty as well
+		compressed = (!complete || baos.size() > 0) && isCompressible();
+		
+		if (!compressed) {
+			if (complete) {
+				response.setContentLength(baos.size());
+			} else if (contentLength >= 0) {
+				response.setContentLength(contentLength);
 			}
+			baos.writeTo(output);
+			bytesOut = baos.size();
+			counter = new CountingOutputStream(output);
+			bufferedOutput = counter;
+			return;
+		}
+		
+		response.addHeader("Content-Encoding", "gzip");
+		if (complete) {
+			// small enough to compress in memory and send with its length
+			ByteArrayOutputStream compressedContent = new ByteArrayOutputStream(baos.size() / 2 + 32);
+			GZIPOutputStream gzipstream = new LeveledGZIPOutputStream(compressedContent, compressionLevel);
+			baos.writeTo(gzipstream);
+			gzipstream.finish();
+			
+			response.setContentLength(compressedContent.size());
+			compressedContent.writeTo(output);
+			bytesOut = compressedContent.size();
+			bufferedOutput = output;
+		} else {
+			// make new gzip stream using the response output stream
+			counter = new CountingOutputStream(output);
+			GZIPOutputStream gzipstream = new LeveledGZIPOutputStream(counter, compressionLevel);
+			baos.writeTo(gzipstream);
+			
+			// we are no longer buffering, send content via gzipstream
+			bufferedOutput = gzipstream;
 		}
 	}
 	
+	/**
+	 * Whether the response should be compressed, which it should not if it already has a
+	 * Content-Encoding or if its content type is already compressed
+	 */
+	private boolean isCompressible() {
+		if (response.containsHeader("Content-Encoding")) {
+			return false;
+		}
+		
+		String contentType = response.getContentType();
+		if (contentType != null) {
+			contentType = contentType.toLowerCase();
+			if (contentType.startsWith("image/svg")) {
+				return true;
+			}
+			for (String compressedContentType : COMPRESSED_CONTENT_TYPES) {
+				if (contentType.startsWith(compressedContentType)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
 	public void write(byte[] b) throws IOException {
 		write(b, 0, b.length);
 	}
 	
+	/**
+	 * @see java.io.OutputStream#write(byte[], int, int)
+	 * @should compress on the fly once the threshold is exceeded
+	 * @should compress a first write that is larger than the threshold
+	 */
 	public void write(byte[] b, int off, int len) throws IOException {
 		
 		if (closed) {
@@ -153,6 +254,7 @@ public class GZIPResponseStream extends ServletOutputStream {
 		
 		// write the content to the buffer
 		bufferedOutput.write(b, off, len);
+		bytesIn += len;
 	}
 	
 	public boolean closed() {
@@ -162,4 +264,75 @@ public class GZIPResponseStream extends ServletOutputStream {
 	public void reset() {
 		//noop
 	}
+	
+	/**
+	 * Sets the content length set by the servlet, which is sent if the response turns out not to be
+	 * compressed
+	 * 
+	 * @param contentLength the length of the uncompressed content
+	 * @since 1.9.9
+	 */
+	public void setContentLength(int contentLength) {
+		this.contentLength = contentLength;
+	}
+	
+	/**
+	 * @return whether the response is compressed, which is only known once more than the threshold
+	 *         has been written or the stream is closed
+	 * @since 1.9.9
+	 */
+	public boolean isCompressed() {
+		return compressed;
+	}
+	
+	/**
+	 * @return the number of bytes written to this stream
+	 * @since 1.9.9
+	 */
+	public long getBytesIn() {
+		return bytesIn;
+	}
+	
+	/**
+	 * @return the number of bytes sent to the client's browser so far
+	 * @since 1.9.9
+	 */
+	public long getBytesOut() {
+		return (counter == null) ? bytesOut : bytesOut + counter.count;
+	}
+	
+	/**
+	 * A gzip stream with a given compression level
+	 */
+	private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+		
+		public LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+			super(out);
+			def.setLevel(level);
+		}
+	}
+	
+	/**
+	 * A stream that counts the bytes written to the underlying stream
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		
+		private long count = 0;
+		
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
 }
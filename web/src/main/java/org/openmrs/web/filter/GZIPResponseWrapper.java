@@ -16,6 +16,7 @@ package org.openmrs.web.filter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.zip.Deflater;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -41,13 +42,41 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
 	
 	protected int error = 0;
 	
+	private int threshold = GZIPResponseStream.DEFAULT_THRESHOLD;
+	
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	
+	private int contentLength = -1;
+	
 	public GZIPResponseWrapper(HttpServletResponse response) {
 		super(response);
 		origResponse = response;
 	}
 	
+	/**
+	 * @param response the response to compress
+	 * @param threshold the number of bytes to keep in memory before compressing on the fly
+	 * @param compressionLevel the compression level from 0 to 9 or -1 for the default level
+	 * @since 1.9.9
+	 */
+	public GZIPResponseWrapper(HttpServletResponse response, int threshold, int compressionLevel) {
+		this(response);
+		this.threshold = threshold;
+		this.compressionLevel = compressionLevel;
+	}
+	
 	public ServletOutputStream createOutputStream() throws IOException {
-		return (new GZIPResponseStream(origResponse));
+		GZIPResponseStream responseStream = new GZIPResponseStream(origResponse, threshold, compressionLevel);
+		responseStream.setContentLength(contentLength);
+		return responseStream;
+	}
+	
+	/**
+	 * @return the stream the response was written to or null if nothing was written
+	 * @since 1.9.9
+	 */
+	public GZIPResponseStream getResponseStream() {
+		return (stream instanceof GZIPResponseStream) ? (GZIPResponseStream) stream : null;
 	}
 	
 	public void finishResponse() {
@@ -103,6 +132,11 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
 	}
 	
 	public void setContentLength(int length) {
+		// only sent if the response turns out not to be compressed
+		contentLength = length;
+		if (stream instanceof GZIPResponseStream) {
+			((GZIPResponseStream) stream).setContentLength(length);
+		}
 	}
 	
 	/**
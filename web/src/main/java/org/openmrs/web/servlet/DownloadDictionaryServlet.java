@@ -13,11 +13,16 @@
  */
 package org.openmrs.web.servlet;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -36,7 +41,7 @@ import org.openmrs.api.context.Context;
 
 /**
  * This servlet will package all non retired concepts into a comma delimited file. Retired concepts
- * are ignored.
+ * are ignored. Add gzip=true to the request to download the file compressed.
  */
 public class DownloadDictionaryServlet extends HttpServlet {
 	
@@ -51,6 +56,9 @@ public class DownloadDictionaryServlet extends HttpServlet {
 	public int batchSize = 1000;
 	
 	/**
+	 * Writes the concepts to the response as they are iterated. If the "gzip" parameter is true the
+	 * file is compressed.
+	 * 
 	 * @see javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse)
 	 */
@@ -61,93 +69,97 @@ public class DownloadDictionaryServlet extends HttpServlet {
 			
 			ConceptService cs = Context.getConceptService();
 			String s = new SimpleDateFormat("dMy_Hm").format(new Date());
+			boolean gzip = "true".equals(request.getParameter("gzip"));
 			
-			response.setHeader("Content-Type", "text/csv;charset=UTF-8");
-			response.setHeader("Content-Disposition", "attachment; filename=conceptDictionary" + s + ".csv");
+			OutputStream out = response.getOutputStream();
+			if (gzip) {
+				response.setHeader("Content-Type", "application/x-gzip");
+				response.setHeader("Content-Disposition", "attachment; filename=conceptDictionary" + s + ".csv.gz");
+				out = new GZIPOutputStream(out);
+			} else {
+				response.setHeader("Content-Type", "text/csv;charset=UTF-8");
+				response.setHeader("Content-Disposition", "attachment; filename=conceptDictionary" + s + ".csv");
+			}
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 64 * 1024);
 			
-			String line = "Concept Id,Name,Description,Synonyms,Answers,Set Members,Class,Datatype,Changed By,Creator\n";
-			response.getWriter().write(line);
+			writer.write("Concept Id,Name,Description,Synonyms,Answers,Set Members,Class,Datatype,Changed By,Creator\n");
 			
-			int listIndex = 0;
+			StringBuilder tmp = new StringBuilder();
 			Iterator<Concept> conceptIterator = cs.conceptIterator();
 			while (conceptIterator.hasNext()) {
 				Concept c = conceptIterator.next();
 				if (!c.isRetired()) {
 					
-					line = c.getConceptId() + ",";
-					String name, description;
+					writer.write(String.valueOf(c.getConceptId()));
+					writer.write(',');
+					
 					ConceptName cn = c.getName(locale);
-					if (cn == null)
-						name = "";
-					else
-						name = cn.getName();
+					writeQuoted(writer, cn == null ? null : cn.getName());
+					writer.write(',');
 					
 					ConceptDescription cd = c.getDescription(locale);
-					if (cd == null)
-						description = "";
-					else
-						description = cd.getDescription();
-					
-					line += '"' + name.replace("\"", "\"\"") + "\",";
-					
-					if (description == null)
-						description = "";
-					line = line + '"' + description.replace("\"", "\"\"") + "\",";
+					writeQuoted(writer, cd == null ? null : cd.getDescription());
+					writer.write(',');
 					
-					String tmp = "";
+					tmp.setLength(0);
 					for (ConceptName syn : c.getNames()) {
-						tmp += syn + "\n";
+						tmp.append(syn).append('\n');
 					}
-					line += '"' + tmp.trim() + "\",";
+					writeQuoted(writer, tmp.toString().trim());
+					writer.write(',');
 					
-					tmp = "";
+					tmp.setLength(0);
 					for (ConceptAnswer answer : c.getAnswers(false)) {
 						if (answer.getAnswerConcept() != null)
-							tmp += answer.getAnswerConcept().getName() + "\n";
+							tmp.append(answer.getAnswerConcept().getName()).append('\n');
 						else if (answer.getAnswerDrug() != null)
-							tmp += answer.getAnswerDrug().getFullName(Context.getLocale()) + "\n";
+							tmp.append(answer.getAnswerDrug().getFullName(locale)).append('\n');
 					}
-					line += '"' + tmp.trim() + "\",";
+					writeQuoted(writer, tmp.toString().trim());
+					writer.write(',');
 					
-					tmp = "";
+					tmp.setLength(0);
 					for (ConceptSet set : c.getConceptSets()) {
-						if (set.getConcept() != null) {
-							name = set.getConcept().getName().toString();
-							tmp += name.replace("\"", "\"\"") + "\n";
-						}
+						if (set.getConcept() != null)
+							tmp.append(set.getConcept().getName()).append('\n');
 					}
-					line += '"' + tmp.trim() + "\",";
-					
-					line += '"';
-					if (c.getConceptClass() != null)
-						line += c.getConceptClass().getName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getDatatype() != null)
-						line += c.getDatatype().getName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getChangedBy() != null)
-						line += c.getChangedBy().getPersonName();
-					line += "\",";
+					writeQuoted(writer, tmp.toString().trim());
+					writer.write(',');
 					
-					line += '"';
-					if (c.getCreator() != null)
-						line += c.getCreator().getPersonName();
-					line += "\"\n";
-					
-					response.getWriter().write(line);
+					writeQuoted(writer, c.getConceptClass() == null ? null : c.getConceptClass().getName());
+					writer.write(',');
+					writeQuoted(writer, c.getDatatype() == null ? null : c.getDatatype().getName());
+					writer.write(',');
+					writeQuoted(writer, c.getChangedBy() == null ? null : String.valueOf(c.getChangedBy().getPersonName()));
+					writer.write(',');
+					writeQuoted(writer, c.getCreator() == null ? null : String.valueOf(c.getCreator().getPersonName()));
+					writer.write('\n');
 				}
 				
 			}
+			
+			// finishes the gzip stream too
+			writer.close();
 		}
 		catch (Throwable t) {
 			log.error("Error while downloading concepts.", t);
 		}
 	}
 	
+	/**
+	 * Writes a value between double quotes, doubling the double quotes in it
+	 * 
+	 * @param writer the writer to write to
+	 * @param value the value to write, null is written as an empty value
+	 * @throws IOException
+	 */
+	private void writeQuoted(Writer writer, String value) throws IOException {
+		writer.write('"');
+		if (value != null)
+			writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+	
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		doGet(request, response);
 	}
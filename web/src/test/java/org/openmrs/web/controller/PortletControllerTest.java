@@ -14,6 +14,7 @@
 package org.openmrs.web.controller;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -21,6 +22,9 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Obs;
+import org.openmrs.api.context.Context;
 import org.openmrs.test.Verifies;
 import org.openmrs.web.WebConstants;
 import org.openmrs.web.test.BaseWebContextSensitiveTest;
@@ -75,4 +79,26 @@ public class PortletControllerTest extends BaseWebContextSensitiveTest {
 		Map<String, Object> modelmap = getModelFromController(7);
 		Assert.assertEquals("?", modelmap.get("patientBmiAsString"));
 	}
+	
+	/**
+	 * @see {@link PortletController#handleRequest(HttpServletRequest,HttpServletResponse)}
+	 */
+	@Test
+	@Verifies(value = "should load the latest weight and cd4 if the height concept does not exist", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldLoadTheLatestWeightAndCd4IfTheHeightConceptDoesNotExist() throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(new GlobalProperty("concept.weight", "5089"));
+		Context.getAdministrationService().saveGlobalProperty(new GlobalProperty("concept.height", "999999"));
+		Context.getAdministrationService().saveGlobalProperty(new GlobalProperty("concept.cd4_count", "5497"));
+		
+		Map<String, Object> modelmap = getModelFromController(7);
+		Assert.assertNotNull(modelmap.get("patientWeight"));
+		Assert.assertNull(modelmap.get("patientHeight"));
+		Assert.assertEquals("?", modelmap.get("patientBmiAsString"));
+		boolean foundCd4 = false;
+		for (Obs obs : (List<Obs>) modelmap.get("patientLatestObs")) {
+			if (obs.getConcept().getConceptId() == 5497)
+				foundCd4 = true;
+		}
+		Assert.assertTrue(foundCd4);
+	}
 }
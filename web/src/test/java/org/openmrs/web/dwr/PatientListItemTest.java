@@ -0,0 +1,106 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.dwr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.PersonName;
+import org.openmrs.api.context.Context;
+import org.openmrs.patient.PatientSearchResult;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.Format;
+import org.openmrs.web.test.BaseWebContextSensitiveTest;
+
+/**
+ * Tests the {@link PatientListItem} class.
+ */
+public class PatientListItemTest extends BaseWebContextSensitiveTest {
+	
+	private static PersonName createName(String givenName, String middleName, String familyName, boolean preferred) {
+		PersonName name = new PersonName(givenName, middleName, familyName);
+		name.setPreferred(preferred);
+		return name;
+	}
+	
+	private static PatientIdentifier createIdentifier(String identifier, String typeName, boolean preferred) {
+		PatientIdentifierType type = new PatientIdentifierType();
+		type.setName(typeName);
+		type.setCheckDigit(preferred);
+		PatientIdentifier patientIdentifier = new PatientIdentifier();
+		patientIdentifier.setIdentifier(identifier);
+		patientIdentifier.setIdentifierType(type);
+		patientIdentifier.setPreferred(preferred);
+		return patientIdentifier;
+	}
+	
+	/**
+	 * @see {@link PatientListItem#PatientListItem(PatientSearchResult,String)}
+	 */
+	@Test
+	@Verifies(value = "should copy the fields of the search result", method = "PatientListItem(PatientSearchResult,String)")
+	public void PatientListItem_shouldCopyTheFieldsOfTheSearchResult() throws Exception {
+		Patient patient = Context.getPatientService().getPatient(2);
+		List<PersonName> names = Arrays.asList(createName("Horatio", "Test", "Hornblower", true));
+		List<PatientIdentifier> identifiers = Arrays.asList(createIdentifier("101-6", "OpenMRS Identification Number",
+		    true));
+		PatientSearchResult result = new PatientSearchResult(2, patient.getUuid(), "M", patient.getBirthdate(), false,
+		        false, null, names, identifiers);
+		
+		PatientListItem listItem = new PatientListItem(result, null);
+		Assert.assertEquals(2, listItem.getPatientId().intValue());
+		Assert.assertEquals(2, listItem.getPersonId().intValue());
+		Assert.assertEquals(patient.getUuid(), listItem.getUuid());
+		Assert.assertEquals("Horatio", listItem.getGivenName());
+		Assert.assertEquals("Test", listItem.getMiddleName());
+		Assert.assertEquals("Hornblower", listItem.getFamilyName());
+		Assert.assertEquals("101-6", listItem.getIdentifier());
+		Assert.assertEquals("OpenMRS Identification Number", listItem.getIdentifierTypeName());
+		Assert.assertTrue(listItem.getIdentifierCheckDigit());
+		Assert.assertEquals("M", listItem.getGender());
+		Assert.assertEquals(Format.format(patient.getBirthdate()), listItem.getBirthdateString());
+		Assert.assertEquals(patient.getAge(), listItem.getAge());
+		Assert.assertFalse(listItem.getDead());
+	}
+	
+	/**
+	 * @see {@link PatientListItem#PatientListItem(PatientSearchResult,String)}
+	 */
+	@Test
+	@Verifies(value = "should identify the best matching name and list the other names and identifiers", method = "PatientListItem(PatientSearchResult,String)")
+	public void PatientListItem_shouldIdentifyTheBestMatchingNameAndListTheOtherNamesAndIdentifiers() throws Exception {
+		List<PersonName> names = new ArrayList<PersonName>();
+		names.add(createName("Horatio", "Test", "Hornblower", true));
+		names.add(createName("John", "Peeter", "Hornblower3", false));
+		List<PatientIdentifier> identifiers = new ArrayList<PatientIdentifier>();
+		identifiers.add(createIdentifier("101-6", "OpenMRS Identification Number", true));
+		identifiers.add(createIdentifier("101", "Old Identification Number", false));
+		PatientSearchResult result = new PatientSearchResult(2, null, "M", null, false, true, null, names, identifiers);
+		
+		PatientListItem listItem = new PatientListItem(result, "John Hornblower3");
+		Assert.assertEquals("John", listItem.getGivenName());
+		Assert.assertEquals("Peeter", listItem.getMiddleName());
+		Assert.assertEquals("Hornblower3", listItem.getFamilyName());
+		Assert.assertTrue(listItem.getOtherNames().contains("Horatio Test Hornblower"));
+		Assert.assertEquals("101-6", listItem.getIdentifier());
+		Assert.assertEquals(" 101", listItem.getOtherIdentifiers());
+		Assert.assertTrue(listItem.getDead());
+	}
+}
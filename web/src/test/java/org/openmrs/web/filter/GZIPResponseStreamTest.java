@@ -0,0 +1,129 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.filter;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests the {@link GZIPResponseStream} class
+ */
+public class GZIPResponseStreamTest {
+	
+	private static byte[] getContent(int length) {
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++)
+			content[i] = (byte) ('a' + i % 10);
+		return content;
+	}
+	
+	private static byte[] decompress(byte[] compressed) throws Exception {
+		return IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+	}
+	
+	/**
+	 * @see GZIPResponseStream#close()
+	 */
+	@Test
+	@Verifies(value = "should compress a small response and set its content length", method = "close()")
+	public void close_shouldCompressASmallResponseAndSetItsContentLength() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		response.setContentType("text/html");
+		GZIPResponseStream stream = new GZIPResponseStream(response, 1000, Deflater.BEST_SPEED);
+		byte[] content = getContent(500);
+		stream.write(content);
+		Assert.assertEquals(0, response.getContentAsByteArray().length);
+		
+		stream.close();
+		
+		Assert.assertTrue(stream.isCompressed());
+		Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+		Assert.assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+		Assert.assertEquals(500, stream.getBytesIn());
+		Assert.assertEquals(response.getContentAsByteArray().length, stream.getBytesOut());
+		Assert.assertTrue(Arrays.equals(content, decompress(response.getContentAsByteArray())));
+	}
+	
+	/**
+	 * @see GZIPResponseStream#write(byte[],int,int)
+	 */
+	@Test
+	@Verifies(value = "should compress on the fly once the threshold is exceeded", method = "write(byte[],int,int)")
+	public void write_shouldCompressOnTheFlyOnceTheThresholdIsExceeded() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		GZIPResponseStream stream = new GZIPResponseStream(response, 100, Deflater.DEFAULT_COMPRESSION);
+		byte[] content = getContent(100000);
+		stream.write(content, 0, 50);
+		Assert.assertEquals(0, response.getContentAsByteArray().length);
+		
+		stream.write(content, 50, content.length - 50);
+		Assert.assertTrue(stream.isCompressed());
+		Assert.assertTrue(response.getContentAsByteArray().length > 0);
+		
+		stream.close();
+		
+		Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+		Assert.assertEquals(0, response.getContentLength());
+		Assert.assertEquals(response.getContentAsByteArray().length, stream.getBytesOut());
+		Assert.assertTrue(stream.getBytesOut() < stream.getBytesIn());
+		Assert.assertTrue(Arrays.equals(content, decompress(response.getContentAsByteArray())));
+	}
+	
+	/**
+	 * @see GZIPResponseStream#write(byte[],int,int)
+	 */
+	@Test
+	@Verifies(value = "should compress a first write that is larger than the threshold", method = "write(byte[],int,int)")
+	public void write_shouldCompressAFirstWriteThatIsLargerThanTheThreshold() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		response.setContentType("text/plain");
+		GZIPResponseStream stream = new GZIPResponseStream(response, 0, Deflater.DEFAULT_COMPRESSION);
+		byte[] content = getContent(65536);
+		stream.write(content);
+		Assert.assertTrue(stream.isCompressed());
+		
+		stream.close();
+		
+		Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+		Assert.assertTrue(stream.getBytesOut() < stream.getBytesIn());
+		Assert.assertTrue(Arrays.equals(content, decompress(response.getContentAsByteArray())));
+	}
+	
+	/**
+	 * @see GZIPResponseStream#close()
+	 */
+	@Test
+	@Verifies(value = "should not compress content types that are already compressed", method = "close()")
+	public void close_shouldNotCompressContentTypesThatAreAlreadyCompressed() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		response.setContentType("image/png");
+		GZIPResponseStream stream = new GZIPResponseStream(response, 1000, Deflater.DEFAULT_COMPRESSION);
+		byte[] content = getContent(500);
+		stream.write(content);
+		stream.close();
+		
+		Assert.assertFalse(stream.isCompressed());
+		Assert.assertNull(response.getHeader("Content-Encoding"));
+		Assert.assertEquals(500, response.getContentLength());
+		Assert.assertTrue(Arrays.equals(content, response.getContentAsByteArray()));
+	}
+}
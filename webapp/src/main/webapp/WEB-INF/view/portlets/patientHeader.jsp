@@ -171,18 +171,18 @@
 				code="Patient.bmi" />: ${model.patientBmiAsString}</th>
 		<th class="patientHeaderObsWeightHeightHeader"><small> (
 				<openmrs:message code="Patient.weight" />: <openmrs_tag:mostRecentObs
-					observations="${model.patientObs}" concept="${weightConceptId}"
+					observations="${model.patientLatestObs}" concept="${weightConceptId}"
 					showUnits="true" locale="${model.locale}" showDate="false" /> , <openmrs:message
 					code="Patient.height" />: <openmrs_tag:mostRecentObs
-					observations="${model.patientObs}" concept="${heightConceptId}"
+					observations="${model.patientLatestObs}" concept="${heightConceptId}"
 					showUnits="true" locale="${model.locale}" showDate="false" /> )
 		</small></th>
 		<td id="patientHeaderObsCD4"><openmrs:message code="Patient.cd4" />:
-			<openmrs_tag:mostRecentObs observations="${model.patientObs}"
+			<openmrs_tag:mostRecentObs observations="${model.patientLatestObs}"
 				concept="${cd4ConceptId}" locale="${model.locale}" /></td>
 		<td id="patientHeaderObsReturnVisit"><openmrs:message
 				code="Patient.returnVisit" />: <openmrs_tag:mostRecentObs
-				observations="${model.patientObs}" concept="5096"
+				observations="${model.patientLatestObs}" concept="5096"
 				locale="${model.locale}" /></td>
 		<td id="patientHeaderObsRegimen"><openmrs:message
 				code="Patient.regimen" />: <span id="patientHeaderRegimen">